@@ -0,0 +1,88 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.benchmarks;
+
+import co.acu.nodemorph.core.services.UpdateService;
+import co.acu.nodemorph.core.services.impl.QueryPlanServiceImpl;
+import co.acu.nodemorph.core.services.impl.UpdateServiceImpl;
+import com.day.cq.search.QueryBuilder;
+import io.wcm.testing.mock.aem.context.AemContextImpl;
+import org.apache.sling.testing.mock.sling.ResourceResolverType;
+import org.osgi.framework.Constants;
+
+import javax.jcr.Session;
+import java.lang.reflect.Proxy;
+
+/**
+ * An in-memory Oak repository with the NodeMorph services registered, for running the update engine outside
+ * of AEM. QueryBuilder only exists in a full AEM instance, so updates have to select the {@code sql2} or
+ * {@code traversal} query engine.
+ */
+public class BenchmarkRepository extends AemContextImpl {
+
+    public static final String CONTENT_ROOT = "/content/benchmark";
+
+    private UpdateService updateService;
+
+    public BenchmarkRepository() {
+        setResourceResolverType(ResourceResolverType.JCR_OAK);
+    }
+
+    /**
+     * Starts the repository and registers the update service. Throttling and journaling are disabled, so
+     * measurements only cover the update itself.
+     *
+     * @param batchSize the number of modified nodes per commit.
+     */
+    public void start(int batchSize) {
+        setUpContext();
+        registerService(QueryBuilder.class, unsupported(QueryBuilder.class), Constants.SERVICE_RANKING, Integer.MAX_VALUE);
+        registerInjectActivateService(new QueryPlanServiceImpl(), "traversalLimit", 0L);
+        updateService = registerInjectActivateService(new UpdateServiceImpl(),
+                "batchSize", batchSize,
+                "treeWalkThreshold", 0,
+                "journalPath", "",
+                "throttle", false);
+    }
+
+    public void stop() {
+        tearDownContext();
+    }
+
+    public UpdateService updateService() {
+        return updateService;
+    }
+
+    public Session session() {
+        return resourceResolver().adaptTo(Session.class);
+    }
+
+    private static <T> T unsupported(Class<T> type) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Unsupported " + type.getSimpleName();
+                default:
+                    throw new UnsupportedOperationException(type.getSimpleName() + " is not available outside of AEM");
+            }
+        }));
+    }
+
+}
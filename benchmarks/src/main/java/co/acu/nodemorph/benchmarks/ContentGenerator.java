@@ -0,0 +1,168 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.benchmarks;
+
+import javax.jcr.NamespaceRegistry;
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.nodetype.NodeTypeManager;
+import javax.jcr.nodetype.NodeTypeTemplate;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Random;
+
+/**
+ * Generates a page tree shaped like AEM content: every {@code cq:Page} has a {@code jcr:content} node with a
+ * root and a responsive grid holding components, and pages are nested breadth first below the content root.
+ * Names are numbered and property values are picked with a seeded random, so the same {@link ContentShape}
+ * always produces the same tree.
+ */
+public class ContentGenerator {
+
+    public static final String PAGE_RESOURCE_TYPE = "nodemorph/benchmark/page";
+    public static final String COMPONENT_RESOURCE_TYPE = "nodemorph/benchmark/components/";
+    public static final String GRID_RESOURCE_TYPE = "wcm/foundation/components/responsivegrid";
+
+    private static final String[] COMPONENTS = {"title", "text", "image", "teaser", "list", "button", "embed", "tabs"};
+    private static final int SAVE_EVERY = 5000;
+
+    private final Session session;
+    private final ContentShape shape;
+    private final Random random;
+
+    public ContentGenerator(Session session) {
+        this(session, new ContentShape());
+    }
+
+    public ContentGenerator(Session session, ContentShape shape) {
+        shape.validate();
+        this.session = session;
+        this.shape = shape;
+        this.random = new Random(shape.seed);
+    }
+
+    /**
+     * Generates pages below a root node until the tree holds at least the given number of nodes.
+     *
+     * @param rootPath the path of the root node, created if missing.
+     * @param nodes the number of nodes to generate, overriding the shape's node count.
+     * @return the number of pages generated.
+     * @throws RepositoryException if the content cannot be written.
+     */
+    public int generate(String rootPath, int nodes) throws RepositoryException {
+        return generate(rootPath, nodes, shape.depth);
+    }
+
+    /**
+     * Generates the tree of the shape below a root node.
+     *
+     * @param rootPath the path of the root node, created if missing.
+     * @return the number of pages generated.
+     * @throws RepositoryException if the content cannot be written.
+     */
+    public int generate(String rootPath) throws RepositoryException {
+        return generate(rootPath, shape.nodes, shape.depth);
+    }
+
+    private int generate(String rootPath, int nodes, int depth) throws RepositoryException {
+        registerPageTypes();
+        Deque<Node> parents = new ArrayDeque<>();
+        Deque<Integer> levels = new ArrayDeque<>();
+        parents.add(createPath(rootPath));
+        levels.add(0);
+        int pages = 0;
+        int children = 0;
+        while (!parents.isEmpty() && (nodes == 0 || (long) pages * shape.nodesPerPage() < nodes)) {
+            Node page = createPage(parents.peek(), pages);
+            int level = levels.peek() + 1;
+            if (depth == 0 || level < depth) {
+                parents.add(page);
+                levels.add(level);
+            }
+            pages++;
+            if (++children == shape.pageFanOut) {
+                parents.remove();
+                levels.remove();
+                children = 0;
+            }
+            if (pages % Math.max(1, SAVE_EVERY / shape.nodesPerPage()) == 0) {
+                session.save();
+            }
+        }
+        session.save();
+        return pages;
+    }
+
+    private Node createPage(Node parent, int index) throws RepositoryException {
+        Node page = parent.addNode("page-" + index, "cq:Page");
+        Node content = page.addNode("jcr:content", "cq:PageContent");
+        content.setProperty("jcr:title", "Page " + index);
+        content.setProperty("sling:resourceType", PAGE_RESOURCE_TYPE);
+        content.setProperty("category", value("category"));
+        content.setProperty("test", "alpha");
+        content.setProperty("legacy", "true");
+
+        Node root = content.addNode("root", "nt:unstructured");
+        root.setProperty("sling:resourceType", GRID_RESOURCE_TYPE);
+        Node grid = root.addNode("responsivegrid", "nt:unstructured");
+        grid.setProperty("sling:resourceType", GRID_RESOURCE_TYPE);
+        for (int i = 0; i < shape.componentsPerPage; i++) {
+            String component = COMPONENTS[i % COMPONENTS.length];
+            String name = i < COMPONENTS.length ? component : component + "_" + i / COMPONENTS.length;
+            Node node = grid.addNode(name, "nt:unstructured");
+            node.setProperty("sling:resourceType", COMPONENT_RESOURCE_TYPE + component);
+            node.setProperty("jcr:title", component + " " + index);
+            for (int p = 0; p < shape.propertiesPerComponent; p++) {
+                node.setProperty("prop" + p, value("value"));
+            }
+        }
+        return page;
+    }
+
+    private String value(String prefix) {
+        return prefix + "-" + random.nextInt(shape.propertyCardinality);
+    }
+
+    private Node createPath(String path) throws RepositoryException {
+        Node node = session.getRootNode();
+        for (String name : path.substring(1).split("/")) {
+            node = node.hasNode(name) ? node.getNode(name) : node.addNode(name, "nt:unstructured");
+        }
+        return node;
+    }
+
+    /**
+     * Registers minimal {@code cq:Page} and {@code cq:PageContent} node types, which only ship with AEM.
+     */
+    private void registerPageTypes() throws RepositoryException {
+        NamespaceRegistry namespaces = session.getWorkspace().getNamespaceRegistry();
+        if (!Arrays.asList(namespaces.getPrefixes()).contains("cq")) {
+            namespaces.registerNamespace("cq", "http://www.day.com/jcr/cq/1.0");
+        }
+        NodeTypeManager types = session.getWorkspace().getNodeTypeManager();
+        for (String name : new String[] {"cq:Page", "cq:PageContent"}) {
+            if (!types.hasNodeType(name)) {
+                NodeTypeTemplate type = types.createNodeTypeTemplate();
+                type.setName(name);
+                type.setDeclaredSuperTypeNames(new String[] {"nt:unstructured"});
+                types.registerNodeType(type, false);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.benchmarks;
+
+/**
+ * The shape of a generated page tree. Every page has a {@code jcr:content} node with a root and a responsive
+ * grid, so a page takes four nodes plus its components.
+ */
+public class ContentShape {
+
+    /** The number of nodes to generate at least, or 0 to fill every page level up to the depth. */
+    public int nodes = 10000;
+
+    /** The number of child pages per page. */
+    public int pageFanOut = 10;
+
+    /** The number of page levels below the root, or 0 for as many as the node count needs. */
+    public int depth;
+
+    public int componentsPerPage = 6;
+
+    /** The number of generated properties on every component, in addition to its resource type and title. */
+    public int propertiesPerComponent = 2;
+
+    /** The number of distinct values of every generated property. */
+    public int propertyCardinality = 10;
+
+    /** The seed for picking property values, so the same shape always produces the same tree. */
+    public long seed = 42;
+
+    public int nodesPerPage() {
+        return 4 + componentsPerPage;
+    }
+
+    /**
+     * Reads a shape from system properties, falling back to the defaults for missing ones.
+     *
+     * @param prefix the prefix of the property names, e.g. "scale." for "scale.nodes".
+     * @return the shape.
+     * @throws IllegalArgumentException if the shape is invalid.
+     */
+    public static ContentShape fromSystemProperties(String prefix) {
+        ContentShape shape = new ContentShape();
+        shape.nodes = Integer.getInteger(prefix + "nodes", shape.nodes);
+        shape.pageFanOut = Integer.getInteger(prefix + "pageFanOut", shape.pageFanOut);
+        shape.depth = Integer.getInteger(prefix + "depth", shape.depth);
+        shape.componentsPerPage = Integer.getInteger(prefix + "componentsPerPage", shape.componentsPerPage);
+        shape.propertiesPerComponent = Integer.getInteger(prefix + "propertiesPerComponent", shape.propertiesPerComponent);
+        shape.propertyCardinality = Integer.getInteger(prefix + "propertyCardinality", shape.propertyCardinality);
+        shape.seed = Long.getLong(prefix + "seed", shape.seed);
+        shape.validate();
+        return shape;
+    }
+
+    /**
+     * @throws IllegalArgumentException if a value is out of range, or neither a node count nor a depth is set.
+     */
+    public void validate() {
+        if (nodes < 0 || depth < 0 || componentsPerPage < 0 || propertiesPerComponent < 0) {
+            throw new IllegalArgumentException("Content shape values cannot be negative");
+        }
+        if (pageFanOut < 1 || propertyCardinality < 1) {
+            throw new IllegalArgumentException("Page fan-out and property cardinality must be at least 1");
+        }
+        if (nodes == 0 && depth == 0) {
+            throw new IllegalArgumentException("Either a node count or a depth is required");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "nodes=" + nodes + ", pageFanOut=" + pageFanOut + ", depth=" + depth
+                + ", componentsPerPage=" + componentsPerPage + ", propertiesPerComponent=" + propertiesPerComponent
+                + ", propertyCardinality=" + propertyCardinality + ", seed=" + seed;
+    }
+
+}
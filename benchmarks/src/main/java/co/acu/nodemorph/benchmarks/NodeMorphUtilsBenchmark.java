@@ -0,0 +1,99 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.benchmarks;
+
+import co.acu.nodemorph.core.utils.NodeMorphUtils;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.jcr.RepositoryException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Microbenchmarks for the {@link NodeMorphUtils} helpers called for every request or every node.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NodeMorphUtilsBenchmark {
+
+    private static final String SINGLE_PROPERTY = "jcr:title=New Title";
+    private static final String PROPERTIES = "jcr:title=New Title\n"
+            + "cq:tags=[we-retail:activity/hiking, we-retail:season/summer, we-retail:region/europe]\n"
+            + "\n"
+            + "sling:resourceType=nodemorph/benchmark/components/teaser\n"
+            + "hideInNav = true\n"
+            + "malformed line\n";
+
+    private BenchmarkRepository repository;
+    private ResourceResolver resolver;
+    private String basePath;
+
+    @Setup(Level.Trial)
+    public void setUp() throws RepositoryException {
+        repository = new BenchmarkRepository();
+        repository.start(1000);
+        new ContentGenerator(repository.session()).generate(BenchmarkRepository.CONTENT_ROOT, 100);
+        resolver = repository.resourceResolver();
+        basePath = BenchmarkRepository.CONTENT_ROOT + "/page-0/jcr:content/root/responsivegrid";
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        repository.stop();
+    }
+
+    @Benchmark
+    public Map<String, Object> parseSingleProperty() {
+        return NodeMorphUtils.parseProperties(SINGLE_PROPERTY);
+    }
+
+    @Benchmark
+    public Map<String, Object> parseProperties() {
+        return NodeMorphUtils.parseProperties(PROPERTIES);
+    }
+
+    @Benchmark
+    public String resolveRelativePath() {
+        return NodeMorphUtils.resolvePath(basePath, "teaser", resolver);
+    }
+
+    @Benchmark
+    public String resolveAbsolutePath() {
+        return NodeMorphUtils.resolvePath(basePath, "/content/dam/benchmark", resolver);
+    }
+
+    @Benchmark
+    public String resolveParentPath() {
+        return NodeMorphUtils.resolvePath(basePath, "../image", resolver);
+    }
+
+}
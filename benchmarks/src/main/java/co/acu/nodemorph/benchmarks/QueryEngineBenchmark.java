@@ -0,0 +1,101 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.benchmarks;
+
+import co.acu.nodemorph.core.dto.UpdateRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.jcr.RepositoryException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the query engines on the same predicates with a dry run, which finds and evaluates every match
+ * without writing anything. Results are only counted.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx4g"})
+public class QueryEngineBenchmark {
+
+    @Param({"10000", "100000"})
+    public int nodes;
+
+    @Param({"sql2", "traversal"})
+    public String queryEngine;
+
+    private BenchmarkRepository repository;
+
+    @Setup(Level.Trial)
+    public void setUp() throws RepositoryException {
+        repository = new BenchmarkRepository();
+        repository.start(1000);
+        new ContentGenerator(repository.session()).generate(BenchmarkRepository.CONTENT_ROOT, nodes);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        repository.stop();
+    }
+
+    @Benchmark
+    public long pages() {
+        return find("pageOnly", "true");
+    }
+
+    @Benchmark
+    public long nodeName() {
+        return find("matchType", "node", "jcrNodeName", "responsivegrid");
+    }
+
+    @Benchmark
+    public long propertyValue() {
+        return find("matchType", "property", "ifProp", "sling:resourceType",
+                "ifValue", ContentGenerator.COMPONENT_RESOURCE_TYPE + "teaser");
+    }
+
+    private long find(String... params) {
+        Map<String, String> map = new HashMap<>();
+        map.put("path", BenchmarkRepository.CONTENT_ROOT);
+        map.put("operation", "add");
+        map.put("properties", "benchmark=true");
+        map.put("dryRun", "true");
+        map.put("queryEngine", queryEngine);
+        for (int i = 0; i < params.length; i += 2) {
+            map.put(params[i], params[i + 1]);
+        }
+        UpdateOperationBenchmark.ResultCounter counter = new UpdateOperationBenchmark.ResultCounter();
+        repository.updateService().processUpdate(new UpdateRequest(map, repository.resourceResolver()), counter);
+        return counter.results;
+    }
+
+}
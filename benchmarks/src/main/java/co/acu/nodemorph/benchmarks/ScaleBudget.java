@@ -0,0 +1,81 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Limits a scale test run has to stay within. Throughput and heap budgets set to 0 aren't checked.
+ */
+public class ScaleBudget {
+
+    /** The lowest acceptable throughput, in processed nodes per second. */
+    public double minNodesPerSecond;
+
+    /** The highest acceptable heap high-water mark, in megabytes. */
+    public long maxHeapMb;
+
+    /**
+     * The highest acceptable number of commits, or 0 to allow one per full batch of modified nodes plus one for
+     * the remainder.
+     */
+    public int maxCommits;
+
+    /** The batch size the update service commits with. */
+    public int batchSize = 1000;
+
+    /**
+     * Reads a budget from system properties, leaving missing budgets unchecked.
+     *
+     * @param prefix the prefix of the property names, e.g. "scale." for "scale.maxHeapMb".
+     * @return the budget.
+     */
+    public static ScaleBudget fromSystemProperties(String prefix) {
+        ScaleBudget budget = new ScaleBudget();
+        budget.minNodesPerSecond = Double.parseDouble(System.getProperty(prefix + "minNodesPerSecond", "0"));
+        budget.maxHeapMb = Long.getLong(prefix + "maxHeapMb", 0L);
+        budget.maxCommits = Integer.getInteger(prefix + "maxCommits", 0);
+        budget.batchSize = Integer.getInteger(prefix + "batchSize", budget.batchSize);
+        if (budget.batchSize < 1) {
+            throw new IllegalArgumentException("Invalid batch size: " + budget.batchSize);
+        }
+        return budget;
+    }
+
+    /**
+     * Checks a run against the budget.
+     *
+     * @param result the measurements of the run.
+     * @return a message for every exceeded budget; empty if the run stayed within all of them.
+     */
+    public List<String> check(ScaleResult result) {
+        List<String> violations = new ArrayList<>();
+        if (minNodesPerSecond > 0 && result.nodesPerSecond() < minNodesPerSecond) {
+            violations.add(String.format("Throughput of %.0f nodes/s is below %.0f nodes/s", result.nodesPerSecond(), minNodesPerSecond));
+        }
+        long heapMb = result.heapHighWater / (1024 * 1024);
+        if (maxHeapMb > 0 && heapMb > maxHeapMb) {
+            violations.add("Heap high-water mark of " + heapMb + " MB is above " + maxHeapMb + " MB");
+        }
+        long allowedCommits = maxCommits > 0 ? maxCommits : (result.modified + batchSize - 1) / batchSize + 1;
+        if (result.commits + result.failedCommits > allowedCommits) {
+            violations.add((result.commits + result.failedCommits) + " commits are more than " + allowedCommits);
+        }
+        return violations;
+    }
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.benchmarks;
+
+import co.acu.nodemorph.core.dto.CommitBatch;
+import co.acu.nodemorph.core.dto.UpdateRequest;
+import co.acu.nodemorph.core.dto.UpdateResult;
+import co.acu.nodemorph.core.services.UpdateListener;
+import co.acu.nodemorph.core.services.UpdateService;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.List;
+
+/**
+ * Runs updates end to end and measures them: throughput, commits, and the heap high-water mark, taken from
+ * the peak usage of the heap memory pools during the run.
+ */
+public class ScaleHarness {
+
+    private final UpdateService updateService;
+
+    public ScaleHarness(UpdateService updateService) {
+        this.updateService = updateService;
+    }
+
+    /**
+     * Runs an update, counting its results instead of keeping them.
+     *
+     * @param request the update request.
+     * @return the measurements of the run.
+     */
+    public ScaleResult run(UpdateRequest request) {
+        List<MemoryPoolMXBean> pools = ManagementFactory.getMemoryPoolMXBeans();
+        // Start from a collected heap, so earlier garbage doesn't count towards this run
+        System.gc();
+        pools.forEach(MemoryPoolMXBean::resetPeakUsage);
+
+        ScaleResult result = new ScaleResult();
+        result.operation = request.operation;
+        long start = System.nanoTime();
+        updateService.processUpdate(request, new UpdateListener() {
+            @Override
+            public void onResult(UpdateResult update) {
+                result.results++;
+                if ("Failed".equals(update.status)) {
+                    result.failed++;
+                }
+            }
+
+            @Override
+            public void onNodeProcessed(String path) {
+                result.processed++;
+            }
+
+            @Override
+            public void onNodeModified(String path) {
+                result.modified++;
+            }
+
+            @Override
+            public void onBatch(CommitBatch batch) {
+                if ("Committed".equals(batch.status)) {
+                    result.commits++;
+                } else {
+                    result.failedCommits++;
+                }
+            }
+        });
+        result.millis = (System.nanoTime() - start) / 1_000_000;
+
+        for (MemoryPoolMXBean pool : pools) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                result.heapHighWater += pool.getPeakUsage().getUsed();
+            }
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.benchmarks;
+
+/**
+ * The measurements of one update run in a scale test.
+ */
+public class ScaleResult {
+    public String operation;
+    public long processed;
+    public long modified;
+    public long results;
+    public long failed;
+    public int commits;
+    public int failedCommits;
+    public long millis;
+    public long heapHighWater;
+
+    /**
+     * @return the number of processed nodes per second of the run.
+     */
+    public double nodesPerSecond() {
+        return processed * 1000.0 / Math.max(1, millis);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d processed, %d modified, %d failed in %d ms (%.0f nodes/s), %d commits (%d failed), "
+                        + "heap high-water %d MB",
+                operation, processed, modified, failed, millis, nodesPerSecond(), commits, failedCommits,
+                heapHighWater / (1024 * 1024));
+    }
+}
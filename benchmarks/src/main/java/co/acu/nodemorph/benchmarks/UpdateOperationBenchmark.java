@@ -0,0 +1,174 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.benchmarks;
+
+import co.acu.nodemorph.core.dto.UpdateRequest;
+import co.acu.nodemorph.core.dto.UpdateResult;
+import co.acu.nodemorph.core.services.UpdateListener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.query.Query;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a full update run of every operation over a generated page tree, committing in batches of 1000
+ * nodes. Each invocation modifies every page, and the tree is reset before invocations that would otherwise
+ * find it changed, so every invocation does the same work.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx8g"})
+public class UpdateOperationBenchmark {
+
+    private static final String CREATED_NODE_NAME = "nm-benchmark";
+
+    @Param({"10000", "100000", "1000000"})
+    public int nodes;
+
+    @Param({"sql2", "traversal"})
+    public String queryEngine;
+
+    private BenchmarkRepository repository;
+    private int invocation;
+
+    @Setup(Level.Trial)
+    public void setUp() throws RepositoryException {
+        repository = new BenchmarkRepository();
+        repository.start(1000);
+        new ContentGenerator(repository.session()).generate(BenchmarkRepository.CONTENT_ROOT, nodes);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        repository.stop();
+    }
+
+    @Setup(Level.Invocation)
+    public void prepare(BenchmarkParams params) throws RepositoryException {
+        invocation++;
+        if (params.getBenchmark().endsWith(".delete")) {
+            // Puts back the property the previous invocation deleted
+            update("operation", "add", "properties", "legacy=true");
+        } else if (params.getBenchmark().endsWith(".create")) {
+            // Removes the nodes the previous invocation created, so grids don't grow from one invocation to the next
+            removeCreatedNodes();
+        }
+    }
+
+    @Benchmark
+    public long add() {
+        return update("operation", "add", "properties", "benchmark=" + invocation);
+    }
+
+    @Benchmark
+    public long replace() {
+        boolean odd = invocation % 2 == 1;
+        return update("operation", "replace", "propName", "test",
+                "find", odd ? "alpha" : "beta", "replace", odd ? "beta" : "alpha");
+    }
+
+    @Benchmark
+    public long delete() {
+        return update("operation", "delete", "propNames", "legacy");
+    }
+
+    @Benchmark
+    public long create() {
+        return update("operation", "create", "pageOnly", "false", "matchType", "node", "jcrNodeName", "responsivegrid",
+                "newNodeName", CREATED_NODE_NAME, "newNodeProperties", "jcr:title=Created " + invocation);
+    }
+
+    @Benchmark
+    public long copy() {
+        return update("operation", "copy", "copyType", "property", "source", "jcr:title", "target", "navTitle");
+    }
+
+    /**
+     * Runs an update over all pages of the tree.
+     *
+     * @param params pairs of request parameter names and values, overriding the defaults.
+     * @return the number of results reported.
+     */
+    private long update(String... params) {
+        Map<String, String> map = new HashMap<>();
+        map.put("path", BenchmarkRepository.CONTENT_ROOT);
+        map.put("pageOnly", "true");
+        map.put("dryRun", "false");
+        map.put("queryEngine", queryEngine);
+        for (int i = 0; i < params.length; i += 2) {
+            map.put(params[i], params[i + 1]);
+        }
+        ResultCounter counter = new ResultCounter();
+        repository.updateService().processUpdate(new UpdateRequest(map, repository.resourceResolver()), counter);
+        return counter.results;
+    }
+
+    private void removeCreatedNodes() throws RepositoryException {
+        Session session = repository.session();
+        String statement = "SELECT * FROM [nt:base] AS n WHERE ISDESCENDANTNODE(n, [" + BenchmarkRepository.CONTENT_ROOT + "])"
+                + " AND NAME(n) = '" + CREATED_NODE_NAME + "'";
+        NodeIterator created = session.getWorkspace().getQueryManager().createQuery(statement, Query.JCR_SQL2).execute().getNodes();
+        List<String> paths = new ArrayList<>();
+        while (created.hasNext()) {
+            paths.add(created.nextNode().getPath());
+        }
+        for (int i = 0; i < paths.size(); i++) {
+            session.getNode(paths.get(i)).remove();
+            if ((i + 1) % 1000 == 0) {
+                session.save();
+            }
+        }
+        session.save();
+    }
+
+    /**
+     * Counts results instead of keeping them, so the measurement doesn't include collecting a report.
+     */
+    static class ResultCounter implements UpdateListener {
+
+        long results;
+
+        @Override
+        public void onResult(UpdateResult result) {
+            results++;
+        }
+
+    }
+
+}
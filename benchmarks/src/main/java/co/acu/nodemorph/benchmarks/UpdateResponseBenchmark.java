@@ -0,0 +1,195 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.benchmarks;
+
+import co.acu.nodemorph.core.dto.CommitBatch;
+import co.acu.nodemorph.core.dto.ManifestRow;
+import co.acu.nodemorph.core.dto.QueryPlan;
+import co.acu.nodemorph.core.dto.UpdateRequest;
+import co.acu.nodemorph.core.dto.UpdateResult;
+import co.acu.nodemorph.core.services.UpdateListener;
+import co.acu.nodemorph.core.services.UpdateService;
+import co.acu.nodemorph.core.services.impl.UpdateJobServiceImpl;
+import co.acu.nodemorph.core.servlets.UpdateServlet;
+import org.apache.sling.api.SlingHttpServletResponse;
+import org.apache.sling.api.wrappers.SlingHttpServletResponseWrapper;
+import org.apache.sling.testing.mock.sling.servlet.MockSlingHttpServletRequest;
+import org.apache.sling.testing.mock.sling.servlet.MockSlingHttpServletResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.osgi.framework.Constants;
+
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures writing update results as the response of the update servlet. The update service is replaced by
+ * one that reports prepared results, and the response body is discarded, so only the servlet's serialization
+ * is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UpdateResponseBenchmark {
+
+    @Param({"1000", "100000"})
+    public int results;
+
+    private BenchmarkRepository repository;
+    private UpdateServlet servlet;
+    private UpdateResult[] actions;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        actions = new UpdateResult[results];
+        for (int i = 0; i < results; i++) {
+            String path = BenchmarkRepository.CONTENT_ROOT + "/page-" + i / 10 + "/page-" + i + "/jcr:content";
+            actions[i] = i % 100 == 99
+                    ? new UpdateResult(path, "Error: Node is locked", "Failed")
+                    : new UpdateResult(path, "Added property benchmark", "Done");
+        }
+
+        repository = new BenchmarkRepository();
+        repository.start(1000);
+        repository.runMode("author");
+        repository.registerService(UpdateService.class, new ReplayedUpdate(), Constants.SERVICE_RANKING, Integer.MAX_VALUE);
+        repository.registerInjectActivateService(new UpdateJobServiceImpl());
+        servlet = repository.registerInjectActivateService(new UpdateServlet());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        repository.stop();
+    }
+
+    @Benchmark
+    public void stream() throws ServletException, IOException {
+        post(false, false);
+    }
+
+    @Benchmark
+    public void streamGzip() throws ServletException, IOException {
+        post(true, false);
+    }
+
+    @Benchmark
+    public void summary() throws ServletException, IOException {
+        post(false, true);
+    }
+
+    private void post(boolean gzip, boolean summary) throws ServletException, IOException {
+        Map<String, Object> params = new HashMap<>();
+        params.put("path", BenchmarkRepository.CONTENT_ROOT);
+        params.put("operation", "add");
+        params.put("properties", "benchmark=true");
+        params.put("summary", String.valueOf(summary));
+        MockSlingHttpServletRequest request = new MockSlingHttpServletRequest(repository.resourceResolver(), repository.bundleContext());
+        request.setMethod("POST");
+        request.setParameterMap(params);
+        if (gzip) {
+            request.addHeader("Accept-Encoding", "gzip");
+        }
+        servlet.service(request, new DiscardedResponse(new MockSlingHttpServletResponse()));
+    }
+
+    /**
+     * Reports the prepared results as an update would, without touching the repository.
+     */
+    private final class ReplayedUpdate implements UpdateService {
+
+        @Override
+        public void processUpdate(UpdateRequest request, UpdateListener listener) {
+            for (UpdateResult action : actions) {
+                listener.onResult(action);
+            }
+            listener.onBatch(new CommitBatch(1, actions.length, actions[actions.length - 1].path, "Committed"));
+        }
+
+        @Override
+        public void processManifest(UpdateRequest request, Iterator<ManifestRow> rows, UpdateListener listener) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public QueryPlan explain(UpdateRequest request) {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
+    /**
+     * A response that discards its body, so the measurement doesn't include buffering it.
+     */
+    private static class DiscardedResponse extends SlingHttpServletResponseWrapper {
+
+        private final PrintWriter writer = new PrintWriter(Writer.nullWriter());
+
+        DiscardedResponse(SlingHttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public PrintWriter getWriter() {
+            return writer;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return new ServletOutputStream() {
+                @Override
+                public void write(int b) {
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setWriteListener(WriteListener writeListener) {
+                }
+            };
+        }
+
+    }
+
+}
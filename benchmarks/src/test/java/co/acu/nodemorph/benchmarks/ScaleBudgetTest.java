@@ -0,0 +1,75 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.benchmarks;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScaleBudgetTest {
+
+    @Test
+    void testRunWithinBudget() {
+        ScaleBudget budget = new ScaleBudget();
+        budget.minNodesPerSecond = 100;
+        budget.maxHeapMb = 512;
+
+        assertTrue(budget.check(result(2000, 1000, 1000, 2, 256)).isEmpty());
+    }
+
+    @Test
+    void testEveryExceededBudgetIsReported() {
+        ScaleBudget budget = new ScaleBudget();
+        budget.minNodesPerSecond = 100;
+        budget.maxHeapMb = 512;
+        budget.maxCommits = 1;
+
+        List<String> violations = budget.check(result(50, 50, 1000, 2, 1024));
+
+        assertEquals(3, violations.size());
+        assertEquals("Throughput of 50 nodes/s is below 100 nodes/s", violations.get(0));
+        assertEquals("Heap high-water mark of 1024 MB is above 512 MB", violations.get(1));
+        assertEquals("2 commits are more than 1", violations.get(2));
+    }
+
+    @Test
+    void testCommitsDefaultToOnePerBatch() {
+        ScaleBudget budget = new ScaleBudget();
+        budget.batchSize = 100;
+
+        assertTrue(budget.check(result(2000, 1000, 1000, 11, 0)).isEmpty(), "1000 nodes take 10 batches and a final commit");
+        assertEquals(List.of("1000 commits are more than 11"), budget.check(result(2000, 1000, 1000, 1000, 0)));
+    }
+
+    @Test
+    void testUncheckedBudgets() {
+        assertTrue(new ScaleBudget().check(result(1, 0, 1000, 1, 16384)).isEmpty());
+    }
+
+    private static ScaleResult result(long processed, long modified, long millis, int commits, long heapMb) {
+        ScaleResult result = new ScaleResult();
+        result.operation = "add";
+        result.processed = processed;
+        result.modified = modified;
+        result.millis = millis;
+        result.commits = commits;
+        result.heapHighWater = heapMb * 1024 * 1024;
+        return result;
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.benchmarks;
+
+import co.acu.nodemorph.core.dto.UpdateRequest;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs every operation end to end over generated content and fails when a run exceeds its budget. The content
+ * shape and the budgets are read from the "scale." system properties, set in the module's pom.
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class UpdateServiceScaleTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(UpdateServiceScaleTest.class);
+
+    private BenchmarkRepository repository;
+    private ScaleHarness harness;
+    private ScaleBudget budget;
+    private String queryEngine;
+    private int pages;
+
+    @BeforeAll
+    void setUp() throws Exception {
+        ContentShape shape = ContentShape.fromSystemProperties("scale.");
+        budget = ScaleBudget.fromSystemProperties("scale.");
+        queryEngine = System.getProperty("scale.queryEngine", "sql2");
+
+        repository = new BenchmarkRepository();
+        repository.start(budget.batchSize);
+        long start = System.currentTimeMillis();
+        pages = new ContentGenerator(repository.session(), shape).generate(BenchmarkRepository.CONTENT_ROOT);
+        LOG.info("Generated {} pages ({}) in {} ms", pages, shape, System.currentTimeMillis() - start);
+        harness = new ScaleHarness(repository.updateService());
+    }
+
+    @AfterAll
+    void tearDown() {
+        repository.stop();
+    }
+
+    static Stream<Arguments> operations() {
+        return Stream.of(
+                Arguments.of("add", new String[] {"properties", "scale=true\ncq:tags=[scale:one, scale:two]"}),
+                Arguments.of("replace", new String[] {"propName", "test", "find", "alpha", "replace", "beta"}),
+                Arguments.of("delete", new String[] {"propNames", "legacy"}),
+                Arguments.of("create", new String[] {"pageOnly", "false", "matchType", "node", "jcrNodeName", "responsivegrid",
+                        "newNodeName", "scale", "newNodeProperties", "jcr:title=Scale Test"}),
+                Arguments.of("copy", new String[] {"copyType", "property", "source", "jcr:title", "target", "navTitle"}));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("operations")
+    void testOperationStaysWithinBudget(String operation, String[] params) {
+        Map<String, String> map = new HashMap<>();
+        map.put("path", BenchmarkRepository.CONTENT_ROOT);
+        map.put("operation", operation);
+        map.put("pageOnly", "true");
+        map.put("dryRun", "false");
+        map.put("queryEngine", queryEngine);
+        for (int i = 0; i < params.length; i += 2) {
+            map.put(params[i], params[i + 1]);
+        }
+
+        ScaleResult result = harness.run(new UpdateRequest(map, repository.resourceResolver()));
+        LOG.info("{}", result);
+
+        assertEquals(0, result.failed, "No update should fail");
+        assertEquals(pages, result.modified, "Every page should be modified once");
+        List<String> violations = budget.check(result);
+        assertTrue(violations.isEmpty(), operation + " exceeded its budget: " + String.join("; ", violations));
+    }
+
+}
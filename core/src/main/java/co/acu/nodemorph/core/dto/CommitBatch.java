@@ -0,0 +1,42 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.dto;
+
+public class CommitBatch {
+    public int number;
+    public int nodes;
+    public String lastPath;
+    public String status;
+    public String message;
+    public long commitMillis;
+    public long pauseMillis;
+
+    public CommitBatch(int number, int nodes, String lastPath, String status) {
+        this.number = number;
+        this.nodes = nodes;
+        this.lastPath = lastPath;
+        this.status = status;
+    }
+
+    public CommitBatch(int number, int nodes, String lastPath, String status, String message) {
+        this.number = number;
+        this.nodes = nodes;
+        this.lastPath = lastPath;
+        this.status = status;
+        this.message = message;
+    }
+
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.dto;
+
+import java.util.Map;
+
+public class ManifestRow {
+    public long line;
+    public String path;
+    /** The properties to set; a null value removes the property. */
+    public Map<String, Object> properties;
+    public String error;
+
+    public ManifestRow(long line, String path, Map<String, Object> properties) {
+        this.line = line;
+        this.path = path;
+        this.properties = properties;
+    }
+
+    public static ManifestRow invalid(long line, String path, String error) {
+        ManifestRow row = new ManifestRow(line, path, null);
+        row.error = error;
+        return row;
+    }
+
+}
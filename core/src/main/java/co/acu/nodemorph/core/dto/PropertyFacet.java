@@ -0,0 +1,45 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.dto;
+
+import java.util.Map;
+
+/**
+ * The value counts of one property over all hits of a search.
+ */
+public class PropertyFacet {
+    public String property;
+    /** The most frequent values with the number of hits carrying each, most frequent first. */
+    public Map<String, Long> values;
+    /** How often values that aren't listed occur. */
+    public long other;
+    /** The number of hits without the property. */
+    public long missing;
+    /** The number of distinct values; a lower bound if the counts are not complete. */
+    public long distinct;
+    /** False if the property has more distinct values than were counted, so some are only included in other. */
+    public boolean complete;
+
+    public PropertyFacet(String property, Map<String, Long> values, long other, long missing, long distinct, boolean complete) {
+        this.property = property;
+        this.values = values;
+        this.other = other;
+        this.missing = missing;
+        this.distinct = distinct;
+        this.complete = complete;
+    }
+
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.dto;
+
+import java.util.List;
+
+public class SearchFacets {
+    public long total;
+    public List<PropertyFacet> facets;
+
+    public SearchFacets(long total, List<PropertyFacet> facets) {
+        this.total = total;
+        this.facets = facets;
+    }
+
+}
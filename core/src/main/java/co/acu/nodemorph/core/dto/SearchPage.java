@@ -0,0 +1,34 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.dto;
+
+import java.util.List;
+import java.util.Map;
+
+public class SearchPage {
+    public List<Map<String, Object>> hits;
+    public long total;
+    public boolean more;
+    public String cursor;
+
+    public SearchPage(List<Map<String, Object>> hits, long total, boolean more, String cursor) {
+        this.hits = hits;
+        this.total = total;
+        this.more = more;
+        this.cursor = cursor;
+    }
+
+}
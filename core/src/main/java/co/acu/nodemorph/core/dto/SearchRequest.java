@@ -0,0 +1,81 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.dto;
+
+import co.acu.nodemorph.core.utils.NodeMorphUtils;
+import org.apache.sling.api.resource.ResourceResolver;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+public class SearchRequest {
+    public String path;
+    public String query;
+    public String propName;
+    public boolean substringMatch;
+    public boolean pageOnly;
+    public boolean verbose;
+    public List<String> columns;
+    public List<String> facets;
+    public Integer facetLimit;
+    public Integer limit;
+    public String cursor;
+    public ResourceResolver resolver;
+
+    public SearchRequest(Map<String, String> params, ResourceResolver resolver) {
+        this.path = params.get("path");
+        this.query = params.get("query");
+        this.propName = params.get("propName");
+        this.substringMatch = Boolean.parseBoolean(params.get("substringMatch"));
+        this.pageOnly = Boolean.parseBoolean(params.get("pageOnly"));
+        this.verbose = Boolean.parseBoolean(params.get("verbose"));
+        this.columns = parseColumns(params.get("columns"));
+        this.facets = parseColumns(params.get("facets"));
+        this.facetLimit = NodeMorphUtils.parseInteger("facetLimit", params.get("facetLimit"));
+        this.limit = NodeMorphUtils.parseInteger("limit", params.get("limit"));
+        this.cursor = params.get("cursor");
+        this.resolver = resolver;
+    }
+
+    /**
+     * @return true if the query is matched against the value of {@link #propName} rather than node names.
+     */
+    public boolean isPropertyMatch() {
+        return propName != null && !propName.trim().isEmpty();
+    }
+
+    /**
+     * @return true if the request asks for value counts of properties rather than a page of hits.
+     */
+    public boolean isFacetSearch() {
+        return !facets.isEmpty();
+    }
+
+    private static List<String> parseColumns(String columns) {
+        if (columns == null || columns.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+        return Arrays.stream(columns.split(","))
+                .map(String::trim)
+                .filter(c -> !c.isEmpty())
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
+}
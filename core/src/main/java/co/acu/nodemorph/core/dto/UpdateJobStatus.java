@@ -0,0 +1,37 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.dto;
+
+public class UpdateJobStatus {
+    public String id;
+    public String state;
+    public String path;
+    public String operation;
+    public boolean dryRun;
+    public long processed;
+    public long modified;
+    public long failed;
+    public int batches;
+    public double nodesPerSecond;
+    public String currentPath;
+    public long submitted;
+    public long started;
+    public long finished;
+    public String message;
+    public String journal;
+    public String checkpoint;
+
+}
@@ -16,17 +16,26 @@
 package co.acu.nodemorph.core.dto;
 
 import co.acu.nodemorph.core.utils.NodeMorphUtils;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
 import org.apache.sling.api.resource.ResourceResolver;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-public class UpdateRequest {
+public class UpdateRequest implements Cloneable {
     public String path;
     public String operation;
     public boolean pageOnly;
     public boolean dryRun;
+    public boolean summary;
+    public Integer sampleSize;
     public String properties;
     public String propNames;
     public String propName;
@@ -38,6 +47,7 @@ public class UpdateRequest {
     public String copyType;
     public String source;
     public String target;
+    public boolean deepCopy;
     public String matchType;
     public String jcrNodeName;
     public String newNodeName;
@@ -45,15 +55,31 @@ public class UpdateRequest {
     public String parentMatchCondition;
     public String newNodeProperties;
     public boolean isPartialMatch;
+    public boolean isRegex;
+    public Integer batchSize;
+    public Boolean throttle;
+    public boolean parallel;
+    public String queryEngine;
+    public String indexTag;
+    public String journalId;
+    public boolean checkpoint;
+    public String runId;
+    public String resumeAfter;
+    public boolean includePathNode;
+    public List<UpdateRequest> stages = Collections.emptyList();
+    public Map<String, String> params;
     public ResourceResolver resolver;
 
     private static final String[] WRITABLE_PROPERTIES = {"properties"};
+    private static final List<String> PIPELINE_OPERATIONS = Arrays.asList("add", "replace", "copy", "create", "delete");
 
     public UpdateRequest(Map<String, String> params, ResourceResolver resolver) {
         this.path = params.get("path");
         this.operation = params.get("operation");
         this.pageOnly = Boolean.parseBoolean(params.get("pageOnly"));
         this.dryRun = Boolean.parseBoolean(params.get("dryRun"));
+        this.summary = Boolean.parseBoolean(params.get("summary"));
+        this.sampleSize = NodeMorphUtils.parseInteger("sampleSize", params.get("sampleSize"));
         this.properties = params.get("properties");
         this.propNames = params.get("propNames");
         this.propName = params.get("propName");
@@ -65,6 +91,7 @@ public class UpdateRequest {
         this.copyType = params.get("copyType");
         this.source = params.get("source");
         this.target = params.get("target");
+        this.deepCopy = Boolean.parseBoolean(params.get("deepCopy"));
         this.matchType = params.get("matchType");
         this.jcrNodeName = params.get("jcrNodeName");
         this.newNodeName = params.get("newNodeName");
@@ -72,9 +99,114 @@ public class UpdateRequest {
         this.parentMatchCondition = params.get("parentMatchCondition");
         this.newNodeProperties = params.get("newNodeProperties");
         this.isPartialMatch = Boolean.parseBoolean(params.get("partialMatch"));
+        this.isRegex = Boolean.parseBoolean(params.get("regex"));
+        this.batchSize = NodeMorphUtils.parseInteger("batchSize", params.get("batchSize"));
+        this.throttle = params.get("throttle") != null ? Boolean.valueOf(params.get("throttle")) : null;
+        this.parallel = Boolean.parseBoolean(params.get("parallel"));
+        this.queryEngine = parseQueryEngine(params.get("queryEngine"));
+        this.indexTag = params.get("indexTag");
+        if (indexTag != null && !indexTag.matches("[A-Za-z0-9_-]*")) {
+            throw new IllegalArgumentException("Invalid indexTag: " + indexTag);
+        }
+        this.journalId = params.get("journalId");
+        if ("undo".equals(operation) && (journalId == null || !journalId.matches("[A-Za-z0-9_-]+"))) {
+            throw new IllegalArgumentException(journalId == null ? "Missing journalId" : "Invalid journalId: " + journalId);
+        }
+        this.checkpoint = Boolean.parseBoolean(params.get("checkpoint"));
+        this.runId = params.get("runId");
+        if (runId != null && !runId.matches("[A-Za-z0-9_-]+") || "resume".equals(operation) && runId == null) {
+            throw new IllegalArgumentException(runId == null ? "Missing runId" : "Invalid runId: " + runId);
+        }
+        if ("pipeline".equals(operation)) {
+            this.stages = parseStages(params, resolver);
+        }
+        this.params = Collections.unmodifiableMap(new HashMap<>(params));
         this.resolver = resolver;
     }
 
+    /**
+     * Creates a copy of this request scoped to one subtree of the original path, for running partitions of
+     * a parallel update. The subtree root itself is included in the query, since it is a descendant of the
+     * original path.
+     *
+     * @param path the root of the subtree.
+     * @param resolver the resolver the partition runs with.
+     * @return the partition request.
+     */
+    public UpdateRequest forSubtree(String path, ResourceResolver resolver) {
+        try {
+            UpdateRequest partition = (UpdateRequest) super.clone();
+            partition.path = path;
+            partition.includePathNode = true;
+            partition.parallel = false;
+            partition.resolver = resolver;
+            return partition;
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Parses the stages of a pipeline request. The {@code pipeline} parameter is a JSON array of objects,
+     * each holding the parameters of one add, replace, copy, create or delete operation, e.g.
+     * {@code [{"operation":"replace","propName":"jcr:title","find":"Old","replace":"New"},
+     * {"operation":"delete","propNames":"legacy"}]}. Parameters a stage doesn't set are taken from the
+     * pipeline request itself.
+     */
+    private static List<UpdateRequest> parseStages(Map<String, String> params, ResourceResolver resolver) {
+        String pipeline = params.get("pipeline");
+        if (pipeline == null || pipeline.trim().isEmpty()) {
+            throw new IllegalArgumentException("Missing pipeline stages");
+        }
+
+        JsonArray array;
+        try {
+            JsonElement json = JsonParser.parseString(pipeline);
+            if (!json.isJsonArray() || json.getAsJsonArray().size() == 0) {
+                throw new IllegalArgumentException("Invalid pipeline: expected a non-empty array of operations");
+            }
+            array = json.getAsJsonArray();
+        } catch (JsonParseException e) {
+            throw new IllegalArgumentException("Invalid pipeline: " + e.getMessage(), e);
+        }
+
+        List<UpdateRequest> stages = new ArrayList<>();
+        for (JsonElement element : array) {
+            if (!element.isJsonObject()) {
+                throw new IllegalArgumentException("Invalid pipeline stage: " + element);
+            }
+            Map<String, String> stageParams = new HashMap<>(params);
+            stageParams.remove("pipeline");
+            element.getAsJsonObject().entrySet().forEach(entry -> {
+                if (!entry.getValue().isJsonPrimitive()) {
+                    throw new IllegalArgumentException("Invalid pipeline stage parameter: " + entry.getKey());
+                }
+                stageParams.put(entry.getKey(), entry.getValue().getAsString());
+            });
+
+            UpdateRequest stage = new UpdateRequest(stageParams, resolver);
+            if (!PIPELINE_OPERATIONS.contains(stage.operation)) {
+                throw new IllegalArgumentException("Invalid pipeline operation: " + stage.operation);
+            }
+            if ("copy".equals(stage.operation) && stage.source != null && stage.source.contains("/")) {
+                throw new IllegalArgumentException("Copies from a fixed path can't run in a pipeline: " + stage.source);
+            }
+            stages.add(stage);
+        }
+        return Collections.unmodifiableList(stages);
+    }
+
+    private static String parseQueryEngine(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return "querybuilder";
+        }
+        String engine = value.trim().toLowerCase();
+        if (!Arrays.asList("auto", "querybuilder", "sql2", "traversal").contains(engine)) {
+            throw new IllegalArgumentException("Invalid queryEngine: " + value + " (expected auto, querybuilder, sql2 or traversal)");
+        }
+        return engine;
+    }
+
     public List<NodeProperty> getUpdateProperties() {
         List<NodeProperty> props = new ArrayList<>();
         if (properties != null && !properties.trim().isEmpty()) {
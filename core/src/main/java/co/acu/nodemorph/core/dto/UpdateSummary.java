@@ -0,0 +1,29 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.dto;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+public class UpdateSummary {
+    public long nodesProcessed;
+    public long nodesModified;
+    public long results;
+    public Map<String, Long> statuses = new TreeMap<>();
+    public Map<String, Long> actions = new TreeMap<>();
+    public Map<String, Long> subtrees = new TreeMap<>();
+
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.services;
+
+import co.acu.nodemorph.core.dto.QueryPlan;
+import org.apache.sling.api.resource.ResourceResolver;
+
+import java.util.Map;
+
+public interface QueryPlanService {
+
+    /**
+     * Explains how Oak would execute the query built from the given QueryBuilder parameters, without running
+     * it. The parameters are translated into the equivalent XPath statement and passed to Oak's
+     * {@code explain}, which reports the plan and the index it picked. If the plan traverses, the nodes below
+     * the query path are counted up to the configured traversal limit. If there are more, the plan is
+     * marked as not allowed.
+     *
+     * @param queryParams the query parameters, as built by
+     *                    {@link co.acu.nodemorph.core.utils.NodeMorphUtils#getQueryParamMap}.
+     * @param resolver the resolver of the user the query would run for.
+     * @return the query plan. If the plan cannot be determined, {@link QueryPlan#message} says why, and the
+     *         query is only allowed if the nodes below the query path are within the traversal limit.
+     */
+    QueryPlan explain(Map<String, String> queryParams, ResourceResolver resolver);
+
+    /**
+     * Explains a query statement in the given language, applying the same traversal check as
+     * {@link #explain(Map, ResourceResolver)}.
+     *
+     * @param statement the query statement.
+     * @param language the query language, e.g. {@code JCR-SQL2} or {@code xpath}.
+     * @param path the root of the subtree the query is restricted to, counted if the plan traverses.
+     * @param resolver the resolver of the user the query would run for.
+     * @return the query plan.
+     */
+    QueryPlan explain(String statement, String language, String path, ResourceResolver resolver);
+
+    /**
+     * Explains a tree walk below the given path. A walk visits every node below the path, so it is refused
+     * like a traversing query when there are more of them than the traversal limit.
+     *
+     * @param path the root of the subtree the walk would visit.
+     * @param resolver the resolver of the user the walk would run for.
+     * @return the plan of the walk.
+     */
+    QueryPlan explainTreeWalk(String path, ResourceResolver resolver);
+
+}
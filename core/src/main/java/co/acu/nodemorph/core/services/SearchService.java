@@ -0,0 +1,62 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.services;
+
+import co.acu.nodemorph.core.dto.SearchFacets;
+import co.acu.nodemorph.core.dto.SearchPage;
+import co.acu.nodemorph.core.dto.SearchRequest;
+
+import java.util.Map;
+import java.util.function.Consumer;
+
+public interface SearchService {
+
+    /**
+     * Runs a search and returns one page of hits. Each hit holds its path under {@code jcr:path} and the
+     * requested columns only, unless the request is verbose. Pass the returned cursor back in the next
+     * request to fetch the following page. Pages may be served from a cache, per user, until content at or below
+     * the search path changes.
+     *
+     * @param request the search request, including the page size and the cursor of the previous page.
+     * @return the page of hits, with a cursor for the next page if there are more.
+     * @throws IllegalArgumentException if the request or its cursor is invalid.
+     */
+    SearchPage search(SearchRequest request);
+
+    /**
+     * Runs a search and hands every hit to the consumer as soon as it is read, without collecting them.
+     * Hits are fetched one query page at a time, so memory use does not grow with the number of hits.
+     * The request's limit and cursor are ignored.
+     *
+     * @param request the search request.
+     * @param consumer receives each hit, in the same form as the hits of {@link #search(SearchRequest)}.
+     * @throws IllegalArgumentException if the request is invalid.
+     */
+    void export(SearchRequest request, Consumer<Map<String, Object>> consumer);
+
+    /**
+     * Runs a search and counts the values of the request's facet properties over all hits, in a single pass
+     * that reads hits one query page at a time. Each facet lists the most frequent values up to the request's
+     * facet limit, and counts the hits without the property. The request's columns, limit and cursor are
+     * ignored.
+     *
+     * @param request the search request, with at least one facet property.
+     * @return the number of hits and the value counts of every facet property.
+     * @throws IllegalArgumentException if the request is invalid.
+     */
+    SearchFacets facets(SearchRequest request);
+
+}
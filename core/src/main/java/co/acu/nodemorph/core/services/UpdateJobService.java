@@ -0,0 +1,49 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.services;
+
+import co.acu.nodemorph.core.dto.UpdateJobStatus;
+import co.acu.nodemorph.core.dto.UpdateRequest;
+import org.apache.sling.api.resource.LoginException;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs update requests in the background so large morphs don't tie up a request thread.
+ */
+public interface UpdateJobService {
+
+    /**
+     * Queues an update run. The request's resolver is cloned, so the job keeps running with the same
+     * user's permissions after the HTTP request that submitted it has completed.
+     *
+     * @param request the update request to run.
+     * @return the status of the queued job, including the id to poll.
+     * @throws LoginException if the request's resolver cannot be cloned for the job.
+     * @throws RejectedExecutionException if the job queue is full.
+     */
+    UpdateJobStatus submit(UpdateRequest request) throws LoginException;
+
+    /**
+     * Returns the current progress of a job.
+     *
+     * @param jobId the id returned by {@link #submit(UpdateRequest)}.
+     * @param userId the id of the user asking; jobs are only visible to the user that submitted them.
+     * @return the job status, or null if there is no such job for this user.
+     */
+    UpdateJobStatus getStatus(String jobId, String userId);
+
+}
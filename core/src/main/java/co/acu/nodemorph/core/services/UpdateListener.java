@@ -0,0 +1,73 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.services;
+
+import co.acu.nodemorph.core.dto.CommitBatch;
+import co.acu.nodemorph.core.dto.UpdateResult;
+
+/**
+ * Receives the outcome of an update run as it is produced, rather than once the whole run has finished.
+ */
+public interface UpdateListener {
+
+    /**
+     * Called for every action taken (or, in dry-run mode, planned) against a node.
+     *
+     * @param result the outcome of a single action.
+     */
+    void onResult(UpdateResult result);
+
+    /**
+     * Called whenever the run moves on to the next matched node, before any operation is applied to it.
+     *
+     * @param path the path of the matched node.
+     */
+    default void onNodeProcessed(String path) {
+    }
+
+    /**
+     * Called once per node that was modified (or, in dry-run mode, would have been modified).
+     *
+     * @param path the path of the modified node.
+     */
+    default void onNodeModified(String path) {
+    }
+
+    /**
+     * Called whenever a batch of modified nodes has been committed to the repository, or has failed to commit.
+     *
+     * @param batch the batch number, node count, last path, and status of the commit.
+     */
+    default void onBatch(CommitBatch batch) {
+    }
+
+    /**
+     * Called once the run has finished if it wrote an undo journal, i.e. if it changed any content.
+     *
+     * @param journalId the id to pass as {@code journalId} to an {@code undo} request.
+     */
+    default void onJournal(String journalId) {
+    }
+
+    /**
+     * Called once a resumable run has written its first checkpoint, before any node is processed.
+     *
+     * @param runId the id to pass as {@code runId} to a {@code resume} request.
+     */
+    default void onCheckpoint(String runId) {
+    }
+
+}
@@ -15,10 +15,43 @@
  */
 package co.acu.nodemorph.core.services;
 
+import co.acu.nodemorph.core.dto.ManifestRow;
+import co.acu.nodemorph.core.dto.QueryPlan;
 import co.acu.nodemorph.core.dto.UpdateRequest;
 import co.acu.nodemorph.core.dto.UpdateResult;
+
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 public interface UpdateService {
-    List<UpdateResult> processUpdate(UpdateRequest request);
+
+    void processUpdate(UpdateRequest request, UpdateListener listener);
+
+    default List<UpdateResult> processUpdate(UpdateRequest request) {
+        List<UpdateResult> results = new ArrayList<>();
+        processUpdate(request, results::add);
+        return results;
+    }
+
+    /**
+     * Applies the property changes listed in a manifest, resolving every row's path directly instead of
+     * running a query. Changes are committed in batches as in a regular update, and every row gets a result.
+     *
+     * @param request the update request providing the resolver and configuration (e.g., dryRun, pageOnly,
+     *                batchSize). If it has a path, rows outside of that path are refused.
+     * @param rows the manifest rows, read as they are applied.
+     * @param listener receives a {@link UpdateResult} per row and a batch report for every commit attempted.
+     */
+    void processManifest(UpdateRequest request, Iterator<ManifestRow> rows, UpdateListener listener);
+
+    /**
+     * Explains the query the request would run, with the query engine it selects, without touching any node.
+     *
+     * @param request the update request.
+     * @return the query plan.
+     * @throws IllegalArgumentException if the request cannot be turned into a query.
+     */
+    QueryPlan explain(UpdateRequest request);
+
 }
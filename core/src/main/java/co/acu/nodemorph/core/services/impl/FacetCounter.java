@@ -0,0 +1,107 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.services.impl;
+
+import co.acu.nodemorph.core.dto.PropertyFacet;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Counts the values of one property over a stream of hits. Memory is bounded by the number of distinct values
+ * tracked: once that limit is reached, hits with a value not seen before are only counted as other.
+ */
+class FacetCounter {
+
+    private final String property;
+    private final int maxValues;
+    private final Map<String, long[]> counts = new HashMap<>();
+    private long untracked;
+    private long missing;
+    private boolean complete = true;
+
+    /**
+     * @param property the property counted.
+     * @param maxValues the number of distinct values tracked at most.
+     */
+    FacetCounter(String property, int maxValues) {
+        this.property = property;
+        this.maxValues = Math.max(1, maxValues);
+    }
+
+    String getProperty() {
+        return property;
+    }
+
+    /**
+     * Counts the value of one hit. Every element of a multi-value property is counted once.
+     *
+     * @param value the value as returned by {@link SearchServiceImpl#toJsonValue(Object)}, or null if the hit
+     *              doesn't have the property.
+     */
+    void add(Object value) {
+        if (value == null) {
+            missing++;
+        } else if (value instanceof Collection) {
+            Collection<?> values = (Collection<?>) value;
+            if (values.isEmpty()) {
+                missing++;
+            }
+            values.stream().distinct().forEach(this::count);
+        } else {
+            count(value);
+        }
+    }
+
+    private void count(Object value) {
+        String key = String.valueOf(value);
+        long[] count = counts.get(key);
+        if (count != null) {
+            count[0]++;
+        } else if (counts.size() < maxValues) {
+            counts.put(key, new long[] {1});
+        } else {
+            untracked++;
+            complete = false;
+        }
+    }
+
+    /**
+     * @param limit the number of most frequent values to list.
+     * @return the counts, listing the most frequent values first and values with the same count by name.
+     */
+    PropertyFacet toFacet(int limit) {
+        List<Map.Entry<String, long[]>> sorted = counts.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, long[]> e) -> -e.getValue()[0]).thenComparing(Map.Entry::getKey))
+                .collect(Collectors.toList());
+        Map<String, Long> values = new LinkedHashMap<>();
+        long other = untracked;
+        for (Map.Entry<String, long[]> entry : sorted) {
+            if (values.size() < limit) {
+                values.put(entry.getKey(), entry.getValue()[0]);
+            } else {
+                other += entry.getValue()[0];
+            }
+        }
+        return new PropertyFacet(property, values, other, missing, counts.size(), complete);
+    }
+
+}
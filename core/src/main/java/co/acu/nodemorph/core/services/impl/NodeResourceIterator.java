@@ -0,0 +1,65 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.services.impl;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Adapts the lazily evaluated nodes of a JCR query result to resources. Nodes that can no longer be resolved,
+ * e.g. because an earlier step of the run removed them, are skipped.
+ */
+class NodeResourceIterator implements Iterator<Resource> {
+
+    private final NodeIterator nodes;
+    private final ResourceResolver resolver;
+    private Resource next;
+
+    NodeResourceIterator(NodeIterator nodes, ResourceResolver resolver) {
+        this.nodes = nodes;
+        this.resolver = resolver;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (next == null && nodes.hasNext()) {
+            String path;
+            try {
+                path = nodes.nextNode().getPath();
+            } catch (RepositoryException e) {
+                throw new RuntimeException("Query execution failed", e);
+            }
+            next = resolver.getResource(path);
+        }
+        return next != null;
+    }
+
+    @Override
+    public Resource next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Resource result = next;
+        next = null;
+        return result;
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.services.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+/**
+ * Reads the depth of Oak's observation queues from the statistics Oak registers over JMX: one
+ * {@code BackgroundObserverStats} MBean per observer, each with its current {@code QueueSize}. The deepest
+ * queue is what tells how far event listeners, and replication or indexing behind them, have fallen behind.
+ *
+ * <p>Lookups are cached for a short interval, so runs can ask after every commit without going through the
+ * MBean server each time.
+ */
+class ObservationQueueMonitor {
+    private static final Logger LOG = LoggerFactory.getLogger(ObservationQueueMonitor.class);
+
+    static final String OBSERVER_STATS = "org.apache.jackrabbit.oak:type=BackgroundObserverStats,*";
+    static final String QUEUE_SIZE = "QueueSize";
+
+    private final MBeanServer server;
+    private final long sampleIntervalMillis;
+    private final ObjectName pattern;
+
+    private volatile long sampledAt;
+    private volatile int depth = -1;
+
+    /**
+     * @param server the MBean server Oak registers its statistics with.
+     * @param sampleIntervalMillis how long a reading is reused before the queues are looked up again.
+     */
+    ObservationQueueMonitor(MBeanServer server, long sampleIntervalMillis) {
+        this.server = server;
+        this.sampleIntervalMillis = sampleIntervalMillis;
+        try {
+            this.pattern = new ObjectName(OBSERVER_STATS);
+        } catch (MalformedObjectNameException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return the number of events waiting in the deepest observation queue, or -1 if Oak's statistics
+     *         aren't available.
+     */
+    int getQueueDepth() {
+        long now = System.currentTimeMillis();
+        if (sampledAt > 0 && now - sampledAt < sampleIntervalMillis) {
+            return depth;
+        }
+        int deepest = -1;
+        for (ObjectName name : server.queryNames(pattern, null)) {
+            try {
+                Object size = server.getAttribute(name, QUEUE_SIZE);
+                if (size instanceof Number) {
+                    deepest = Math.max(deepest, ((Number) size).intValue());
+                }
+            } catch (JMException e) {
+                LOG.debug("Cannot read the observation queue size of {}", name, e);
+            }
+        }
+        depth = deepest;
+        sampledAt = now;
+        return deepest;
+    }
+
+}
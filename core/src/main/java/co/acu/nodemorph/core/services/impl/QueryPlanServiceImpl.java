@@ -0,0 +1,216 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.services.impl;
+
+import co.acu.nodemorph.core.dto.QueryPlan;
+import co.acu.nodemorph.core.services.QueryPlanService;
+import co.acu.nodemorph.core.utils.NodeMorphUtils;
+import org.apache.jackrabbit.util.ISO9075;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.query.Query;
+import javax.jcr.query.RowIterator;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+@Component(service = QueryPlanService.class)
+@Designate(ocd = QueryPlanServiceImpl.Config.class)
+public class QueryPlanServiceImpl implements QueryPlanService {
+    private static final Logger LOG = LoggerFactory.getLogger(QueryPlanServiceImpl.class);
+
+    /**
+     * Matches the index part of an Oak plan, e.g. {@code /* lucene:cqPageLucene(/oak:index/cqPageLucene) ...}
+     * or {@code /* property slingResourceType = ...}.
+     */
+    private static final Pattern PLAN_INDEX = Pattern.compile("/\\*\\s+([^\\s(]+)(?:\\([^)]*\\))?(?:\\s+([^\\s(=]+))?");
+
+    @ObjectClassDefinition(name = "AEM NodeMorph - Query Plan Service")
+    public @interface Config {
+
+        @AttributeDefinition(name = "Traversal limit",
+                description = "Updates whose query would traverse more than this many nodes are refused before "
+                        + "any node is touched. 0 disables the check.")
+        long traversalLimit() default 10000;
+
+    }
+
+    private long traversalLimit;
+
+    @Activate
+    @Modified
+    protected void activate(Config config) {
+        this.traversalLimit = Math.max(0, config.traversalLimit());
+    }
+
+    @Override
+    public QueryPlan explain(Map<String, String> queryParams, ResourceResolver resolver) {
+        return explain(toXPath(queryParams), "xpath", queryParams.get("path"), resolver);
+    }
+
+    @Override
+    public QueryPlan explain(String statement, String language, String path, ResourceResolver resolver) {
+        QueryPlan plan = new QueryPlan(statement);
+        plan.traversalLimit = traversalLimit;
+
+        Session session = resolver.adaptTo(Session.class);
+        if (session == null) {
+            return unexplained(plan, "No JCR session available to explain the query", path, resolver);
+        }
+
+        try {
+            Query query = session.getWorkspace().getQueryManager().createQuery("explain " + plan.statement, language);
+            RowIterator rows = query.execute().getRows();
+            if (rows.hasNext()) {
+                plan.plan = rows.nextRow().getValue("plan").getString();
+            }
+        } catch (RepositoryException e) {
+            LOG.warn("Could not explain query {}", plan.statement, e);
+            return unexplained(plan, "Could not explain query: " + e.getMessage(), path, resolver);
+        }
+        if (plan.plan == null) {
+            return unexplained(plan, "The query returned no plan", path, resolver);
+        }
+
+        plan.traversal = plan.plan.contains("/* traverse ");
+        plan.index = plan.traversal ? null : parseIndex(plan.plan);
+
+        if (plan.traversal && traversalLimit > 0) {
+            plan.estimatedNodes = NodeMorphUtils.countNodes(resolver.getResource(path), traversalLimit + 1);
+            if (plan.estimatedNodes > traversalLimit) {
+                plan.allowed = false;
+                plan.message = "The query has no index to use and would traverse more than " + traversalLimit
+                        + " nodes below " + path + ". Narrow the path or add an index.";
+            }
+        }
+        return plan;
+    }
+
+    @Override
+    public QueryPlan explainTreeWalk(String path, ResourceResolver resolver) {
+        QueryPlan plan = new QueryPlan("Tree walk below " + path);
+        plan.traversalLimit = traversalLimit;
+        plan.traversal = true;
+        if (traversalLimit > 0) {
+            plan.estimatedNodes = NodeMorphUtils.countNodes(resolver.getResource(path), traversalLimit + 1);
+            if (plan.estimatedNodes > traversalLimit) {
+                plan.allowed = false;
+                plan.message = "The tree walk would visit more than " + traversalLimit + " nodes below " + path
+                        + ". Narrow the path or use a query engine.";
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * Without a plan, there's no telling whether the query has an index to use, so it is treated like a
+     * traversal: refused if there are more nodes below the path than the traversal limit.
+     */
+    private QueryPlan unexplained(QueryPlan plan, String reason, String path, ResourceResolver resolver) {
+        plan.message = reason;
+        if (traversalLimit > 0) {
+            plan.estimatedNodes = NodeMorphUtils.countNodes(path != null ? resolver.getResource(path) : null, traversalLimit + 1);
+            if (plan.estimatedNodes > traversalLimit) {
+                plan.allowed = false;
+                plan.message = reason + ". Without a plan, the query is refused as it might traverse more than "
+                        + traversalLimit + " nodes below " + path + ".";
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * Translates the QueryBuilder parameters used by NodeMorph into the XPath statement QueryBuilder would
+     * run for them. Only the predicates produced by {@code NodeMorphUtils.getQueryParamMap} are supported.
+     * With {@code path.self}, the path itself is matched by a second step joined to the first as a union; the
+     * repository root can't be named that way, so it is never matched itself.
+     */
+    static String toXPath(Map<String, String> queryParams) {
+        String type = queryParams.getOrDefault("type", "nt:base");
+        String path = queryParams.getOrDefault("path", "/");
+        if (path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+
+        StringBuilder conditions = new StringBuilder();
+        String property = queryParams.get("property");
+        if (property != null) {
+            String value = queryParams.get("property.value");
+            String name = "@" + ISO9075.encodePath(property);
+            if (value == null) {
+                append(conditions, name);
+            } else if ("like".equals(queryParams.get("property.operation"))) {
+                append(conditions, "jcr:like(" + name + ", " + literal(value) + ")");
+            } else {
+                append(conditions, name + " = " + literal(value));
+            }
+        }
+        String nodeName = queryParams.get("nodename");
+        if (nodeName != null) {
+            if (nodeName.contains("*") || nodeName.contains("?")) {
+                String pattern = nodeName.replace("%", "\\%").replace("_", "\\_").replace('*', '%').replace('?', '_');
+                append(conditions, "jcr:like(fn:name(), " + literal(pattern) + ")");
+            } else {
+                append(conditions, "fn:name() = " + literal(ISO9075.encode(nodeName)));
+            }
+        }
+        String filter = conditions.length() > 0 ? "[" + conditions + "]" : "";
+
+        StringBuilder xpath = new StringBuilder("/jcr:root").append(ISO9075.encodePath(path))
+                .append("//element(*, ").append(type).append(')').append(filter);
+        if ("true".equals(queryParams.get("path.self")) && !path.isEmpty()) {
+            int slash = path.lastIndexOf('/');
+            xpath.insert(0, "/jcr:root" + ISO9075.encodePath(path.substring(0, slash)) + "/element("
+                    + ISO9075.encode(path.substring(slash + 1)) + ", " + type + ")" + filter + " | ");
+            xpath.insert(0, '(').append(')');
+        }
+        if ("path".equals(queryParams.get("orderby"))) {
+            xpath.append(" order by @jcr:path");
+        }
+        return xpath.toString();
+    }
+
+    static String parseIndex(String plan) {
+        Matcher matcher = PLAN_INDEX.matcher(plan);
+        if (!matcher.find()) {
+            return null;
+        }
+        // Property index plans name the index type first and the index second
+        return "property".equals(matcher.group(1)) && matcher.group(2) != null ? matcher.group(2) : matcher.group(1);
+    }
+
+    private static void append(StringBuilder conditions, String condition) {
+        if (conditions.length() > 0) {
+            conditions.append(" and ");
+        }
+        conditions.append(condition);
+    }
+
+    private static String literal(String value) {
+        return "'" + value.replace("'", "''") + "'";
+    }
+
+}
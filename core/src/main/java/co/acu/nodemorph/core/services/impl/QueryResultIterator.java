@@ -0,0 +1,168 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.services.impl;
+
+import co.acu.nodemorph.core.utils.NodeMorphUtils;
+import com.day.cq.search.PredicateGroup;
+import com.day.cq.search.Query;
+import com.day.cq.search.QueryBuilder;
+import org.apache.sling.api.resource.Resource;
+
+import javax.jcr.Session;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Lazily pages through the resources of a path-ordered query result, so that only one page of hits is held in
+ * memory at a time and processing can start as soon as the first page has been fetched.
+ *
+ * <p>Pages are fetched by path rather than by offset: every page after the first only asks for the hits whose
+ * path sorts after the last path returned. Oak never has to read past the hits of earlier pages to reach an
+ * offset, and sorting a page by path keeps no more than a page of hits in memory, so a page costs the same
+ * wherever it is in the result.
+ *
+ * <p>The result can shift while it is paged through: nodes modified by the caller may stop matching the query
+ * (e.g. a replace on the very property being queried), and nodes created or removed by others move later hits
+ * either way. As each page continues after a path rather than at a position, no hit is skipped or returned
+ * twice. A resumed run continues the same way, after the path of the last hit the earlier run processed.
+ */
+class QueryResultIterator implements Iterator<Resource> {
+
+    /**
+     * Fetches a page of a path-ordered query result.
+     */
+    interface Pages {
+        /**
+         * @param after the path all hits of the page sort after, or null for the first page.
+         * @param hits the maximum number of hits on the page.
+         * @return the hits of the page, in path order.
+         * @throws Exception if the query fails.
+         */
+        Iterator<Resource> fetch(String after, long hits) throws Exception;
+    }
+
+    private final Pages pages;
+    private final long pageSize;
+
+    private Iterator<Resource> page = Collections.emptyIterator();
+    private long pageHits;
+    private String lastPath;
+    private boolean started;
+    private boolean advanced;
+    private Resource next;
+
+    /**
+     * @param queryBuilder the query builder to run the pages with.
+     * @param queryParams the query parameters, ordered by path; a path condition is added for every page
+     *                    after the first.
+     * @param session the session to run the query with.
+     * @param pageSize the number of hits fetched per page.
+     */
+    QueryResultIterator(QueryBuilder queryBuilder, Map<String, String> queryParams, Session session, int pageSize) {
+        this(queryBuilder, queryParams, session, pageSize, null);
+    }
+
+    /**
+     * @param queryBuilder the query builder to run the pages with.
+     * @param queryParams the query parameters, ordered by path; a path condition is added for every page
+     *                    after the first.
+     * @param session the session to run the query with.
+     * @param pageSize the number of hits fetched per page.
+     * @param resumeAfter the path of the last hit processed by an earlier run, or null to start at the first hit.
+     */
+    QueryResultIterator(QueryBuilder queryBuilder, Map<String, String> queryParams, Session session, int pageSize,
+                        String resumeAfter) {
+        this(queryPages(queryBuilder, queryParams, session), pageSize, resumeAfter);
+    }
+
+    /**
+     * @param pages the source of the pages.
+     * @param pageSize the number of hits fetched per page.
+     * @param resumeAfter the path of the last hit processed by an earlier run, or null to start at the first hit.
+     */
+    QueryResultIterator(Pages pages, long pageSize, String resumeAfter) {
+        this.pages = pages;
+        this.pageSize = Math.max(1, pageSize);
+        this.lastPath = resumeAfter;
+    }
+
+    /**
+     * Runs every page as a QueryBuilder query of its own, restricted to the paths after the given one by a
+     * {@code rangeproperty} predicate on {@code jcr:path}.
+     */
+    private static Pages queryPages(QueryBuilder queryBuilder, Map<String, String> queryParams, Session session) {
+        return (after, hits) -> {
+            Map<String, String> pageParams = new HashMap<>(queryParams);
+            if (after != null) {
+                pageParams.put("rangeproperty.property", "jcr:path");
+                pageParams.put("rangeproperty.lowerBound", after);
+                pageParams.put("rangeproperty.lowerOperation", ">");
+            }
+            Query query = queryBuilder.createQuery(PredicateGroup.create(pageParams), session);
+            query.setHitsPerPage(hits);
+            return query.getResult().getResources();
+        };
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (next == null) {
+            if (page.hasNext()) {
+                Resource candidate = page.next();
+                pageHits++;
+                // The page should only hold later paths, but a hit at or before the last one is never returned twice
+                if (lastPath == null || NodeMorphUtils.comparePaths(candidate.getPath(), lastPath) > 0) {
+                    next = candidate;
+                    lastPath = candidate.getPath();
+                    advanced = true;
+                }
+            } else if (!fetchNextPage()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Resource next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Resource result = next;
+        next = null;
+        return result;
+    }
+
+    private boolean fetchNextPage() {
+        // A page with room to spare was the last one, and one that didn't get past the last path would only repeat
+        if (started && (pageHits < pageSize || !advanced)) {
+            return false;
+        }
+        started = true;
+        pageHits = 0;
+        advanced = false;
+        try {
+            page = pages.fetch(lastPath, pageSize);
+        } catch (Exception e) {
+            throw new RuntimeException("Query execution failed", e);
+        }
+        return true;
+    }
+
+}
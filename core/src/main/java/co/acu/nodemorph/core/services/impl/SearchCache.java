@@ -0,0 +1,289 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.services.impl;
+
+import co.acu.nodemorph.core.dto.SearchPage;
+import co.acu.nodemorph.core.dto.SearchRequest;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.LongSupplier;
+
+/**
+ * A least-recently-used cache of search pages, bounded by an estimate of their size in memory. Entries are
+ * keyed by the user and the normalized query, so a user is only ever served pages found with their own
+ * permissions, and are dropped as soon as content below or above their search path changes. Searches running
+ * while such a change comes in don't get cached either, since they may have read the content before it.
+ */
+class SearchCache {
+
+    /** Rough overhead of a cached page and of every value in it, in bytes. */
+    private static final int ENTRY_OVERHEAD = 256;
+    private static final int VALUE_OVERHEAD = 48;
+
+    private final long maxBytes;
+    private final long maxAgeMillis;
+    private final List<String> paths = new ArrayList<>();
+    private final LongSupplier clock;
+
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<Lookup> lookups = new HashSet<>();
+    private long bytes;
+
+    /**
+     * @param maxBytes the memory budget of the cache; 0 disables it.
+     * @param maxAgeMillis how long an entry is served at most; 0 keeps it until it is invalidated or evicted.
+     * @param paths the paths whose changes invalidate entries. Searches outside of them aren't cached.
+     * @param clock the current time in milliseconds.
+     */
+    SearchCache(long maxBytes, long maxAgeMillis, String[] paths, LongSupplier clock) {
+        this.maxBytes = maxBytes;
+        this.maxAgeMillis = maxAgeMillis;
+        for (String path : paths) {
+            if (path != null && path.startsWith("/")) {
+                this.paths.add(normalize(path));
+            }
+        }
+        this.clock = clock;
+    }
+
+    /**
+     * Builds the cache key of a search.
+     *
+     * @param user the ID of the user searching.
+     * @param request the search request.
+     * @param queryParams the query the search runs.
+     * @param limit the number of hits per page the search returns.
+     * @return the key, or null if the search cannot be cached: the cache is disabled, the user is unknown or
+     *         the search path isn't watched for changes.
+     */
+    Key key(String user, SearchRequest request, Map<String, String> queryParams, int limit) {
+        if (maxBytes <= 0 || user == null || request.path == null || !request.path.startsWith("/")) {
+            return null;
+        }
+        String path = normalize(request.path);
+        if (paths.stream().noneMatch(watched -> isSameOrAncestor(watched, path))) {
+            return null;
+        }
+        String id = user + '\n' + new TreeMap<>(queryParams) + '\n' + request.columns + '\n' + request.verbose
+                + '\n' + limit + '\n' + request.cursor;
+        return new Key(path, id);
+    }
+
+    /**
+     * @return the cached page, or null if there is none or it expired.
+     */
+    synchronized SearchPage get(Key key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (maxAgeMillis > 0 && clock.getAsLong() - entry.created > maxAgeMillis) {
+            remove(key);
+            return null;
+        }
+        return entry.page;
+    }
+
+    /**
+     * Registers a search that is about to run, so changes coming in while it runs keep its page out of the
+     * cache. Every lookup has to be ended with {@link #end(Lookup, SearchPage)}.
+     */
+    synchronized Lookup begin(Key key) {
+        Lookup lookup = new Lookup(key);
+        lookups.add(lookup);
+        return lookup;
+    }
+
+    /**
+     * Ends a lookup and caches its page, unless content below its path changed in the meantime. Cached pages
+     * are shared between requests, so they must not be modified afterwards.
+     *
+     * @param lookup the lookup started before the search ran.
+     * @param page the page found, or null if the search failed.
+     */
+    synchronized void end(Lookup lookup, SearchPage page) {
+        lookups.remove(lookup);
+        if (page == null || lookup.stale) {
+            return;
+        }
+        long size = estimateSize(page);
+        if (size > maxBytes) {
+            return;
+        }
+        remove(lookup.key);
+        entries.put(lookup.key, new Entry(page, size, clock.getAsLong()));
+        bytes += size;
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            bytes -= eldest.next().size;
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Drops every entry whose results may have changed: those searching at or above a changed path, and those
+     * searching below a changed path, which may have been removed or moved.
+     *
+     * @param changedPaths the paths of the changed resources.
+     */
+    synchronized void invalidate(Collection<String> changedPaths) {
+        if (entries.isEmpty() && lookups.isEmpty()) {
+            return;
+        }
+        Set<String> changed = new HashSet<>();
+        Set<String> changesAndAncestors = new HashSet<>();
+        for (String changedPath : changedPaths) {
+            String path = normalize(changedPath);
+            changed.add(path);
+            String ancestor = path;
+            while (ancestor != null && changesAndAncestors.add(ancestor)) {
+                ancestor = parent(ancestor);
+            }
+        }
+
+        Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Key, Entry> entry = iterator.next();
+            if (isAffected(entry.getKey().path, changed, changesAndAncestors)) {
+                bytes -= entry.getValue().size;
+                iterator.remove();
+            }
+        }
+        for (Lookup lookup : lookups) {
+            if (isAffected(lookup.key.path, changed, changesAndAncestors)) {
+                lookup.stale = true;
+            }
+        }
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized long getBytes() {
+        return bytes;
+    }
+
+    private void remove(Key key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            bytes -= entry.size;
+        }
+    }
+
+    private static boolean isAffected(String path, Set<String> changed, Set<String> changesAndAncestors) {
+        if (changesAndAncestors.contains(path)) {
+            return true;
+        }
+        for (String p = parent(path); p != null; p = parent(p)) {
+            if (changed.contains(p)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Estimates the memory held by a page from the number and length of its values.
+     */
+    static long estimateSize(SearchPage page) {
+        long size = ENTRY_OVERHEAD + sizeOf(page.cursor);
+        for (Map<String, Object> hit : page.hits) {
+            size += VALUE_OVERHEAD;
+            for (Map.Entry<String, Object> value : hit.entrySet()) {
+                size += sizeOf(value.getKey()) + sizeOf(value.getValue());
+            }
+        }
+        return size;
+    }
+
+    private static long sizeOf(Object value) {
+        if (value instanceof String) {
+            return VALUE_OVERHEAD + 2L * ((String) value).length();
+        }
+        if (value instanceof Collection) {
+            long size = VALUE_OVERHEAD;
+            for (Object element : (Collection<?>) value) {
+                size += sizeOf(element);
+            }
+            return size;
+        }
+        return value == null ? 0 : VALUE_OVERHEAD;
+    }
+
+    private static String normalize(String path) {
+        return path.length() > 1 && path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+    }
+
+    private static String parent(String path) {
+        int slash = path.lastIndexOf('/');
+        return slash > 0 ? path.substring(0, slash) : slash == 0 && path.length() > 1 ? "/" : null;
+    }
+
+    private static boolean isSameOrAncestor(String ancestor, String path) {
+        return path.equals(ancestor) || "/".equals(ancestor) || path.startsWith(ancestor + "/");
+    }
+
+    static final class Key {
+        private final String path;
+        private final String id;
+
+        private Key(String path, String id) {
+            this.path = path;
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && id.equals(((Key) o).id);
+        }
+
+        @Override
+        public int hashCode() {
+            return id.hashCode();
+        }
+    }
+
+    static final class Lookup {
+        private final Key key;
+        private boolean stale;
+
+        private Lookup(Key key) {
+            this.key = key;
+        }
+    }
+
+    private static final class Entry {
+        private final SearchPage page;
+        private final long size;
+        private final long created;
+
+        private Entry(SearchPage page, long size, long created) {
+            this.page = page;
+            this.size = size;
+            this.created = created;
+        }
+    }
+
+}
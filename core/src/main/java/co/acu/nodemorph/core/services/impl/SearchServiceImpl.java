@@ -0,0 +1,295 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.services.impl;
+
+import co.acu.nodemorph.core.dto.SearchFacets;
+import co.acu.nodemorph.core.dto.SearchPage;
+import co.acu.nodemorph.core.dto.SearchRequest;
+import co.acu.nodemorph.core.services.SearchService;
+import co.acu.nodemorph.core.utils.NodeMorphUtils;
+import com.day.cq.search.PredicateGroup;
+import com.day.cq.search.Query;
+import com.day.cq.search.QueryBuilder;
+import com.day.cq.search.result.SearchResult;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.api.resource.observation.ExternalResourceChangeListener;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+
+import javax.jcr.Session;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Calendar;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+@Component(service = {SearchService.class, ResourceChangeListener.class},
+        property = {
+                ResourceChangeListener.CHANGES + "=ADDED",
+                ResourceChangeListener.CHANGES + "=CHANGED",
+                ResourceChangeListener.CHANGES + "=REMOVED"
+        })
+@Designate(ocd = SearchServiceImpl.Config.class)
+public class SearchServiceImpl implements SearchService, ResourceChangeListener, ExternalResourceChangeListener {
+
+    static final String PN_PATH = "jcr:path";
+
+    /**
+     * How far before the cursor's offset a page starts reading. Hits at or before the cursor's path are
+     * skipped, so up to this many hits can disappear from earlier pages without the next page missing any.
+     */
+    static final int CURSOR_OVERLAP = 20;
+
+    @ObjectClassDefinition(name = "AEM NodeMorph - Search Service")
+    public @interface Config {
+
+        @AttributeDefinition(name = "Default page size",
+                description = "Number of hits returned per page when the request does not ask for a limit.")
+        int defaultPageSize() default 100;
+
+        @AttributeDefinition(name = "Maximum page size",
+                description = "Upper bound for the limit a request can ask for.")
+        int maxPageSize() default 1000;
+
+        @AttributeDefinition(name = "Default facet size",
+                description = "Number of most frequent values listed per facet property when the request does "
+                        + "not ask for a facet limit.")
+        int defaultFacetLimit() default 10;
+
+        @AttributeDefinition(name = "Maximum facet values",
+                description = "Number of distinct values counted per facet property at most. Hits with further "
+                        + "values are only counted as other.")
+        int maxFacetValues() default 10000;
+
+        @AttributeDefinition(name = "Cache size",
+                description = "Memory budget of the search result cache, in megabytes. 0 disables the cache.")
+        int cacheSizeMb() default 32;
+
+        @AttributeDefinition(name = "Cache entry lifetime",
+                description = "Seconds a cached page is served at most, even if no change invalidated it. "
+                        + "0 keeps pages until they are invalidated or evicted.")
+        int cacheMaxAgeSeconds() default 300;
+
+        @AttributeDefinition(name = "Watched paths",
+                description = "Changes below these paths invalidate cached search pages. Searches outside of "
+                        + "them are not cached.")
+        String[] resource_paths() default {"/content"};
+
+    }
+
+    @Reference
+    private QueryBuilder queryBuilder;
+
+    private int defaultPageSize;
+    private int maxPageSize;
+    private int defaultFacetLimit;
+    private int maxFacetValues;
+    private volatile SearchCache cache;
+
+    @Activate
+    @Modified
+    protected void activate(Config config) {
+        this.maxPageSize = Math.max(1, config.maxPageSize());
+        this.defaultPageSize = Math.min(Math.max(1, config.defaultPageSize()), maxPageSize);
+        this.maxFacetValues = Math.max(1, config.maxFacetValues());
+        this.defaultFacetLimit = Math.min(Math.max(1, config.defaultFacetLimit()), maxFacetValues);
+        this.cache = new SearchCache(Math.max(0, config.cacheSizeMb()) * 1024L * 1024L,
+                Math.max(0, config.cacheMaxAgeSeconds()) * 1000L, config.resource_paths(), System::currentTimeMillis);
+    }
+
+    @Override
+    public SearchPage search(SearchRequest request) {
+        Map<String, String> queryParams = NodeMorphUtils.getQueryParamMap(request);
+        int limit = request.limit != null && request.limit > 0 ? Math.min(request.limit, maxPageSize) : defaultPageSize;
+
+        SearchCache searchCache = cache;
+        SearchCache.Key key = searchCache.key(request.resolver.getUserID(), request, queryParams, limit);
+        if (key == null) {
+            return query(request, queryParams, limit);
+        }
+        SearchPage cached = searchCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        SearchCache.Lookup lookup = searchCache.begin(key);
+        SearchPage page = null;
+        try {
+            page = query(request, queryParams, limit);
+            return page;
+        } finally {
+            searchCache.end(lookup, page);
+        }
+    }
+
+    private SearchPage query(SearchRequest request, Map<String, String> queryParams, int limit) {
+        long offset = 0;
+        String lastPath = null;
+        if (request.cursor != null && !request.cursor.isEmpty()) {
+            String[] cursor = decodeCursor(request.cursor);
+            offset = Long.parseLong(cursor[0]);
+            lastPath = cursor[1];
+        }
+        long start = Math.max(0, offset - CURSOR_OVERLAP);
+
+        Query query = queryBuilder.createQuery(PredicateGroup.create(queryParams), request.resolver.adaptTo(Session.class));
+        query.setStart(start);
+        // Read past the overlap and one hit beyond the page to know whether there is another page
+        query.setHitsPerPage(limit + (offset - start) + 1);
+        SearchResult result = query.getResult();
+
+        List<Map<String, Object>> hits = new ArrayList<>();
+        long position = start;
+        long next = start;
+        String nextPath = lastPath;
+        boolean more = false;
+        Iterator<Resource> resources = result.getResources();
+        while (resources.hasNext()) {
+            Resource resource = resources.next();
+            position++;
+            if (lastPath != null && NodeMorphUtils.comparePaths(resource.getPath(), lastPath) <= 0) {
+                next = position;
+                continue;
+            }
+            if (hits.size() == limit) {
+                more = true;
+                break;
+            }
+            hits.add(toHit(resource, request));
+            next = position;
+            nextPath = resource.getPath();
+        }
+        more = more || result.hasMore();
+
+        long total = Math.max(result.getTotalMatches(), next);
+        return new SearchPage(hits, total, more, more ? encodeCursor(next, nextPath) : null);
+    }
+
+    /**
+     * Drops the cached pages of searches whose results the changes may affect.
+     */
+    @Override
+    public void onChange(List<ResourceChange> changes) {
+        cache.invalidate(changes.stream().map(ResourceChange::getPath).collect(Collectors.toList()));
+    }
+
+    @Override
+    public void export(SearchRequest request, Consumer<Map<String, Object>> consumer) {
+        Map<String, String> queryParams = NodeMorphUtils.getQueryParamMap(request);
+        Iterator<Resource> resources = new QueryResultIterator(queryBuilder, queryParams, request.resolver.adaptTo(Session.class), maxPageSize);
+        while (resources.hasNext()) {
+            consumer.accept(toHit(resources.next(), request));
+        }
+    }
+
+    @Override
+    public SearchFacets facets(SearchRequest request) {
+        if (!request.isFacetSearch()) {
+            throw new IllegalArgumentException("At least one facet property is required");
+        }
+        Map<String, String> queryParams = NodeMorphUtils.getQueryParamMap(request);
+        int limit = request.facetLimit != null && request.facetLimit > 0 ? Math.min(request.facetLimit, maxFacetValues) : defaultFacetLimit;
+        List<FacetCounter> counters = request.facets.stream()
+                .map(property -> new FacetCounter(property, maxFacetValues))
+                .collect(Collectors.toList());
+
+        Iterator<Resource> resources = new QueryResultIterator(queryBuilder, queryParams, request.resolver.adaptTo(Session.class), maxPageSize);
+        long total = 0;
+        while (resources.hasNext()) {
+            ValueMap properties = resources.next().getValueMap();
+            total++;
+            for (FacetCounter counter : counters) {
+                counter.add(toJsonValue(properties.get(counter.getProperty())));
+            }
+        }
+        return new SearchFacets(total, counters.stream().map(counter -> counter.toFacet(limit)).collect(Collectors.toList()));
+    }
+
+    private Map<String, Object> toHit(Resource resource, SearchRequest request) {
+        Map<String, Object> hit = new LinkedHashMap<>();
+        hit.put(PN_PATH, resource.getPath());
+        ValueMap properties = resource.getValueMap();
+        if (request.verbose || request.columns.isEmpty()) {
+            properties.forEach((name, value) -> putValue(hit, name, value));
+        } else {
+            request.columns.forEach(column -> putValue(hit, column, properties.get(column)));
+        }
+        return hit;
+    }
+
+    private static void putValue(Map<String, Object> hit, String name, Object value) {
+        Object converted = toJsonValue(value);
+        if (converted != null) {
+            hit.put(name, converted);
+        }
+    }
+
+    /**
+     * Converts a JCR property value into something that serializes sensibly. Binaries are left out.
+     */
+    static Object toJsonValue(Object value) {
+        if (value == null || value instanceof InputStream) {
+            return null;
+        }
+        if (value instanceof Calendar) {
+            return ((Calendar) value).toInstant().toString();
+        }
+        if (value instanceof Object[]) {
+            Object[] values = (Object[]) value;
+            List<Object> converted = new ArrayList<>(values.length);
+            for (Object v : values) {
+                converted.add(toJsonValue(v));
+            }
+            return converted;
+        }
+        if (value instanceof Number || value instanceof Boolean) {
+            return value;
+        }
+        return value.toString();
+    }
+
+    static String encodeCursor(long offset, String lastPath) {
+        String raw = offset + ":" + lastPath;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String[] decodeCursor(String cursor) {
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":", 2);
+            if (parts.length == 2 && Long.parseLong(parts[0]) >= 0 && parts[1].startsWith("/")) {
+                return parts;
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+        throw new IllegalArgumentException("Invalid cursor: " + cursor);
+    }
+
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.services.impl;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ValueMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the nodes matching a NodeMorph query by walking the subtree depth-first instead of running a query,
+ * evaluating the same predicates in memory. Matches are yielded lazily as the walk reaches them.
+ *
+ * <p>When only pages are wanted, {@code jcr:content} subtrees are pruned, since pages never live below them.
+ * Node types are checked like a query checks them, including supertypes and mixins.
+ *
+ * <p>A walk can resume after a node visited by an earlier walk of the same tree. It then descends straight
+ * along that node's ancestors, skipping every subtree the earlier walk had already finished without looking
+ * at any of its nodes.
+ */
+class TreeWalkIterator implements Iterator<Resource> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TreeWalkIterator.class);
+    private static final String JCR_CONTENT = "jcr:content";
+
+    private final Deque<Iterator<Resource>> stack = new ArrayDeque<>();
+    private final String type;
+    private final String propertyName;
+    private final String propertyValue;
+    private final Pattern propertyPattern;
+    private final Pattern nodeNamePattern;
+    private final boolean pagesOnly;
+
+    private Resource self;
+    private Resource next;
+
+    /**
+     * @param root the root of the walk.
+     * @param queryParams the query parameters, as built by {@code NodeMorphUtils.getQueryParamMap}.
+     */
+    TreeWalkIterator(Resource root, Map<String, String> queryParams) {
+        this(root, queryParams, null);
+    }
+
+    /**
+     * @param root the root of the walk.
+     * @param queryParams the query parameters, as built by {@code NodeMorphUtils.getQueryParamMap}.
+     * @param resumeAfter the path of the last node visited by an earlier walk, or null to walk the whole tree.
+     */
+    TreeWalkIterator(Resource root, Map<String, String> queryParams, String resumeAfter) {
+        String nodeType = queryParams.get("type");
+        this.type = "nt:base".equals(nodeType) ? null : nodeType;
+        this.pagesOnly = "cq:Page".equals(type);
+        this.propertyName = queryParams.get("property");
+        this.propertyValue = queryParams.get("property.value");
+        this.propertyPattern = propertyValue != null && "like".equals(queryParams.get("property.operation"))
+                ? likePattern(propertyValue) : null;
+        String nodeName = queryParams.get("nodename");
+        this.nodeNamePattern = nodeName != null ? wildcardPattern(nodeName) : null;
+
+        if (root == null) {
+            return;
+        }
+        String prefix = root.getPath().endsWith("/") ? root.getPath() : root.getPath() + "/";
+        if (resumeAfter != null && (resumeAfter.equals(root.getPath()) || resumeAfter.startsWith(prefix))) {
+            seek(root, resumeAfter.equals(root.getPath()) ? "" : resumeAfter.substring(prefix.length()));
+            return;
+        }
+        if ("true".equals(queryParams.get("path.self"))) {
+            self = root;
+        }
+        stack.push(root.listChildren());
+    }
+
+    /**
+     * Positions the walk right after the node at the given path relative to the root, as if it had just been
+     * visited: its ancestors and the siblings before them are passed over, and the walk continues with its
+     * children. If an ancestor no longer exists, the walk continues with all children of its parent instead.
+     */
+    private void seek(Resource root, String relativePath) {
+        Resource parent = root;
+        for (String name : relativePath.isEmpty() ? new String[0] : relativePath.split("/")) {
+            if (pagesOnly && JCR_CONTENT.equals(parent.getName())) {
+                return;
+            }
+            Iterator<Resource> children = parent.listChildren();
+            Resource found = null;
+            while (found == null && children.hasNext()) {
+                Resource child = children.next();
+                if (name.equals(child.getName())) {
+                    found = child;
+                }
+            }
+            if (found == null) {
+                stack.push(parent.listChildren());
+                return;
+            }
+            stack.push(children);
+            parent = found;
+        }
+        if (!(pagesOnly && JCR_CONTENT.equals(parent.getName()))) {
+            stack.push(parent.listChildren());
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (self != null) {
+            Resource root = self;
+            self = null;
+            if (matches(root)) {
+                next = root;
+            }
+        }
+        while (next == null && !stack.isEmpty()) {
+            Iterator<Resource> children = stack.peek();
+            if (!children.hasNext()) {
+                stack.pop();
+                continue;
+            }
+            Resource child = children.next();
+            if (!(pagesOnly && JCR_CONTENT.equals(child.getName()))) {
+                stack.push(child.listChildren());
+            }
+            if (matches(child)) {
+                next = child;
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public Resource next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Resource result = next;
+        next = null;
+        return result;
+    }
+
+    private boolean matches(Resource resource) {
+        if (nodeNamePattern != null && !nodeNamePattern.matcher(resource.getName()).matches()) {
+            return false;
+        }
+        ValueMap properties = resource.getValueMap();
+        if (type != null && !isOfType(resource, properties)) {
+            return false;
+        }
+        if (propertyName != null) {
+            Object value = properties.get(propertyName);
+            if (value == null) {
+                return false;
+            }
+            if (propertyValue != null) {
+                Object[] values = value instanceof Object[] ? (Object[]) value : new Object[]{value};
+                for (Object v : values) {
+                    if (matchesValue(String.valueOf(v))) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isOfType(Resource resource, ValueMap properties) {
+        Node node = resource.adaptTo(Node.class);
+        if (node != null) {
+            try {
+                return node.isNodeType(type);
+            } catch (RepositoryException e) {
+                LOG.warn("Cannot read the node type of {}", resource.getPath(), e);
+                return false;
+            }
+        }
+        // Without a JCR node, only the declared primary type and mixins can be compared
+        if (type.equals(properties.get("jcr:primaryType", String.class))) {
+            return true;
+        }
+        String[] mixins = properties.get("jcr:mixinTypes", String[].class);
+        if (mixins != null) {
+            for (String mixin : mixins) {
+                if (type.equals(mixin)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean matchesValue(String value) {
+        return propertyPattern != null ? propertyPattern.matcher(value).matches() : propertyValue.equals(value);
+    }
+
+    /**
+     * Converts a JCR LIKE pattern, where {@code %} matches any sequence and {@code _} a single character, to a
+     * regular expression. A backslash escapes the next character.
+     */
+    static Pattern likePattern(String like) {
+        return Pattern.compile(toRegex(like, '%', '_'), Pattern.DOTALL);
+    }
+
+    /**
+     * Converts a QueryBuilder node name pattern, where {@code *} matches any sequence and {@code ?} a single
+     * character, to a regular expression.
+     */
+    static Pattern wildcardPattern(String wildcard) {
+        return Pattern.compile(toRegex(wildcard, '*', '?'));
+    }
+
+    private static String toRegex(String pattern, char any, char single) {
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '\\' && i + 1 < pattern.length()) {
+                literal.append(pattern.charAt(++i));
+            } else if (c == any || c == single) {
+                if (literal.length() > 0) {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                regex.append(c == any ? ".*" : ".");
+            } else {
+                literal.append(c);
+            }
+        }
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        return regex.toString();
+    }
+
+}
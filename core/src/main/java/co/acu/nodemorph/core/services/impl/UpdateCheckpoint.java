@@ -0,0 +1,183 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.services.impl;
+
+import co.acu.nodemorph.core.dto.UpdateRequest;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.api.resource.ValueMap;
+
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The checkpoint of a resumable update run. It holds the parameters of the request, the query engine the run
+ * resolved, and, after every committed batch, the path of the last node processed, its offset in the query
+ * result, and the run's counters. The checkpoint is written in the same commit as the batch it describes, so it never claims work
+ * that was reverted.
+ *
+ * <p>A checkpoint lives at {@code <location>/<id>}; the run's undo journal shares its id.
+ */
+class UpdateCheckpoint {
+
+    static final String RUNNING = "Running";
+    static final String DONE = "Done";
+
+    static final String STATE = "state";
+    static final String LAST_PATH = "lastPath";
+
+    private final String id;
+    private final String path;
+
+    private long processed;
+    private long modified;
+    private int batches;
+
+    UpdateCheckpoint(String location, String id) {
+        this.id = id;
+        this.path = location + "/" + id;
+    }
+
+    String getId() {
+        return id;
+    }
+
+    String getPath() {
+        return path;
+    }
+
+    /** @return the number of nodes processed by earlier attempts of the run. */
+    long getProcessed() {
+        return processed;
+    }
+
+    /** @return the number of nodes modified by earlier attempts of the run. */
+    long getModified() {
+        return modified;
+    }
+
+    /** @return the number of batches committed by earlier attempts of the run. */
+    int getBatches() {
+        return batches;
+    }
+
+    /**
+     * Creates the checkpoint node for a new run, or reopens the existing one when a run is resumed and picks
+     * up its counters, then commits, so the run can be resumed even if its first batch fails.
+     *
+     * @param resolver the resolver of the run.
+     * @param request the request of the run, with its query engine already resolved.
+     * @throws PersistenceException if the checkpoint cannot be saved.
+     */
+    void start(ResourceResolver resolver, UpdateRequest request) throws PersistenceException {
+        Resource existing = resolver.getResource(path);
+        if (existing == null) {
+            Map<String, Object> props = new HashMap<>();
+            props.put("jcr:primaryType", "nt:unstructured");
+            props.put("request", new Gson().toJson(request.params));
+            props.put("queryEngine", request.queryEngine);
+            props.put("path", request.path);
+            props.put("operation", request.operation);
+            props.put("user", resolver.getUserID());
+            props.put("created", Calendar.getInstance());
+            props.put(STATE, RUNNING);
+            ResourceUtil.getOrCreateResource(resolver, path, props, "sling:Folder", false);
+        } else {
+            ValueMap checkpoint = existing.getValueMap();
+            processed = checkpoint.get("processed", 0L);
+            modified = checkpoint.get("modified", 0L);
+            batches = checkpoint.get("batches", 0);
+            ModifiableValueMap props = modifiable(existing);
+            props.put(STATE, RUNNING);
+            props.put("resumed", Calendar.getInstance());
+        }
+        resolver.commit();
+    }
+
+    /**
+     * Updates the checkpoint in the transient space of the resolver, to be saved with the next commit.
+     *
+     * @param resolver the resolver of the run.
+     * @param state {@link #RUNNING}, or {@link #DONE} once the run has processed every node.
+     * @param lastPath the path of the last node processed, or null if no node has been processed yet.
+     * @param processed the number of nodes processed so far.
+     * @param modified the number of nodes modified so far.
+     * @param batches the number of batches committed so far, including the one this update is saved with.
+     * @throws PersistenceException if the checkpoint node is gone.
+     */
+    void update(ResourceResolver resolver, String state, String lastPath, long processed, long modified, int batches)
+            throws PersistenceException {
+        Resource checkpoint = resolver.getResource(path);
+        if (checkpoint == null) {
+            throw new PersistenceException("Checkpoint " + path + " is missing");
+        }
+        ModifiableValueMap props = modifiable(checkpoint);
+        props.put(STATE, state);
+        if (lastPath != null) {
+            props.put(LAST_PATH, lastPath);
+        }
+        props.put("processed", processed);
+        props.put("modified", modified);
+        props.put("batches", batches);
+        props.put("updated", Calendar.getInstance());
+    }
+
+    /**
+     * Rebuilds the request of an interrupted run from its checkpoint, set up to skip the nodes the run has
+     * already processed and to use the same query engine, so the hits come in the same order. Queries only
+     * ask for the paths after the saved one.
+     *
+     * @param checkpoint the checkpoint node.
+     * @param resolver the resolver to resume the run with.
+     * @return the request to resume the run with.
+     * @throws IllegalArgumentException if the stored request is unreadable or no longer valid.
+     */
+    static UpdateRequest toRequest(Resource checkpoint, ResourceResolver resolver) {
+        ValueMap props = checkpoint.getValueMap();
+        Map<String, String> params;
+        try {
+            params = new Gson().fromJson(props.get("request", String.class), new TypeToken<Map<String, String>>() {}.getType());
+        } catch (JsonParseException e) {
+            throw new IllegalArgumentException("Unreadable request: " + e.getMessage(), e);
+        }
+        if (params == null) {
+            throw new IllegalArgumentException("The checkpoint holds no request");
+        }
+        UpdateRequest request = new UpdateRequest(params, resolver);
+        request.runId = checkpoint.getName();
+        request.checkpoint = true;
+        request.parallel = false;
+        request.queryEngine = props.get("queryEngine", request.queryEngine);
+        request.resumeAfter = props.get(LAST_PATH, String.class);
+        return request;
+    }
+
+    private ModifiableValueMap modifiable(Resource checkpoint) throws PersistenceException {
+        ModifiableValueMap props = checkpoint.adaptTo(ModifiableValueMap.class);
+        if (props == null) {
+            throw new PersistenceException("Checkpoint " + path + " is not writable");
+        }
+        return props;
+    }
+
+}
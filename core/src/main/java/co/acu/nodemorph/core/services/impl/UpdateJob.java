@@ -0,0 +1,151 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.services.impl;
+
+import co.acu.nodemorph.core.dto.CommitBatch;
+import co.acu.nodemorph.core.dto.UpdateJobStatus;
+import co.acu.nodemorph.core.dto.UpdateRequest;
+import co.acu.nodemorph.core.dto.UpdateResult;
+import co.acu.nodemorph.core.services.UpdateListener;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A queued or running update, tracking its progress as the run reports it. Counters are written by the
+ * worker thread and read by whichever request thread polls the job.
+ */
+class UpdateJob implements UpdateListener {
+
+    static final String QUEUED = "Queued";
+    static final String RUNNING = "Running";
+    static final String DONE = "Done";
+    static final String FAILED = "Failed";
+
+    private final String id;
+    private final String userId;
+    private final UpdateRequest request;
+    private final long submitted = System.currentTimeMillis();
+
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong modified = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicInteger batches = new AtomicInteger();
+
+    private volatile String state = QUEUED;
+    private volatile String currentPath;
+    private volatile String message;
+    private volatile String journalId;
+    private volatile String runId;
+    private volatile long started;
+    private volatile long finished;
+
+    UpdateJob(String id, String userId, UpdateRequest request) {
+        this.id = id;
+        this.userId = userId;
+        this.request = request;
+    }
+
+    String getId() {
+        return id;
+    }
+
+    String getUserId() {
+        return userId;
+    }
+
+    UpdateRequest getRequest() {
+        return request;
+    }
+
+    long getFinished() {
+        return finished;
+    }
+
+    void markRunning() {
+        started = System.currentTimeMillis();
+        state = RUNNING;
+    }
+
+    void markFinished() {
+        finished = System.currentTimeMillis();
+        state = failed.get() > 0 ? FAILED : DONE;
+    }
+
+    @Override
+    public void onResult(UpdateResult result) {
+        if ("Failed".equals(result.status)) {
+            failed.incrementAndGet();
+            message = result.message != null ? result.message : result.action;
+        }
+    }
+
+    @Override
+    public void onNodeProcessed(String path) {
+        processed.incrementAndGet();
+        currentPath = path;
+    }
+
+    @Override
+    public void onNodeModified(String path) {
+        modified.incrementAndGet();
+    }
+
+    @Override
+    public void onBatch(CommitBatch batch) {
+        if ("Committed".equals(batch.status)) {
+            batches.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void onJournal(String journalId) {
+        this.journalId = journalId;
+    }
+
+    @Override
+    public void onCheckpoint(String runId) {
+        this.runId = runId;
+    }
+
+    UpdateJobStatus toStatus() {
+        UpdateJobStatus status = new UpdateJobStatus();
+        status.id = id;
+        status.state = state;
+        status.path = request.path;
+        status.operation = request.operation;
+        status.dryRun = request.dryRun;
+        status.processed = processed.get();
+        status.modified = modified.get();
+        status.failed = failed.get();
+        status.batches = batches.get();
+        status.currentPath = currentPath;
+        status.submitted = submitted;
+        status.started = started;
+        status.finished = finished;
+        status.message = message;
+        status.journal = journalId;
+        status.checkpoint = runId;
+
+        if (started > 0) {
+            long end = finished > 0 ? finished : System.currentTimeMillis();
+            long elapsed = Math.max(1, end - started);
+            status.nodesPerSecond = status.processed * 1000.0 / elapsed;
+        }
+        return status;
+    }
+
+}
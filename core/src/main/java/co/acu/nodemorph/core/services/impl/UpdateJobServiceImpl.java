@@ -0,0 +1,175 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.services.impl;
+
+import co.acu.nodemorph.core.dto.UpdateJobStatus;
+import co.acu.nodemorph.core.dto.UpdateRequest;
+import co.acu.nodemorph.core.dto.UpdateResult;
+import co.acu.nodemorph.core.services.UpdateJobService;
+import co.acu.nodemorph.core.services.UpdateService;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Component(service = UpdateJobService.class)
+@Designate(ocd = UpdateJobServiceImpl.Config.class)
+public class UpdateJobServiceImpl implements UpdateJobService {
+    private static final Logger LOG = LoggerFactory.getLogger(UpdateJobServiceImpl.class);
+
+    @ObjectClassDefinition(name = "AEM NodeMorph - Update Job Service")
+    public @interface Config {
+
+        @AttributeDefinition(name = "Concurrent jobs",
+                description = "Maximum number of update jobs running at the same time.")
+        int maxConcurrentJobs() default 2;
+
+        @AttributeDefinition(name = "Queued jobs",
+                description = "Maximum number of jobs waiting for a free slot. Further submissions are rejected.")
+        int maxQueuedJobs() default 10;
+
+        @AttributeDefinition(name = "Retention (minutes)",
+                description = "How long the status of a finished job can still be polled.")
+        int retentionMinutes() default 60;
+
+    }
+
+    @Reference
+    private UpdateService updateService;
+
+    private final Map<String, UpdateJob> jobs = new ConcurrentHashMap<>();
+    private ThreadPoolExecutor executor;
+    private long retentionMillis;
+
+    @Activate
+    protected void activate(Config config) {
+        int threads = Math.max(1, config.maxConcurrentJobs());
+        this.retentionMillis = TimeUnit.MINUTES.toMillis(Math.max(0, config.retentionMinutes()));
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, config.maxQueuedJobs())), new JobThreadFactory());
+    }
+
+    /**
+     * Interrupts running jobs and fails the queued ones, which never start, closing their resolvers.
+     */
+    @Deactivate
+    protected void deactivate() {
+        for (Runnable task : executor.shutdownNow()) {
+            if (task instanceof JobTask) {
+                UpdateJob job = ((JobTask) task).job;
+                job.onResult(new UpdateResult(job.getRequest().path, "Error: Service stopped before the job started", "Failed"));
+                job.getRequest().resolver.close();
+                job.markFinished();
+            }
+        }
+        jobs.clear();
+    }
+
+    @Override
+    public UpdateJobStatus submit(UpdateRequest request) throws LoginException {
+        evictFinishedJobs();
+
+        ResourceResolver userResolver = request.resolver;
+        String userId = userResolver.getUserID();
+        request.resolver = userResolver.clone(null);
+        UpdateJob job = new UpdateJob(UUID.randomUUID().toString(), userId, request);
+
+        jobs.put(job.getId(), job);
+        try {
+            executor.execute(new JobTask(job));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            request.resolver.close();
+            throw e;
+        }
+        LOG.info("Queued update job {} for {} ({} on {})", job.getId(), userId, request.operation, request.path);
+        return job.toStatus();
+    }
+
+    @Override
+    public UpdateJobStatus getStatus(String jobId, String userId) {
+        evictFinishedJobs();
+
+        UpdateJob job = jobId != null ? jobs.get(jobId) : null;
+        if (job == null || !Objects.equals(job.getUserId(), userId)) {
+            return null;
+        }
+        return job.toStatus();
+    }
+
+    private void run(UpdateJob job) {
+        ResourceResolver resolver = job.getRequest().resolver;
+        job.markRunning();
+        try {
+            updateService.processUpdate(job.getRequest(), job);
+        } catch (Exception e) {
+            LOG.error("Update job {} failed unexpectedly", job.getId(), e);
+            job.onResult(new UpdateResult(job.getRequest().path, "Error: Unexpected failure", "Failed", e.getMessage()));
+        } finally {
+            resolver.close();
+            job.markFinished();
+            LOG.info("Update job {} finished: {}", job.getId(), job.toStatus().state);
+        }
+    }
+
+    private void evictFinishedJobs() {
+        long cutoff = System.currentTimeMillis() - retentionMillis;
+        jobs.values().removeIf(job -> job.getFinished() > 0 && job.getFinished() < cutoff);
+    }
+
+    private final class JobTask implements Runnable {
+        private final UpdateJob job;
+
+        private JobTask(UpdateJob job) {
+            this.job = job;
+        }
+
+        @Override
+        public void run() {
+            UpdateJobServiceImpl.this.run(job);
+        }
+    }
+
+    private static class JobThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "nodemorph-update-job-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+}
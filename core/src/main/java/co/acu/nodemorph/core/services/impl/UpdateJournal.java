@@ -0,0 +1,415 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.services.impl;
+
+import co.acu.nodemorph.core.dto.UpdateRequest;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.api.resource.ValueMap;
+import javax.jcr.Node;
+import javax.jcr.PropertyType;
+import javax.jcr.RepositoryException;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The undo journal of a single update run. Before a node is changed, the run records a before-image of
+ * the properties it is about to write, or notes that it is about to create the node. The records are
+ * gzipped NDJSON, one chunk per commit batch, and every chunk is written below the journal node in the same
+ * commit as the changes it describes, so the journal never misses a committed change. Chunks are only ever
+ * added, never rewritten.
+ * <p>
+ * A journal lives at {@code <location>/<id>} and holds the request's path, operation, user and creation
+ * time; its chunks are named {@code chunk-00001}, {@code chunk-00002}, ... in the order they were written.
+ */
+class UpdateJournal {
+
+    /**
+     * Property types that the journal can't restore: binaries aren't journaled, and the others come back as
+     * plain strings from a ValueMap.
+     */
+    private static final List<Integer> UNRESTORABLE_TYPES = Arrays.asList(PropertyType.BINARY, PropertyType.NAME,
+            PropertyType.PATH, PropertyType.REFERENCE, PropertyType.WEAKREFERENCE, PropertyType.URI);
+
+    static final String UNDONE = "undone";
+    static final String UNDONE_BY = "undoneBy";
+    private static final String DATA = "data";
+
+    private final String id;
+    private final String path;
+    private final UpdateRequest request;
+    private final AtomicInteger chunks = new AtomicInteger();
+
+    UpdateJournal(String location, UpdateRequest request) {
+        this(location, newId(), request);
+    }
+
+    UpdateJournal(String location, String id, UpdateRequest request) {
+        this.id = id;
+        this.path = location + "/" + id;
+        this.request = request;
+    }
+
+    String getId() {
+        return id;
+    }
+
+    String getPath() {
+        return path;
+    }
+
+    boolean hasChunks() {
+        return chunks.get() > 0;
+    }
+
+    /**
+     * @return a new, empty chunk; every run writing to this journal (one per partition) needs its own.
+     */
+    Chunk newChunk() {
+        return new Chunk();
+    }
+
+    /**
+     * Creates the journal node in the transient space of the resolver, unless it exists already.
+     */
+    Resource ensureRoot(ResourceResolver resolver) throws PersistenceException {
+        Map<String, Object> props = new HashMap<>();
+        props.put("jcr:primaryType", "nt:unstructured");
+        props.put("path", request.path);
+        props.put("operation", request.operation);
+        props.put("user", resolver.getUserID());
+        props.put("created", Calendar.getInstance());
+        return ResourceUtil.getOrCreateResource(resolver, path, props, "sling:Folder", false);
+    }
+
+    /**
+     * Continues the chunk numbering after the chunks an interrupted run of the same id has already written,
+     * so that a resumed run appends to its journal.
+     */
+    void continueChunks(ResourceResolver resolver) {
+        Resource root = resolver.getResource(path);
+        if (root == null) {
+            return;
+        }
+        int existing = 0;
+        for (Resource child : root.getChildren()) {
+            if (child.getName().startsWith("chunk-")) {
+                existing++;
+            }
+        }
+        chunks.set(existing);
+    }
+
+    static String newId() {
+        return new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date())
+                + "-" + Integer.toHexString(ThreadLocalRandom.current().nextInt(0x100000, 0x1000000));
+    }
+
+    /**
+     * Finds a property, among those about to be written or removed, whose current value the journal couldn't
+     * restore with its original type. The change has to be refused, since it couldn't be undone.
+     *
+     * @param resource the node, used to look up the JCR types of its properties; may be null.
+     * @param props the properties of the node, before the change.
+     * @param keys the properties that are about to change.
+     * @return the name of the first such property, or null if all of them can be journaled.
+     */
+    static String findUnrestorable(Resource resource, ValueMap props, Collection<String> keys) {
+        Node node = resource != null ? resource.adaptTo(Node.class) : null;
+        for (String key : keys) {
+            Object value = props.get(key);
+            if (value != null && (encode(value) == null || node != null && hasUnrestorableType(node, key))) {
+                return key;
+            }
+        }
+        return null;
+    }
+
+    private static boolean hasUnrestorableType(Node node, String key) {
+        try {
+            return node.hasProperty(key) && UNRESTORABLE_TYPES.contains(node.getProperty(key).getType());
+        } catch (RepositoryException e) {
+            // A type that can't be read can't be restored either
+            return true;
+        }
+    }
+
+    /**
+     * Reads the records of one chunk in the order they were written.
+     *
+     * @param chunk the chunk node.
+     * @return the records of the chunk.
+     * @throws IOException if the chunk data cannot be read.
+     */
+    static List<Entry> read(Resource chunk) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        InputStream data = chunk.getValueMap().get(DATA, InputStream.class);
+        if (data == null) {
+            return entries;
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(data), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    entries.add(Entry.fromJson(JsonParser.parseString(line).getAsJsonObject()));
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * The records of one run collected since its last commit, kept gzipped in memory until they are written.
+     */
+    class Chunk {
+        private ByteArrayOutputStream bytes;
+        private Writer writer;
+        private int entries;
+
+        /**
+         * Records the current values of properties that are about to be written or removed; properties that
+         * don't exist yet are recorded as absent. Callers check for values that can't be journaled with
+         * {@link #findUnrestorable} first.
+         *
+         * @throws IOException if a value can't be journaled, or the record can't be compressed.
+         */
+        void recordProperties(String nodePath, ValueMap props, Collection<String> keys) throws IOException {
+            JsonObject before = new JsonObject();
+            for (String key : keys) {
+                Object value = props.get(key);
+                JsonElement encoded = encode(value);
+                if (value != null && encoded == null) {
+                    throw new IOException("Cannot journal the " + value.getClass().getSimpleName() + " value of "
+                            + key + " on " + nodePath);
+                }
+                before.add(key, encoded);
+            }
+            JsonObject entry = new JsonObject();
+            entry.addProperty("path", nodePath);
+            entry.add("before", before);
+            append(entry);
+        }
+
+        /**
+         * Records that a node is about to be created, so that undoing the run removes it again.
+         */
+        void recordCreated(String nodePath) throws IOException {
+            JsonObject entry = new JsonObject();
+            entry.addProperty("path", nodePath);
+            entry.addProperty("created", true);
+            append(entry);
+        }
+
+        boolean isEmpty() {
+            return entries == 0;
+        }
+
+        /**
+         * Writes the records collected so far as the journal's next chunk, in the transient space of the
+         * resolver, and starts over with an empty chunk.
+         */
+        void write(ResourceResolver resolver) throws PersistenceException {
+            if (entries == 0) {
+                return;
+            }
+            try {
+                writer.close();
+            } catch (IOException e) {
+                throw new PersistenceException("Could not compress journal chunk", e);
+            }
+            Resource root = ensureRoot(resolver);
+            Map<String, Object> props = new HashMap<>();
+            props.put("jcr:primaryType", "nt:unstructured");
+            props.put("entries", (long) entries);
+            props.put(DATA, new ByteArrayInputStream(bytes.toByteArray()));
+            resolver.create(root, String.format("chunk-%05d", chunks.incrementAndGet()), props);
+            bytes = null;
+            writer = null;
+            entries = 0;
+        }
+
+        private void append(JsonObject entry) throws IOException {
+            if (writer == null) {
+                bytes = new ByteArrayOutputStream();
+                writer = new OutputStreamWriter(new GZIPOutputStream(bytes), StandardCharsets.UTF_8);
+            }
+            writer.write(entry.toString());
+            writer.write('\n');
+            entries++;
+        }
+    }
+
+    /**
+     * A single record: either a node that was created, or the values some properties of a node had before
+     * the run, with null for properties that didn't exist.
+     */
+    static class Entry {
+        final String path;
+        final boolean created;
+        final Map<String, Object> before;
+
+        Entry(String path, boolean created, Map<String, Object> before) {
+            this.path = path;
+            this.created = created;
+            this.before = before;
+        }
+
+        static Entry fromJson(JsonObject json) {
+            Map<String, Object> before = new LinkedHashMap<>();
+            if (json.has("before")) {
+                for (Map.Entry<String, JsonElement> prop : json.getAsJsonObject("before").entrySet()) {
+                    before.put(prop.getKey(), decode(prop.getValue()));
+                }
+            }
+            return new Entry(json.get("path").getAsString(), json.has("created"), before);
+        }
+    }
+
+    /**
+     * Encodes a property value with its type, e.g. {@code {"type":"Long[]","value":[1,2]}}.
+     *
+     * @return the encoded value, {@link JsonNull} for null, or null if the type is not supported.
+     */
+    static JsonElement encode(Object value) {
+        if (value == null) {
+            return JsonNull.INSTANCE;
+        }
+        boolean multiple = value instanceof Object[];
+        Object[] values = multiple ? (Object[]) value : new Object[]{value};
+        String type = multiple ? typeOf(value.getClass().getComponentType()) : typeOf(value.getClass());
+        if (type == null) {
+            return null;
+        }
+        JsonArray encoded = new JsonArray();
+        for (Object element : values) {
+            encoded.add(encodeScalar(element));
+        }
+        JsonObject json = new JsonObject();
+        json.addProperty("type", multiple ? type + "[]" : type);
+        json.add("value", multiple ? encoded : encoded.get(0));
+        return json;
+    }
+
+    static Object decode(JsonElement json) {
+        if (json == null || json.isJsonNull()) {
+            return null;
+        }
+        String type = json.getAsJsonObject().get("type").getAsString();
+        JsonElement value = json.getAsJsonObject().get("value");
+        if (!type.endsWith("[]")) {
+            return decodeScalar(type, value);
+        }
+        type = type.substring(0, type.length() - 2);
+        JsonArray elements = value.getAsJsonArray();
+        Object[] values = newArray(type, elements.size());
+        for (int i = 0; i < values.length; i++) {
+            values[i] = decodeScalar(type, elements.get(i));
+        }
+        return values;
+    }
+
+    private static String typeOf(Class<?> type) {
+        if (type == String.class) return "String";
+        if (type == Boolean.class) return "Boolean";
+        if (type == Long.class || type == Integer.class || type == Short.class) return "Long";
+        if (type == Double.class || type == Float.class) return "Double";
+        if (type == BigDecimal.class) return "Decimal";
+        if (Calendar.class.isAssignableFrom(type)) return "Date";
+        return null;
+    }
+
+    private static JsonElement encodeScalar(Object value) {
+        if (value instanceof Boolean) {
+            return new JsonPrimitive((Boolean) value);
+        }
+        if (value instanceof Number && !(value instanceof BigDecimal)) {
+            return new JsonPrimitive((Number) value);
+        }
+        if (value instanceof Calendar) {
+            Calendar calendar = (Calendar) value;
+            return new JsonPrimitive(OffsetDateTime.ofInstant(calendar.toInstant(), calendar.getTimeZone().toZoneId()).toString());
+        }
+        return new JsonPrimitive(value.toString());
+    }
+
+    private static Object decodeScalar(String type, JsonElement value) {
+        switch (type) {
+            case "Boolean":
+                return value.getAsBoolean();
+            case "Long":
+                return value.getAsLong();
+            case "Double":
+                return value.getAsDouble();
+            case "Decimal":
+                return new BigDecimal(value.getAsString());
+            case "Date":
+                return GregorianCalendar.from(ZonedDateTime.parse(value.getAsString()));
+            default:
+                return value.getAsString();
+        }
+    }
+
+    private static Object[] newArray(String type, int size) {
+        switch (type) {
+            case "Boolean":
+                return new Boolean[size];
+            case "Long":
+                return new Long[size];
+            case "Double":
+                return new Double[size];
+            case "Decimal":
+                return new BigDecimal[size];
+            case "Date":
+                return new Calendar[size];
+            default:
+                return new String[size];
+        }
+    }
+
+}
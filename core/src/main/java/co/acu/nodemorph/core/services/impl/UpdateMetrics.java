@@ -0,0 +1,206 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.services.impl;
+
+import co.acu.nodemorph.core.dto.CommitBatch;
+import co.acu.nodemorph.core.dto.UpdateRequest;
+import co.acu.nodemorph.core.dto.UpdateResult;
+import co.acu.nodemorph.core.services.UpdateListener;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.commons.metrics.Counter;
+import org.apache.sling.commons.metrics.Histogram;
+import org.apache.sling.commons.metrics.Meter;
+import org.apache.sling.commons.metrics.MetricsService;
+import org.apache.sling.commons.metrics.Timer;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the operational metrics of update runs in the Sling metrics registry, which publishes them over
+ * JMX as well. All names start with {@value #PREFIX}:
+ * <ul>
+ *     <li>{@code active}: runs in progress (counter)</li>
+ *     <li>{@code nodes.scanned} and {@code nodes.modified}: nodes reached and changed, with their rates (meters)</li>
+ *     <li>{@code run}: duration of whole runs (timer)</li>
+ *     <li>{@code query.<engine>}: time a run spent fetching hits from QueryBuilder, JCR-SQL2 or the tree walk (timer)</li>
+ *     <li>{@code mutation}: time spent applying the operation to a single node, including a commit when the node
+ *     completes a batch (timer)</li>
+ *     <li>{@code commit} and {@code batch.size}: duration and node count of every committed batch (timer and histogram)</li>
+ *     <li>{@code failures.<operation>}: failed actions per operation (counters)</li>
+ * </ul>
+ */
+class UpdateMetrics {
+
+    static final String PREFIX = "nodemorph.update.";
+
+    private static final List<String> OPERATIONS = Arrays.asList("add", "replace", "copy", "create", "delete",
+            "pipeline", "undo", "resume", "manifest");
+    private static final List<String> ENGINES = Arrays.asList("querybuilder", "sql2", "traversal");
+
+    private final MetricsService metrics;
+    private final Counter activeRuns;
+    private final Meter nodesScanned;
+    private final Meter nodesModified;
+    private final Timer runTime;
+    private final Timer mutationTime;
+    private final Timer commitTime;
+    private final Histogram batchSize;
+
+    UpdateMetrics(MetricsService metrics) {
+        this.metrics = metrics;
+        this.activeRuns = metrics.counter(PREFIX + "active");
+        this.nodesScanned = metrics.meter(PREFIX + "nodes.scanned");
+        this.nodesModified = metrics.meter(PREFIX + "nodes.modified");
+        this.runTime = metrics.timer(PREFIX + "run");
+        this.mutationTime = metrics.timer(PREFIX + "mutation");
+        this.commitTime = metrics.timer(PREFIX + "commit");
+        this.batchSize = metrics.histogram(PREFIX + "batch.size");
+    }
+
+    /**
+     * Starts recording a run. The returned listener passes everything on to the caller's listener, and has
+     * to be ended once the run is over.
+     *
+     * @param request the request of the run.
+     * @param listener the caller's listener.
+     * @return the listener to run the update with.
+     */
+    Run start(UpdateRequest request, UpdateListener listener) {
+        return start(request.operation, request.dryRun, listener);
+    }
+
+    /**
+     * @param operation the operation failures are counted for.
+     * @param dryRun whether the run only previews its changes, in which case no nodes count as modified.
+     * @param listener the caller's listener.
+     * @return the listener to run the update with.
+     */
+    Run start(String operation, boolean dryRun, UpdateListener listener) {
+        activeRuns.increment();
+        return new Run(operation, dryRun, listener);
+    }
+
+    /**
+     * Times how long fetching each hit takes, and how long processing it takes until the next one is asked
+     * for. The fetch time of the whole query is recorded once all hits have been fetched.
+     *
+     * @param engine the query engine the hits come from.
+     * @param hits the hits of the query.
+     * @return an iterator over the same hits.
+     */
+    Iterator<Resource> time(String engine, Iterator<Resource> hits) {
+        Timer queryTime = metrics.timer(PREFIX + "query." + (ENGINES.contains(engine) ? engine : "other"));
+        return new Iterator<Resource>() {
+            private long fetchNanos;
+            private long processingStarted;
+            private boolean recorded;
+
+            @Override
+            public boolean hasNext() {
+                long start = System.nanoTime();
+                if (processingStarted > 0) {
+                    mutationTime.update(start - processingStarted, TimeUnit.NANOSECONDS);
+                    processingStarted = 0;
+                }
+                boolean hasNext = hits.hasNext();
+                fetchNanos += System.nanoTime() - start;
+                if (!hasNext && !recorded) {
+                    recorded = true;
+                    queryTime.update(fetchNanos, TimeUnit.NANOSECONDS);
+                }
+                return hasNext;
+            }
+
+            @Override
+            public Resource next() {
+                long start = System.nanoTime();
+                Resource hit = hits.next();
+                processingStarted = System.nanoTime();
+                fetchNanos += processingStarted - start;
+                return hit;
+            }
+        };
+    }
+
+    /**
+     * The metrics of a single run, recorded from what the run reports to its listener.
+     */
+    class Run implements UpdateListener {
+        private final UpdateListener delegate;
+        private final Counter failures;
+        private final boolean dryRun;
+        private final long started = System.nanoTime();
+
+        private Run(String operation, boolean dryRun, UpdateListener delegate) {
+            this.delegate = delegate;
+            this.failures = metrics.counter(PREFIX + "failures." + (OPERATIONS.contains(operation) ? operation : "other"));
+            this.dryRun = dryRun;
+        }
+
+        @Override
+        public void onResult(UpdateResult result) {
+            if ("Failed".equals(result.status)) {
+                failures.increment();
+            }
+            delegate.onResult(result);
+        }
+
+        @Override
+        public void onNodeProcessed(String path) {
+            nodesScanned.mark();
+            delegate.onNodeProcessed(path);
+        }
+
+        @Override
+        public void onNodeModified(String path) {
+            if (!dryRun) {
+                nodesModified.mark();
+            }
+            delegate.onNodeModified(path);
+        }
+
+        @Override
+        public void onBatch(CommitBatch batch) {
+            if ("Committed".equals(batch.status)) {
+                commitTime.update(batch.commitMillis, TimeUnit.MILLISECONDS);
+                batchSize.update(batch.nodes);
+            }
+            delegate.onBatch(batch);
+        }
+
+        @Override
+        public void onJournal(String journalId) {
+            delegate.onJournal(journalId);
+        }
+
+        @Override
+        public void onCheckpoint(String runId) {
+            delegate.onCheckpoint(runId);
+        }
+
+        /**
+         * Records the duration of the run and takes it off the active runs.
+         */
+        void end() {
+            runTime.update(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            activeRuns.decrement();
+        }
+    }
+
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.services.impl;
+
+import co.acu.nodemorph.core.dto.NodeProperty;
+import co.acu.nodemorph.core.dto.UpdateRequest;
+import co.acu.nodemorph.core.utils.NodeMorphUtils;
+import org.apache.sling.api.resource.Resource;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import static com.day.cq.commons.jcr.JcrConstants.NT_UNSTRUCTURED;
+
+/**
+ * The parsed form of an {@link UpdateRequest}: property lists, match conditions and action labels are
+ * derived once per request, so the per-node loops of the operation processors only do lookups and writes.
+ * Plans are immutable and shared by all partitions of a parallel run.
+ */
+final class UpdatePlan {
+
+    private static final Pattern NAMED_GROUP = Pattern.compile("\\(\\?<([a-zA-Z][a-zA-Z0-9]*)>");
+
+    /** A property to set on every matched node, with its action label. */
+    static final class PropertyWrite {
+        final String key;
+        final Object value;
+        final String action;
+
+        private PropertyWrite(String key, Object value) {
+            this.key = key;
+            this.value = value;
+            this.action = String.format("Set %s=%s", key, value);
+        }
+    }
+
+    final String operation;
+    final List<UpdatePlan> stages;
+
+    final List<PropertyWrite> propertyWrites;
+    final String jcrNodeName;
+
+    final String replacePropName;
+    final String find;
+    final String replacement;
+    final boolean partialMatch;
+    final Pattern findPattern;
+    final String replacementTemplate;
+    final String replaceActionPrefix;
+
+    final List<String> deletePropNames;
+
+    final String newNodeName;
+    final String newNodeType;
+    final Map<String, Object> newNodeProperties;
+    final String parentMatchKey;
+    final String parentMatchValue;
+    final String createAction;
+    final String createDryRunAction;
+
+    final String copyType;
+    final String copySource;
+    final String copyTarget;
+    final boolean deepCopy;
+    final String copyNodeAction;
+    final String copyPropertyActionPrefix;
+    final String copyPropertyActionSuffix;
+
+    private UpdatePlan(UpdateRequest request) {
+        this.operation = request.operation;
+        List<UpdatePlan> stagePlans = new ArrayList<>();
+        for (UpdateRequest stage : request.stages) {
+            stagePlans.add(new UpdatePlan(stage));
+        }
+        this.stages = Collections.unmodifiableList(stagePlans);
+
+        List<PropertyWrite> writes = new ArrayList<>();
+        for (NodeProperty prop : request.getUpdateProperties()) {
+            writes.add(new PropertyWrite(prop.getKey(), prop.getValue()));
+        }
+        this.propertyWrites = Collections.unmodifiableList(writes);
+        this.jcrNodeName = "node".equals(request.matchType) && request.jcrNodeName != null && !request.jcrNodeName.isEmpty()
+                ? request.jcrNodeName : null;
+
+        this.replacePropName = request.propName;
+        this.find = request.find;
+        this.replacement = request.replace;
+        this.partialMatch = request.isPartialMatch;
+        if (request.find != null && request.replace != null && (request.isRegex || request.isPartialMatch)) {
+            try {
+                this.findPattern = request.isRegex ? Pattern.compile(request.find) : Pattern.compile(Pattern.quote(request.find));
+            } catch (PatternSyntaxException e) {
+                throw new IllegalArgumentException("Invalid find expression: " + e.getDescription(), e);
+            }
+            if (request.isRegex) {
+                checkReplacement(findPattern, request.replace);
+            }
+            this.replacementTemplate = request.isRegex ? request.replace : Matcher.quoteReplacement(request.replace);
+        } else {
+            this.findPattern = null;
+            this.replacementTemplate = null;
+        }
+        this.replaceActionPrefix = "Replace " + request.propName + ": ";
+
+        List<String> deletes = new ArrayList<>();
+        if (request.propNames != null && !request.propNames.trim().isEmpty()) {
+            Arrays.stream(request.propNames.split(",")).map(String::trim).forEach(deletes::add);
+        }
+        this.deletePropNames = Collections.unmodifiableList(deletes);
+
+        this.newNodeName = request.newNodeName != null && !request.newNodeName.isEmpty() ? request.newNodeName : null;
+        this.newNodeType = request.newNodeType != null && !request.newNodeType.isBlank() ? request.newNodeType : NT_UNSTRUCTURED;
+        Map<String, Object> nodeProps = new HashMap<>();
+        nodeProps.put("jcr:primaryType", newNodeType);
+        nodeProps.putAll(request.getNewNodeProperties());
+        this.newNodeProperties = Collections.unmodifiableMap(nodeProps);
+        String matchKey = null;
+        String matchValue = null;
+        if (request.parentMatchCondition != null && !request.parentMatchCondition.trim().isEmpty()) {
+            Map<String, Object> matchProps = NodeMorphUtils.parseProperties(request.parentMatchCondition);
+            if (!matchProps.isEmpty()) {
+                Map.Entry<String, Object> entry = matchProps.entrySet().iterator().next();
+                matchKey = entry.getKey();
+                Object val = entry.getValue();
+                if (val instanceof String) {
+                    matchValue = (String) val;
+                } else if (val instanceof String[] && ((String[]) val).length > 0) {
+                    matchValue = ((String[]) val)[0];
+                }
+            }
+        }
+        this.parentMatchKey = matchValue != null ? matchKey : null;
+        this.parentMatchValue = matchValue;
+        this.createAction = "Created node of type " + newNodeType;
+        this.createDryRunAction = "Would create " + newNodeType;
+
+        this.copyType = request.copyType;
+        this.copySource = request.source;
+        this.copyTarget = request.target;
+        this.deepCopy = request.deepCopy;
+        this.copyNodeAction = String.format(request.deepCopy ? "Copy node tree %s to %s" : "Copy node %s to %s",
+                request.source, request.target);
+        this.copyPropertyActionPrefix = "Copy property " + request.source + "=";
+        this.copyPropertyActionSuffix = " to " + request.target;
+    }
+
+    /**
+     * Compiles a request into a plan.
+     *
+     * @param request the update request.
+     * @return the plan for the request.
+     * @throws IllegalArgumentException if the request's find expression is not a valid regular expression, or
+     *         its replacement refers to groups the expression doesn't have.
+     */
+    static UpdatePlan compile(UpdateRequest request) {
+        return new UpdatePlan(request);
+    }
+
+    /**
+     * @return false if the request only targets nodes of a given name and the node has another name.
+     */
+    boolean matchesNodeName(Resource node) {
+        return jcrNodeName == null || node.getName().equals(jcrNodeName);
+    }
+
+    /**
+     * @return false if the request only creates nodes below parents with a given property value and the
+     *         node doesn't have it.
+     */
+    boolean matchesParent(Resource node) {
+        if (parentMatchKey == null) {
+            return true;
+        }
+        Object val = node.getValueMap().get(parentMatchKey);
+        return val != null && val.toString().equals(parentMatchValue);
+    }
+
+    /**
+     * Applies the replace operation to a single value in one pass. Regular expressions and partial matches
+     * replace every occurrence, with {@code $1}-style group references in regular expression replacements;
+     * otherwise the whole value has to equal the find value.
+     *
+     * @param value the current value.
+     * @return the new value, or null if the value doesn't match.
+     */
+    String replaceIn(String value) {
+        if (findPattern == null) {
+            return value.equals(find) ? replacement : null;
+        }
+        Matcher matcher = findPattern.matcher(value);
+        if (!matcher.find()) {
+            return null;
+        }
+        StringBuilder result = new StringBuilder(value.length());
+        do {
+            matcher.appendReplacement(result, replacementTemplate);
+        } while (matcher.find());
+        matcher.appendTail(result);
+        return result.toString();
+    }
+
+    /**
+     * Applies the replace operation to every value of a multi-value property, keeping the type of its values.
+     * Only String, Long, Double and Boolean values are replaced.
+     *
+     * @param values the current values.
+     * @return the new values, in an array of the same type, or null if no value matches or the values are
+     *         of another type.
+     * @throws IllegalArgumentException if a replaced value can't be stored as the type of the values.
+     */
+    Object[] replaceIn(Object[] values) {
+        Class<?> type = values.getClass().getComponentType();
+        if (type != String.class && type != Long.class && type != Double.class && type != Boolean.class) {
+            return null;
+        }
+        Object[] newValues = (Object[]) Array.newInstance(type, values.length);
+        boolean matches = false;
+        for (int i = 0; i < values.length; i++) {
+            String newValue = values[i] != null ? replaceIn(values[i].toString()) : null;
+            matches |= newValue != null;
+            newValues[i] = newValue != null ? toType(newValue, type) : values[i];
+        }
+        return matches ? newValues : null;
+    }
+
+    private static Object toType(String value, Class<?> type) {
+        try {
+            if (type == Long.class) {
+                return Long.valueOf(value);
+            }
+            if (type == Double.class) {
+                return Double.valueOf(value);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Replacement " + value + " is not a " + type.getSimpleName() + " value", e);
+        }
+        if (type == Boolean.class) {
+            if (!"true".equals(value) && !"false".equals(value)) {
+                throw new IllegalArgumentException("Replacement " + value + " is not a Boolean value");
+            }
+            return Boolean.valueOf(value);
+        }
+        return value;
+    }
+
+    /**
+     * Checks a regular expression replacement the way {@link Matcher#appendReplacement} reads it, so a bad
+     * group reference fails the request up front instead of every matching node.
+     */
+    private static void checkReplacement(Pattern pattern, String replacement) {
+        int groupCount = pattern.matcher("").groupCount();
+        Set<String> groupNames = new HashSet<>();
+        Matcher named = NAMED_GROUP.matcher(pattern.pattern());
+        while (named.find()) {
+            groupNames.add(named.group(1));
+        }
+        for (int i = 0; i < replacement.length(); i++) {
+            char c = replacement.charAt(i);
+            if (c == '\\') {
+                if (++i == replacement.length()) {
+                    throw new IllegalArgumentException("Invalid replacement: trailing \\ (use \\\\ for a backslash)");
+                }
+            } else if (c == '$') {
+                if (++i == replacement.length()) {
+                    throw new IllegalArgumentException("Invalid replacement: trailing $ (use \\$ for a dollar sign)");
+                }
+                char next = replacement.charAt(i);
+                if (next == '{') {
+                    int end = replacement.indexOf('}', i);
+                    String name = end > 0 ? replacement.substring(i + 1, end) : "";
+                    if (!groupNames.contains(name)) {
+                        throw new IllegalArgumentException("Invalid replacement: no group named " + name);
+                    }
+                    i = end;
+                } else if (next >= '0' && next <= '9') {
+                    if (next - '0' > groupCount) {
+                        throw new IllegalArgumentException("Invalid replacement: no group " + next + " in the find expression");
+                    }
+                } else {
+                    throw new IllegalArgumentException("Invalid replacement: $ must be followed by a group number or {name}"
+                            + " (use \\$ for a dollar sign)");
+                }
+            }
+        }
+    }
+
+    String replaceAction(String currentValue, String newValue) {
+        return replaceActionPrefix + currentValue + " → " + newValue;
+    }
+
+    String copyPropertyAction(Object value) {
+        return copyPropertyActionPrefix + value + copyPropertyActionSuffix;
+    }
+
+}
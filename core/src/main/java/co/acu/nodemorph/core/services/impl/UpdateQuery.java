@@ -0,0 +1,158 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.services.impl;
+
+import co.acu.nodemorph.core.dto.QueryPlan;
+import co.acu.nodemorph.core.dto.UpdateRequest;
+import co.acu.nodemorph.core.dto.UpdateResult;
+import co.acu.nodemorph.core.services.QueryPlanService;
+import co.acu.nodemorph.core.services.UpdateListener;
+import co.acu.nodemorph.core.utils.NodeMorphUtils;
+import com.day.cq.search.QueryBuilder;
+import org.apache.sling.api.resource.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Finds the nodes an update applies to: picks the query engine for requests asking for the automatic one,
+ * explains the query and refuses it if it would traverse too much of the repository, and runs it.
+ */
+class UpdateQuery {
+    private static final Logger LOG = LoggerFactory.getLogger(UpdateQuery.class);
+
+    private final QueryBuilder queryBuilder;
+    private final QueryPlanService queryPlanService;
+    private final int queryPageSize;
+    private final int treeWalkThreshold;
+
+    /**
+     * @param queryBuilder the query builder running QueryBuilder queries.
+     * @param queryPlanService the service explaining queries and tree walks.
+     * @param queryPageSize the number of QueryBuilder hits fetched at a time.
+     * @param treeWalkThreshold the number of nodes below the path up to which the automatic engine walks the
+     *                          tree; 0 always queries.
+     */
+    UpdateQuery(QueryBuilder queryBuilder, QueryPlanService queryPlanService, int queryPageSize, int treeWalkThreshold) {
+        this.queryBuilder = queryBuilder;
+        this.queryPlanService = queryPlanService;
+        this.queryPageSize = queryPageSize;
+        this.treeWalkThreshold = treeWalkThreshold;
+    }
+
+    /**
+     * Explains the request's query before any node is touched, and refuses the update if Oak would have to
+     * traverse more nodes than the configured limit to run it.
+     *
+     * @return false if the update was refused, in which case a failed result has been reported.
+     */
+    boolean passesTraversalGuard(UpdateRequest request, UpdateListener listener) {
+        if (request.resolver == null || isSingleNodeCopy(request)) {
+            return true;
+        }
+
+        QueryPlan plan;
+        try {
+            plan = explain(request);
+        } catch (IllegalArgumentException e) {
+            // Reported by the run itself
+            return true;
+        }
+        if (!plan.allowed) {
+            LOG.warn("Refusing update of {}: {}", request.path, plan.message);
+            listener.onResult(new UpdateResult(request.path, "Error: Query would traverse the repository", "Failed", plan.message));
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Picks the engine for a request asking for the automatic engine: a tree walk when there are no more
+     * than {@code treeWalkThreshold} nodes below the path, since walking a small subtree is cheaper than a
+     * query that has no index to use, and QueryBuilder otherwise. Counting stops one node past the
+     * threshold, so the estimate stays cheap however large the subtree is.
+     */
+    String resolveQueryEngine(UpdateRequest request) {
+        if (!"auto".equals(request.queryEngine)) {
+            return request.queryEngine;
+        }
+        if (treeWalkThreshold > 0 && request.resolver != null && !isSingleNodeCopy(request)) {
+            Resource root = request.resolver.getResource(request.path);
+            if (root != null && NodeMorphUtils.countNodes(root, treeWalkThreshold + 1L) <= treeWalkThreshold) {
+                return "traversal";
+            }
+        }
+        return "querybuilder";
+    }
+
+    /**
+     * Runs the request's query with the engine it asks for. All engines yield matches lazily: QueryBuilder
+     * one page of hits at a time, JCR-SQL2 straight from Oak's lazily evaluated result, and the tree walk
+     * as it reaches each node. When a run is resumed, the nodes it processed before are skipped: the tree
+     * walk doesn't enter the subtrees it had finished, and queries, whose hits come ordered by path, only
+     * ask for the paths after the last one processed.
+     */
+    Iterator<Resource> findNodes(UpdateRequest request, Map<String, String> queryParams) throws RepositoryException {
+        if ("traversal".equals(request.queryEngine)) {
+            return new TreeWalkIterator(request.resolver.getResource(request.path), queryParams, request.resumeAfter);
+        }
+        return queryNodes(request, queryParams);
+    }
+
+    private Iterator<Resource> queryNodes(UpdateRequest request, Map<String, String> queryParams) throws RepositoryException {
+
+        Session session = request.resolver.adaptTo(Session.class);
+        if ("sql2".equals(request.queryEngine)) {
+            if (session == null) {
+                throw new RepositoryException("JCR-SQL2 queries need a JCR session");
+            }
+            javax.jcr.query.Query query = session.getWorkspace().getQueryManager()
+                    .createQuery(NodeMorphUtils.getSql2Statement(request), javax.jcr.query.Query.JCR_SQL2);
+            return new NodeResourceIterator(query.execute().getNodes(), request.resolver);
+        }
+
+        return new QueryResultIterator(queryBuilder, queryParams, session, queryPageSize, request.resumeAfter);
+    }
+
+    /**
+     * Explains the query the request would run with the engine it selects, without touching any node.
+     *
+     * @throws IllegalArgumentException if the request cannot be turned into a query.
+     */
+    QueryPlan explain(UpdateRequest request) {
+        if ("traversal".equals(request.queryEngine)) {
+            return queryPlanService.explainTreeWalk(request.path, request.resolver);
+        }
+        if ("sql2".equals(request.queryEngine)) {
+            return queryPlanService.explain(NodeMorphUtils.getSql2Statement(request), javax.jcr.query.Query.JCR_SQL2,
+                    request.path, request.resolver);
+        }
+        return queryPlanService.explain(NodeMorphUtils.getQueryParamMap(request), request.resolver);
+    }
+
+    /**
+     * A node copy from a fixed path copies one node instead of querying, so it is neither explained nor walked.
+     */
+    static boolean isSingleNodeCopy(UpdateRequest request) {
+        return "copy".equals(request.operation) && "node".equals(request.copyType)
+                && request.source != null && request.source.contains("/");
+    }
+
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.services.impl;
+
+import co.acu.nodemorph.core.dto.UpdateRequest;
+import co.acu.nodemorph.core.dto.UpdateResult;
+import co.acu.nodemorph.core.services.UpdateListener;
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Recovers from earlier runs through the records they left: undoes a run from its journal, and sets up an
+ * interrupted run to be resumed from its checkpoint.
+ */
+class UpdateRecovery {
+    private static final Logger LOG = LoggerFactory.getLogger(UpdateRecovery.class);
+
+    private final String journalPath;
+    private final String checkpointPath;
+
+    /**
+     * @param journalPath the location of the undo journals; empty if journaling is off.
+     * @param checkpointPath the location of the checkpoints; empty if resumable runs are off.
+     */
+    UpdateRecovery(String journalPath, String checkpointPath) {
+        this.journalPath = journalPath;
+        this.checkpointPath = checkpointPath;
+    }
+
+    /**
+     * Prepares an interrupted run to be resumed from its checkpoint: the original request is to be run again
+     * with the same query engine, skipping every node up to and including the last one processed before the
+     * last successful commit. Runs that have finished are refused.
+     *
+     * @return the request to run again, or null if the run can't be resumed, in which case the failure has
+     *         been reported.
+     */
+    UpdateRequest resume(UpdateRequest request, UpdateListener listener) {
+        ResourceResolver resolver = request.resolver;
+        if (resolver == null) {
+            LOG.error("ResourceResolver is null");
+            listener.onResult(new UpdateResult(request.path, "Error: No user context", "Failed"));
+            return null;
+        }
+
+        String checkpointNodePath = checkpointPath + "/" + request.runId;
+        Resource checkpoint = checkpointPath.isEmpty() ? null : resolver.getResource(checkpointNodePath);
+        if (checkpoint == null) {
+            listener.onResult(new UpdateResult(checkpointNodePath, "Error: Checkpoint not found", "Failed"));
+            return null;
+        }
+        if (UpdateCheckpoint.DONE.equals(checkpoint.getValueMap().get(UpdateCheckpoint.STATE, String.class))) {
+            listener.onResult(new UpdateResult(checkpointNodePath, "Error: Run already finished", "Failed"));
+            return null;
+        }
+
+        UpdateRequest resumed;
+        try {
+            resumed = UpdateCheckpoint.toRequest(checkpoint, resolver);
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Invalid checkpoint {}: {}", checkpointNodePath, e.getMessage());
+            listener.onResult(new UpdateResult(checkpointNodePath, "Error: Invalid checkpoint", "Failed", e.getMessage()));
+            return null;
+        }
+        LOG.info("Resuming run {} on {} after {}", resumed.runId, resumed.path, resumed.resumeAfter);
+        return resumed;
+    }
+
+    /**
+     * Undoes the run that wrote the request's journal: replays its records newest first, restoring the
+     * properties it overwrote and removing the nodes it created, with commits batched as in a regular
+     * update. The journal is marked as undone in the last commit, and a journal that has been undone is
+     * refused. Undo runs aren't journaled themselves.
+     *
+     * @param run the run of the undo, which isn't journaled.
+     */
+    void undo(UpdateRequest request, UpdateRun run) {
+        ResourceResolver resolver = request.resolver;
+        if (resolver == null) {
+            LOG.error("ResourceResolver is null");
+            run.report(new UpdateResult(request.path, "Error: No user context", "Failed"));
+            return;
+        }
+
+        String journalNodePath = journalPath + "/" + request.journalId;
+        Resource journal = journalPath.isEmpty() ? null : resolver.getResource(journalNodePath);
+        if (journal == null) {
+            run.report(new UpdateResult(journalNodePath, "Error: Journal not found", "Failed"));
+            return;
+        }
+        if (journal.getValueMap().containsKey(UpdateJournal.UNDONE)) {
+            run.report(new UpdateResult(journalNodePath, "Error: Journal already undone", "Failed",
+                    "Undone by " + journal.getValueMap().get(UpdateJournal.UNDONE_BY, String.class)));
+            return;
+        }
+
+        List<Resource> chunks = new ArrayList<>();
+        journal.getChildren().forEach(chunks::add);
+        chunks.sort(Comparator.comparing(Resource::getName).reversed());
+        try {
+            for (Resource chunk : chunks) {
+                List<UpdateJournal.Entry> entries = UpdateJournal.read(chunk);
+                for (int i = entries.size() - 1; i >= 0; i--) {
+                    String modified = undoEntry(request, entries.get(i), run);
+                    if (modified != null) {
+                        run.nodeModified(modified);
+                    }
+                }
+            }
+            if (!request.dryRun) {
+                ModifiableValueMap journalProps = journal.adaptTo(ModifiableValueMap.class);
+                if (journalProps != null) {
+                    journalProps.put(UpdateJournal.UNDONE, Calendar.getInstance());
+                    journalProps.put(UpdateJournal.UNDONE_BY, resolver.getUserID());
+                }
+            }
+            run.finish();
+            if (!request.dryRun && resolver.hasChanges()) {
+                resolver.commit();
+            }
+        } catch (PersistenceException pe) {
+            LOG.error("Failed to commit changes", pe);
+            run.report(new UpdateResult(journalNodePath, "Error: Save failed", "Failed", pe.getMessage()));
+        } catch (Exception e) {
+            LOG.error("Could not undo journal {}", journalNodePath, e);
+            run.report(new UpdateResult(journalNodePath, "Error: Unable to complete operation", "Failed", e.getMessage()));
+        }
+    }
+
+    /**
+     * Reverts a single journal record.
+     *
+     * @return the path of the modified node, or null if nothing was modified.
+     */
+    private String undoEntry(UpdateRequest request, UpdateJournal.Entry entry, UpdateRun run) throws PersistenceException {
+        run.nodeProcessed(entry.path);
+        Resource node = request.resolver.getResource(entry.path);
+        if (entry.created) {
+            if (node == null) {
+                run.report(new UpdateResult(entry.path, "Created node already removed", "Skipped"));
+                return null;
+            }
+            if (!request.dryRun) {
+                request.resolver.delete(node);
+            }
+            run.report(new UpdateResult(entry.path, "Remove created node", request.dryRun ? "Pending" : "Done"));
+            return entry.path;
+        }
+
+        if (node == null) {
+            run.report(new UpdateResult(entry.path, "Error: Node not found", "Failed"));
+            return null;
+        }
+        ModifiableValueMap props = node.adaptTo(ModifiableValueMap.class);
+        if (props == null) {
+            run.report(new UpdateResult(entry.path, "Error: Cannot modify node", "Failed"));
+            return null;
+        }
+        if (!request.dryRun) {
+            for (Map.Entry<String, Object> prop : entry.before.entrySet()) {
+                if (prop.getValue() == null) {
+                    props.remove(prop.getKey());
+                } else {
+                    props.put(prop.getKey(), prop.getValue());
+                }
+            }
+        }
+        run.report(new UpdateResult(entry.path, "Restore " + String.join(", ", entry.before.keySet()),
+                request.dryRun ? "Pending" : "Done"));
+        return entry.path;
+    }
+
+}
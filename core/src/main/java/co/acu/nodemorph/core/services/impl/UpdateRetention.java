@@ -0,0 +1,114 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.services.impl;
+
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ValueMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Removes undo journals and checkpoints once they are older than the configured retention. Journals age from
+ * when they were created and checkpoints from their last committed batch. Expired records are looked for at
+ * most once per {@link #PRUNE_INTERVAL_MILLIS}, with the resolver of a run that is about to write new ones.
+ */
+class UpdateRetention {
+    private static final Logger LOG = LoggerFactory.getLogger(UpdateRetention.class);
+
+    static final long PRUNE_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private final long retentionMillis;
+    private final List<String> locations = new ArrayList<>();
+    private final AtomicLong lastPruned = new AtomicLong();
+
+    /**
+     * @param retentionMillis how long journals and checkpoints are kept; 0 keeps them forever.
+     * @param locations the journal and checkpoint locations; empty locations are ignored.
+     */
+    UpdateRetention(long retentionMillis, String... locations) {
+        this.retentionMillis = retentionMillis;
+        for (String location : locations) {
+            if (location != null && !location.isEmpty()) {
+                this.locations.add(location);
+            }
+        }
+    }
+
+    /**
+     * Deletes the expired journals and checkpoints and commits, unless they were looked for less than an
+     * interval ago. A failure is logged and reverted, so the run that triggered it is not affected.
+     *
+     * @param resolver a resolver without pending changes.
+     * @return the number of journals and checkpoints deleted.
+     */
+    int prune(ResourceResolver resolver) {
+        long now = System.currentTimeMillis();
+        long last = lastPruned.get();
+        if (retentionMillis <= 0 || locations.isEmpty() || now - last < PRUNE_INTERVAL_MILLIS
+                || !lastPruned.compareAndSet(last, now)) {
+            return 0;
+        }
+        long cutoff = now - retentionMillis;
+        int deleted = 0;
+        try {
+            for (String location : locations) {
+                Resource root = resolver.getResource(location);
+                if (root == null) {
+                    continue;
+                }
+                List<Resource> expired = new ArrayList<>();
+                for (Resource record : root.getChildren()) {
+                    if (lastChanged(record.getValueMap()) < cutoff) {
+                        expired.add(record);
+                    }
+                }
+                for (Resource record : expired) {
+                    resolver.delete(record);
+                    deleted++;
+                }
+            }
+            if (deleted > 0) {
+                resolver.commit();
+                LOG.info("Removed {} expired update journals and checkpoints", deleted);
+            }
+            return deleted;
+        } catch (PersistenceException e) {
+            resolver.revert();
+            LOG.warn("Could not remove expired update journals and checkpoints: {}", e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * @return when the record was last updated, or created, or {@link Long#MAX_VALUE} if it has neither date.
+     */
+    private static long lastChanged(ValueMap props) {
+        Calendar updated = props.get("updated", Calendar.class);
+        if (updated == null) {
+            updated = props.get("created", Calendar.class);
+        }
+        return updated != null ? updated.getTimeInMillis() : Long.MAX_VALUE;
+    }
+
+}
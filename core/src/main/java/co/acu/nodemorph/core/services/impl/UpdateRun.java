@@ -0,0 +1,313 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.services.impl;
+
+import co.acu.nodemorph.core.dto.CommitBatch;
+import co.acu.nodemorph.core.dto.UpdateRequest;
+import co.acu.nodemorph.core.dto.UpdateResult;
+import co.acu.nodemorph.core.services.UpdateListener;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ValueMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tracks the state of a single {@code processUpdate} call: forwards results to the caller's listener and
+ * commits the resolver every {@code batchSize} modified nodes so the transient space stays bounded. When
+ * the run is journaled, the before-images recorded since the last commit are written with every commit.
+ * When the run is resumable, every commit also saves its checkpoint, and a resumed run carries on counting
+ * processed nodes and batches from where the checkpoint left off. A throttled run adapts its batch size to
+ * the repository's back-pressure after every commit, and pauses before the next batch when asked to.
+ */
+class UpdateRun {
+    private static final Logger LOG = LoggerFactory.getLogger(UpdateRun.class);
+
+    /** Written by the update on every cq:PageContent node it changes. */
+    private static final List<String> PAGE_METADATA = Arrays.asList("cq:lastModified", "cq:lastModifiedBy");
+
+    private final UpdateRequest request;
+    private final UpdateListener listener;
+    private final UpdateJournal.Chunk journal;
+    private final UpdateCheckpoint checkpoint;
+    private final UpdateThrottle throttle;
+
+    private int batchSize;
+    private int batchNumber;
+    private int pendingNodes;
+    private long modifiedNodes;
+    private long processedNodes;
+    private String lastPath;
+    private String lastProcessedPath;
+    private String previousProcessedPath;
+    private final long started = System.currentTimeMillis();
+
+    /**
+     * @param request the update request being processed.
+     * @param listener the listener receiving results and batch reports.
+     * @param batchSize the number of modified nodes per commit; 0 commits everything once at the end.
+     * @param journal the journal receiving the run's before-images, or null if the run isn't journaled.
+     * @param checkpoint the checkpoint saved with every commit, or null if the run isn't resumable.
+     * @param throttle the throttle adapting the batch size after every commit, or null to keep it fixed.
+     */
+    UpdateRun(UpdateRequest request, UpdateListener listener, int batchSize, UpdateJournal journal,
+              UpdateCheckpoint checkpoint, UpdateThrottle throttle) {
+        this.request = request;
+        this.listener = listener;
+        this.batchSize = batchSize;
+        this.journal = journal != null && !request.dryRun ? journal.newChunk() : null;
+        this.checkpoint = !request.dryRun ? checkpoint : null;
+        this.throttle = !request.dryRun && batchSize > 0 ? throttle : null;
+        if (this.checkpoint != null) {
+            this.batchNumber = checkpoint.getBatches();
+            this.processedNodes = checkpoint.getProcessed();
+            this.modifiedNodes = checkpoint.getModified();
+        }
+    }
+
+    void report(UpdateResult result) {
+        listener.onResult(result);
+    }
+
+    /**
+     * Wraps the matched nodes so that the listener is told about every node as the processors reach it.
+     * Stops the run if the executing thread has been interrupted, e.g. because the bundle is stopping.
+     *
+     * @param nodes the matched nodes.
+     * @return an iterator over the same nodes that reports progress to the listener.
+     */
+    Iterator<Resource> track(Iterator<Resource> nodes) {
+        return new Iterator<Resource>() {
+            @Override
+            public boolean hasNext() {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new IllegalStateException("Update run was interrupted");
+                }
+                return nodes.hasNext();
+            }
+
+            @Override
+            public Resource next() {
+                Resource node = nodes.next();
+                nodeProcessed(node.getPath());
+                return node;
+            }
+        };
+    }
+
+    /**
+     * Records that the processors have reached a node, for runs that don't go through {@link #track}.
+     *
+     * @param path the path of the node.
+     */
+    void nodeProcessed(String path) {
+        processedNodes++;
+        previousProcessedPath = lastProcessedPath;
+        lastProcessedPath = path;
+        listener.onNodeProcessed(path);
+    }
+
+    /**
+     * Records that a node has been modified in the transient space, committing the current batch once it
+     * reaches the configured size. In dry-run mode the listener is still told about the node, but nothing
+     * is counted towards a batch.
+     *
+     * @param path the path of the modified node.
+     * @throws PersistenceException if the batch commit fails; the batch is reverted and reported as failed.
+     */
+    void nodeModified(String path) throws PersistenceException {
+        listener.onNodeModified(path);
+        if (request.dryRun) {
+            return;
+        }
+
+        pendingNodes++;
+        modifiedNodes++;
+        lastPath = path;
+        if (batchSize > 0 && pendingNodes >= batchSize) {
+            pause(commit(lastProcessedPath, processedNodes));
+        }
+    }
+
+    /**
+     * Records a node that the repository has already persisted by itself, such as the target of a workspace
+     * copy. It counts as modified, but there is nothing left in the transient space to commit for it.
+     *
+     * @param path the path of the persisted node.
+     */
+    void nodePersisted(String path) {
+        listener.onNodeModified(path);
+        if (!request.dryRun) {
+            modifiedNodes++;
+        }
+    }
+
+    /**
+     * Records the current values of properties that are about to be written or removed, along with the
+     * page metadata on cq:PageContent nodes. Does nothing unless the run is journaled. A change to a property
+     * whose value the journal couldn't restore, such as a binary or a reference, is refused: a failed result
+     * is reported and the caller must leave the node alone.
+     *
+     * @param path the path of the node.
+     * @param props the properties of the node, before the change.
+     * @param keys the properties that are about to change.
+     * @return false if the change was refused.
+     * @throws PersistenceException if the before-image cannot be recorded.
+     */
+    boolean recordProperties(String path, ValueMap props, Collection<String> keys) throws PersistenceException {
+        if (journal == null) {
+            return true;
+        }
+        Set<String> recorded = new LinkedHashSet<>(keys);
+        if ("cq:PageContent".equals(props.get("jcr:primaryType"))) {
+            recorded.addAll(PAGE_METADATA);
+        }
+        String unrestorable = UpdateJournal.findUnrestorable(request.resolver.getResource(path), props, recorded);
+        if (unrestorable != null) {
+            listener.onResult(new UpdateResult(path, "Error: Cannot journal " + unrestorable, "Failed",
+                    "Its value could not be restored by an undo"));
+            return false;
+        }
+        try {
+            journal.recordProperties(path, props, recorded);
+        } catch (IOException e) {
+            throw new PersistenceException("Could not journal " + path, e);
+        }
+        return true;
+    }
+
+    /**
+     * Records that a node is about to be created. Does nothing unless the run is journaled.
+     *
+     * @param path the path of the new node.
+     * @throws PersistenceException if the record cannot be written.
+     */
+    void recordCreated(String path) throws PersistenceException {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.recordCreated(path);
+        } catch (IOException e) {
+            throw new PersistenceException("Could not journal " + path, e);
+        }
+    }
+
+    /**
+     * Records that the repository is about to create a node by itself, such as the target of a workspace copy,
+     * which is persisted at once rather than with the batch. The record is committed right away, along with
+     * the batch so far, so that the journal never misses the node. The checkpoint saved with it still points
+     * at the node processed before the current one, which isn't done until the node exists. Does nothing
+     * unless the run is journaled.
+     *
+     * @param path the path of the node about to be created.
+     * @throws PersistenceException if the record cannot be committed.
+     */
+    void commitCreated(String path) throws PersistenceException {
+        if (journal == null) {
+            return;
+        }
+        recordCreated(path);
+        pause(commit(previousProcessedPath, Math.max(0, processedNodes - 1)));
+    }
+
+    long getModifiedNodes() {
+        return modifiedNodes;
+    }
+
+    /**
+     * Commits whatever is left in the transient space once all nodes have been processed.
+     *
+     * @throws PersistenceException if the final commit fails.
+     */
+    void finish() throws PersistenceException {
+        if (!request.dryRun && (pendingNodes > 0 || journal != null && !journal.isEmpty())) {
+            commit(lastProcessedPath, processedNodes);
+        }
+        if (checkpoint != null) {
+            checkpoint.update(request.resolver, UpdateCheckpoint.DONE, lastProcessedPath, processedNodes, modifiedNodes,
+                    batchNumber);
+            request.resolver.commit();
+        }
+        LOG.info("Update of {} with the {} engine processed {} nodes ({} modified) in {} ms", request.path,
+                request.queryEngine, processedNodes, modifiedNodes, System.currentTimeMillis() - started);
+    }
+
+    /**
+     * @param checkpointPath the last path the checkpoint may claim as processed.
+     * @param checkpointProcessed the number of nodes processed up to and including that path.
+     * @return how long the throttle asks to pause before the next batch, in milliseconds.
+     */
+    private long commit(String checkpointPath, long checkpointProcessed) throws PersistenceException {
+        ResourceResolver resolver = request.resolver;
+        int number = ++batchNumber;
+        int nodes = pendingNodes;
+        pendingNodes = 0;
+        long commitStarted = System.currentTimeMillis();
+
+        try {
+            if (journal != null) {
+                journal.write(resolver);
+            }
+            if (checkpoint != null) {
+                checkpoint.update(resolver, UpdateCheckpoint.RUNNING, checkpointPath, checkpointProcessed, modifiedNodes, number);
+            }
+            resolver.commit();
+        } catch (PersistenceException pe) {
+            resolver.revert();
+            listener.onBatch(new CommitBatch(number, nodes, lastPath, "Failed", pe.getMessage()));
+            throw pe;
+        }
+        CommitBatch batch = new CommitBatch(number, nodes, lastPath, "Committed");
+        batch.commitMillis = System.currentTimeMillis() - commitStarted;
+        LOG.debug("Committed batch {} ({} nodes, last path {}) in {} ms", number, nodes, lastPath, batch.commitMillis);
+        if (throttle != null) {
+            batch.pauseMillis = throttle.afterCommit(batch.commitMillis);
+            if (throttle.getBatchSize() != batchSize || batch.pauseMillis > 0) {
+                LOG.info("Throttling update of {}: commit took {} ms, observation queue at {}; batch size {}, pausing {} ms",
+                        request.path, batch.commitMillis, throttle.getLastQueueDepth(), throttle.getBatchSize(), batch.pauseMillis);
+            }
+            batchSize = throttle.getBatchSize();
+        }
+        listener.onBatch(batch);
+        return batch.pauseMillis;
+    }
+
+    /**
+     * Gives the repository time to catch up before the next batch. An interrupt ends the pause early and
+     * stops the run at the next node.
+     */
+    private static void pause(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -15,110 +15,566 @@
  */
 package co.acu.nodemorph.core.services.impl;
 
+import co.acu.nodemorph.core.services.QueryPlanService;
+import co.acu.nodemorph.core.services.UpdateListener;
 import co.acu.nodemorph.core.services.UpdateService;
 import co.acu.nodemorph.core.dto.UpdateRequest;
+import co.acu.nodemorph.core.dto.CommitBatch;
+import co.acu.nodemorph.core.dto.ManifestRow;
 import co.acu.nodemorph.core.dto.UpdateResult;
-import co.acu.nodemorph.core.dto.NodeProperty;
+import co.acu.nodemorph.core.dto.QueryPlan;
 import co.acu.nodemorph.core.utils.NodeMorphUtils;
-import com.day.cq.search.PredicateGroup;
-import com.day.cq.search.Query;
 import com.day.cq.search.QueryBuilder;
 import org.apache.sling.api.resource.*;
+import org.apache.sling.commons.metrics.MetricsService;
+import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Modified;
 import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicyOption;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.jcr.RepositoryException;
 import javax.jcr.Session;
+import java.lang.management.ManagementFactory;
 import java.util.*;
-
-import static com.day.cq.commons.jcr.JcrConstants.NT_UNSTRUCTURED;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Component(service = UpdateService.class)
+@Designate(ocd = UpdateServiceImpl.Config.class)
 public class UpdateServiceImpl implements UpdateService {
     private static final Logger LOG = LoggerFactory.getLogger(UpdateServiceImpl.class);
 
+    @ObjectClassDefinition(name = "AEM NodeMorph - Update Service")
+    public @interface Config {
+
+        @AttributeDefinition(name = "Batch size",
+                description = "Number of modified nodes saved per commit. Can be overridden per request with the "
+                        + "batchSize parameter. 0 saves all changes in a single commit at the end of the run.")
+        int batchSize() default 1000;
+
+        @AttributeDefinition(name = "Query page size",
+                description = "Number of query hits fetched at a time. Matching nodes are processed page by page, "
+                        + "so memory use does not grow with the size of the result set.")
+        int queryPageSize() default 1000;
+
+        @AttributeDefinition(name = "Parallelism",
+                description = "Number of subtrees updated at the same time when a request asks for parallel mode. "
+                        + "1 or less runs parallel requests sequentially.")
+        int parallelism() default 4;
+
+        @AttributeDefinition(name = "Tree walk threshold",
+                description = "Requests asking for the automatic query engine walk the tree instead of querying "
+                        + "when there are at most this many nodes below the path. 0 always queries.")
+        int treeWalkThreshold() default 100;
+
+        @AttributeDefinition(name = "Journal location",
+                description = "Repository path below which every update that changes content keeps an undo journal "
+                        + "of the values it overwrote, e.g. /var/nodemorph/journal. Journals are written with the "
+                        + "requesting user's session, so authors need write access to it. Empty, the default, turns "
+                        + "journaling off.")
+        String journalPath() default "";
+
+        @AttributeDefinition(name = "Checkpoint location",
+                description = "Repository path below which resumable updates save a checkpoint after every "
+                        + "committed batch. Leave empty to turn resumable updates off.")
+        String checkpointPath() default "/var/nodemorph/checkpoints";
+
+        @AttributeDefinition(name = "Retention (days)",
+                description = "Journals older than this many days, and checkpoints without a committed batch for as "
+                        + "long, are removed. 0 keeps them forever.")
+        int retentionDays() default 30;
+
+        @AttributeDefinition(name = "Adaptive throttling",
+                description = "Shrink batches and pause between them while the repository is under pressure, so "
+                        + "large updates can run while authors are working. Can be turned off per request with "
+                        + "throttle=false.")
+        boolean throttle() default true;
+
+        @AttributeDefinition(name = "Target commit time",
+                description = "Commits taking longer than this many milliseconds count as back-pressure. 0 ignores "
+                        + "commit times.")
+        long throttleCommitMillis() default 2000;
+
+        @AttributeDefinition(name = "Target observation queue depth",
+                description = "Events waiting in Oak's deepest observation queue above this count as back-pressure. "
+                        + "0 ignores the queue.")
+        int throttleQueueDepth() default 5000;
+
+        @AttributeDefinition(name = "Maximum pause",
+                description = "Longest pause between two batches in milliseconds while throttling.")
+        long throttleMaxPauseMillis() default 10000;
+
+    }
+
+    /**
+     * Operations where each matching node is updated independently of the others, so subtrees can be
+     * processed concurrently. Copy may write to shared targets and always runs sequentially.
+     */
+    private static final Set<String> PARTITIONABLE_OPERATIONS =
+            new HashSet<>(Arrays.asList("add", "replace", "create", "delete"));
+
+    /** How long an observation queue reading is reused by the throttles of all runs. */
+    private static final long QUEUE_SAMPLE_MILLIS = 1000;
+
     @Reference
     private QueryBuilder queryBuilder;
 
+    @Reference
+    private QueryPlanService queryPlanService;
+
+    @Reference(cardinality = ReferenceCardinality.OPTIONAL, policyOption = ReferencePolicyOption.GREEDY)
+    private MetricsService metricsService;
+
+    private int defaultBatchSize;
+    private int parallelism;
+    private String journalPath;
+    private String checkpointPath;
+    private UpdateRetention retention;
+    private UpdateQuery query;
+    private UpdateRecovery recovery;
+    private boolean throttle;
+    private long throttleCommitMillis;
+    private int throttleQueueDepth;
+    private long throttleMaxPauseMillis;
+    private ObservationQueueMonitor observationQueue;
+    private UpdateMetrics metrics;
+    private ExecutorService partitionExecutor;
+
+    @Activate
+    @Modified
+    protected void activate(Config config) {
+        this.defaultBatchSize = Math.max(0, config.batchSize());
+        this.parallelism = Math.max(1, config.parallelism());
+        this.journalPath = toLocation(config.journalPath());
+        this.checkpointPath = toLocation(config.checkpointPath());
+        this.retention = new UpdateRetention(TimeUnit.DAYS.toMillis(Math.max(0, config.retentionDays())), journalPath, checkpointPath);
+        this.query = new UpdateQuery(queryBuilder, queryPlanService, Math.max(1, config.queryPageSize()),
+                Math.max(0, config.treeWalkThreshold()));
+        this.recovery = new UpdateRecovery(journalPath, checkpointPath);
+        this.throttle = config.throttle();
+        this.throttleCommitMillis = Math.max(0, config.throttleCommitMillis());
+        this.throttleQueueDepth = Math.max(0, config.throttleQueueDepth());
+        this.throttleMaxPauseMillis = Math.max(0, config.throttleMaxPauseMillis());
+        this.observationQueue = new ObservationQueueMonitor(ManagementFactory.getPlatformMBeanServer(), QUEUE_SAMPLE_MILLIS);
+        this.metrics = new UpdateMetrics(metricsService != null ? metricsService : MetricsService.NOOP);
+
+        ExecutorService previous = partitionExecutor;
+        if (parallelism > 1) {
+            AtomicInteger count = new AtomicInteger();
+            partitionExecutor = Executors.newFixedThreadPool(parallelism, runnable -> {
+                Thread thread = new Thread(runnable, "nodemorph-update-partition-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            partitionExecutor = null;
+        }
+        if (previous != null) {
+            previous.shutdown();
+        }
+    }
+
+    private static String toLocation(String configured) {
+        String location = configured != null ? configured.trim() : "";
+        return location.endsWith("/") ? location.substring(0, location.length() - 1) : location;
+    }
+
+    @Deactivate
+    protected void deactivate() {
+        if (partitionExecutor != null) {
+            partitionExecutor.shutdownNow();
+        }
+    }
+
     /**
      * Processes a node update request by executing the specified operation (add, replace, or copy)
      * on a set of nodes identified via a JCR query. This method orchestrates the entire workflow:
      * querying nodes, applying the operation, and committing changes unless in dry-run mode.
+     * Query hits are streamed one page at a time, so memory use stays flat however many nodes match.
+     * Changes are committed every {@code batchSize} modified nodes (taken from the request, or the
+     * OSGi default), so batches that were committed before a failure are kept. Requests that ask for
+     * parallel mode are split by the first-level children of the path and run concurrently. Updates whose
+     * query would traverse more nodes than the {@link QueryPlanService} allows are refused up front. On the
+     * automatic engine, small subtrees are walked directly instead of being queried. Resumable runs save a
+     * checkpoint with every batch and always run sequentially; a {@code resume} request carries on after
+     * the last node the checkpoint recorded. Unless throttling is off, the batch size shrinks and pauses are
+     * taken between batches while commits are slow or Oak's observation queue backs up. Every run is recorded
+     * in the {@link UpdateMetrics}.
      *
      * @param request the update request containing operation type, target path, properties, and
-     *                configuration (e.g., dryRun, pageOnly). Must include a valid ResourceResolver.
-     * @return a list of {@link UpdateResult} objects detailing the outcome of the operation for each
-     *         affected node, including path, action taken, status (e.g., "Done", "Failed"), and
-     *         optional error messages.
+     *                configuration (e.g., dryRun, pageOnly, batchSize). Must include a valid ResourceResolver.
+     * @param listener receives a {@link UpdateResult} for every affected node, including path, action
+     *                 taken, status (e.g., "Done", "Failed"), and optional error messages, as well as a
+     *                 {@link CommitBatch} for every commit attempted.
      * @throws IllegalArgumentException if the request contains invalid parameters (e.g., malformed query).
      * @throws RuntimeException if query execution fails due to underlying JCR issues.
      */
     @Override
-    public List<UpdateResult> processUpdate(UpdateRequest request) {
-        List<UpdateResult> results = new ArrayList<>();
+    public void processUpdate(UpdateRequest request, UpdateListener listener) {
+        UpdateMetrics.Run metered = metrics.start(request, listener);
+        try {
+            runUpdate(request, metered);
+        } finally {
+            metered.end();
+        }
+    }
+
+    private void runUpdate(UpdateRequest request, UpdateListener listener) {
+        if (!request.dryRun && request.resolver != null) {
+            retention.prune(request.resolver);
+        }
+        if ("undo".equals(request.operation)) {
+            int batchSize = request.batchSize != null ? request.batchSize : defaultBatchSize;
+            recovery.undo(request, new UpdateRun(request, listener, batchSize, null, null, createThrottle(request, batchSize)));
+            return;
+        }
+        if ("resume".equals(request.operation)) {
+            UpdateRequest resumed = recovery.resume(request, listener);
+            if (resumed != null) {
+                runUpdate(resumed, listener);
+            }
+            return;
+        }
+        UpdatePlan plan;
+        try {
+            plan = UpdatePlan.compile(request);
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Invalid input: {}", e.getMessage());
+            listener.onResult(new UpdateResult(request.path, "Error: Invalid input", "Failed", e.getMessage()));
+            return;
+        }
+        request.queryEngine = query.resolveQueryEngine(request);
+        if (!query.passesTraversalGuard(request, listener)) {
+            return;
+        }
+
+        UpdateCheckpoint checkpoint = null;
+        if (request.checkpoint && !request.dryRun && request.resolver != null && !checkpointPath.isEmpty()) {
+            checkpoint = startCheckpoint(request, listener);
+            if (checkpoint == null) {
+                return;
+            }
+        }
+        UpdateJournal journal = createJournal(request, checkpoint != null ? checkpoint.getId() : null);
+        ExecutorService executor = partitionExecutor;
+        if (checkpoint == null && request.parallel && executor != null && request.resolver != null && isPartitionable(request)) {
+            Resource root = request.resolver.getResource(request.path);
+            List<String> partitions = new ArrayList<>();
+            if (root != null) {
+                root.getChildren().forEach(child -> partitions.add(child.getPath()));
+            }
+            if (partitions.size() > 1) {
+                processInPartitions(request, plan, partitions, executor, journal, listener);
+                reportJournal(journal, listener);
+                return;
+            }
+        }
+        processSequentially(request, plan, journal, checkpoint, listener);
+        reportJournal(journal, listener);
+    }
+
+    /**
+     * Saves the checkpoint of a resumable run before it touches any node, or reopens it when the run is
+     * being resumed.
+     *
+     * @return the checkpoint, or null if it could not be saved, in which case the failure has been reported.
+     */
+    private UpdateCheckpoint startCheckpoint(UpdateRequest request, UpdateListener listener) {
+        UpdateCheckpoint checkpoint = new UpdateCheckpoint(checkpointPath,
+                request.runId != null ? request.runId : UpdateJournal.newId());
+        try {
+            checkpoint.start(request.resolver, request);
+        } catch (PersistenceException e) {
+            LOG.error("Could not save checkpoint {}", checkpoint.getPath(), e);
+            request.resolver.revert();
+            listener.onResult(new UpdateResult(request.path, "Error: Cannot write checkpoint", "Failed", e.getMessage()));
+            return null;
+        }
+        listener.onCheckpoint(checkpoint.getId());
+        return checkpoint;
+    }
+
+    /**
+     * @param id the id of the run's checkpoint, which the journal shares, or null to generate one.
+     * @return the journal for a run that changes content, or null for dry runs and if journaling is off.
+     */
+    private UpdateJournal createJournal(UpdateRequest request, String id) {
+        if (request.dryRun || request.resolver == null || journalPath.isEmpty()) {
+            return null;
+        }
+        if (id == null) {
+            return new UpdateJournal(journalPath, request);
+        }
+        UpdateJournal journal = new UpdateJournal(journalPath, id, request);
+        if (request.resumeAfter != null) {
+            journal.continueChunks(request.resolver);
+        }
+        return journal;
+    }
+
+    /**
+     * @return a throttle for a run that commits in batches, or null if throttling is off for the request.
+     */
+    private UpdateThrottle createThrottle(UpdateRequest request, int batchSize) {
+        boolean enabled = request.throttle != null ? request.throttle : throttle;
+        if (!enabled || request.dryRun || batchSize <= 0) {
+            return null;
+        }
+        return new UpdateThrottle(batchSize, throttleCommitMillis, throttleQueueDepth, throttleMaxPauseMillis,
+                observationQueue::getQueueDepth);
+    }
+
+    private static void reportJournal(UpdateJournal journal, UpdateListener listener) {
+        if (journal != null && journal.hasChunks()) {
+            listener.onJournal(journal.getId());
+        }
+    }
+
+    @Override
+    public void processManifest(UpdateRequest request, Iterator<ManifestRow> rows, UpdateListener listener) {
+        UpdateMetrics.Run metered = metrics.start("manifest", request.dryRun, listener);
+        try {
+            runManifest(request, rows, metered);
+        } finally {
+            metered.end();
+        }
+    }
+
+    private void runManifest(UpdateRequest request, Iterator<ManifestRow> rows, UpdateListener listener) {
+        // No query runs for a manifest, the engine name only labels the run in the log
+        request.queryEngine = "manifest";
+        int batchSize = request.batchSize != null ? request.batchSize : defaultBatchSize;
+        UpdateJournal journal = createJournal(request, null);
+        UpdateRun run = new UpdateRun(request, listener, batchSize, journal, null, createThrottle(request, batchSize));
+
+        if (request.resolver == null) {
+            LOG.error("ResourceResolver is null");
+            run.report(new UpdateResult(request.path, "Error: No user context", "Failed"));
+            return;
+        }
+
+        try {
+            while (rows.hasNext()) {
+                String modified = applyManifestRow(request, rows.next(), run);
+                if (modified != null) {
+                    run.nodeModified(modified);
+                }
+            }
+            run.finish();
+        } catch (PersistenceException pe) {
+            LOG.error("Failed to commit changes", pe);
+            run.report(new UpdateResult(request.path, "Error: Save failed", "Failed", pe.getMessage()));
+        } catch (Exception e) {
+            LOG.error("A manifest error has occurred", e);
+            run.report(new UpdateResult(request.path, "Error: Unable to complete operation", "Failed", e.getMessage()));
+        }
+        reportJournal(journal, listener);
+    }
+
+    /**
+     * Applies one manifest row: sets its properties, or removes those with a null value, on the node at the
+     * row's path, or on its jcr:content for pages.
+     *
+     * @return the path of the modified node, or null if nothing was modified.
+     */
+    private String applyManifestRow(UpdateRequest request, ManifestRow row, UpdateRun run) throws PersistenceException {
+        if (row.error != null) {
+            run.report(new UpdateResult(row.path != null ? row.path : "Line " + row.line, "Error: Invalid manifest row", "Failed",
+                    "Line " + row.line + ": " + row.error));
+            return null;
+        }
+
+        run.nodeProcessed(row.path);
+        if (request.path != null && !request.path.isEmpty()
+                && !row.path.equals(request.path) && !row.path.startsWith(request.path + "/")) {
+            run.report(new UpdateResult(row.path, "Error: Path is outside of " + request.path, "Failed"));
+            return null;
+        }
+
+        Resource node = request.resolver.getResource(row.path);
+        if (node == null) {
+            run.report(new UpdateResult(row.path, "Error: Node not found", "Failed"));
+            return null;
+        }
+        Resource target = getModifiableTarget(node, request.pageOnly);
+        ModifiableValueMap props = target != null ? target.adaptTo(ModifiableValueMap.class) : null;
+        if (props == null) {
+            run.report(new UpdateResult(row.path, "Error: Cannot modify node", "Failed"));
+            return null;
+        }
+
+        if (!request.dryRun && !run.recordProperties(target.getPath(), props, row.properties.keySet())) {
+            return null;
+        }
+        StringBuilder action = new StringBuilder();
+        for (Map.Entry<String, Object> prop : row.properties.entrySet()) {
+            String key = prop.getKey();
+            Object value = prop.getValue();
+            if (value == null && !props.containsKey(key)) {
+                continue;
+            }
+            if (action.length() > 0) {
+                action.append(", ");
+            }
+            if (value == null) {
+                action.append("Remove ").append(key);
+                if (!request.dryRun) {
+                    props.remove(key);
+                }
+            } else {
+                action.append("Set ").append(key).append('=')
+                        .append(value instanceof Object[] ? Arrays.toString((Object[]) value) : value);
+                if (!request.dryRun) {
+                    props.put(key, value);
+                }
+            }
+        }
+
+        String path = target.getPath();
+        if (action.length() == 0) {
+            run.report(new UpdateResult(path, "No changes", "Skipped"));
+            return null;
+        }
+        if (!request.dryRun && "cq:PageContent".equals(props.get("jcr:primaryType"))) {
+            props.put("cq:lastModified", Calendar.getInstance());
+            props.put("cq:lastModifiedBy", request.resolver.getUserID());
+        }
+        run.report(new UpdateResult(path, action.toString(), request.dryRun ? "Pending" : "Done"));
+        return path;
+    }
+
+    @Override
+    public QueryPlan explain(UpdateRequest request) {
+        return query.explain(request);
+    }
+
+    private static boolean isPartitionable(UpdateRequest request) {
+        if ("pipeline".equals(request.operation)) {
+            return request.stages.stream().allMatch(UpdateServiceImpl::isPartitionable);
+        }
+        return PARTITIONABLE_OPERATIONS.contains(request.operation);
+    }
+
+    /**
+     * Runs an update as one partition per first-level child of the request path, on up to
+     * {@code parallelism} threads. Each partition runs with its own clone of the request's resolver,
+     * so it has its own commit cycle and the same permissions as the requesting user. Results and batches
+     * from all partitions are merged into the given listener.
+     */
+    private void processInPartitions(UpdateRequest request, UpdatePlan plan, List<String> partitions, ExecutorService executor,
+                                     UpdateJournal journal, UpdateListener listener) {
+        LOG.info("Updating {} subtrees of {} in parallel", partitions.size(), request.path);
+        PartitionListener merged = new PartitionListener(listener);
+        if (journal != null) {
+            // Partitions add their chunks concurrently, so the journal node has to exist before they start
+            try {
+                journal.ensureRoot(request.resolver);
+                request.resolver.commit();
+            } catch (PersistenceException e) {
+                LOG.error("Could not create journal {}", journal.getPath(), e);
+                request.resolver.revert();
+                merged.onResult(new UpdateResult(request.path, "Error: Cannot write journal", "Failed", e.getMessage()));
+                return;
+            }
+        }
+        List<Future<?>> futures = new ArrayList<>();
+        for (String partitionPath : partitions) {
+            futures.add(executor.submit(() -> {
+                ResourceResolver partitionResolver = null;
+                try {
+                    partitionResolver = request.resolver.clone(null);
+                    processSequentially(request.forSubtree(partitionPath, partitionResolver), plan, journal, null, merged);
+                } catch (LoginException e) {
+                    LOG.error("Could not open a session for partition {}", partitionPath, e);
+                    merged.onResult(new UpdateResult(partitionPath, "Error: No user context", "Failed", e.getMessage()));
+                } finally {
+                    if (partitionResolver != null) {
+                        partitionResolver.close();
+                    }
+                }
+            }));
+        }
+
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                futures.get(i).get();
+            } catch (InterruptedException e) {
+                futures.forEach(future -> future.cancel(true));
+                Thread.currentThread().interrupt();
+                merged.onResult(new UpdateResult(request.path, "Error: Update run was interrupted", "Failed"));
+                return;
+            } catch (ExecutionException e) {
+                LOG.error("Partition {} failed unexpectedly", partitions.get(i), e.getCause());
+                merged.onResult(new UpdateResult(partitions.get(i), "Error: Unable to complete operation", "Failed", e.getCause().getMessage()));
+            }
+        }
+    }
+
+    private void processSequentially(UpdateRequest request, UpdatePlan plan, UpdateJournal journal,
+                                     UpdateCheckpoint checkpoint, UpdateListener listener) {
         ResourceResolver resolver = request.resolver;
+        int batchSize = request.batchSize != null ? request.batchSize : defaultBatchSize;
+        UpdateRun run = new UpdateRun(request, listener, batchSize, journal, checkpoint, createThrottle(request, batchSize));
 
         if (resolver == null) {
             LOG.error("ResourceResolver is null");
-            results.add(new UpdateResult(request.path, "Error: No user context", "Failed"));
-            return results;
+            run.report(new UpdateResult(request.path, "Error: No user context", "Failed"));
+            return;
         }
 
         try {
-            Session session = resolver.adaptTo(Session.class);
             Map<String, String> queryParams = NodeMorphUtils.getQueryParamMap(request);
             boolean usesNodeName = queryParams.containsKey("nodename");
+            Iterator<Resource> nodes = run.track(metrics.time(request.queryEngine, query.findNodes(request, queryParams)));
 
-            PredicateGroup predicate = PredicateGroup.create(queryParams);
-            Query query = queryBuilder.createQuery(predicate, session);
-
-            Iterator<Resource> nodeIterator;
-            try {
-                nodeIterator = query.getResult().getResources();
-            } catch (Exception e) {
-                throw new RuntimeException("Query execution failed", e);
+            UpdateResult invalid = checkOperation(request, plan);
+            if (invalid != null) {
+                run.report(invalid);
+                return;
             }
-            List<Resource> nodes = new ArrayList<>();
-            nodeIterator.forEachRemaining(nodes::add);
 
             // Process Operations
             if ("add".equals(request.operation)) {
-                processAddOperation(request, nodes, results);
+                processAddOperation(request, plan, nodes, run);
             } else if ("replace".equals(request.operation)) {
-                processReplaceOperation(request, nodes, results);
+                processReplaceOperation(request, plan, nodes, run);
             } else if ("copy".equals(request.operation)) {
-                if (request.copyType == null || request.source == null || request.target == null) {
-                    results.add(new UpdateResult(request.path, "Error: Missing copy parameters", "Failed"));
-                    return results;
-                }
-
-                if ("node".equals(request.copyType) && request.source.contains("/")) {
-                    copySingleNode(request, resolver, results);
+                if (UpdateQuery.isSingleNodeCopy(request)) {
+                    copySingleNode(request, plan, resolver, run);
                 } else {
-                    processCopyOperation(request, nodes, usesNodeName, results);
+                    processCopyOperation(request, plan, nodes, usesNodeName, run);
                 }
             } else if ("create".equals(request.operation)) {
-                processCreateOperation(request, nodes, results);
+                processCreateOperation(request, plan, nodes, run);
             } else if ("delete".equals(request.operation)) {
-                processDeleteOperation(request, nodes, results);
+                processDeleteOperation(request, plan, nodes, run);
+            } else if ("pipeline".equals(request.operation)) {
+                processPipeline(request, plan, nodes, run);
             }
 
-            if (!request.dryRun && !results.stream().allMatch(r -> "Failed".equals(r.status))) {
-                resolver.commit();
-            }
+            run.finish();
         } catch (IllegalArgumentException e) {
             LOG.error("Invalid input", e);
-            results.add(new UpdateResult(request.path, "Error: Invalid input", "Failed", e.getMessage()));
+            run.report(new UpdateResult(request.path, "Error: Invalid input", "Failed", e.getMessage()));
         } catch (PersistenceException pe) {
             LOG.error("Failed to commit changes", pe);
-            results.add(new UpdateResult(request.path, "Error: Save failed", "Failed", pe.getMessage()));
+            run.report(new UpdateResult(request.path, "Error: Save failed", "Failed", pe.getMessage()));
         } catch (Exception e) {
             LOG.error("A node operation error has occurred", e);
-            results.add(new UpdateResult(request.path, "Error: Unable to complete operation", "Failed", e.getMessage()));
+            run.report(new UpdateResult(request.path, "Error: Unable to complete operation", "Failed", e.getMessage()));
         }
-
-        return results;
     }
 
     /**
@@ -127,41 +583,48 @@ public class UpdateServiceImpl implements UpdateService {
      * pageOnly flag. Skips nodes that don’t match the request’s matchType criteria.
      *
      * @param request the update request specifying properties to add and configuration (e.g., dryRun, matchType).
-     * @param nodes the list of nodes retrieved from the JCR query to process.
-     * @param results the list to append operation outcomes to, including success or failure details.
+     * @param plan the compiled request, holding the parsed properties and their action labels.
+     * @param nodes the nodes matched by the JCR query, fetched lazily as they are processed.
+     * @param run the current run, receiving operation outcomes including success or failure details.
+     * @throws PersistenceException if a batch commit fails.
      */
-    private void processAddOperation(UpdateRequest request, List<Resource> nodes, List<UpdateResult> results) {
-        List<NodeProperty> propsToAdd = request.getUpdateProperties();
-        if (propsToAdd.isEmpty()) {
-            results.add(new UpdateResult(request.path, "No properties to add", "Skipped"));
-            return;
+    private void processAddOperation(UpdateRequest request, UpdatePlan plan, Iterator<Resource> nodes, UpdateRun run) throws PersistenceException {
+        while (nodes.hasNext()) {
+            String modified = addProperties(request, plan, nodes.next(), run);
+            if (modified != null) {
+                run.nodeModified(modified);
+            }
         }
+    }
 
-        for (Resource node : nodes) {
-            Resource target = getModifiableTarget(node, request.pageOnly);
-            if (target == null) {
-                results.add(new UpdateResult(node.getPath(), "Error: No modifiable target node", "Failed"));
-                continue;
-            }
+    /**
+     * Sets the plan's properties on one node.
+     *
+     * @return the path of the modified node, or null if nothing was modified.
+     */
+    private String addProperties(UpdateRequest request, UpdatePlan plan, Resource node, UpdateRun run) throws PersistenceException {
+        Resource target = getModifiableTarget(node, request.pageOnly);
+        if (target == null) {
+            run.report(new UpdateResult(node.getPath(), "Error: No modifiable target node", "Failed"));
+            return null;
+        }
 
-            String path = target.getPath();
-            ModifiableValueMap props = target.adaptTo(ModifiableValueMap.class);
-            if (props == null) {
-                results.add(new UpdateResult(path, "Error: Cannot modify node", "Failed"));
-                continue;
-            }
+        String path = target.getPath();
+        ModifiableValueMap props = target.adaptTo(ModifiableValueMap.class);
+        if (props == null) {
+            run.report(new UpdateResult(path, "Error: Cannot modify node", "Failed"));
+            return null;
+        }
 
-            if (!matchesNode(request, node)) {
-                continue;
-            }
+        if (!plan.matchesNodeName(node)) {
+            return null;
+        }
 
-            for (NodeProperty prop : propsToAdd) {
-                String key = prop.getKey();
-                Object value = prop.getValue();
-                String action = String.format("Set %s=%s", key, value);
-                updateProperty(request, path, props, key, value, action, results);
-            }
+        boolean updated = false;
+        for (UpdatePlan.PropertyWrite write : plan.propertyWrites) {
+            updated |= updateProperty(request, path, props, write.key, write.value, write.action, run);
         }
+        return updated ? path : null;
     }
 
     /**
@@ -169,47 +632,68 @@ public class UpdateServiceImpl implements UpdateService {
      * target nodes. Only replaces the property if its current value matches the "find" string.
      *
      * @param request the update request containing propName, find, replace values, and configuration.
-     * @param nodes the list of nodes to inspect and potentially modify.
-     * @param results the list to record the outcome of each replacement attempt.
+     * @param plan the compiled request.
+     * @param nodes the nodes to inspect and potentially modify, fetched lazily as they are processed.
+     * @param run the current run, recording the outcome of each replacement attempt.
+     * @throws PersistenceException if a batch commit fails.
      */
-    private void processReplaceOperation(UpdateRequest request, List<Resource> nodes, List<UpdateResult> results) {
-        if (request.propName == null || request.find == null || request.replace == null) {
-            results.add(new UpdateResult(request.path, "Error: Missing replace parameters", "Failed"));
-            return;
+    private void processReplaceOperation(UpdateRequest request, UpdatePlan plan, Iterator<Resource> nodes, UpdateRun run) throws PersistenceException {
+        while (nodes.hasNext()) {
+            String modified = replaceProperty(request, plan, nodes.next(), run);
+            if (modified != null) {
+                run.nodeModified(modified);
+            }
         }
+    }
 
-        for (Resource node : nodes) {
-            Resource target = getModifiableTarget(node, request.pageOnly);
-            if (target == null) {
-                results.add(new UpdateResult(node.getPath(), "Error: No modifiable target node", "Failed"));
-                continue;
-            }
+    /**
+     * Replaces the plan's property value on one node, if it matches.
+     *
+     * @return the path of the modified node, or null if nothing was modified.
+     */
+    private String replaceProperty(UpdateRequest request, UpdatePlan plan, Resource node, UpdateRun run) throws PersistenceException {
+        Resource target = getModifiableTarget(node, request.pageOnly);
+        if (target == null) {
+            run.report(new UpdateResult(node.getPath(), "Error: No modifiable target node", "Failed"));
+            return null;
+        }
 
-            String path = target.getPath();
-            ModifiableValueMap props = target.adaptTo(ModifiableValueMap.class);
-            if (props == null) {
-                results.add(new UpdateResult(path, "Error: Cannot modify node", "Failed"));
-                continue;
-            }
+        String path = target.getPath();
+        ModifiableValueMap props = target.adaptTo(ModifiableValueMap.class);
+        if (props == null) {
+            run.report(new UpdateResult(path, "Error: Cannot modify node", "Failed"));
+            return null;
+        }
 
-            Object currentPropValue = props.get(request.propName);
-            if (currentPropValue != null) {
-                boolean matches;
-                String currValue = currentPropValue.toString();
-                String newValue = request.replace;
-                if (request.isPartialMatch) {
-                    matches = currValue.contains(request.find);
-                    newValue = currValue.replace(request.find, request.replace);
-                } else {
-                    matches = currValue.equals(request.find);
-                }
+        Object currentPropValue = props.get(plan.replacePropName);
+        if (currentPropValue == null) {
+            return null;
+        }
 
-                if (matches) {
-                    String action = String.format("Replace %s: %s → %s", request.propName, currValue, newValue);
-                    updateProperty(request, path, props, request.propName, newValue, action, results);
-                }
+        if (currentPropValue instanceof Object[]) {
+            // Multi-value properties are replaced element by element and keep their multi-value type
+            Object[] currValues = (Object[]) currentPropValue;
+            Object[] newValues;
+            try {
+                newValues = plan.replaceIn(currValues);
+            } catch (IllegalArgumentException e) {
+                run.report(new UpdateResult(path, "Error: " + e.getMessage(), "Failed"));
+                return null;
+            }
+            if (newValues == null) {
+                return null;
             }
+            return updateProperty(request, path, props, plan.replacePropName, newValues,
+                    plan.replaceAction(Arrays.toString(currValues), Arrays.toString(newValues)), run) ? path : null;
+        }
+
+        String currValue = currentPropValue.toString();
+        String newValue = plan.replaceIn(currValue);
+        if (newValue == null) {
+            return null;
         }
+        return updateProperty(request, path, props, plan.replacePropName, newValue, plan.replaceAction(currValue, newValue), run)
+                ? path : null;
     }
 
     /**
@@ -218,36 +702,48 @@ public class UpdateServiceImpl implements UpdateService {
      * is used in the query.
      *
      * @param request the update request specifying copyType, source, target, and configuration.
-     * @param nodes the list of nodes to process for copying.
+     * @param plan the compiled request, holding the copy action labels.
+     * @param nodes the nodes to process for copying, fetched lazily as they are processed.
      * @param usesNodeName indicates if the query uses a nodename filter, affecting path resolution.
-     * @param results the list to append copy operation outcomes to.
+     * @param run the current run, receiving copy operation outcomes.
      * @throws PersistenceException if node creation or property updates fail during commit.
      */
-    private void processCopyOperation(UpdateRequest request, List<Resource> nodes, boolean usesNodeName, List<UpdateResult> results) throws PersistenceException {
-        for (Resource node : nodes) {
-            Resource base = request.pageOnly ? node.getChild("jcr:content") : node;
-            if (base == null) {
-                results.add(new UpdateResult(node.getPath(), "Error: No base node", "Failed"));
-                continue;
+    private void processCopyOperation(UpdateRequest request, UpdatePlan plan, Iterator<Resource> nodes, boolean usesNodeName, UpdateRun run) throws PersistenceException {
+        while (nodes.hasNext()) {
+            String modified = copyFrom(request, plan, nodes.next(), usesNodeName, run);
+            if (modified != null) {
+                run.nodeModified(modified);
             }
+        }
+    }
 
-            String basePath = base.getPath();
-            switch (request.copyType) {
-                case "node":
-                    String sourcePath = usesNodeName ? basePath : NodeMorphUtils.resolvePath(basePath, request.source, request.resolver);
-                    String targetPath = usesNodeName ? NodeMorphUtils.resolvePath(base.getParent().getPath(), request.target, request.resolver)
-                            : NodeMorphUtils.resolvePath(basePath, request.target, request.resolver);
-                    copyNode(request, basePath, sourcePath, targetPath, results);
-                    break;
-                case "property":
-                    copyProperty(request, base, results);
-                    break;
-                case "propertyToPath":
-                    copyPropertyToPath(request, base, results);
-                    break;
-                default:
-                    results.add(new UpdateResult(basePath, "Error: Unknown copy type: " + request.copyType, "Failed"));
-            }
+    /**
+     * Runs the plan's copy for one node.
+     *
+     * @return the path of the node written in the transient space, or null if there is none.
+     * @throws PersistenceException if node creation fails.
+     */
+    private String copyFrom(UpdateRequest request, UpdatePlan plan, Resource node, boolean usesNodeName, UpdateRun run) throws PersistenceException {
+        Resource base = request.pageOnly ? node.getChild("jcr:content") : node;
+        if (base == null) {
+            run.report(new UpdateResult(node.getPath(), "Error: No base node", "Failed"));
+            return null;
+        }
+
+        String basePath = base.getPath();
+        switch (plan.copyType) {
+            case "node":
+                String sourcePath = usesNodeName ? basePath : NodeMorphUtils.resolvePath(basePath, plan.copySource, request.resolver);
+                String targetPath = usesNodeName ? NodeMorphUtils.resolvePath(base.getParent().getPath(), plan.copyTarget, request.resolver)
+                        : NodeMorphUtils.resolvePath(basePath, plan.copyTarget, request.resolver);
+                return copyNode(request, plan, basePath, sourcePath, targetPath, run);
+            case "property":
+                return copyProperty(request, plan, base, run);
+            case "propertyToPath":
+                return copyPropertyToPath(request, plan, base, run);
+            default:
+                run.report(new UpdateResult(basePath, "Error: Unknown copy type: " + plan.copyType, "Failed"));
+                return null;
         }
     }
 
@@ -256,37 +752,33 @@ public class UpdateServiceImpl implements UpdateService {
      * Used when the copy operation specifies a direct path in the source (e.g., "skitouring/jcr:content").
      *
      * @param request the update request with source and target paths relative to the base path.
+     * @param plan the compiled request.
      * @param resolver the ResourceResolver to access and modify the JCR repository.
-     * @param results the list to record the copy operation’s outcome.
+     * @param run the current run, recording the copy operation’s outcome.
      * @throws PersistenceException if node creation or commit fails.
      */
-    private void copySingleNode(UpdateRequest request, ResourceResolver resolver, List<UpdateResult> results) throws PersistenceException {
-        String sourcePath = NodeMorphUtils.resolvePath(request.path, request.source, resolver);
+    private void copySingleNode(UpdateRequest request, UpdatePlan plan, ResourceResolver resolver, UpdateRun run) throws PersistenceException {
+        String sourcePath = NodeMorphUtils.resolvePath(request.path, plan.copySource, resolver);
         Resource sourceRes = resolver.getResource(sourcePath);
         if (sourceRes == null) {
-            results.add(new UpdateResult(request.path, "Error: Source node not found: " + sourcePath, "Failed"));
+            run.report(new UpdateResult(request.path, "Error: Source node not found: " + sourcePath, "Failed"));
             LOG.error("Source node not found: {}", sourcePath);
             return;
         }
 
-        String targetPath = NodeMorphUtils.resolvePath(request.path, request.target, resolver);
+        String targetPath = NodeMorphUtils.resolvePath(request.path, plan.copyTarget, resolver);
         String targetParentPath = targetPath.substring(0, targetPath.lastIndexOf("/"));
         Resource targetParent = resolver.getResource(targetParentPath);
         if (targetParent == null) {
-            results.add(new UpdateResult(request.path, "Error: Target parent does not exist: " + targetParentPath, "Failed"));
+            run.report(new UpdateResult(request.path, "Error: Target parent does not exist: " + targetParentPath, "Failed"));
             LOG.error("Target parent not found: {}", targetParentPath);
             return;
         }
 
         String targetNodeName = targetPath.substring(targetPath.lastIndexOf("/") + 1);
-        String action = String.format("Copy node %s to %s", request.source, request.target);
-        if (request.dryRun) {
-            results.add(new UpdateResult(request.path, action, "Pending"));
-        } else {
-            resolver.create(targetParent, targetNodeName, sourceRes.getValueMap());
-            resolver.commit();
-            results.add(new UpdateResult(request.path, action, "Done"));
-            LOG.debug("Copied {} to {}", sourcePath, targetPath);
+        String modified = duplicateNode(request, plan, request.path, sourceRes, targetParent, targetNodeName, run);
+        if (modified != null) {
+            run.nodeModified(modified);
         }
     }
 
@@ -295,33 +787,95 @@ public class UpdateServiceImpl implements UpdateService {
      * parent exists before creating the new node.
      *
      * @param request the update request containing copy configuration.
+     * @param plan the compiled request.
      * @param basePath the base path of the node being processed.
      * @param sourcePath the absolute path of the source node to copy.
      * @param targetPath the absolute path where the node should be copied.
-     * @param results the list to append the copy outcome to.
+     * @param run the current run, receiving the copy outcome.
+     * @return the path of the copy if it was written in the transient space, or null.
      * @throws PersistenceException if node creation fails.
      */
-    private void copyNode(UpdateRequest request, String basePath, String sourcePath, String targetPath, List<UpdateResult> results) throws PersistenceException {
+    private String copyNode(UpdateRequest request, UpdatePlan plan, String basePath, String sourcePath, String targetPath, UpdateRun run) throws PersistenceException {
         Resource sourceRes = request.resolver.getResource(sourcePath);
         if (sourceRes == null) {
-            results.add(new UpdateResult(basePath, "Error: Source node not found: " + sourcePath, "Failed"));
-            return;
+            run.report(new UpdateResult(basePath, "Error: Source node not found: " + sourcePath, "Failed"));
+            return null;
         }
 
         String targetParentPath = targetPath.substring(0, targetPath.lastIndexOf("/"));
         Resource targetParent = request.resolver.getResource(targetParentPath);
         if (targetParent == null) {
-            results.add(new UpdateResult(basePath, "Error: Target parent does not exist: " + targetParentPath, "Failed"));
-            return;
+            run.report(new UpdateResult(basePath, "Error: Target parent does not exist: " + targetParentPath, "Failed"));
+            return null;
         }
 
         String targetNodeName = targetPath.substring(targetPath.lastIndexOf("/") + 1);
-        String action = String.format("Copy node %s to %s", request.source, request.target);
+        return duplicateNode(request, plan, basePath, sourceRes, targetParent, targetNodeName, run);
+    }
+
+    /**
+     * Writes a copy of the source node below the target parent and reports it against the given path.
+     * By default only the node's own properties are copied. With {@code deepCopy} the whole subtree is
+     * copied: through {@link javax.jcr.Workspace#copy(String, String)} when the resolver is backed by a JCR
+     * session, so the repository duplicates it server-side in one operation, and resource by resource in the
+     * transient space otherwise. Workspace copies are persisted immediately, so they don't add to the
+     * current commit batch, and a copy that fails is reported without stopping the run.
+     *
+     * @param request the update request containing copy configuration.
+     * @param plan the compiled request, holding the copy action label.
+     * @param reportPath the path the outcome is reported against.
+     * @param source the node to copy.
+     * @param targetParent the parent of the copy.
+     * @param targetNodeName the name of the copy.
+     * @param run the current run, receiving the copy outcome.
+     * @return the path of the copy if it was written in the transient space, or null.
+     * @throws PersistenceException if node creation fails.
+     */
+    private String duplicateNode(UpdateRequest request, UpdatePlan plan, String reportPath, Resource source, Resource targetParent,
+                               String targetNodeName, UpdateRun run) throws PersistenceException {
+        String targetPath = targetParent.getPath() + "/" + targetNodeName;
+        String action = plan.copyNodeAction;
+        if (plan.deepCopy && targetPath.startsWith(source.getPath() + "/")) {
+            run.report(new UpdateResult(reportPath, "Error: Cannot copy a node tree into itself", "Failed", targetPath));
+            return null;
+        }
         if (request.dryRun) {
-            results.add(new UpdateResult(basePath, action, "Pending"));
+            run.report(new UpdateResult(reportPath, action, "Pending"));
+            return targetPath;
+        }
+
+        if (!plan.deepCopy) {
+            request.resolver.create(targetParent, targetNodeName, source.getValueMap());
         } else {
-            request.resolver.create(targetParent, targetNodeName, sourceRes.getValueMap());
-            results.add(new UpdateResult(basePath, action, "Done"));
+            Session session = request.resolver.adaptTo(Session.class);
+            if (session == null) {
+                copyTree(request.resolver, source, targetParent, targetNodeName);
+            } else {
+                // The copy is persisted at once, so its journal record has to be committed first
+                run.commitCreated(targetPath);
+                try {
+                    session.getWorkspace().copy(source.getPath(), targetPath);
+                } catch (RepositoryException e) {
+                    LOG.error("Failed to copy {} to {}", source.getPath(), targetPath, e);
+                    run.report(new UpdateResult(reportPath, action, "Failed", e.getMessage()));
+                    return null;
+                }
+                run.report(new UpdateResult(reportPath, action, "Done"));
+                run.nodePersisted(targetPath);
+                LOG.debug("Copied {} to {}", source.getPath(), targetPath);
+                return null;
+            }
+        }
+        run.recordCreated(targetPath);
+        run.report(new UpdateResult(reportPath, action, "Done"));
+        LOG.debug("Copied {} to {}", source.getPath(), targetPath);
+        return targetPath;
+    }
+
+    private static void copyTree(ResourceResolver resolver, Resource source, Resource targetParent, String name) throws PersistenceException {
+        Resource copy = resolver.create(targetParent, name, source.getValueMap());
+        for (Resource child : source.getChildren()) {
+            copyTree(resolver, child, copy, child.getName());
         }
     }
 
@@ -330,33 +884,39 @@ public class UpdateServiceImpl implements UpdateService {
      * and cq:lastModifiedBy for cq:PageContent nodes.
      *
      * @param request the update request specifying source and target property names.
+     * @param plan the compiled request, holding the copy action label.
      * @param base the resource whose properties are being modified.
-     * @param results the list to record the copy operation’s outcome.
+     * @param run the current run, recording the copy operation’s outcome.
+     * @return the path of the modified node, or null if nothing was modified.
      */
-    private void copyProperty(UpdateRequest request, Resource base, List<UpdateResult> results) {
+    private String copyProperty(UpdateRequest request, UpdatePlan plan, Resource base, UpdateRun run) throws PersistenceException {
         ModifiableValueMap props = base.adaptTo(ModifiableValueMap.class);
         if (props == null) {
-            results.add(new UpdateResult(base.getPath(), "Error: Cannot modify node", "Failed"));
-            return;
+            run.report(new UpdateResult(base.getPath(), "Error: Cannot modify node", "Failed"));
+            return null;
         }
 
-        Object propValue = props.get(request.source);
+        Object propValue = props.get(plan.copySource);
         if (propValue == null) {
-            results.add(new UpdateResult(base.getPath(), "Error: Source property not found: " + request.source, "Failed"));
-            return;
+            run.report(new UpdateResult(base.getPath(), "Error: Source property not found: " + plan.copySource, "Failed"));
+            return null;
         }
 
-        String action = String.format("Copy property %s=%s to %s", request.source, propValue, request.target);
+        String action = plan.copyPropertyAction(propValue);
         if (request.dryRun) {
-            results.add(new UpdateResult(base.getPath(), action, "Pending"));
+            run.report(new UpdateResult(base.getPath(), action, "Pending"));
         } else {
-            props.put(request.target, propValue);
+            if (!run.recordProperties(base.getPath(), props, Collections.singleton(plan.copyTarget))) {
+                return null;
+            }
+            props.put(plan.copyTarget, propValue);
             if (base.getResourceType().equals("cq:PageContent")) {
                 props.put("cq:lastModified", Calendar.getInstance());
                 props.put("cq:lastModifiedBy", request.resolver.getUserID());
             }
-            results.add(new UpdateResult(base.getPath(), action, "Done"));
+            run.report(new UpdateResult(base.getPath(), action, "Done"));
         }
+        return base.getPath();
     }
 
     /**
@@ -364,110 +924,119 @@ public class UpdateServiceImpl implements UpdateService {
      * path. Creates intermediate nodes if necessary and updates cq:lastModified metadata for pages.
      *
      * @param request the update request with source property and target path.
+     * @param plan the compiled request, holding the copy action label.
      * @param base the resource providing the source property value.
-     * @param results the list to append the operation outcome to.
-     * @throws PersistenceException if node creation or property updates fail.
+     * @param run the current run, receiving the operation outcome.
+     * @return the path of the modified target node, or null if nothing was modified.
+     * @throws PersistenceException if node creation fails.
      */
-    private void copyPropertyToPath(UpdateRequest request, Resource base, List<UpdateResult> results) throws PersistenceException {
+    private String copyPropertyToPath(UpdateRequest request, UpdatePlan plan, Resource base, UpdateRun run) throws PersistenceException {
         String basePath = base.getPath();
-        String sourcePath = basePath + "/" + request.source;
-        String targetPath = basePath + "/" + request.target;
+        String targetPath = basePath + "/" + plan.copyTarget;
 
         Resource targetParent = request.resolver.getResource(targetPath.substring(0, targetPath.lastIndexOf("/")));
         if (targetParent == null) {
             if (!request.dryRun) {
                 request.resolver.create(request.resolver.getResource(basePath),
-                        request.target.substring(0, request.target.lastIndexOf("/")),
+                        plan.copyTarget.substring(0, plan.copyTarget.lastIndexOf("/")),
                         new HashMap<>());
                 targetParent = request.resolver.getResource(targetPath.substring(0, targetPath.lastIndexOf("/")));
+                if (targetParent != null) {
+                    run.recordCreated(targetParent.getPath());
+                }
             }
         }
         if (targetParent == null) {
-            results.add(new UpdateResult(basePath, "Error: Cannot create target parent: " + targetPath, "Failed"));
-            return;
+            run.report(new UpdateResult(basePath, "Error: Cannot create target parent: " + targetPath, "Failed"));
+            return null;
         }
 
         ModifiableValueMap targetProps = targetParent.adaptTo(ModifiableValueMap.class);
-        Object sourcePropValue = base.adaptTo(ValueMap.class).get(request.source);
+        Object sourcePropValue = base.adaptTo(ValueMap.class).get(plan.copySource);
         if (sourcePropValue == null) {
-            results.add(new UpdateResult(basePath, "Error: Source property not found: " + request.source, "Failed"));
-            return;
+            run.report(new UpdateResult(basePath, "Error: Source property not found: " + plan.copySource, "Failed"));
+            return null;
         }
 
         String targetPropName = targetPath.substring(targetPath.lastIndexOf("/") + 1);
-        String action = String.format("Copy property %s=%s to %s", request.source, sourcePropValue, request.target);
+        String action = plan.copyPropertyAction(sourcePropValue);
         if (request.dryRun) {
-            results.add(new UpdateResult(basePath, action, "Pending"));
+            run.report(new UpdateResult(basePath, action, "Pending"));
         } else {
+            if (!run.recordProperties(targetParent.getPath(), targetProps, Collections.singleton(targetPropName))) {
+                return null;
+            }
             targetProps.put(targetPropName, sourcePropValue);
             if (targetParent.getResourceType().equals("cq:PageContent")) {
                 targetProps.put("cq:lastModified", Calendar.getInstance());
                 targetProps.put("cq:lastModifiedBy", request.resolver.getUserID());
             }
-            results.add(new UpdateResult(basePath, action, "Done"));
+            run.report(new UpdateResult(basePath, action, "Done"));
         }
+        return targetParent.getPath();
     }
 
-    private void processCreateOperation(UpdateRequest request, List<Resource> nodes, List<UpdateResult> results) {
-        if (request.newNodeName == null || request.newNodeName.isEmpty()) {
-            results.add(new UpdateResult(request.path, "Error: Missing newNodeName", "Failed"));
-            return;
-        }
-
-        String matchKey = null;
-        String matchValue = null;
-        if (request.parentMatchCondition != null && !request.parentMatchCondition.trim().isEmpty()) {
-            Map<String, Object> matchProps = NodeMorphUtils.parseProperties(request.parentMatchCondition);
-            if (!matchProps.isEmpty()) {
-                Map.Entry<String, Object> entry = matchProps.entrySet().iterator().next();
-                matchKey = entry.getKey();
-                Object val = entry.getValue();
-                if (val instanceof String) {
-                    matchValue = (String) val;
-                } else if (val instanceof String[] && ((String[]) val).length > 0) {
-                    matchValue = ((String[]) val)[0];
-                }
+    private void processCreateOperation(UpdateRequest request, UpdatePlan plan, Iterator<Resource> nodes, UpdateRun run) throws PersistenceException {
+        // Hits are fetched lazily, so nodes created earlier in this run can show up as later hits
+        Set<String> createdPaths = new HashSet<>();
+        while (nodes.hasNext()) {
+            Resource node = nodes.next();
+            forgetPassedNodes(createdPaths, node.getPath());
+            if (createdPaths.contains(node.getPath())) {
+                continue;
             }
-        }
-
-        for (Resource node : nodes) {
-            if (matchKey != null && matchValue != null) {
-                ValueMap nodeProps = node.getValueMap();
-                Object val = nodeProps.get(matchKey);
-                if (val == null || !val.toString().equals(matchValue)) {
-                    continue;
-                }
+            String modified = createChild(request, plan, node, createdPaths, run);
+            if (modified != null) {
+                run.nodeModified(modified);
             }
+        }
+    }
 
-            String newNodeName = request.newNodeName;
-//            String type = request.newNodeType != null && !request.newNodeType.isEmpty() ? request.newNodeType : NT_UNSTRUCTURED;
-            String type = Optional.ofNullable(request.newNodeType)
-                    .filter(s -> !s.isBlank())
-                    .orElse(NT_UNSTRUCTURED);
-
-            try {
-                Resource existing = node.getChild(newNodeName);
-                if (existing != null) {
-                    results.add(new UpdateResult(existing.getPath(), "Skipped: Node already exists", "Skipped"));
-                    continue;
-                }
+    /**
+     * Forgets the created nodes that can no longer come up as hits. Queries return hits in path order and the
+     * tree walk goes depth first, so once the path of a hit doesn't start with the path of a created node's
+     * parent, the hits have moved past that node for good. Only nodes created below the ancestors of the
+     * current hit are kept, however many nodes the run creates.
+     */
+    private static void forgetPassedNodes(Set<String> createdPaths, String hitPath) {
+        createdPaths.removeIf(path -> !hitPath.startsWith(path.substring(0, path.lastIndexOf('/'))));
+    }
 
-                if (request.dryRun) {
-                    results.add(new UpdateResult(node.getPath() + "/" + newNodeName, "Would create " + type, "Pending"));
-                    continue;
-                }
+    /**
+     * Creates the plan's child node below one node, if the node matches the parent condition and doesn't
+     * have that child yet.
+     *
+     * @param createdPaths the paths of the nodes created so far in this run, extended with the new node.
+     * @return the path of the created node, or null if nothing was created.
+     */
+    private String createChild(UpdateRequest request, UpdatePlan plan, Resource node, Set<String> createdPaths, UpdateRun run) throws PersistenceException {
+        if (!plan.matchesParent(node)) {
+            return null;
+        }
 
-                Map<String, Object> props = new HashMap<>();
-                props.put("jcr:primaryType", type);
-                props.putAll(request.getNewNodeProperties());
+        String newNodeName = plan.newNodeName;
+        Resource existing = node.getChild(newNodeName);
+        if (existing != null) {
+            run.report(new UpdateResult(existing.getPath(), "Skipped: Node already exists", "Skipped"));
+            return null;
+        }
 
-                Resource created = request.resolver.create(node, newNodeName, props);
-                results.add(new UpdateResult(created.getPath(), "Created node of type " + type, "Done"));
+        if (request.dryRun) {
+            run.report(new UpdateResult(node.getPath() + "/" + newNodeName, plan.createDryRunAction, "Pending"));
+            return node.getPath() + "/" + newNodeName;
+        }
 
-            } catch (PersistenceException e) {
-                results.add(new UpdateResult(node.getPath(), "Error: " + e.getMessage(), "Failed"));
-            }
+        Resource created;
+        try {
+            created = request.resolver.create(node, newNodeName, new HashMap<>(plan.newNodeProperties));
+        } catch (PersistenceException e) {
+            run.report(new UpdateResult(node.getPath(), "Error: " + e.getMessage(), "Failed"));
+            return null;
         }
+        createdPaths.add(created.getPath());
+        run.recordCreated(created.getPath());
+        run.report(new UpdateResult(created.getPath(), plan.createAction, "Done"));
+        return created.getPath();
     }
 
     /**
@@ -478,54 +1047,153 @@ public class UpdateServiceImpl implements UpdateService {
      *
      * @param request the update request containing the path, propNames (comma-separated property names),
      *                and configuration (e.g., dryRun, pageOnly).
-     * @param nodes the list of nodes retrieved from the JCR query to process.
-     * @param results the list to append deletion outcomes to, including success or failure details.
+     * @param plan the compiled request, holding the trimmed property names.
+     * @param nodes the nodes matched by the JCR query, fetched lazily as they are processed.
+     * @param run the current run, receiving deletion outcomes including success or failure details.
+     * @throws PersistenceException if a batch commit fails.
      */
-    private void processDeleteOperation(UpdateRequest request, List<Resource> nodes, List<UpdateResult> results) {
-        if (request.propNames == null || request.propNames.trim().isEmpty()) {
-            results.add(new UpdateResult(request.path, "Error: No properties specified for deletion", "Failed"));
-            return;
+    private void processDeleteOperation(UpdateRequest request, UpdatePlan plan, Iterator<Resource> nodes, UpdateRun run) throws PersistenceException {
+        while (nodes.hasNext()) {
+            String modified = deleteProperties(request, plan, nodes.next(), run);
+            if (modified != null) {
+                run.nodeModified(modified);
+            }
         }
+    }
 
-        String[] propertiesToDelete = request.propNames.split(",");
-        for (int i = 0; i < propertiesToDelete.length; i++) {
-            propertiesToDelete[i] = propertiesToDelete[i].trim();
+    /**
+     * Removes the plan's properties from one node.
+     *
+     * @return the path of the modified node, or null if it had none of the properties.
+     */
+    private String deleteProperties(UpdateRequest request, UpdatePlan plan, Resource node, UpdateRun run) throws PersistenceException {
+        Resource target = getModifiableTarget(node, request.pageOnly);
+        if (target == null) {
+            run.report(new UpdateResult(node.getPath(), "Error: No modifiable target node", "Failed"));
+            return null;
         }
 
-        for (Resource node : nodes) {
-            Resource target = getModifiableTarget(node, request.pageOnly);
-            if (target == null) {
-                results.add(new UpdateResult(node.getPath(), "Error: No modifiable target node", "Failed"));
-                continue;
+        String path = target.getPath();
+        ModifiableValueMap props = target.adaptTo(ModifiableValueMap.class);
+        if (props == null) {
+            run.report(new UpdateResult(path, "Error: Cannot modify node", "Failed"));
+            return null;
+        }
+
+        if (!request.dryRun && plan.deletePropNames.stream().anyMatch(props::containsKey)
+                && !run.recordProperties(path, props, plan.deletePropNames)) {
+            return null;
+        }
+        boolean deletedAny = false;
+        StringBuilder action = new StringBuilder("Delete properties: ");
+        for (String propName : plan.deletePropNames) {
+            if (props.containsKey(propName)) {
+                if (deletedAny) action.append(", ");
+                action.append(propName);
+                if (!request.dryRun) {
+                    props.remove(propName);
+                    if (props.containsKey("jcr:primaryType") && "cq:PageContent".equals(props.get("jcr:primaryType"))) {
+                        props.put("cq:lastModified", Calendar.getInstance());
+                        props.put("cq:lastModifiedBy", request.resolver.getUserID());
+                    }
+                }
+                deletedAny = true;
             }
+        }
 
-            String path = target.getPath();
-            ModifiableValueMap props = target.adaptTo(ModifiableValueMap.class);
-            if (props == null) {
-                results.add(new UpdateResult(path, "Error: Cannot modify node", "Failed"));
+        if (!deletedAny) {
+            return null;
+        }
+        run.report(new UpdateResult(path, action.toString(), request.dryRun ? "Pending" : "Done"));
+        return path;
+    }
+
+    /**
+     * Runs the stages of a pipeline request on every matched node in turn: each node is visited once and
+     * goes through all stages in order, each stage seeing the changes of the ones before it in the
+     * transient space. A node changed by several stages is counted once towards the commit batch.
+     *
+     * @param request the pipeline request, providing the path, resolver and configuration (e.g., dryRun, pageOnly).
+     * @param plan the compiled request, holding one plan per stage.
+     * @param nodes the nodes matched by the JCR query, fetched lazily as they are processed.
+     * @param run the current run, receiving the outcomes of all stages.
+     * @throws PersistenceException if node creation or a batch commit fails.
+     */
+    private void processPipeline(UpdateRequest request, UpdatePlan plan, Iterator<Resource> nodes, UpdateRun run) throws PersistenceException {
+        Set<String> createdPaths = new HashSet<>();
+        Set<String> modified = new LinkedHashSet<>();
+        while (nodes.hasNext()) {
+            Resource node = nodes.next();
+            forgetPassedNodes(createdPaths, node.getPath());
+            if (createdPaths.contains(node.getPath())) {
                 continue;
             }
 
-            boolean deletedAny = false;
-            StringBuilder action = new StringBuilder("Delete properties: ");
-            for (String propName : propertiesToDelete) {
-                if (props.containsKey(propName)) {
-                    if (deletedAny) action.append(", ");
-                    action.append(propName);
-                    if (!request.dryRun) {
-                        props.remove(propName);
-                        if (props.containsKey("jcr:primaryType") && "cq:PageContent".equals(props.get("jcr:primaryType"))) {
-                            props.put("cq:lastModified", Calendar.getInstance());
-                            props.put("cq:lastModifiedBy", request.resolver.getUserID());
-                        }
-                    }
-                    deletedAny = true;
+            for (UpdatePlan stage : plan.stages) {
+                String path = applyStage(request, stage, node, createdPaths, run);
+                if (path != null) {
+                    modified.add(path);
                 }
             }
-
-            if (deletedAny) {
-                results.add(new UpdateResult(path, action.toString(), request.dryRun ? "Pending" : "Done"));
+            for (String path : modified) {
+                run.nodeModified(path);
             }
+            modified.clear();
+        }
+    }
+
+    private String applyStage(UpdateRequest request, UpdatePlan stage, Resource node, Set<String> createdPaths, UpdateRun run) throws PersistenceException {
+        switch (stage.operation) {
+            case "add":
+                return addProperties(request, stage, node, run);
+            case "replace":
+                return replaceProperty(request, stage, node, run);
+            case "copy":
+                // Node copies apply to the nodes named like the source, as a nodename query would find them
+                boolean nodeCopy = "node".equals(stage.copyType);
+                if (nodeCopy && !node.getName().equals(stage.copySource)) {
+                    return null;
+                }
+                return copyFrom(request, stage, node, nodeCopy, run);
+            case "create":
+                return createChild(request, stage, node, createdPaths, run);
+            case "delete":
+                return deleteProperties(request, stage, node, run);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Checks that the request has everything its operation needs, before any node is processed.
+     *
+     * @return the result to report if the request can't run, or null if it can.
+     */
+    private static UpdateResult checkOperation(UpdateRequest request, UpdatePlan plan) {
+        switch (plan.operation == null ? "" : plan.operation) {
+            case "add":
+                return plan.propertyWrites.isEmpty() ? new UpdateResult(request.path, "No properties to add", "Skipped") : null;
+            case "replace":
+                return plan.replacePropName == null || plan.find == null || plan.replacement == null
+                        ? new UpdateResult(request.path, "Error: Missing replace parameters", "Failed") : null;
+            case "copy":
+                return plan.copyType == null || plan.copySource == null || plan.copyTarget == null
+                        ? new UpdateResult(request.path, "Error: Missing copy parameters", "Failed") : null;
+            case "create":
+                return plan.newNodeName == null ? new UpdateResult(request.path, "Error: Missing newNodeName", "Failed") : null;
+            case "delete":
+                return plan.deletePropNames.isEmpty()
+                        ? new UpdateResult(request.path, "Error: No properties specified for deletion", "Failed") : null;
+            case "pipeline":
+                for (UpdatePlan stage : plan.stages) {
+                    UpdateResult invalid = checkOperation(request, stage);
+                    if (invalid != null) {
+                        return invalid;
+                    }
+                }
+                return null;
+            default:
+                return null;
         }
     }
 
@@ -546,18 +1214,6 @@ public class UpdateServiceImpl implements UpdateService {
         return target;
     }
 
-    /**
-     * Checks if a node matches the request’s matchType criteria, specifically for "node" type where
-     * a jcrNodeName filter is applied.
-     *
-     * @param request the update request with matchType and optional jcrNodeName.
-     * @param node the resource to check against the match criteria.
-     * @return true if the node matches (or no specific match is required), false otherwise.
-     */
-    private boolean matchesNode(UpdateRequest request, Resource node) {
-        return !"node".equals(request.matchType) || request.jcrNodeName == null || request.jcrNodeName.isEmpty() || node.getName().equals(request.jcrNodeName);
-    }
-
     /**
      * Updates a single property on a node, adding metadata (cq:lastModified, cq:lastModifiedBy) for
      * cq:PageContent nodes. Supports dry-run mode by reporting "Pending" without modifying the node.
@@ -568,18 +1224,58 @@ public class UpdateServiceImpl implements UpdateService {
      * @param key the property name to set.
      * @param value the value to assign to the property.
      * @param action a descriptive string of the operation (e.g., "Set key=value").
-     * @param results the list to append the update outcome to.
+     * @param run the current run, receiving the update outcome.
+     * @return false if the run refused the change because the journal couldn't undo it.
      */
-    private void updateProperty(UpdateRequest request, String path, ModifiableValueMap props, String key, Object value, String action, List<UpdateResult> results) {
+    private boolean updateProperty(UpdateRequest request, String path, ModifiableValueMap props, String key, Object value,
+                                String action, UpdateRun run) throws PersistenceException {
         if (request.dryRun) {
-            results.add(new UpdateResult(path, action, "Pending"));
+            run.report(new UpdateResult(path, action, "Pending"));
         } else {
+            if (!run.recordProperties(path, props, Collections.singleton(key))) {
+                return false;
+            }
             props.put(key, value);
             if (props.containsKey("jcr:primaryType") && "cq:PageContent".equals(props.get("jcr:primaryType"))) {
                 props.put("cq:lastModified", Calendar.getInstance());
                 props.put("cq:lastModifiedBy", request.resolver.getUserID());
             }
-            results.add(new UpdateResult(path, action, "Done"));
+            run.report(new UpdateResult(path, action, "Done"));
+        }
+        return true;
+    }
+
+    /**
+     * Serializes the callbacks of concurrently running partitions onto the caller's listener, and numbers
+     * committed batches across the whole run rather than per partition.
+     */
+    private static class PartitionListener implements UpdateListener {
+        private final UpdateListener delegate;
+        private int batchNumber;
+
+        PartitionListener(UpdateListener delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public synchronized void onResult(UpdateResult result) {
+            delegate.onResult(result);
+        }
+
+        @Override
+        public synchronized void onNodeProcessed(String path) {
+            delegate.onNodeProcessed(path);
+        }
+
+        @Override
+        public synchronized void onNodeModified(String path) {
+            delegate.onNodeModified(path);
+        }
+
+        @Override
+        public synchronized void onBatch(CommitBatch batch) {
+            batch.number = ++batchNumber;
+            delegate.onBatch(batch);
         }
     }
 
@@ -0,0 +1,99 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.services.impl;
+
+import java.util.function.IntSupplier;
+
+/**
+ * Adapts the batch size of a run to how hard the repository is pushing back, and says how long to pause
+ * between batches. After every commit, the commit time and the observation queue depth are compared with
+ * their targets. When either is above its target, the batch size is halved and the pause doubled; once both
+ * are comfortably below, the batch size grows back towards the configured size and the pause shrinks again.
+ */
+class UpdateThrottle {
+
+    /** The smallest batch size the throttle goes down to, unless the configured size is smaller still. */
+    static final int MIN_BATCH_SIZE = 10;
+
+    /** The first pause once the repository is under pressure, and the shortest pause worth taking. */
+    static final long MIN_PAUSE_MILLIS = 100;
+
+    /** Below this share of the targets, the run speeds up again. */
+    private static final double RELAXED = 0.5;
+
+    private final int maxBatchSize;
+    private final int minBatchSize;
+    private final long targetCommitMillis;
+    private final int targetQueueDepth;
+    private final long maxPauseMillis;
+    private final IntSupplier queueDepth;
+
+    private int batchSize;
+    private long pauseMillis;
+    private int lastQueueDepth = -1;
+
+    /**
+     * @param batchSize the configured batch size, which the throttle never exceeds.
+     * @param targetCommitMillis the commit time to stay under; 0 ignores commit times.
+     * @param targetQueueDepth the observation queue depth to stay under; 0 ignores the queue.
+     * @param maxPauseMillis the longest pause between two batches.
+     * @param queueDepth the current observation queue depth, or -1 if it isn't known.
+     */
+    UpdateThrottle(int batchSize, long targetCommitMillis, int targetQueueDepth, long maxPauseMillis, IntSupplier queueDepth) {
+        this.maxBatchSize = batchSize;
+        this.minBatchSize = Math.min(batchSize, MIN_BATCH_SIZE);
+        this.batchSize = batchSize;
+        this.targetCommitMillis = targetCommitMillis;
+        this.targetQueueDepth = targetQueueDepth;
+        this.maxPauseMillis = maxPauseMillis;
+        this.queueDepth = queueDepth;
+    }
+
+    /**
+     * Takes in how long the last commit took and adjusts the batch size and pause.
+     *
+     * @param commitMillis the duration of the last commit.
+     * @return how long to pause before the next batch, in milliseconds.
+     */
+    long afterCommit(long commitMillis) {
+        double pressure = targetCommitMillis > 0 ? commitMillis / (double) targetCommitMillis : 0;
+        lastQueueDepth = targetQueueDepth > 0 ? queueDepth.getAsInt() : -1;
+        if (lastQueueDepth >= 0) {
+            pressure = Math.max(pressure, lastQueueDepth / (double) targetQueueDepth);
+        }
+
+        if (pressure > 1) {
+            batchSize = Math.max(minBatchSize, batchSize / 2);
+            pauseMillis = Math.min(maxPauseMillis, Math.max(MIN_PAUSE_MILLIS, pauseMillis * 2));
+        } else if (pressure < RELAXED) {
+            batchSize = Math.min(maxBatchSize, batchSize + Math.max(1, maxBatchSize / 10));
+            pauseMillis = pauseMillis / 2 < MIN_PAUSE_MILLIS ? 0 : pauseMillis / 2;
+        }
+        return pauseMillis;
+    }
+
+    int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @return the observation queue depth read after the last commit, or -1 if it isn't known.
+     */
+    int getLastQueueDepth() {
+        return lastQueueDepth;
+    }
+
+}
@@ -0,0 +1,363 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.servlets;
+
+import co.acu.nodemorph.core.dto.ManifestRow;
+import co.acu.nodemorph.core.utils.NodeMorphUtils;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the rows of an update manifest one at a time, so manifests of any size are applied without being
+ * loaded whole. Two formats are supported:
+ * <ul>
+ *   <li>CSV, with a header row starting with {@code path} followed by one column per property. Empty cells
+ *   leave the property unchanged, and values in square brackets are multi-value, e.g. {@code "[a, b]"}.</li>
+ *   <li>NDJSON, one object per line such as {@code {"path":"/content/page","properties":{"title":"Home"}}}.
+ *   A null value removes the property, and arrays are multi-value.</li>
+ * </ul>
+ * Rows that can't be parsed are returned with an error rather than ending the manifest.
+ */
+abstract class ManifestReader implements Iterator<ManifestRow>, Closeable {
+
+    private final Reader reader;
+    private ManifestRow next;
+
+    private ManifestReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * @param reader the manifest content.
+     * @param format "csv" or "ndjson".
+     * @return a reader for the manifest.
+     * @throws IllegalArgumentException if the format is unknown or the CSV header is invalid.
+     * @throws IOException if the CSV header can't be read.
+     */
+    static ManifestReader open(Reader reader, String format) throws IOException {
+        if ("csv".equals(format)) {
+            return new Csv(reader);
+        }
+        if ("ndjson".equals(format)) {
+            return new Ndjson(reader);
+        }
+        throw new IllegalArgumentException("Invalid manifestFormat: " + format + " (expected csv or ndjson)");
+    }
+
+    /**
+     * Picks the manifest format from an explicit request parameter, or from the uploaded file's extension.
+     */
+    static String detectFormat(String format, String fileName) {
+        if (format != null && !format.trim().isEmpty()) {
+            return format.trim().toLowerCase();
+        }
+        String name = fileName != null ? fileName.toLowerCase() : "";
+        return name.endsWith(".ndjson") || name.endsWith(".jsonl") || name.endsWith(".json") ? "ndjson" : "csv";
+    }
+
+    /**
+     * @return the next row, or null at the end of the manifest.
+     */
+    protected abstract ManifestRow readRow() throws IOException;
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            try {
+                next = readRow();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public ManifestRow next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        ManifestRow row = next;
+        next = null;
+        return row;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private static final class Csv extends ManifestReader {
+        /** The most characters a quoted cell may hold after a line break before it is taken to be unterminated. */
+        private static final int MAX_MULTILINE_CELL = 64 * 1024;
+
+        private final Reader in;
+        private final List<String> columns;
+        private int pushback = -1;
+        private String replay;
+        private int replayed;
+        private boolean unterminated;
+        private long line = 1;
+
+        private Csv(Reader reader) throws IOException {
+            super(reader);
+            this.in = reader instanceof BufferedReader ? reader : new BufferedReader(reader);
+            List<String> header = readRecord();
+            if (unterminated) {
+                throw new IllegalArgumentException("Invalid manifest: unterminated quoted cell in the CSV header");
+            }
+            if (header == null || header.isEmpty() || !"path".equalsIgnoreCase(header.get(0).trim())) {
+                throw new IllegalArgumentException("Invalid manifest: the CSV header must start with a path column");
+            }
+            this.columns = new ArrayList<>();
+            header.forEach(column -> columns.add(column.trim()));
+        }
+
+        @Override
+        protected ManifestRow readRow() throws IOException {
+            List<String> record;
+            long start;
+            do {
+                start = line;
+                record = readRecord();
+                if (record == null) {
+                    return null;
+                }
+            } while (record.size() == 1 && record.get(0).trim().isEmpty());
+
+            if (unterminated) {
+                unterminated = false;
+                String path = record.size() > 1 ? record.get(0).trim() : "";
+                return ManifestRow.invalid(start, path.isEmpty() ? null : path, "Unterminated quoted cell");
+            }
+            String path = record.get(0).trim();
+            if (path.isEmpty()) {
+                return ManifestRow.invalid(start, null, "Missing path");
+            }
+            if (record.size() > columns.size()) {
+                return ManifestRow.invalid(start, path, "More cells than header columns");
+            }
+            Map<String, Object> properties = new LinkedHashMap<>();
+            for (int i = 1; i < record.size(); i++) {
+                String cell = record.get(i);
+                if (!cell.trim().isEmpty()) {
+                    properties.put(columns.get(i), NodeMorphUtils.parseValue(cell));
+                }
+            }
+            return new ManifestRow(start, path, properties);
+        }
+
+        /**
+         * Reads one RFC 4180 record: cells are separated by commas, may be quoted, and quoted cells may
+         * contain commas, line breaks and doubled quotes. A quoted cell that is still open at the end of the
+         * input, or that holds more than {@link #MAX_MULTILINE_CELL} characters after a line break, ends the
+         * record and flags it as unterminated. What was buffered after the line the quote was opened on is then
+         * read again as further records, so only that record is lost and at most that much input is held.
+         *
+         * @return the cells of the record, or null at the end of the input.
+         */
+        private List<String> readRecord() throws IOException {
+            int c = read();
+            if (c == -1) {
+                return null;
+            }
+            List<String> cells = new ArrayList<>();
+            StringBuilder cell = new StringBuilder();
+            StringBuilder raw = new StringBuilder();
+            boolean quoted = false;
+            long quoteLine = line;
+            int lineEnd = -1;
+            while (true) {
+                if (quoted) {
+                    if (c == -1 || lineEnd >= 0 && raw.length() - lineEnd > MAX_MULTILINE_CELL) {
+                        if (c != -1) {
+                            raw.append((char) c);
+                        }
+                        if (lineEnd >= 0) {
+                            String rest = replay != null ? replay.substring(replayed) : "";
+                            replay = raw.substring(lineEnd + 1) + rest;
+                            replayed = 0;
+                            line = quoteLine + 1;
+                        }
+                        unterminated = true;
+                        cells.add(cell.toString());
+                        return cells;
+                    }
+                    if (c == '"') {
+                        int n = read();
+                        if (n == '"') {
+                            cell.append('"');
+                            raw.append("\"\"");
+                        } else {
+                            quoted = false;
+                            c = n;
+                            continue;
+                        }
+                    } else {
+                        if (c == '\n') {
+                            line++;
+                            if (lineEnd < 0) {
+                                lineEnd = raw.length();
+                            }
+                        }
+                        cell.append((char) c);
+                        raw.append((char) c);
+                    }
+                } else if (c == '"' && cell.length() == 0) {
+                    quoted = true;
+                    quoteLine = line;
+                    lineEnd = -1;
+                    raw.setLength(0);
+                } else if (c == ',') {
+                    cells.add(cell.toString());
+                    cell.setLength(0);
+                } else if (c == '\n' || c == '\r' || c == -1) {
+                    if (c == '\r') {
+                        int n = read();
+                        if (n != '\n') {
+                            pushback = n;
+                        }
+                    }
+                    if (c != -1) {
+                        line++;
+                    }
+                    cells.add(cell.toString());
+                    return cells;
+                } else {
+                    cell.append((char) c);
+                }
+                c = read();
+            }
+        }
+
+        private int read() throws IOException {
+            if (pushback != -1) {
+                int c = pushback;
+                pushback = -1;
+                return c;
+            }
+            if (replay != null) {
+                if (replayed < replay.length()) {
+                    return replay.charAt(replayed++);
+                }
+                replay = null;
+            }
+            return in.read();
+        }
+    }
+
+    private static final class Ndjson extends ManifestReader {
+        private final BufferedReader in;
+        private long line;
+
+        private Ndjson(Reader reader) {
+            super(reader);
+            this.in = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        }
+
+        @Override
+        protected ManifestRow readRow() throws IOException {
+            String text;
+            do {
+                text = in.readLine();
+                line++;
+                if (text == null) {
+                    return null;
+                }
+            } while (text.trim().isEmpty());
+
+            JsonObject json;
+            try {
+                JsonElement element = JsonParser.parseString(text);
+                if (!element.isJsonObject()) {
+                    return ManifestRow.invalid(line, null, "Expected a JSON object");
+                }
+                json = element.getAsJsonObject();
+            } catch (JsonParseException e) {
+                return ManifestRow.invalid(line, null, "Invalid JSON: " + e.getMessage());
+            }
+
+            JsonElement path = json.get("path");
+            if (path == null || !path.isJsonPrimitive() || path.getAsString().trim().isEmpty()) {
+                return ManifestRow.invalid(line, null, "Missing path");
+            }
+            JsonElement props = json.get("properties");
+            if (props != null && !props.isJsonObject()) {
+                return ManifestRow.invalid(line, path.getAsString(), "properties must be an object");
+            }
+
+            Map<String, Object> properties = new LinkedHashMap<>();
+            if (props != null) {
+                for (Map.Entry<String, JsonElement> entry : props.getAsJsonObject().entrySet()) {
+                    JsonElement value = entry.getValue();
+                    if (value.isJsonNull()) {
+                        properties.put(entry.getKey(), null);
+                    } else if (value.isJsonArray()) {
+                        JsonArray array = value.getAsJsonArray();
+                        String[] values = new String[array.size()];
+                        for (int i = 0; i < values.length; i++) {
+                            if (!array.get(i).isJsonPrimitive()) {
+                                return ManifestRow.invalid(line, path.getAsString(), "Unsupported value in " + entry.getKey());
+                            }
+                            values[i] = array.get(i).getAsString();
+                        }
+                        properties.put(entry.getKey(), values);
+                    } else if (value.isJsonPrimitive()) {
+                        try {
+                            properties.put(entry.getKey(), toValue(value.getAsJsonPrimitive()));
+                        } catch (NumberFormatException e) {
+                            return ManifestRow.invalid(line, path.getAsString(), "Number out of range for " + entry.getKey());
+                        }
+                    } else {
+                        return ManifestRow.invalid(line, path.getAsString(), "Unsupported value for " + entry.getKey());
+                    }
+                }
+            }
+            return new ManifestRow(line, path.getAsString().trim(), properties);
+        }
+
+        /**
+         * @throws NumberFormatException if an integer doesn't fit in a long.
+         */
+        private static Object toValue(JsonPrimitive value) {
+            if (value.isBoolean()) {
+                return value.getAsBoolean();
+            }
+            if (value.isNumber()) {
+                String number = value.getAsString();
+                return number.matches("-?\\d+") ? (Object) Long.parseLong(number) : (Object) value.getAsDouble();
+            }
+            return value.getAsString();
+        }
+    }
+
+}
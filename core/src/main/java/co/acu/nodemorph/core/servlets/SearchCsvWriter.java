@@ -0,0 +1,78 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.servlets;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Writes search hits as CSV rows as they arrive: the path followed by one column per requested property.
+ * Every value is quoted, and multi-value properties are joined with commas inside a single cell.
+ */
+class SearchCsvWriter implements Consumer<Map<String, Object>> {
+
+    /**
+     * How many rows are written between checks on whether the client is still reading.
+     */
+    private static final int CHECK_INTERVAL = 1000;
+
+    private final PrintWriter writer;
+    private final List<String> columns;
+    private long rows;
+
+    SearchCsvWriter(PrintWriter writer, List<String> columns) {
+        this.writer = writer;
+        this.columns = columns;
+        StringBuilder header = new StringBuilder(quote("Path"));
+        columns.forEach(column -> header.append(',').append(quote(column)));
+        writer.print(header.append('\n'));
+    }
+
+    @Override
+    public void accept(Map<String, Object> hit) {
+        StringBuilder row = new StringBuilder(quote(hit.get("jcr:path")));
+        for (String column : columns) {
+            row.append(',').append(quote(hit.containsKey(column) ? hit.get(column) : "-"));
+        }
+        writer.print(row.append('\n'));
+
+        // PrintWriter swallows IOExceptions, so stop the export explicitly once the client has gone away
+        if (++rows % CHECK_INTERVAL == 0 && writer.checkError()) {
+            throw new UncheckedIOException(new IOException("Client stopped reading the export after " + rows + " rows"));
+        }
+    }
+
+    long getRows() {
+        return rows;
+    }
+
+    private static String quote(Object value) {
+        String text;
+        if (value instanceof Collection) {
+            text = ((Collection<?>) value).stream().map(String::valueOf).collect(Collectors.joining(","));
+        } else {
+            text = String.valueOf(value);
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.servlets;
+
+import co.acu.nodemorph.core.dto.SearchRequest;
+import co.acu.nodemorph.core.services.SearchService;
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.SlingHttpServletResponse;
+import org.apache.sling.api.servlets.SlingSafeMethodsServlet;
+import org.apache.sling.servlets.annotations.SlingServletPaths;
+import org.apache.sling.settings.SlingSettingsService;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.Servlet;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@Component(service = Servlet.class)
+@SlingServletPaths("/bin/nodemorph/export")
+public class SearchExportServlet extends SlingSafeMethodsServlet {
+
+    private static final long serialVersionUID = -6061528925874095731L;
+
+    private static final Logger LOG = LoggerFactory.getLogger(SearchExportServlet.class);
+
+    @Reference
+    private SearchService searchService;
+
+    @Reference
+    private SlingSettingsService slingSettings;
+
+    @Override
+    protected void doGet(SlingHttpServletRequest request, SlingHttpServletResponse response) throws IOException {
+        if (!slingSettings.getRunModes().contains("author")) {
+            LOG.warn("SearchExportServlet accessed on non-author instance");
+            response.sendError(SlingHttpServletResponse.SC_FORBIDDEN, "Not allowed");
+            return;
+        }
+
+        Map<String, String> params = request.getParameterMap().entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue()[0]));
+        SearchRequest searchRequest;
+        try {
+            searchRequest = new SearchRequest(params, request.getResourceResolver());
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Rejected export request: {}", e.getMessage());
+            response.sendError(SlingHttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        }
+        if (searchRequest.columns.isEmpty()) {
+            searchRequest.columns = Arrays.asList("jcr:title", "jcr:primaryType");
+        }
+        // Only the columns end up in the file, there is no point reading every property
+        searchRequest.verbose = false;
+
+        response.setContentType("text/csv");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Content-Disposition", "attachment; filename=\"nodemorph-search-results.csv\"");
+        SearchCsvWriter csv = new SearchCsvWriter(response.getWriter(), searchRequest.columns);
+        try {
+            searchService.export(searchRequest, csv);
+        } catch (IllegalArgumentException e) {
+            // Thrown while building the query, before the header row has left the response buffer
+            LOG.warn("Rejected export request: {}", e.getMessage());
+            if (!response.isCommitted()) {
+                response.reset();
+                response.sendError(SlingHttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            }
+            return;
+        } catch (UncheckedIOException e) {
+            LOG.warn("Export of {} aborted: {}", searchRequest.path, e.getCause().getMessage());
+            return;
+        }
+        response.getWriter().flush();
+        LOG.info("Exported {} rows below {}", csv.getRows(), searchRequest.path);
+    }
+
+}
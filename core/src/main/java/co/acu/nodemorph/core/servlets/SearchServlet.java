@@ -0,0 +1,86 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.servlets;
+
+import co.acu.nodemorph.core.dto.SearchRequest;
+import co.acu.nodemorph.core.services.QueryPlanService;
+import co.acu.nodemorph.core.services.SearchService;
+import co.acu.nodemorph.core.utils.NodeMorphUtils;
+import com.google.gson.Gson;
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.SlingHttpServletResponse;
+import org.apache.sling.api.servlets.SlingSafeMethodsServlet;
+import org.apache.sling.servlets.annotations.SlingServletPaths;
+import org.apache.sling.settings.SlingSettingsService;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.Servlet;
+import java.io.IOException;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@Component(service = Servlet.class)
+@SlingServletPaths("/bin/nodemorph/search")
+public class SearchServlet extends SlingSafeMethodsServlet {
+
+    private static final long serialVersionUID = 4820617317853542367L;
+
+    private static final Logger LOG = LoggerFactory.getLogger(SearchServlet.class);
+
+    @Reference
+    private SearchService searchService;
+
+    @Reference
+    private QueryPlanService queryPlanService;
+
+    @Reference
+    private SlingSettingsService slingSettings;
+
+    @Override
+    protected void doGet(SlingHttpServletRequest request, SlingHttpServletResponse response) throws IOException {
+        if (!slingSettings.getRunModes().contains("author")) {
+            LOG.warn("SearchServlet accessed on non-author instance");
+            response.sendError(SlingHttpServletResponse.SC_FORBIDDEN, "Not allowed");
+            return;
+        }
+
+        Map<String, String> params = request.getParameterMap().entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue()[0]));
+        Object result;
+        try {
+            SearchRequest searchRequest = new SearchRequest(params, request.getResourceResolver());
+            if (Boolean.parseBoolean(params.get("explain"))) {
+                result = queryPlanService.explain(NodeMorphUtils.getQueryParamMap(searchRequest), searchRequest.resolver);
+            } else if (searchRequest.isFacetSearch()) {
+                result = searchService.facets(searchRequest);
+            } else {
+                result = searchService.search(searchRequest);
+            }
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Rejected search request: {}", e.getMessage());
+            response.sendError(SlingHttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        }
+
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.getWriter().write(new Gson().toJson(result));
+    }
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.servlets;
+
+import co.acu.nodemorph.core.dto.UpdateJobStatus;
+import co.acu.nodemorph.core.services.UpdateJobService;
+import com.google.gson.Gson;
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.SlingHttpServletResponse;
+import org.apache.sling.api.servlets.SlingSafeMethodsServlet;
+import org.apache.sling.servlets.annotations.SlingServletPaths;
+import org.apache.sling.settings.SlingSettingsService;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.Servlet;
+import java.io.IOException;
+
+@Component(service = Servlet.class)
+@SlingServletPaths("/bin/nodemorph/job")
+public class UpdateJobServlet extends SlingSafeMethodsServlet {
+
+    private static final long serialVersionUID = -2317530969244013958L;
+
+    private static final Logger LOG = LoggerFactory.getLogger(UpdateJobServlet.class);
+
+    @Reference
+    private UpdateJobService updateJobService;
+
+    @Reference
+    private SlingSettingsService slingSettings;
+
+    @Override
+    protected void doGet(SlingHttpServletRequest request, SlingHttpServletResponse response) throws IOException {
+        if (!slingSettings.getRunModes().contains("author")) {
+            LOG.warn("UpdateJobServlet accessed on non-author instance");
+            response.sendError(SlingHttpServletResponse.SC_FORBIDDEN, "Not allowed");
+            return;
+        }
+
+        String jobId = request.getParameter("id");
+        UpdateJobStatus status = updateJobService.getStatus(jobId, request.getResourceResolver().getUserID());
+        if (status == null) {
+            response.sendError(SlingHttpServletResponse.SC_NOT_FOUND, "No such job");
+            return;
+        }
+
+        response.setHeader("Cache-Control", "no-cache");
+        response.setContentType("application/json");
+        response.getWriter().write(new Gson().toJson(status));
+    }
+
+}
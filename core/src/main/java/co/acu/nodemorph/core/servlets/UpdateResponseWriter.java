@@ -0,0 +1,135 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.servlets;
+
+import co.acu.nodemorph.core.dto.CommitBatch;
+import co.acu.nodemorph.core.dto.UpdateResult;
+import co.acu.nodemorph.core.dto.UpdateSummary;
+import co.acu.nodemorph.core.services.UpdateListener;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes an update response as the run produces it. Actions are streamed into the {@code actions} array one
+ * at a time, so the full result list never has to be held in memory. The committed batches and the
+ * {@code total} of successful actions are only known at the end and are written after the array, along with
+ * the id of the undo {@code journal} if the run wrote one, and the run's {@code checkpoint} id if it is resumable.
+ * <p>
+ * In summary mode, actions are handed to an {@link UpdateSummaryCollector} instead, and only its sample is
+ * written to the {@code actions} array, followed by the counts in {@code summary}.
+ */
+class UpdateResponseWriter implements UpdateListener, Closeable {
+
+    private final Gson gson = new Gson();
+    private final JsonWriter json;
+    private final List<CommitBatch> batches = new ArrayList<>();
+    private final UpdateSummaryCollector summary;
+    private String journalId;
+    private String runId;
+    private int total;
+
+    UpdateResponseWriter(Writer writer) throws IOException {
+        this(writer, null);
+    }
+
+    UpdateResponseWriter(Writer writer, UpdateSummaryCollector summary) throws IOException {
+        this.json = new JsonWriter(writer);
+        this.summary = summary;
+        json.beginObject();
+        json.name("actions");
+        json.beginArray();
+    }
+
+    @Override
+    public void onResult(UpdateResult result) {
+        if (!"Failed".equals(result.status)) {
+            total++;
+        }
+        if (summary != null) {
+            summary.onResult(result);
+        } else {
+            gson.toJson(result, UpdateResult.class, json);
+        }
+    }
+
+    @Override
+    public void onNodeProcessed(String path) {
+        if (summary != null) {
+            summary.onNodeProcessed(path);
+        }
+    }
+
+    @Override
+    public void onNodeModified(String path) {
+        if (summary != null) {
+            summary.onNodeModified(path);
+        }
+    }
+
+    @Override
+    public void onBatch(CommitBatch batch) {
+        batches.add(batch);
+    }
+
+    @Override
+    public void onJournal(String journalId) {
+        this.journalId = journalId;
+    }
+
+    @Override
+    public void onCheckpoint(String runId) {
+        this.runId = runId;
+    }
+
+    /**
+     * Closes the actions array and writes the trailing summary.
+     */
+    @Override
+    public void close() throws IOException {
+        if (summary != null) {
+            for (UpdateResult result : summary.getSample()) {
+                gson.toJson(result, UpdateResult.class, json);
+            }
+            json.endArray();
+            json.name("summary");
+            gson.toJson(summary.getSummary(), UpdateSummary.class, json);
+        } else {
+            json.endArray();
+        }
+        json.name("batches");
+        json.beginArray();
+        for (CommitBatch batch : batches) {
+            gson.toJson(batch, CommitBatch.class, json);
+        }
+        json.endArray();
+        json.name("total").value(total);
+        if (journalId != null) {
+            json.name("journal").value(journalId);
+        }
+        if (runId != null) {
+            json.name("checkpoint").value(runId);
+        }
+        json.endObject();
+        json.close();
+    }
+
+}
@@ -15,12 +15,18 @@
  */
 package co.acu.nodemorph.core.servlets;
 
+import co.acu.nodemorph.core.dto.QueryPlan;
 import co.acu.nodemorph.core.dto.UpdateRequest;
 import co.acu.nodemorph.core.dto.UpdateResult;
+import co.acu.nodemorph.core.dto.UpdateJobStatus;
+import co.acu.nodemorph.core.services.UpdateJobService;
 import co.acu.nodemorph.core.services.UpdateService;
 import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
 import org.apache.sling.api.SlingHttpServletRequest;
 import org.apache.sling.api.SlingHttpServletResponse;
+import org.apache.sling.api.request.RequestParameter;
+import org.apache.sling.api.resource.LoginException;
 import org.apache.sling.api.servlets.SlingAllMethodsServlet;
 import org.apache.sling.servlets.annotations.SlingServletPaths;
 import org.apache.sling.settings.SlingSettingsService;
@@ -31,9 +37,16 @@ import org.slf4j.LoggerFactory;
 
 import javax.servlet.Servlet;
 import java.io.IOException;
-import java.util.List;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
 
 @Component(service = Servlet.class)
 @SlingServletPaths("/bin/nodemorph/update")
@@ -43,9 +56,14 @@ public class UpdateServlet extends SlingAllMethodsServlet {
 
     private static final Logger LOG = LoggerFactory.getLogger(UpdateServlet.class);
 
+    private static final String MANIFEST_PARAM = "manifest";
+
     @Reference
     private UpdateService updateService;
 
+    @Reference
+    private UpdateJobService updateJobService;
+
     @Reference
     private SlingSettingsService slingSettings;
 
@@ -57,34 +75,127 @@ public class UpdateServlet extends SlingAllMethodsServlet {
             return;
         }
 
+        RequestParameter manifest = request.getRequestParameter(MANIFEST_PARAM);
+        if (manifest != null && !manifest.isFormField()) {
+            processManifest(request, manifest, response);
+            return;
+        }
+
         LOG.info("UpdateServlet hit with params: {}", request.getParameterMap());
         Map<String, String> params = request.getParameterMap().entrySet().stream()
                 .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue()[0]));
-        UpdateRequest updateRequest = new UpdateRequest(params, request.getResourceResolver());
+        UpdateRequest updateRequest;
+        try {
+            updateRequest = new UpdateRequest(params, request.getResourceResolver());
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Rejected update request: {}", e.getMessage());
+            response.sendError(SlingHttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        }
+
+        if (Boolean.parseBoolean(params.get("explain"))) {
+            QueryPlan plan;
+            try {
+                plan = updateService.explain(updateRequest);
+            } catch (IllegalArgumentException e) {
+                response.sendError(SlingHttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+                return;
+            }
+            response.setContentType("application/json");
+            response.getWriter().write(new Gson().toJson(plan));
+            return;
+        }
 
-        List<UpdateResult> results;
+        if (Boolean.parseBoolean(params.get("async"))) {
+            submitJob(updateRequest, response);
+            return;
+        }
+
+        writeResults(request, response, updateRequest, writer -> updateService.processUpdate(updateRequest, writer));
+    }
+
+    /**
+     * Applies an uploaded CSV or NDJSON manifest. The manifest is read row by row as it is applied, and only
+     * the plain form fields are read as request parameters, so the upload is never loaded whole.
+     */
+    private void processManifest(SlingHttpServletRequest request, RequestParameter manifest, SlingHttpServletResponse response) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        request.getRequestParameterMap().forEach((name, values) -> {
+            if (values.length > 0 && values[0].isFormField()) {
+                params.put(name, values[0].getString());
+            }
+        });
+        LOG.info("UpdateServlet hit with manifest {} and params: {}", manifest.getFileName(), params);
+
+        UpdateRequest updateRequest;
+        ManifestReader rows;
         try {
-            results = updateService.processUpdate(updateRequest);
-        } catch (Exception e) {
-            LOG.error("Update failed unexpectedly", e);
-            results = List.of(new UpdateResult(updateRequest.path, "Error: Unexpected failure", "Failed", e.getMessage()));
+            updateRequest = new UpdateRequest(params, request.getResourceResolver());
+            rows = ManifestReader.open(new InputStreamReader(manifest.getInputStream(), StandardCharsets.UTF_8),
+                    ManifestReader.detectFormat(params.get("manifestFormat"), manifest.getFileName()));
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Rejected manifest: {}", e.getMessage());
+            response.sendError(SlingHttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        }
+
+        try (ManifestReader manifestRows = rows) {
+            writeResults(request, response, updateRequest, writer -> updateService.processManifest(updateRequest, manifestRows, writer));
         }
+    }
 
-        int successfulTotal = (int) results.stream()
-                .filter(r -> !"Failed".equals(r.status))
-                .count();
+    /**
+     * Streams the results of an update to the client as they are produced, gzipped if the client accepts it.
+     */
+    private void writeResults(SlingHttpServletRequest request, SlingHttpServletResponse response, UpdateRequest updateRequest,
+                              Consumer<UpdateResponseWriter> update) throws IOException {
         response.setContentType("application/json");
-        response.getWriter().write(new Gson().toJson(new UpdateResponse(successfulTotal, results)));
+        response.setCharacterEncoding("UTF-8");
+        response.addHeader("Vary", "Accept-Encoding");
+        Writer out;
+        if (acceptsGzip(request)) {
+            response.setHeader("Content-Encoding", "gzip");
+            out = new OutputStreamWriter(new GZIPOutputStream(response.getOutputStream()), StandardCharsets.UTF_8);
+        } else {
+            out = response.getWriter();
+        }
+
+        UpdateSummaryCollector summary = updateRequest.summary
+                ? new UpdateSummaryCollector(updateRequest.path, updateRequest.sampleSize) : null;
+        try (UpdateResponseWriter writer = new UpdateResponseWriter(out, summary)) {
+            try {
+                update.accept(writer);
+            } catch (JsonIOException e) {
+                throw new IOException("Client stopped reading the update response", e);
+            } catch (Exception e) {
+                LOG.error("Update failed unexpectedly", e);
+                writer.onResult(new UpdateResult(updateRequest.path, "Error: Unexpected failure", "Failed", e.getMessage()));
+            }
+        }
     }
 
-    private static class UpdateResponse {
-        int total;
-        List<UpdateResult> actions;
+    private static boolean acceptsGzip(SlingHttpServletRequest request) {
+        String acceptEncoding = request.getHeader("Accept-Encoding");
+        return acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+    }
 
-        UpdateResponse(int total, List<UpdateResult> actions) {
-            this.total = total;
-            this.actions = actions;
+    private void submitJob(UpdateRequest updateRequest, SlingHttpServletResponse response) throws IOException {
+        UpdateJobStatus status;
+        try {
+            status = updateJobService.submit(updateRequest);
+        } catch (RejectedExecutionException e) {
+            LOG.warn("Update job rejected, queue is full");
+            response.sendError(SlingHttpServletResponse.SC_SERVICE_UNAVAILABLE, "Too many update jobs queued, try again later");
+            return;
+        } catch (LoginException e) {
+            LOG.error("Could not open a session for the update job", e);
+            response.sendError(SlingHttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Could not start update job");
+            return;
         }
+
+        response.setStatus(SlingHttpServletResponse.SC_ACCEPTED);
+        response.setContentType("application/json");
+        response.getWriter().write(new Gson().toJson(status));
     }
 
 }
@@ -0,0 +1,142 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.servlets;
+
+import co.acu.nodemorph.core.dto.UpdateResult;
+import co.acu.nodemorph.core.dto.UpdateSummary;
+import co.acu.nodemorph.core.services.UpdateListener;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Condenses an update run into counts per status, action type and first-level subtree of the request path,
+ * plus a uniform random sample of the results. Memory use is bounded by the sample size and the number of
+ * distinct keys counted, not by the size of the run, so a dry run over a large tree can be previewed
+ * without listing every planned change.
+ */
+class UpdateSummaryCollector implements UpdateListener {
+
+    static final int DEFAULT_SAMPLE_SIZE = 20;
+    static final int MAX_SAMPLE_SIZE = 1000;
+    static final int MAX_KEYS = 500;
+    static final String OTHER = "(other)";
+
+    private final String basePath;
+    private final UpdateResult[] sample;
+    private final Random random;
+    private final UpdateSummary summary = new UpdateSummary();
+
+    UpdateSummaryCollector(String basePath, Integer sampleSize) {
+        this(basePath, sampleSize, new Random());
+    }
+
+    UpdateSummaryCollector(String basePath, Integer sampleSize, Random random) {
+        this.basePath = basePath;
+        this.sample = new UpdateResult[Math.min(sampleSize != null ? sampleSize : DEFAULT_SAMPLE_SIZE, MAX_SAMPLE_SIZE)];
+        this.random = random;
+    }
+
+    @Override
+    public void onResult(UpdateResult result) {
+        long seen = summary.results++;
+        increment(summary.statuses, String.valueOf(result.status));
+        increment(summary.actions, actionType(result.action));
+
+        // Reservoir sampling: every result ends up in the sample with the same probability
+        if (seen < sample.length) {
+            sample[(int) seen] = result;
+        } else {
+            long slot = (long) (random.nextDouble() * (seen + 1));
+            if (slot < sample.length) {
+                sample[(int) slot] = result;
+            }
+        }
+    }
+
+    @Override
+    public void onNodeProcessed(String path) {
+        summary.nodesProcessed++;
+    }
+
+    @Override
+    public void onNodeModified(String path) {
+        summary.nodesModified++;
+        increment(summary.subtrees, subtree(path));
+    }
+
+    /**
+     * @return the sampled results, ordered by path.
+     */
+    List<UpdateResult> getSample() {
+        UpdateResult[] sampled = Arrays.copyOf(sample, (int) Math.min(summary.results, sample.length));
+        Arrays.sort(sampled, Comparator.comparing(result -> result.path, Comparator.nullsFirst(Comparator.naturalOrder())));
+        return Arrays.asList(sampled);
+    }
+
+    UpdateSummary getSummary() {
+        return summary;
+    }
+
+    /**
+     * Reduces an action to its type by dropping the values it reports, e.g. {@code Set category=Adventure}
+     * to {@code Set category} and {@code Error: Source node not found: /content/a} to
+     * {@code Error: Source node not found}.
+     */
+    static String actionType(String action) {
+        if (action == null) {
+            return OTHER;
+        }
+        int start = action.startsWith("Error: ") ? "Error: ".length() : 0;
+        int end = action.length();
+        for (String delimiter : new String[]{": ", "=", " → "}) {
+            int index = action.indexOf(delimiter, start);
+            if (index >= 0) {
+                end = Math.min(end, index);
+            }
+        }
+        return action.substring(0, end);
+    }
+
+    /**
+     * @return the first-level subtree of the base path that contains the path, or the base path itself.
+     */
+    String subtree(String path) {
+        if (path == null || basePath == null) {
+            return OTHER;
+        }
+        if (path.equals(basePath)) {
+            return basePath;
+        }
+        String prefix = basePath.endsWith("/") ? basePath : basePath + "/";
+        if (!path.startsWith(prefix)) {
+            return OTHER;
+        }
+        int end = path.indexOf('/', prefix.length());
+        return end < 0 ? path : path.substring(0, end);
+    }
+
+    private static void increment(Map<String, Long> counts, String key) {
+        if (!counts.containsKey(key) && counts.size() >= MAX_KEYS) {
+            key = OTHER;
+        }
+        counts.merge(key, 1L, Long::sum);
+    }
+
+}
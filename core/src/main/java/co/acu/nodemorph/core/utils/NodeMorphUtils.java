@@ -16,11 +16,15 @@
 package co.acu.nodemorph.core.utils;
 
 import co.acu.nodemorph.core.dto.NodeProperty;
+import co.acu.nodemorph.core.dto.SearchRequest;
 import co.acu.nodemorph.core.dto.UpdateRequest;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -36,13 +40,17 @@ public class NodeMorphUtils {
      * @param request the {@link UpdateRequest} containing operation details, path, and filtering criteria
      *                (e.g., pageOnly, matchType, propName, ifProp, jcrNodeName).
      * @return a map of query parameters compatible with {@link PredicateGroup#create}, including keys
-     *         like "path", "type", "property", "nodename", and "p.limit".
+     *         like "path", "type", "property", "nodename", and "p.guessTotal". No result limit is set;
+     *         hits are ordered by path so that callers can page through them instead of fetching them all at once.
      * @throws IllegalArgumentException if the replace operation’s propName contains slashes or spaces,
      *         which are invalid in JCR property names.
      */
     public static Map<String, String> getQueryParamMap(UpdateRequest request) {
         Map<String, String> queryParams = new HashMap<>();
         queryParams.put("path", request.path);
+        if (request.includePathNode) {
+            queryParams.put("path.self", "true");
+        }
         if (request.pageOnly) {
             queryParams.put("type", "cq:Page");
         } else if ("property".equals(request.matchType) && request.ifProp != null && !request.ifProp.isEmpty()) {
@@ -57,12 +65,12 @@ public class NodeMorphUtils {
                 throw new IllegalArgumentException("Invalid property name: " + request.propName + " (slashes or spaces not allowed)");
             }
             queryParams.put("type", request.pageOnly ? "cq:Page" : "nt:base");
-            queryParams.put("property", request.propName);
-            if (request.isPartialMatch) {
-                queryParams.put("property.value", "%" + request.find + "%");
-                queryParams.put("property.operation", "like");
+            if (request.isRegex) {
+                // A regular expression can't be expressed in the query, so fetch every node having the property
+                queryParams.put("property", request.propName);
+                queryParams.put("property.operation", "exists");
             } else {
-                queryParams.put("property.value", request.find);
+                putPropertyMatch(queryParams, request.propName, request.find, request.isPartialMatch);
             }
         } else if ("copy".equals(request.operation)) {
             queryParams.put("type", "nt:base");
@@ -71,10 +79,118 @@ public class NodeMorphUtils {
                 queryParams.put("nodename", request.source);
             }
         }
-        queryParams.put("p.limit", "-1");
+        // Hits are paged through, and checkpoints remember the last processed path: both need a stable order
+        queryParams.put("orderby", "path");
+        queryParams.put("p.guessTotal", "true");
         return queryParams;
     }
 
+    /**
+     * Compiles an update request into a JCR-SQL2 statement selecting the same nodes as the QueryBuilder
+     * query of {@link #getQueryParamMap(UpdateRequest)}, for running directly through the JCR
+     * {@code QueryManager}. An index tag on the request is passed on as {@code OPTION(INDEX TAG ...)}, and a
+     * resumed request only selects the paths after the one it resumes after.
+     *
+     * @param request the {@link UpdateRequest} to compile.
+     * @return the JCR-SQL2 statement.
+     * @throws IllegalArgumentException for the same invalid input as {@link #getQueryParamMap(UpdateRequest)}.
+     */
+    public static String getSql2Statement(UpdateRequest request) {
+        Map<String, String> queryParams = getQueryParamMap(request);
+        String path = escapeSql2Name(queryParams.get("path"));
+
+        StringBuilder sql = new StringBuilder("SELECT * FROM [")
+                .append(escapeSql2Name(queryParams.getOrDefault("type", "nt:base")))
+                .append("] AS n WHERE ");
+        if ("true".equals(queryParams.get("path.self"))) {
+            sql.append("(ISSAMENODE(n, [").append(path).append("]) OR ISDESCENDANTNODE(n, [").append(path).append("]))");
+        } else {
+            sql.append("ISDESCENDANTNODE(n, [").append(path).append("])");
+        }
+
+        String property = queryParams.get("property");
+        if (property != null) {
+            String value = queryParams.get("property.value");
+            sql.append(" AND n.[").append(escapeSql2Name(property)).append(']');
+            if (value == null) {
+                sql.append(" IS NOT NULL");
+            } else {
+                sql.append("like".equals(queryParams.get("property.operation")) ? " LIKE " : " = ").append(sql2Literal(value));
+            }
+        }
+        String nodeName = queryParams.get("nodename");
+        if (nodeName != null) {
+            if (nodeName.contains("*") || nodeName.contains("?")) {
+                String pattern = nodeName.replace("%", "\\%").replace("_", "\\_").replace('*', '%').replace('?', '_');
+                sql.append(" AND NAME(n) LIKE ").append(sql2Literal(pattern));
+            } else {
+                sql.append(" AND NAME(n) = ").append(sql2Literal(nodeName));
+            }
+        }
+        if (request.resumeAfter != null) {
+            sql.append(" AND n.[jcr:path] > ").append(sql2Literal(request.resumeAfter));
+        }
+        if (request.checkpoint) {
+            // A JCR-SQL2 result is read in one go, so only a checkpointed run needs it sorted
+            sql.append(" ORDER BY [jcr:path]");
+        }
+        if (request.indexTag != null && !request.indexTag.isEmpty()) {
+            sql.append(" OPTION(INDEX TAG [").append(request.indexTag).append("])");
+        }
+        return sql.toString();
+    }
+
+    private static String escapeSql2Name(String name) {
+        return name.replace("]", "]]");
+    }
+
+    private static String sql2Literal(String value) {
+        return "'" + value.replace("'", "''") + "'";
+    }
+
+    /**
+     * Constructs the query parameters for a Search tab request. Matches either node names or the value of a
+     * single property below the search path, optionally restricted to pages. Hits are ordered by path so a
+     * cursor can resume after the last hit of a page even if content changed in between.
+     *
+     * @param request the {@link SearchRequest} holding the path, the query and how to match it.
+     * @return a map of query parameters compatible with {@link PredicateGroup#create}.
+     * @throws IllegalArgumentException if the path or query is missing, or the property name contains
+     *         slashes or spaces.
+     */
+    public static Map<String, String> getQueryParamMap(SearchRequest request) {
+        if (request.path == null || request.path.trim().isEmpty() || request.query == null || request.query.trim().isEmpty()) {
+            throw new IllegalArgumentException("A search path and query are required");
+        }
+
+        Map<String, String> queryParams = new HashMap<>();
+        queryParams.put("path", request.path);
+        if (request.pageOnly) {
+            queryParams.put("type", "cq:Page");
+        }
+        if (request.isPropertyMatch()) {
+            if (request.propName.contains("/") || request.propName.contains(" ")) {
+                throw new IllegalArgumentException("Invalid property name: " + request.propName + " (slashes or spaces not allowed)");
+            }
+            putPropertyMatch(queryParams, request.propName, request.query.trim(), request.substringMatch);
+        } else {
+            queryParams.put("nodename", request.query.trim());
+        }
+        queryParams.put("orderby", "path");
+        queryParams.put("p.guessTotal", "true");
+        return queryParams;
+    }
+
+    private static void putPropertyMatch(Map<String, String> queryParams, String propName, String value, boolean partial) {
+        queryParams.put("property", propName);
+        if (partial) {
+            queryParams.put("property.value", "%" + value + "%");
+            queryParams.put("property.operation", "like");
+        } else {
+            queryParams.put("property.value", value);
+        }
+    }
+
     /**
      * Resolves a relative or absolute path to an absolute JCR path based on a given base path.
      * Handles three cases: relative paths appended to the base, absolute paths returned as-is,
@@ -140,22 +256,94 @@ public class NodeMorphUtils {
 
             String[] parts = line.split("=", 2);
             if (parts.length == 2) {
-                String key = parts[0].trim();
-                String value = parts[1].trim();
-                if (value.startsWith("[") && value.endsWith("]")) {
-                    String[] values = value.substring(1, value.length() - 1).split(",");
-                    for (int i = 0; i < values.length; i++) {
-                        values[i] = values[i].trim();
-                    }
-                    props.put(key, values);
-                } else {
-                    props.put(key, value);
-                }
+                props.put(parts[0].trim(), parseValue(parts[1]));
             }
         }
         return props;
     }
 
+    /**
+     * Parses a single property value in the format of {@link #parseProperties(String)}: a value enclosed in
+     * square brackets is split by commas into a string array, anything else is kept as a single string.
+     * Whitespace is trimmed from the value and from every element.
+     *
+     * @param value the raw value.
+     * @return a string, or a string array for multi-value properties.
+     */
+    public static Object parseValue(String value) {
+        value = value.trim();
+        if (value.startsWith("[") && value.endsWith("]")) {
+            String[] values = value.substring(1, value.length() - 1).split(",");
+            for (int i = 0; i < values.length; i++) {
+                values[i] = values[i].trim();
+            }
+            return values;
+        }
+        return value;
+    }
+
+    /**
+     * Parses an optional, non-negative integer request parameter such as a batch size.
+     *
+     * @param name the parameter name, used in the error message.
+     * @param value the raw parameter value. May be null or blank.
+     * @return the parsed value, or null if the parameter was not supplied.
+     * @throws IllegalArgumentException if the value is not a non-negative integer.
+     */
+    public static Integer parseInteger(String name, String value) {
+        if (value == null || value.trim().isEmpty()) return null;
+
+        try {
+            int parsed = Integer.parseInt(value.trim());
+            if (parsed < 0) {
+                throw new IllegalArgumentException("Invalid " + name + ": " + value + " (must not be negative)");
+            }
+            return parsed;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + value, e);
+        }
+    }
+
+    /**
+     * Counts the descendants of a resource depth-first, stopping as soon as the given maximum is reached.
+     * Used as a cheap, bounded size estimate of a subtree.
+     *
+     * @param root the root of the subtree; not counted itself. May be null, in which case 0 is returned.
+     * @param max the number of nodes after which counting stops.
+     * @return the number of descendants, or {@code max} if there are at least that many.
+     */
+    public static long countNodes(Resource root, long max) {
+        if (root == null) {
+            return 0;
+        }
+        long count = 0;
+        Deque<Iterator<Resource>> stack = new ArrayDeque<>();
+        stack.push(root.listChildren());
+        while (!stack.isEmpty() && count < max) {
+            Iterator<Resource> children = stack.peek();
+            if (!children.hasNext()) {
+                stack.pop();
+                continue;
+            }
+            count++;
+            stack.push(children.next().listChildren());
+        }
+        return count;
+    }
+
+    /**
+     * Compares two paths in the order of a query sorted by path ({@code orderby=path} in QueryBuilder,
+     * {@code ORDER BY [jcr:path]} in JCR-SQL2). Oak sorts paths as plain strings, character by character,
+     * not depth-first: {@code /a-b} sorts before {@code /a/b}, which sorts before {@code /a0}. Used to find
+     * where a path-ordered result continues after a known path.
+     *
+     * @return a negative number, zero or a positive number as the first path sorts before, equal to or after
+     *         the second.
+     */
+    public static int comparePaths(String path, String other) {
+        return path.compareTo(other);
+    }
+
     public static List<NodeProperty> parseToNodeProperties(String raw) {
         return parseProperties(raw).entrySet().stream()
                 .map(e -> new NodeProperty(e.getKey(), e.getValue()))
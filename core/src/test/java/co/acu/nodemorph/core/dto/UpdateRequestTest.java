@@ -21,6 +21,7 @@ import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -259,4 +260,78 @@ class UpdateRequestTest {
         assertTrue(requestEmpty.getNewNodeProperties().isEmpty());
     }
 
+    @Test
+    void testBatchSize() {
+        Map<String, String> params = new HashMap<>();
+        params.put("path", "/content/sample");
+        params.put("batchSize", " 250 ");
+
+        assertEquals(250, new UpdateRequest(params, mockResolver).batchSize);
+
+        params.remove("batchSize");
+        assertNull(new UpdateRequest(params, mockResolver).batchSize, "Missing batchSize should fall back to the service default");
+
+        params.put("batchSize", "lots");
+        assertThrows(IllegalArgumentException.class, () -> new UpdateRequest(params, mockResolver));
+
+        params.put("batchSize", "-1");
+        assertThrows(IllegalArgumentException.class, () -> new UpdateRequest(params, mockResolver));
+    }
+
+    @Test
+    void testQueryEngine() {
+        Map<String, String> params = new HashMap<>();
+        params.put("path", "/content/site");
+        assertEquals("querybuilder", new UpdateRequest(params, mockResolver).queryEngine, "QueryBuilder should be used by default");
+
+        params.put("queryEngine", "auto");
+        assertEquals("auto", new UpdateRequest(params, mockResolver).queryEngine);
+
+        params.put("queryEngine", "SQL2");
+        params.put("indexTag", "nodemorph");
+        UpdateRequest request = new UpdateRequest(params, mockResolver);
+        assertEquals("sql2", request.queryEngine);
+        assertEquals("nodemorph", request.indexTag);
+
+        params.put("queryEngine", "traversal");
+        assertEquals("traversal", new UpdateRequest(params, mockResolver).queryEngine);
+
+        params.put("queryEngine", "gremlin");
+        assertThrows(IllegalArgumentException.class, () -> new UpdateRequest(params, mockResolver));
+
+        params.put("queryEngine", "sql2");
+        params.put("indexTag", "x]) OR (1=1");
+        assertThrows(IllegalArgumentException.class, () -> new UpdateRequest(params, mockResolver));
+    }
+
+    @Test
+    void testPipelineStages() {
+        Map<String, String> params = new HashMap<>();
+        params.put("path", "/content/site");
+        params.put("operation", "pipeline");
+        params.put("pageOnly", "true");
+        params.put("pipeline", "[{\"operation\":\"delete\",\"propNames\":\"a\"},{\"operation\":\"add\",\"properties\":\"b=c\",\"pageOnly\":false}]");
+
+        UpdateRequest request = new UpdateRequest(params, mockResolver);
+
+        assertEquals(2, request.stages.size());
+        assertEquals("delete", request.stages.get(0).operation);
+        assertEquals("a", request.stages.get(0).propNames);
+        assertTrue(request.stages.get(0).pageOnly, "Stages should inherit the pipeline's parameters");
+        assertEquals("b=c", request.stages.get(1).properties);
+        assertFalse(request.stages.get(1).pageOnly);
+        assertTrue(new UpdateRequest(Collections.singletonMap("operation", "add"), mockResolver).stages.isEmpty());
+
+        params.put("pipeline", "[]");
+        assertThrows(IllegalArgumentException.class, () -> new UpdateRequest(params, mockResolver));
+        params.put("pipeline", "[{\"operation\":");
+        assertThrows(IllegalArgumentException.class, () -> new UpdateRequest(params, mockResolver));
+        params.put("pipeline", "[{\"operation\":\"pipeline\"}]");
+        assertThrows(IllegalArgumentException.class, () -> new UpdateRequest(params, mockResolver));
+        params.put("pipeline", "[{\"operation\":\"copy\",\"copyType\":\"node\",\"source\":\"a/b\",\"target\":\"c\"}]");
+        assertThrows(IllegalArgumentException.class, () -> new UpdateRequest(params, mockResolver));
+        params.remove("pipeline");
+        assertThrows(IllegalArgumentException.class, () -> new UpdateRequest(params, mockResolver));
+    }
+
 }
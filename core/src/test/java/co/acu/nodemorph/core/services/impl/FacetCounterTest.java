@@ -0,0 +1,82 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.services.impl;
+
+import co.acu.nodemorph.core.dto.PropertyFacet;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FacetCounterTest {
+
+    @Test
+    void testMostFrequentValuesComeFirst() {
+        FacetCounter counter = new FacetCounter("sling:resourceType", 100);
+        for (String value : new String[] {"text", "image", "text", "title", "image", "text", "button"}) {
+            counter.add(value);
+        }
+        counter.add(null);
+
+        PropertyFacet facet = counter.toFacet(3);
+
+        Map<String, Long> expected = new LinkedHashMap<>();
+        expected.put("text", 3L);
+        expected.put("image", 2L);
+        expected.put("button", 1L);
+        assertEquals(expected, facet.values, "Values with the same count should be ordered by name");
+        assertEquals(1, facet.other);
+        assertEquals(1, facet.missing);
+        assertEquals(4, facet.distinct);
+        assertTrue(facet.complete);
+    }
+
+    @Test
+    void testMultiValuesCountEveryElementOnce() {
+        FacetCounter counter = new FacetCounter("cq:tags", 100);
+        counter.add(Arrays.asList("we-retail:summer", "we-retail:hiking", "we-retail:summer"));
+        counter.add(Collections.singletonList("we-retail:summer"));
+        counter.add(Collections.emptyList());
+        counter.add(42L);
+
+        PropertyFacet facet = counter.toFacet(10);
+
+        assertEquals(Long.valueOf(2), facet.values.get("we-retail:summer"));
+        assertEquals(Long.valueOf(1), facet.values.get("we-retail:hiking"));
+        assertEquals(Long.valueOf(1), facet.values.get("42"));
+        assertEquals(1, facet.missing, "An empty multi-value property should count as missing");
+    }
+
+    @Test
+    void testUntrackedValuesCountAsOther() {
+        FacetCounter counter = new FacetCounter("jcr:uuid", 2);
+        for (String value : new String[] {"a", "b", "c", "a", "d"}) {
+            counter.add(value);
+        }
+
+        PropertyFacet facet = counter.toFacet(1);
+
+        assertEquals(Collections.singletonMap("a", 2L), facet.values);
+        assertEquals(3, facet.other);
+        assertEquals(2, facet.distinct);
+        assertFalse(facet.complete);
+    }
+
+}
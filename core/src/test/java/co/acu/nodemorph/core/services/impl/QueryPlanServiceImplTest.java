@@ -0,0 +1,201 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.services.impl;
+
+import co.acu.nodemorph.core.dto.QueryPlan;
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import javax.jcr.Session;
+import javax.jcr.Value;
+import javax.jcr.Workspace;
+import javax.jcr.query.Query;
+import javax.jcr.query.QueryManager;
+import javax.jcr.query.QueryResult;
+import javax.jcr.query.Row;
+import javax.jcr.query.RowIterator;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(AemContextExtension.class)
+class QueryPlanServiceImplTest {
+
+    private static final String BASE_PATH = "/content/we-retail/language-masters/en/experience";
+
+    private final AemContext context = new AemContext();
+
+    @BeforeEach
+    void setUp() {
+        context.load().json("/co/acu/nodemorph/core/services/impl/UpdateServiceImplTest.json", BASE_PATH);
+    }
+
+    private ResourceResolver resolverExplaining(String plan) throws Exception {
+        Value value = mock(Value.class);
+        when(value.getString()).thenReturn(plan);
+        Row row = mock(Row.class);
+        when(row.getValue("plan")).thenReturn(value);
+        RowIterator rows = mock(RowIterator.class);
+        when(rows.hasNext()).thenReturn(true);
+        when(rows.nextRow()).thenReturn(row);
+        QueryResult result = mock(QueryResult.class);
+        when(result.getRows()).thenReturn(rows);
+        Query query = mock(Query.class);
+        when(query.execute()).thenReturn(result);
+        QueryManager queryManager = mock(QueryManager.class);
+        when(queryManager.createQuery(anyString(), anyString())).thenReturn(query);
+        Workspace workspace = mock(Workspace.class);
+        when(workspace.getQueryManager()).thenReturn(queryManager);
+        Session session = mock(Session.class);
+        when(session.getWorkspace()).thenReturn(workspace);
+
+        ResourceResolver resolver = mock(ResourceResolver.class);
+        when(resolver.adaptTo(Session.class)).thenReturn(session);
+        Resource root = context.resourceResolver().getResource(BASE_PATH);
+        when(resolver.getResource(BASE_PATH)).thenReturn(root);
+        return resolver;
+    }
+
+    private static Map<String, String> queryParams() {
+        Map<String, String> params = new HashMap<>();
+        params.put("path", BASE_PATH);
+        params.put("type", "nt:base");
+        params.put("property", "sling:resourceType");
+        params.put("property.value", "weretail/components/structure/page");
+        return params;
+    }
+
+    @Test
+    void testToXPath() {
+        Map<String, String> params = queryParams();
+        assertEquals("/jcr:root" + BASE_PATH + "//element(*, nt:base)[@sling:resourceType = 'weretail/components/structure/page']",
+                QueryPlanServiceImpl.toXPath(params));
+
+        params.remove("property");
+        params.remove("property.value");
+        params.put("type", "cq:Page");
+        params.put("nodename", "hero_*");
+        params.put("orderby", "path");
+        assertEquals("/jcr:root" + BASE_PATH + "//element(*, cq:Page)[jcr:like(fn:name(), 'hero\\_%')] order by @jcr:path",
+                QueryPlanServiceImpl.toXPath(params));
+    }
+
+    @Test
+    void testToXPath_RootAndSelf() {
+        Map<String, String> params = new HashMap<>();
+        params.put("path", "/");
+        params.put("type", "cq:Page");
+        assertEquals("/jcr:root//element(*, cq:Page)", QueryPlanServiceImpl.toXPath(params));
+
+        params.put("path.self", "true");
+        assertEquals("/jcr:root//element(*, cq:Page)", QueryPlanServiceImpl.toXPath(params), "The root can't match itself");
+
+        params.put("path", "/content/site");
+        params.put("nodename", "en");
+        assertEquals("(/jcr:root/content/element(site, cq:Page)[fn:name() = 'en'] | /jcr:root/content/site//element(*, cq:Page)[fn:name() = 'en'])",
+                QueryPlanServiceImpl.toXPath(params));
+    }
+
+    @Test
+    void testParseIndex() {
+        assertEquals("lucene:cqPageLucene", QueryPlanServiceImpl.parseIndex(
+                "[cq:Page] as [a] /* lucene:cqPageLucene(/oak:index/cqPageLucene) +:ancestors:/content */"));
+        assertEquals("slingResourceType", QueryPlanServiceImpl.parseIndex(
+                "[nt:base] as [a] /* property slingResourceType = weretail/components/structure/page */"));
+        assertNull(QueryPlanServiceImpl.parseIndex("no plan"));
+    }
+
+    @Test
+    void testIndexedQueryIsAllowed() throws Exception {
+        QueryPlanServiceImpl service = context.registerInjectActivateService(new QueryPlanServiceImpl(), "traversalLimit", 1L);
+        QueryPlan plan = service.explain(queryParams(),
+                resolverExplaining("[nt:base] as [a] /* lucene:slingResourceType(/oak:index/slingResourceType) */"));
+
+        assertFalse(plan.traversal);
+        assertTrue(plan.allowed);
+        assertEquals("lucene:slingResourceType", plan.index);
+        assertEquals(-1, plan.estimatedNodes, "Indexed queries should not count nodes");
+    }
+
+    @Test
+    void testLargeTraversalIsRefused() throws Exception {
+        QueryPlanServiceImpl service = context.registerInjectActivateService(new QueryPlanServiceImpl(), "traversalLimit", 5L);
+        QueryPlan plan = service.explain(queryParams(),
+                resolverExplaining("[nt:base] as [a] /* traverse \"" + BASE_PATH + "//*\" where ... */"));
+
+        assertTrue(plan.traversal);
+        assertFalse(plan.allowed);
+        assertEquals(6, plan.estimatedNodes, "Counting should stop one node past the limit");
+        assertNotNull(plan.message);
+    }
+
+    @Test
+    void testSmallTraversalIsAllowed() throws Exception {
+        QueryPlanServiceImpl service = context.registerInjectActivateService(new QueryPlanServiceImpl(), "traversalLimit", 10000L);
+        QueryPlan plan = service.explain(queryParams(),
+                resolverExplaining("[nt:base] as [a] /* traverse \"" + BASE_PATH + "//*\" where ... */"));
+
+        assertTrue(plan.traversal);
+        assertTrue(plan.allowed);
+        assertTrue(plan.estimatedNodes > 6 && plan.estimatedNodes < 10000);
+    }
+
+    @Test
+    void testLargeTreeWalkIsRefused() {
+        QueryPlanServiceImpl service = context.registerInjectActivateService(new QueryPlanServiceImpl(), "traversalLimit", 5L);
+        QueryPlan plan = service.explainTreeWalk(BASE_PATH, context.resourceResolver());
+
+        assertTrue(plan.traversal);
+        assertFalse(plan.allowed);
+        assertEquals(6, plan.estimatedNodes, "Counting should stop one node past the limit");
+        assertNotNull(plan.message);
+    }
+
+    @Test
+    void testUnexplainedQueryOnLargeTreeIsRefused() throws Exception {
+        QueryPlanServiceImpl service = context.registerInjectActivateService(new QueryPlanServiceImpl(), "traversalLimit", 5L);
+        ResourceResolver resolver = resolverExplaining("unused");
+        Session session = resolver.adaptTo(Session.class);
+        when(session.getWorkspace().getQueryManager().createQuery(anyString(), anyString()))
+                .thenThrow(new javax.jcr.query.InvalidQueryException("unparseable"));
+
+        QueryPlan plan = service.explain(queryParams(), resolver);
+
+        assertNull(plan.plan);
+        assertFalse(plan.allowed, "A query that can't be explained should not be let through");
+        assertEquals(6, plan.estimatedNodes);
+        assertTrue(plan.message.contains("unparseable"));
+    }
+
+    @Test
+    void testWithoutSessionQueryIsAllowed() {
+        QueryPlanServiceImpl service = context.registerInjectActivateService(new QueryPlanServiceImpl());
+        QueryPlan plan = service.explain(queryParams(), mock(ResourceResolver.class));
+
+        assertTrue(plan.allowed);
+        assertNull(plan.plan);
+        assertNotNull(plan.message);
+    }
+
+}
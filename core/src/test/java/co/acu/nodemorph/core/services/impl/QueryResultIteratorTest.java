@@ -0,0 +1,167 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.services.impl;
+
+import com.day.cq.search.PredicateGroup;
+import com.day.cq.search.Query;
+import com.day.cq.search.QueryBuilder;
+import com.day.cq.search.result.SearchResult;
+import org.apache.sling.api.resource.Resource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class QueryResultIteratorTest {
+
+    private final List<Resource> matching = new ArrayList<>();
+    private final List<String> expected = new ArrayList<>();
+    private final List<String> pageStarts = new ArrayList<>();
+    private QueryResultIterator.Pages pages;
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < 100; i++) {
+            matching.add(resource(String.format("/content/n%03d", i)));
+        }
+        expected.addAll(paths(matching));
+
+        // Answers like Oak would for a path condition: the first hits sorting after the given path
+        pages = (after, hits) -> {
+            pageStarts.add(after);
+            return matching.stream()
+                    .sorted(Comparator.comparing(Resource::getPath))
+                    .filter(resource -> after == null || resource.getPath().compareTo(after) > 0)
+                    .limit(hits)
+                    .collect(Collectors.toList())
+                    .iterator();
+        };
+    }
+
+    private static Resource resource(String path) {
+        Resource resource = mock(Resource.class);
+        when(resource.getPath()).thenReturn(path);
+        return resource;
+    }
+
+    private static List<String> paths(Collection<Resource> resources) {
+        return resources.stream().map(Resource::getPath).collect(Collectors.toList());
+    }
+
+    @Test
+    void testPagesThroughAllHits() {
+        QueryResultIterator iterator = new QueryResultIterator(pages, 30, null);
+
+        List<String> paths = new ArrayList<>();
+        iterator.forEachRemaining(r -> paths.add(r.getPath()));
+
+        assertEquals(expected, paths);
+        // Every page continues after the last path of the previous one, and the short fourth page is the last
+        assertEquals(Arrays.asList(null, "/content/n029", "/content/n059", "/content/n089"), pageStarts);
+    }
+
+    @Test
+    void testNodesThatStopMatchingAreNotSkipped() {
+        QueryResultIterator iterator = new QueryResultIterator(pages, 30, null);
+
+        List<String> paths = new ArrayList<>();
+        while (iterator.hasNext()) {
+            Resource node = iterator.next();
+            paths.add(node.getPath());
+            // Simulate a replace on the queried property: the node no longer matches once modified
+            matching.remove(node);
+        }
+
+        assertEquals(expected, paths);
+    }
+
+    @Test
+    void testNodesAddedBeforeTheLastPathAreNotReturned() {
+        QueryResultIterator iterator = new QueryResultIterator(pages, 30, null);
+
+        List<String> paths = new ArrayList<>();
+        while (iterator.hasNext()) {
+            Resource node = iterator.next();
+            paths.add(node.getPath());
+            // Someone else creates a node sorting before every hit so far, shifting the rest of the result
+            matching.add(0, resource("/content/a" + paths.size()));
+        }
+
+        assertEquals(expected, paths);
+    }
+
+    @Test
+    void testResumeContinuesAfterTheSavedPath() {
+        QueryResultIterator iterator = new QueryResultIterator(pages, 30, "/content/n049");
+
+        List<String> paths = new ArrayList<>();
+        iterator.forEachRemaining(r -> paths.add(r.getPath()));
+
+        assertEquals(expected.subList(50, 100), paths);
+        assertEquals("/content/n049", pageStarts.get(0));
+    }
+
+    @Test
+    void testHitsAtOrBeforeTheLastPathAreDropped() {
+        // A source ignoring the path condition returns the whole result every time
+        QueryResultIterator iterator = new QueryResultIterator((after, hits) -> new ArrayList<>(matching).iterator(),
+                30, "/content/n049");
+
+        List<String> paths = new ArrayList<>();
+        iterator.forEachRemaining(r -> paths.add(r.getPath()));
+
+        assertEquals(expected.subList(50, 100), paths);
+    }
+
+    @Test
+    void testQueryBuilderPagesAddAPathCondition() {
+        QueryBuilder queryBuilder = mock(QueryBuilder.class);
+        Query query = mock(Query.class);
+        SearchResult result = mock(SearchResult.class);
+        when(queryBuilder.createQuery(any(PredicateGroup.class), any())).thenReturn(query);
+        when(query.getResult()).thenReturn(result);
+        when(result.getResources()).thenReturn(matching.subList(0, 2).iterator(), matching.subList(2, 3).iterator());
+        Map<String, String> queryParams = new HashMap<>();
+        queryParams.put("path", "/content");
+        queryParams.put("orderby", "path");
+
+        QueryResultIterator iterator = new QueryResultIterator(queryBuilder, queryParams, null, 2);
+        List<String> paths = new ArrayList<>();
+        iterator.forEachRemaining(r -> paths.add(r.getPath()));
+
+        assertEquals(expected.subList(0, 3), paths);
+        ArgumentCaptor<PredicateGroup> groups = ArgumentCaptor.forClass(PredicateGroup.class);
+        verify(queryBuilder, times(2)).createQuery(groups.capture(), any());
+        assertNull(groups.getAllValues().get(0).getByName("rangeproperty"));
+        assertEquals("/content/n001", groups.getAllValues().get(1).getByName("rangeproperty").get("lowerBound"));
+        verify(query, times(2)).setHitsPerPage(2);
+        verify(query, never()).setStart(anyLong());
+    }
+
+    @Test
+    void testNoQueryUntilFirstHitIsRequested() {
+        new QueryResultIterator(pages, 30, null);
+
+        assertTrue(pageStarts.isEmpty());
+    }
+
+}
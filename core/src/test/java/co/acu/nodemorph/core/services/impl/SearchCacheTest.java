@@ -0,0 +1,159 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.services.impl;
+
+import co.acu.nodemorph.core.dto.SearchPage;
+import co.acu.nodemorph.core.dto.SearchRequest;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchCacheTest {
+
+    private static final String PATH = "/content/we-retail/en/experience";
+
+    private final AtomicLong now = new AtomicLong();
+
+    private SearchCache newCache(long maxBytes) {
+        return new SearchCache(maxBytes, 1000, new String[] {"/content"}, now::get);
+    }
+
+    private static SearchRequest newRequest(String path, String query) {
+        Map<String, String> params = new HashMap<>();
+        params.put("path", path);
+        params.put("query", query);
+        params.put("columns", "jcr:title");
+        return new SearchRequest(params, null);
+    }
+
+    private static SearchCache.Key key(SearchCache cache, String user, String path, String query) {
+        Map<String, String> queryParams = new HashMap<>();
+        queryParams.put("path", path);
+        queryParams.put("nodename", query);
+        return cache.key(user, newRequest(path, query), queryParams, 100);
+    }
+
+    private static SearchPage page(String... paths) {
+        List<Map<String, Object>> hits = new ArrayList<>();
+        for (String path : paths) {
+            Map<String, Object> hit = new LinkedHashMap<>();
+            hit.put(SearchServiceImpl.PN_PATH, path);
+            hit.put("jcr:title", "Title of " + path);
+            hits.add(hit);
+        }
+        return new SearchPage(hits, paths.length, false, null);
+    }
+
+    private static void put(SearchCache cache, SearchCache.Key key, SearchPage page) {
+        cache.end(cache.begin(key), page);
+    }
+
+    @Test
+    void testKeysAreScopedPerUserAndQuery() {
+        SearchCache cache = newCache(1 << 20);
+        SearchCache.Key key = key(cache, "editor", PATH, "hero");
+        SearchPage page = page(PATH + "/hero");
+        put(cache, key, page);
+
+        assertSame(page, cache.get(key(cache, "editor", PATH, "hero")));
+        assertNull(cache.get(key(cache, "author", PATH, "hero")), "Other users should not see the page");
+        assertNull(cache.get(key(cache, "editor", PATH, "teaser")));
+    }
+
+    @Test
+    void testSearchesOutsideWatchedPathsAreNotCached() {
+        SearchCache cache = newCache(1 << 20);
+
+        assertNull(key(cache, "editor", "/conf/we-retail", "hero"));
+        assertNull(key(cache, null, PATH, "hero"));
+        assertNull(key(newCache(0), "editor", PATH, "hero"), "A cache without memory is disabled");
+    }
+
+    @Test
+    void testChangesInvalidateOnlyAffectedSearches() {
+        SearchCache cache = newCache(1 << 20);
+        SearchCache.Key experience = key(cache, "editor", PATH, "hero");
+        SearchCache.Key skitouring = key(cache, "editor", PATH + "/skitouring", "hero");
+        SearchCache.Key other = key(cache, "editor", "/content/other", "hero");
+        put(cache, experience, page(PATH + "/skitouring/hero"));
+        put(cache, skitouring, page(PATH + "/skitouring/hero"));
+        put(cache, other, page("/content/other/hero"));
+
+        cache.invalidate(Collections.singletonList(PATH + "/arctic-surfing/jcr:content"));
+        assertNull(cache.get(experience), "A change below the search path should invalidate it");
+        assertNotNull(cache.get(skitouring));
+        assertNotNull(cache.get(other));
+
+        cache.invalidate(Collections.singletonList(PATH));
+        assertNull(cache.get(skitouring), "Removing an ancestor of the search path should invalidate it");
+        assertNotNull(cache.get(other));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void testChangesDuringSearchKeepItsPageOut() {
+        SearchCache cache = newCache(1 << 20);
+        SearchCache.Key key = key(cache, "editor", PATH, "hero");
+
+        SearchCache.Lookup lookup = cache.begin(key);
+        cache.invalidate(Collections.singletonList(PATH + "/skitouring/jcr:content/hero"));
+        cache.end(lookup, page(PATH + "/skitouring/hero"));
+
+        assertNull(cache.get(key));
+        put(cache, key, page(PATH + "/skitouring/hero"));
+        assertNotNull(cache.get(key));
+    }
+
+    @Test
+    void testLeastRecentlyUsedPagesAreEvictedBySize() {
+        SearchPage page = page(PATH + "/a", PATH + "/b");
+        long size = SearchCache.estimateSize(page);
+        SearchCache cache = newCache(size * 2);
+        SearchCache.Key first = key(cache, "editor", PATH, "first");
+        SearchCache.Key second = key(cache, "editor", PATH, "second");
+        SearchCache.Key third = key(cache, "editor", PATH, "third");
+
+        put(cache, first, page);
+        put(cache, second, page);
+        cache.get(first);
+        put(cache, third, page);
+
+        assertNotNull(cache.get(first));
+        assertNull(cache.get(second), "The least recently used page should be evicted");
+        assertNotNull(cache.get(third));
+        assertEquals(size * 2, cache.getBytes());
+
+        put(cache, key(cache, "editor", PATH, "large"), page(PATH + "/a", PATH + "/b", PATH + "/c", PATH + "/d", PATH + "/e"));
+        assertEquals(2, cache.size(), "Pages larger than the cache should not be cached");
+    }
+
+    @Test
+    void testEntriesExpire() {
+        SearchCache cache = newCache(1 << 20);
+        SearchCache.Key key = key(cache, "editor", PATH, "hero");
+        put(cache, key, page(PATH + "/hero"));
+
+        now.set(1000);
+        assertNotNull(cache.get(key));
+        now.set(1001);
+        assertNull(cache.get(key));
+        assertEquals(0, cache.getBytes());
+    }
+
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.services.impl;
+
+import co.acu.nodemorph.core.dto.PropertyFacet;
+import co.acu.nodemorph.core.dto.SearchFacets;
+import co.acu.nodemorph.core.dto.SearchPage;
+import co.acu.nodemorph.core.dto.SearchRequest;
+import com.day.cq.search.PredicateGroup;
+import com.day.cq.search.Query;
+import com.day.cq.search.QueryBuilder;
+import com.day.cq.search.result.SearchResult;
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(AemContextExtension.class)
+class SearchServiceImplTest {
+
+    private static final String BASE_PATH = "/content/we-retail/language-masters/en/experience";
+
+    private final AemContext context = new AemContext();
+    private final List<Resource> matching = new ArrayList<>();
+    private final AtomicLong start = new AtomicLong();
+    private final AtomicLong hitsPerPage = new AtomicLong();
+    private SearchServiceImpl searchService;
+
+    @BeforeEach
+    void setUp() {
+        QueryBuilder queryBuilder = mock(QueryBuilder.class);
+        context.registerService(QueryBuilder.class, queryBuilder);
+        searchService = context.registerInjectActivateService(new SearchServiceImpl(), "defaultPageSize", 2);
+        context.load().json("/co/acu/nodemorph/core/services/impl/UpdateServiceImplTest.json", BASE_PATH);
+
+        Resource experience = context.resourceResolver().getResource(BASE_PATH);
+        for (Resource child : experience.getChildren()) {
+            if ("cq:Page".equals(child.getValueMap().get("jcr:primaryType", String.class))) {
+                matching.add(child);
+            }
+        }
+        matching.sort(Comparator.comparing(Resource::getPath));
+
+        Query query = mock(Query.class);
+        when(queryBuilder.createQuery(any(PredicateGroup.class), any())).thenReturn(query);
+        doAnswer(invocation -> {
+            start.set(invocation.getArgument(0));
+            return null;
+        }).when(query).setStart(anyLong());
+        doAnswer(invocation -> {
+            hitsPerPage.set(invocation.getArgument(0));
+            return null;
+        }).when(query).setHitsPerPage(anyLong());
+        when(query.getResult()).thenAnswer(invocation -> {
+            int from = (int) Math.min(start.get(), matching.size());
+            int to = (int) Math.min(from + hitsPerPage.get(), matching.size());
+            SearchResult result = mock(SearchResult.class);
+            when(result.getResources()).thenReturn(new ArrayList<>(matching.subList(from, to)).iterator());
+            when(result.getTotalMatches()).thenReturn((long) to);
+            when(result.hasMore()).thenReturn(to < matching.size());
+            return result;
+        });
+    }
+
+    private SearchRequest newRequest(String cursor) {
+        return newRequest(cursor, context.resourceResolver());
+    }
+
+    private SearchRequest newRequest(String cursor, ResourceResolver resolver) {
+        Map<String, String> params = new HashMap<>();
+        params.put("path", BASE_PATH);
+        params.put("query", "*");
+        params.put("pageOnly", "true");
+        params.put("columns", "jcr:primaryType, jcr:createdBy");
+        if (cursor != null) {
+            params.put("cursor", cursor);
+        }
+        return new SearchRequest(params, resolver);
+    }
+
+    private void setCategory(int index, String category) {
+        Resource page = matching.get(index);
+        page.adaptTo(ModifiableValueMap.class).put("category", category);
+        matching.set(index, context.resourceResolver().getResource(page.getPath()));
+    }
+
+    private static ResourceResolver userResolver(String user) {
+        ResourceResolver resolver = mock(ResourceResolver.class);
+        when(resolver.getUserID()).thenReturn(user);
+        return resolver;
+    }
+
+    private static List<String> paths(SearchPage page) {
+        return page.hits.stream().map(hit -> (String) hit.get(SearchServiceImpl.PN_PATH)).collect(Collectors.toList());
+    }
+
+    @Test
+    void testReturnsOnlyRequestedColumns() {
+        SearchPage page = searchService.search(newRequest(null));
+
+        assertEquals(2, page.hits.size());
+        Map<String, Object> hit = page.hits.get(0);
+        assertEquals(new HashSet<>(Arrays.asList("jcr:path", "jcr:primaryType", "jcr:createdBy")), hit.keySet());
+        assertEquals("cq:Page", hit.get("jcr:primaryType"));
+        assertTrue(page.more);
+        assertNotNull(page.cursor);
+    }
+
+    @Test
+    void testCursorPagesThroughAllHits() {
+        List<String> seen = new ArrayList<>();
+        String cursor = null;
+        do {
+            SearchPage page = searchService.search(newRequest(cursor));
+            seen.addAll(paths(page));
+            cursor = page.cursor;
+        } while (cursor != null);
+
+        assertEquals(matching.stream().map(Resource::getPath).collect(Collectors.toList()), seen);
+    }
+
+    @Test
+    void testCursorSurvivesRemovedHits() {
+        SearchPage first = searchService.search(newRequest(null));
+        List<String> expected = matching.stream().skip(2).map(Resource::getPath).collect(Collectors.toList());
+
+        // Both hits of the first page stop matching before the next page is requested
+        matching.remove(0);
+        matching.remove(0);
+
+        List<String> seen = new ArrayList<>();
+        String cursor = first.cursor;
+        while (cursor != null) {
+            SearchPage page = searchService.search(newRequest(cursor));
+            seen.addAll(paths(page));
+            cursor = page.cursor;
+        }
+        assertEquals(expected, seen);
+    }
+
+    @Test
+    void testRepeatedSearchIsCachedUntilContentChanges() {
+        ResourceResolver editor = userResolver("editor");
+        SearchPage first = searchService.search(newRequest(null, editor));
+
+        assertSame(first, searchService.search(newRequest(null, editor)));
+        assertNotSame(first, searchService.search(newRequest(null, userResolver("author"))), "Caches should be per user");
+
+        searchService.onChange(Collections.singletonList(
+                new ResourceChange(ResourceChange.ChangeType.CHANGED, "/content/we-retail/language-masters/de", false)));
+        assertSame(first, searchService.search(newRequest(null, editor)), "Changes elsewhere should not invalidate");
+
+        Resource removed = matching.remove(0);
+        searchService.onChange(Collections.singletonList(
+                new ResourceChange(ResourceChange.ChangeType.REMOVED, removed.getPath(), false)));
+        SearchPage changed = searchService.search(newRequest(null, editor));
+        assertNotSame(first, changed);
+        assertEquals(matching.get(0).getPath(), changed.hits.get(0).get(SearchServiceImpl.PN_PATH));
+    }
+
+    @Test
+    void testExportStreamsEveryHit() {
+        List<String> exported = new ArrayList<>();
+        searchService.export(newRequest(null), hit -> {
+            assertTrue(hit.containsKey("jcr:createdBy"));
+            exported.add((String) hit.get(SearchServiceImpl.PN_PATH));
+        });
+
+        assertEquals(matching.stream().map(Resource::getPath).collect(Collectors.toList()), exported);
+    }
+
+    @Test
+    void testFacetsCountValuesOfEveryHit() {
+        setCategory(0, "Adventure");
+        setCategory(1, "Adventure");
+        setCategory(2, "Water");
+        SearchRequest request = newRequest(null);
+        request.facets = Arrays.asList("category", "jcr:primaryType");
+        request.facetLimit = 1;
+
+        SearchFacets result = searchService.facets(request);
+
+        assertEquals(matching.size(), result.total, "Every hit should be counted, not only the first page");
+        PropertyFacet category = result.facets.get(0);
+        assertEquals("category", category.property);
+        assertEquals(Collections.singletonMap("Adventure", 2L), category.values);
+        assertEquals(1, category.other);
+        assertEquals(matching.size() - 3, category.missing);
+        assertEquals(2, category.distinct);
+        assertEquals(Collections.singletonMap("cq:Page", (long) matching.size()), result.facets.get(1).values);
+    }
+
+    @Test
+    void testFacetsRequireAProperty() {
+        assertThrows(IllegalArgumentException.class, () -> searchService.facets(newRequest(null)));
+    }
+
+    @Test
+    void testInvalidCursorIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> searchService.search(newRequest("not-a-cursor")));
+    }
+
+    @Test
+    void testCursorRoundTrip() {
+        String cursor = SearchServiceImpl.encodeCursor(42, "/content/a:b");
+        assertArrayEquals(new String[]{"42", "/content/a:b"}, SearchServiceImpl.decodeCursor(cursor));
+    }
+
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.services.impl;
+
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.wrappers.ValueMapDecorator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(AemContextExtension.class)
+class TreeWalkIteratorTest {
+
+    private static final String BASE_PATH = "/content/we-retail/language-masters/en/experience";
+
+    private final AemContext context = new AemContext();
+    private Resource root;
+
+    @BeforeEach
+    void setUp() {
+        context.load().json("/co/acu/nodemorph/core/services/impl/UpdateServiceImplTest.json", BASE_PATH);
+        root = context.resourceResolver().getResource(BASE_PATH);
+    }
+
+    @Test
+    void testPagesOnly() {
+        Map<String, String> params = new HashMap<>();
+        params.put("type", "cq:Page");
+
+        List<String> paths = walk(params);
+
+        assertEquals(6, paths.size());
+        assertTrue(paths.contains(BASE_PATH + "/skitouring"));
+        assertFalse(paths.contains(BASE_PATH), "The root should only be included for path.self");
+
+        params.put("path.self", "true");
+        assertEquals(BASE_PATH, walk(params).get(0), "The root should come first");
+        assertEquals(7, walk(params).size());
+    }
+
+    @Test
+    void testPropertyMatch() {
+        Map<String, String> params = new HashMap<>();
+        params.put("type", "nt:base");
+        params.put("property", "test");
+        params.put("property.value", "added");
+        assertEquals(7, walk(params).size());
+
+        params.put("property.value", "%dd%");
+        params.put("property.operation", "like");
+        assertEquals(7, walk(params).size());
+
+        params.put("property.value", "%missing%");
+        assertTrue(walk(params).isEmpty());
+
+        params.remove("property.value");
+        params.remove("property.operation");
+        assertEquals(7, walk(params).size(), "Without a value, the property only has to exist");
+    }
+
+    @Test
+    void testNodeNameMatch() {
+        Map<String, String> params = new HashMap<>();
+        params.put("type", "nt:base");
+        params.put("nodename", "hero_image");
+        assertEquals(7, walk(params).size());
+
+        params.put("nodename", "image_*");
+        List<String> paths = walk(params);
+        assertEquals(4, paths.size());
+        assertTrue(paths.stream().allMatch(path -> path.substring(path.lastIndexOf('/') + 1).startsWith("image_")));
+    }
+
+    @Test
+    void testResumeAfter() {
+        Map<String, String> params = new HashMap<>();
+        params.put("type", "nt:base");
+        params.put("path.self", "true");
+        List<String> all = walk(params);
+
+        for (int i : new int[]{0, 1, all.size() / 2, all.size() - 2, all.size() - 1}) {
+            List<String> resumed = new ArrayList<>();
+            new TreeWalkIterator(root, params, all.get(i)).forEachRemaining(node -> resumed.add(node.getPath()));
+            assertEquals(all.subList(i + 1, all.size()), resumed, "Resuming after " + all.get(i));
+        }
+
+        List<String> restarted = new ArrayList<>();
+        new TreeWalkIterator(root, params, BASE_PATH + "/missing").forEachRemaining(node -> restarted.add(node.getPath()));
+        assertEquals(all.subList(1, all.size()), restarted, "A vanished node should restart the walk below its parent");
+    }
+
+    @Test
+    void testResumeAfterPrunedNode() {
+        Map<String, String> params = new HashMap<>();
+        params.put("type", "cq:Page");
+        List<String> pages = walk(params);
+
+        List<String> resumed = new ArrayList<>();
+        new TreeWalkIterator(root, params, pages.get(1) + "/jcr:content/root").forEachRemaining(node -> resumed.add(node.getPath()));
+        assertEquals(pages.subList(2, pages.size()), resumed);
+    }
+
+    @Test
+    void testNodeTypeInheritance() throws RepositoryException {
+        Node folderNode = mock(Node.class);
+        when(folderNode.isNodeType("nt:hierarchyNode")).thenReturn(true);
+        Resource folder = mock(Resource.class);
+        when(folder.getName()).thenReturn("folder");
+        when(folder.adaptTo(Node.class)).thenReturn(folderNode);
+        when(folder.getValueMap()).thenReturn(new ValueMapDecorator(Collections.singletonMap("jcr:primaryType", "sling:Folder")));
+        when(folder.listChildren()).thenReturn(Collections.emptyIterator());
+        Resource parent = mock(Resource.class);
+        when(parent.getPath()).thenReturn("/content");
+        when(parent.listChildren()).thenReturn(Collections.singletonList(folder).iterator());
+
+        Map<String, String> params = new HashMap<>();
+        params.put("type", "nt:hierarchyNode");
+
+        Iterator<Resource> walk = new TreeWalkIterator(parent, params);
+        assertTrue(walk.hasNext(), "A node should match the supertypes of its type, as in a query");
+        assertSame(folder, walk.next());
+        assertFalse(walk.hasNext());
+    }
+
+    @Test
+    void testMissingRoot() {
+        assertFalse(new TreeWalkIterator(null, new HashMap<>()).hasNext());
+    }
+
+    @Test
+    void testPatterns() {
+        assertTrue(TreeWalkIterator.likePattern("%a_c%").matcher("xxabcxx").matches());
+        assertFalse(TreeWalkIterator.likePattern("%a_c%").matcher("xxacxx").matches());
+        assertTrue(TreeWalkIterator.likePattern("100\\%").matcher("100%").matches());
+        assertFalse(TreeWalkIterator.likePattern("100\\%").matcher("1000").matches());
+        assertTrue(TreeWalkIterator.wildcardPattern("image_*").matcher("image_123").matches());
+        assertTrue(TreeWalkIterator.wildcardPattern("a.?").matcher("a.b").matches());
+        assertFalse(TreeWalkIterator.wildcardPattern("a.?").matcher("axb").matches());
+    }
+
+    private List<String> walk(Map<String, String> params) {
+        List<String> paths = new ArrayList<>();
+        Iterator<Resource> nodes = new TreeWalkIterator(root, params);
+        nodes.forEachRemaining(node -> paths.add(node.getPath()));
+        return paths;
+    }
+
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.services.impl;
+
+import co.acu.nodemorph.core.dto.CommitBatch;
+import co.acu.nodemorph.core.dto.UpdateJobStatus;
+import co.acu.nodemorph.core.dto.UpdateRequest;
+import co.acu.nodemorph.core.dto.UpdateResult;
+import co.acu.nodemorph.core.services.UpdateListener;
+import co.acu.nodemorph.core.services.UpdateService;
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(AemContextExtension.class)
+class UpdateJobServiceImplTest {
+
+    private final AemContext context = new AemContext();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private UpdateService updateService;
+    private UpdateJobServiceImpl jobService;
+
+    @BeforeEach
+    void setUp() {
+        updateService = mock(UpdateService.class);
+        context.registerService(UpdateService.class, updateService);
+        jobService = context.registerInjectActivateService(new UpdateJobServiceImpl(),
+                "maxConcurrentJobs", 1, "maxQueuedJobs", 1);
+    }
+
+    private UpdateRequest newRequest(String userId) throws Exception {
+        ResourceResolver resolver = mock(ResourceResolver.class);
+        ResourceResolver jobResolver = mock(ResourceResolver.class);
+        when(resolver.getUserID()).thenReturn(userId);
+        when(resolver.clone(null)).thenReturn(jobResolver);
+
+        Map<String, String> params = new HashMap<>();
+        params.put("path", "/content");
+        params.put("operation", "delete");
+        params.put("propNames", "obsolete");
+        return new UpdateRequest(params, resolver);
+    }
+
+    private UpdateJobStatus awaitFinished(String jobId, String userId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+        UpdateJobStatus status = jobService.getStatus(jobId, userId);
+        while (status.finished == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            status = jobService.getStatus(jobId, userId);
+        }
+        return status;
+    }
+
+    @Test
+    void testJobReportsProgressAndCompletes() throws Exception {
+        doAnswer(invocation -> {
+            UpdateListener listener = invocation.getArgument(1);
+            listener.onNodeProcessed("/content/a");
+            listener.onNodeModified("/content/a");
+            listener.onResult(new UpdateResult("/content/a", "Deleted obsolete", "Done"));
+            listener.onNodeProcessed("/content/b");
+            release.await(5, TimeUnit.SECONDS);
+            listener.onBatch(new CommitBatch(1, 1, "/content/a", "Committed"));
+            return null;
+        }).when(updateService).processUpdate(any(UpdateRequest.class), any(UpdateListener.class));
+
+        UpdateRequest request = newRequest("admin");
+        ResourceResolver jobResolver = request.resolver.clone(null);
+        UpdateJobStatus submitted = jobService.submit(request);
+        assertNotNull(submitted.id);
+        assertSame(jobResolver, request.resolver, "Job should run on its own resolver");
+
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+        UpdateJobStatus running = jobService.getStatus(submitted.id, "admin");
+        while (running.processed < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            running = jobService.getStatus(submitted.id, "admin");
+        }
+        assertEquals("Running", running.state);
+        assertEquals(2, running.processed);
+        assertEquals(1, running.modified);
+        assertEquals("/content/b", running.currentPath);
+
+        release.countDown();
+        UpdateJobStatus done = awaitFinished(submitted.id, "admin");
+        assertEquals("Done", done.state);
+        assertEquals(1, done.batches);
+        assertEquals(0, done.failed);
+        verify(jobResolver).close();
+    }
+
+    @Test
+    void testFailedResultMarksJobFailed() throws Exception {
+        doAnswer(invocation -> {
+            UpdateListener listener = invocation.getArgument(1);
+            listener.onResult(new UpdateResult("/content", "Error: Commit failed", "Failed", "Access denied"));
+            return null;
+        }).when(updateService).processUpdate(any(UpdateRequest.class), any(UpdateListener.class));
+
+        UpdateJobStatus submitted = jobService.submit(newRequest("admin"));
+        UpdateJobStatus done = awaitFinished(submitted.id, "admin");
+
+        assertEquals("Failed", done.state);
+        assertEquals(1, done.failed);
+        assertEquals("Access denied", done.message);
+    }
+
+    @Test
+    void testJobIsOnlyVisibleToSubmitter() throws Exception {
+        UpdateJobStatus submitted = jobService.submit(newRequest("author1"));
+
+        assertNotNull(jobService.getStatus(submitted.id, "author1"));
+        assertNull(jobService.getStatus(submitted.id, "author2"));
+        assertNull(jobService.getStatus("unknown", "author1"));
+    }
+
+    @Test
+    void testRejectsWhenQueueIsFull() throws Exception {
+        doAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(updateService).processUpdate(any(UpdateRequest.class), any(UpdateListener.class));
+
+        jobService.submit(newRequest("admin"));
+        jobService.submit(newRequest("admin"));
+        UpdateRequest rejected = newRequest("admin");
+        ResourceResolver jobResolver = rejected.resolver.clone(null);
+
+        assertThrows(RejectedExecutionException.class, () -> jobService.submit(rejected));
+        verify(jobResolver).close();
+        release.countDown();
+    }
+
+    @Test
+    void testDeactivateClosesQueuedJobs() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(updateService).processUpdate(any(UpdateRequest.class), any(UpdateListener.class));
+
+        UpdateRequest running = newRequest("admin");
+        ResourceResolver runningResolver = running.resolver.clone(null);
+        jobService.submit(running);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        UpdateRequest queued = newRequest("admin");
+        ResourceResolver queuedResolver = queued.resolver.clone(null);
+        jobService.submit(queued);
+
+        jobService.deactivate();
+
+        verify(queuedResolver).close();
+        verify(runningResolver, timeout(5000)).close();
+        verify(updateService, times(1)).processUpdate(any(UpdateRequest.class), any(UpdateListener.class));
+    }
+
+}
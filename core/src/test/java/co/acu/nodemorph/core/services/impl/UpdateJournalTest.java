@@ -0,0 +1,130 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.services.impl;
+
+import co.acu.nodemorph.core.dto.UpdateRequest;
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.wrappers.ValueMapDecorator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import javax.jcr.Node;
+import javax.jcr.Property;
+import javax.jcr.PropertyType;
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(AemContextExtension.class)
+class UpdateJournalTest {
+
+    private final AemContext context = new AemContext();
+
+    @Test
+    void testEncodesTypedValues() {
+        Calendar date = Calendar.getInstance(TimeZone.getTimeZone("Europe/Warsaw"));
+        date.setTimeInMillis(1_700_000_000_000L);
+
+        assertEquals("text", UpdateJournal.decode(UpdateJournal.encode("text")));
+        assertEquals(true, UpdateJournal.decode(UpdateJournal.encode(true)));
+        assertEquals(42L, UpdateJournal.decode(UpdateJournal.encode(42)));
+        assertEquals(1.5, UpdateJournal.decode(UpdateJournal.encode(1.5)));
+        assertEquals(new BigDecimal("10.25"), UpdateJournal.decode(UpdateJournal.encode(new BigDecimal("10.25"))));
+        assertEquals(date.getTimeInMillis(), ((Calendar) UpdateJournal.decode(UpdateJournal.encode(date))).getTimeInMillis());
+        assertArrayEquals(new String[]{"a", "b"}, (String[]) UpdateJournal.decode(UpdateJournal.encode(new String[]{"a", "b"})));
+        assertArrayEquals(new Long[]{1L, 2L}, (Long[]) UpdateJournal.decode(UpdateJournal.encode(new Long[]{1L, 2L})));
+        assertNull(UpdateJournal.decode(UpdateJournal.encode(null)));
+        assertNull(UpdateJournal.encode(new ByteArrayInputStream(new byte[0])), "Binaries can't be journaled");
+    }
+
+    @Test
+    void testFindsValuesThatCannotBeRestored() throws Exception {
+        Map<String, Object> props = new HashMap<>();
+        props.put("title", "Old");
+        props.put("file", new ByteArrayInputStream(new byte[0]));
+        props.put("target", "0b3c6f4e-8d6e-4c41-9a0e-4b5d0d3b1a6f");
+        Property reference = mock(Property.class);
+        when(reference.getType()).thenReturn(PropertyType.REFERENCE);
+        Property title = mock(Property.class);
+        when(title.getType()).thenReturn(PropertyType.STRING);
+        Node node = mock(Node.class);
+        when(node.hasProperty("target")).thenReturn(true);
+        when(node.getProperty("target")).thenReturn(reference);
+        when(node.hasProperty("title")).thenReturn(true);
+        when(node.getProperty("title")).thenReturn(title);
+        Resource resource = mock(Resource.class);
+        when(resource.adaptTo(Node.class)).thenReturn(node);
+        ValueMapDecorator values = new ValueMapDecorator(props);
+
+        assertNull(UpdateJournal.findUnrestorable(resource, values, Arrays.asList("title", "missing")));
+        assertEquals("file", UpdateJournal.findUnrestorable(resource, values, Arrays.asList("title", "file")));
+        assertEquals("target", UpdateJournal.findUnrestorable(resource, values, Arrays.asList("title", "target")),
+                "A reference would come back as a plain string");
+        assertNull(UpdateJournal.findUnrestorable(null, values, Arrays.asList("title", "target")),
+                "Without a node, only the value itself can be checked");
+    }
+
+    @Test
+    void testChunksAreWrittenAndReadBack() throws Exception {
+        Map<String, String> params = new HashMap<>();
+        params.put("path", "/content/site");
+        params.put("operation", "add");
+        UpdateJournal journal = new UpdateJournal("/var/nodemorph/journal", "test-run", new UpdateRequest(params, null));
+        UpdateJournal.Chunk chunk = journal.newChunk();
+        Map<String, Object> props = new HashMap<>();
+        props.put("title", "Old");
+        props.put("count", 3L);
+
+        assertTrue(chunk.isEmpty());
+        chunk.recordProperties("/content/site/a", new ValueMapDecorator(props), Arrays.asList("title", "count", "missing"));
+        chunk.recordCreated("/content/site/a/child");
+        chunk.write(context.resourceResolver());
+        assertTrue(chunk.isEmpty(), "Written records should not be written again");
+        chunk.recordCreated("/content/site/b/child");
+        chunk.write(context.resourceResolver());
+        context.resourceResolver().commit();
+
+        Resource root = context.resourceResolver().getResource("/var/nodemorph/journal/test-run");
+        assertNotNull(root);
+        assertEquals("/content/site", root.getValueMap().get("path"));
+        assertTrue(journal.hasChunks());
+
+        List<UpdateJournal.Entry> first = UpdateJournal.read(root.getChild("chunk-00001"));
+        assertEquals(2, first.size());
+        assertEquals("/content/site/a", first.get(0).path);
+        assertFalse(first.get(0).created);
+        assertEquals("Old", first.get(0).before.get("title"));
+        assertEquals(3L, first.get(0).before.get("count"));
+        assertTrue(first.get(0).before.containsKey("missing"));
+        assertNull(first.get(0).before.get("missing"), "Properties that didn't exist should be recorded as absent");
+        assertTrue(first.get(1).created);
+
+        List<UpdateJournal.Entry> second = UpdateJournal.read(root.getChild("chunk-00002"));
+        assertEquals("/content/site/b/child", second.get(0).path);
+    }
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.services.impl;
+
+import co.acu.nodemorph.core.dto.CommitBatch;
+import co.acu.nodemorph.core.dto.UpdateResult;
+import co.acu.nodemorph.core.services.UpdateListener;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.commons.metrics.Counter;
+import org.apache.sling.commons.metrics.Histogram;
+import org.apache.sling.commons.metrics.Meter;
+import org.apache.sling.commons.metrics.MetricsService;
+import org.apache.sling.commons.metrics.Timer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class UpdateMetricsTest {
+
+    private final Map<String, Object> registry = new HashMap<>();
+    private UpdateMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        MetricsService service = mock(MetricsService.class);
+        when(service.counter(anyString())).thenAnswer(invocation -> metric(invocation.getArgument(0), Counter.class));
+        when(service.meter(anyString())).thenAnswer(invocation -> metric(invocation.getArgument(0), Meter.class));
+        when(service.timer(anyString())).thenAnswer(invocation -> metric(invocation.getArgument(0), Timer.class));
+        when(service.histogram(anyString())).thenAnswer(invocation -> metric(invocation.getArgument(0), Histogram.class));
+        metrics = new UpdateMetrics(service);
+    }
+
+    @Test
+    void testRunIsRecordedFromItsEvents() {
+        UpdateListener listener = mock(UpdateListener.class);
+        UpdateMetrics.Run run = metrics.start("replace", false, listener);
+        verify(metric("active", Counter.class)).increment();
+
+        run.onNodeProcessed("/content/a");
+        run.onNodeProcessed("/content/b");
+        run.onNodeModified("/content/a");
+        run.onResult(new UpdateResult("/content/a", "Replace jcr:title", "Done"));
+        run.onResult(new UpdateResult("/content/b", "Error: Save failed", "Failed"));
+        CommitBatch batch = new CommitBatch(1, 25, "/content/a", "Committed");
+        batch.commitMillis = 40;
+        run.onBatch(batch);
+        run.onBatch(new CommitBatch(2, 10, "/content/b", "Failed", "Conflict"));
+        run.end();
+
+        verify(metric("nodes.scanned", Meter.class), times(2)).mark();
+        verify(metric("nodes.modified", Meter.class)).mark();
+        verify(metric("failures.replace", Counter.class)).increment();
+        verify(metric("commit", Timer.class)).update(40, TimeUnit.MILLISECONDS);
+        verify(metric("batch.size", Histogram.class)).update(25);
+        verify(metric("run", Timer.class)).update(anyLong(), eq(TimeUnit.NANOSECONDS));
+        verify(metric("active", Counter.class)).decrement();
+
+        verify(listener, times(2)).onNodeProcessed(anyString());
+        verify(listener, times(2)).onResult(any());
+        verify(listener, times(2)).onBatch(any());
+    }
+
+    @Test
+    void testDryRunsAndUnknownOperations() {
+        UpdateMetrics.Run run = metrics.start("unknown", true, mock(UpdateListener.class));
+        run.onNodeModified("/content/a");
+        run.onResult(new UpdateResult("/content", "Error: Invalid input", "Failed"));
+
+        verify(metric("nodes.modified", Meter.class), never()).mark();
+        verify(metric("failures.other", Counter.class)).increment();
+    }
+
+    @Test
+    void testQueryAndMutationTimes() {
+        Iterator<Resource> hits = metrics.time("sql2", Arrays.asList(mock(Resource.class), mock(Resource.class)).iterator());
+        while (hits.hasNext()) {
+            assertNotNull(hits.next());
+        }
+        assertFalse(hits.hasNext());
+
+        verify(metric("query.sql2", Timer.class)).update(anyLong(), eq(TimeUnit.NANOSECONDS));
+        verify(metric("mutation", Timer.class), times(2)).update(anyLong(), eq(TimeUnit.NANOSECONDS));
+    }
+
+    private <T> T metric(String name, Class<T> type) {
+        String fullName = name.startsWith(UpdateMetrics.PREFIX) ? name : UpdateMetrics.PREFIX + name;
+        return type.cast(registry.computeIfAbsent(fullName, key -> mock(type)));
+    }
+
+}
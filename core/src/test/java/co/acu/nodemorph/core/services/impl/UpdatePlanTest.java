@@ -0,0 +1,191 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.services.impl;
+
+import co.acu.nodemorph.core.dto.UpdateRequest;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.wrappers.ValueMapDecorator;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class UpdatePlanTest {
+
+    @Test
+    void testAddPlan() {
+        Map<String, String> params = new HashMap<>();
+        params.put("path", "/content/site");
+        params.put("operation", "add");
+        params.put("properties", "category=Adventure\ntags=[a, b]");
+        params.put("matchType", "node");
+        params.put("jcrNodeName", "hero");
+
+        UpdatePlan plan = UpdatePlan.compile(new UpdateRequest(params, null));
+
+        assertEquals(2, plan.propertyWrites.size());
+        UpdatePlan.PropertyWrite category = plan.propertyWrites.stream()
+                .filter(write -> write.key.equals("category")).findFirst().orElseThrow(AssertionError::new);
+        assertEquals("Adventure", category.value);
+        assertEquals("Set category=Adventure", category.action);
+        UpdatePlan.PropertyWrite tags = plan.propertyWrites.stream()
+                .filter(write -> write.key.equals("tags")).findFirst().orElseThrow(AssertionError::new);
+        assertArrayEquals(new String[]{"a", "b"}, (String[]) tags.value);
+        assertThrows(UnsupportedOperationException.class, () -> plan.propertyWrites.clear());
+
+        Resource hero = mock(Resource.class);
+        when(hero.getName()).thenReturn("hero");
+        Resource other = mock(Resource.class);
+        when(other.getName()).thenReturn("other");
+        assertTrue(plan.matchesNodeName(hero));
+        assertFalse(plan.matchesNodeName(other));
+    }
+
+    @Test
+    void testReplaceAndDeletePlan() {
+        Map<String, String> params = new HashMap<>();
+        params.put("path", "/content/site");
+        params.put("operation", "replace");
+        params.put("propName", "jcr:title");
+        params.put("find", "old");
+        params.put("replace", "new");
+        params.put("propNames", " a, b ,c");
+
+        UpdatePlan plan = UpdatePlan.compile(new UpdateRequest(params, null));
+
+        assertEquals("Replace jcr:title: an old title → a new title", plan.replaceAction("an old title", "a new title"));
+        assertEquals(Arrays.asList("a", "b", "c"), plan.deletePropNames);
+        assertTrue(plan.matchesNodeName(mock(Resource.class)), "Without a node name, every node should match");
+    }
+
+    @Test
+    void testReplaceInPlan() {
+        Map<String, String> params = new HashMap<>();
+        params.put("path", "/content/site");
+        params.put("operation", "replace");
+        params.put("propName", "jcr:title");
+        params.put("find", "a.b");
+        params.put("replace", "$x");
+
+        assertEquals("$x", UpdatePlan.compile(new UpdateRequest(params, null)).replaceIn("a.b"));
+        assertNull(UpdatePlan.compile(new UpdateRequest(params, null)).replaceIn("a.b c"), "Exact matches need the whole value");
+
+        params.put("partialMatch", "true");
+        UpdatePlan partial = UpdatePlan.compile(new UpdateRequest(params, null));
+        assertEquals("$x and $x", partial.replaceIn("a.b and a.b"));
+        assertNull(partial.replaceIn("axb"), "Partial matches are literal");
+
+        params.put("regex", "true");
+        params.put("find", "(\\w+)@old\\.com");
+        params.put("replace", "$1@new.com");
+        UpdatePlan regex = UpdatePlan.compile(new UpdateRequest(params, null));
+        assertEquals("ann@new.com, bob@new.com", regex.replaceIn("ann@old.com, bob@old.com"));
+        assertNull(regex.replaceIn("ann@other.com"));
+
+        params.put("find", "[unclosed");
+        assertThrows(IllegalArgumentException.class, () -> UpdatePlan.compile(new UpdateRequest(params, null)));
+    }
+
+    @Test
+    void testRegexReplacementMustMatchFindGroups() {
+        Map<String, String> params = new HashMap<>();
+        params.put("path", "/content/site");
+        params.put("operation", "replace");
+        params.put("propName", "jcr:title");
+        params.put("regex", "true");
+        params.put("find", "(?<user>\\w+)@(old)\\.com");
+
+        for (String valid : new String[]{"$1@$2", "${user}@new.com", "\\$5 off", "$12"}) {
+            params.put("replace", valid);
+            assertNotNull(UpdatePlan.compile(new UpdateRequest(params, null)), valid);
+        }
+        for (String invalid : new String[]{"$3@new.com", "${name}", "costs $", "$x", "trailing\\"}) {
+            params.put("replace", invalid);
+            assertThrows(IllegalArgumentException.class, () -> UpdatePlan.compile(new UpdateRequest(params, null)), invalid);
+        }
+    }
+
+    @Test
+    void testReplaceInKeepsMultiValueType() {
+        Map<String, String> params = new HashMap<>();
+        params.put("path", "/content/site");
+        params.put("operation", "replace");
+        params.put("propName", "sizes");
+        params.put("find", "10");
+        params.put("replace", "12");
+        UpdatePlan plan = UpdatePlan.compile(new UpdateRequest(params, null));
+
+        Object[] longs = plan.replaceIn(new Long[]{10L, 20L});
+        assertInstanceOf(Long[].class, longs);
+        assertArrayEquals(new Long[]{12L, 20L}, longs);
+        assertArrayEquals(new String[]{"12", "20"}, plan.replaceIn(new String[]{"10", "20"}));
+        assertNull(plan.replaceIn(new Long[]{20L}));
+
+        params.put("replace", "ten");
+        UpdatePlan invalid = UpdatePlan.compile(new UpdateRequest(params, null));
+        assertThrows(IllegalArgumentException.class, () -> invalid.replaceIn(new Long[]{10L}));
+        assertArrayEquals(new String[]{"ten"}, invalid.replaceIn(new String[]{"10"}));
+    }
+
+    @Test
+    void testCreatePlan() {
+        Map<String, String> params = new HashMap<>();
+        params.put("path", "/content/site");
+        params.put("operation", "create");
+        params.put("newNodeName", "child");
+        params.put("newNodeProperties", "title=Child");
+        params.put("parentMatchCondition", "sling:resourceType=site/components/page");
+
+        UpdatePlan plan = UpdatePlan.compile(new UpdateRequest(params, null));
+
+        assertEquals("nt:unstructured", plan.newNodeType);
+        assertEquals("nt:unstructured", plan.newNodeProperties.get("jcr:primaryType"));
+        assertEquals("Child", plan.newNodeProperties.get("title"));
+        assertEquals("Created node of type nt:unstructured", plan.createAction);
+
+        Resource page = mock(Resource.class);
+        when(page.getValueMap()).thenReturn(new ValueMapDecorator(
+                new HashMap<>(Collections.singletonMap("sling:resourceType", "site/components/page"))));
+        Resource component = mock(Resource.class);
+        when(component.getValueMap()).thenReturn(new ValueMapDecorator(new HashMap<>()));
+        assertTrue(plan.matchesParent(page));
+        assertFalse(plan.matchesParent(component));
+    }
+
+    @Test
+    void testCopyPlan() {
+        Map<String, String> params = new HashMap<>();
+        params.put("path", "/content/site");
+        params.put("operation", "copy");
+        params.put("copyType", "property");
+        params.put("source", "title");
+        params.put("target", "navTitle");
+
+        UpdatePlan plan = UpdatePlan.compile(new UpdateRequest(params, null));
+
+        assertEquals("Copy node title to navTitle", plan.copyNodeAction);
+        assertEquals("Copy property title=Home to navTitle", plan.copyPropertyAction("Home"));
+
+        params.put("deepCopy", "true");
+        assertEquals("Copy node tree title to navTitle", UpdatePlan.compile(new UpdateRequest(params, null)).copyNodeAction);
+    }
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.services.impl;
+
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.Calendar;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(AemContextExtension.class)
+class UpdateRetentionTest {
+
+    private final AemContext context = new AemContext();
+
+    private static Calendar daysAgo(int days) {
+        Calendar date = Calendar.getInstance();
+        date.add(Calendar.DAY_OF_MONTH, -days);
+        return date;
+    }
+
+    @Test
+    void testRemovesExpiredJournalsAndCheckpoints() {
+        context.create().resource("/var/nodemorph/journal/old", "created", daysAgo(40));
+        context.create().resource("/var/nodemorph/journal/recent", "created", daysAgo(5));
+        context.create().resource("/var/nodemorph/checkpoints/stalled", "created", daysAgo(60), "updated", daysAgo(40));
+        context.create().resource("/var/nodemorph/checkpoints/running", "created", daysAgo(60), "updated", daysAgo(1));
+        UpdateRetention retention = new UpdateRetention(TimeUnit.DAYS.toMillis(30),
+                "/var/nodemorph/journal", "/var/nodemorph/checkpoints", "");
+
+        assertEquals(2, retention.prune(context.resourceResolver()));
+
+        assertNull(context.resourceResolver().getResource("/var/nodemorph/journal/old"));
+        assertNotNull(context.resourceResolver().getResource("/var/nodemorph/journal/recent"));
+        assertNull(context.resourceResolver().getResource("/var/nodemorph/checkpoints/stalled"));
+        assertNotNull(context.resourceResolver().getResource("/var/nodemorph/checkpoints/running"),
+                "Checkpoints should age from their last batch");
+
+        context.create().resource("/var/nodemorph/journal/older", "created", daysAgo(50));
+        assertEquals(0, retention.prune(context.resourceResolver()), "Expired records should be looked for once an interval");
+    }
+
+    @Test
+    void testZeroRetentionKeepsEverything() {
+        context.create().resource("/var/nodemorph/journal/old", "created", daysAgo(400));
+
+        assertEquals(0, new UpdateRetention(0, "/var/nodemorph/journal").prune(context.resourceResolver()));
+        assertNotNull(context.resourceResolver().getResource("/var/nodemorph/journal/old"));
+    }
+
+}
@@ -15,23 +15,41 @@
  */
 package co.acu.nodemorph.core.services.impl;
 
+import co.acu.nodemorph.core.dto.CommitBatch;
+import co.acu.nodemorph.core.dto.ManifestRow;
+import co.acu.nodemorph.core.dto.QueryPlan;
 import co.acu.nodemorph.core.dto.UpdateRequest;
 import co.acu.nodemorph.core.dto.UpdateResult;
+import co.acu.nodemorph.core.services.QueryPlanService;
+import co.acu.nodemorph.core.services.UpdateListener;
 import com.day.cq.search.PredicateGroup;
 import com.day.cq.search.Query;
 import com.day.cq.search.QueryBuilder;
 import com.day.cq.search.result.SearchResult;
 import io.wcm.testing.mock.aem.junit5.AemContext;
 import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import org.apache.sling.api.resource.ModifiableValueMap;
 import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.api.wrappers.ModifiableValueMapDecorator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.Session;
+import javax.jcr.Workspace;
+import javax.jcr.query.QueryManager;
+import javax.jcr.query.RowIterator;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -56,8 +74,10 @@ class UpdateServiceImplTest {
     @BeforeEach
     void setUp() {
         context.registerService(QueryBuilder.class, queryBuilder);
+        context.registerInjectActivateService(new QueryPlanServiceImpl());
 
-        updateService = context.registerInjectActivateService(new UpdateServiceImpl());
+        // Journaling is covered separately
+        updateService = context.registerInjectActivateService(new UpdateServiceImpl(), "journalPath", "");
 
         context.load().json("/co/acu/nodemorph/core/services/impl/UpdateServiceImplTest.json", BASE_PATH);
         context.currentPage(BASE_PATH);
@@ -306,6 +326,53 @@ class UpdateServiceImplTest {
         assertEquals("Ski Adventure", props.get("jcr:title", String.class));
     }
 
+    @Test
+    void testReplaceMultiValuePropertyWithRegex() {
+        Map<String, String> params = new HashMap<>();
+        params.put("path", BASE_PATH);
+        params.put("operation", "replace");
+        params.put("propName", "cq:styleIds");
+        params.put("find", "^15087(\\d+)$");
+        params.put("replace", "style-$1");
+        params.put("pageOnly", "false");
+        params.put("dryRun", "false");
+        params.put("regex", "true");
+
+        UpdateRequest request = new UpdateRequest(params, context.resourceResolver());
+        Resource list = context.resourceResolver().getResource(BASE_PATH + "/jcr:content/root/responsivegrid/list");
+        assertNotNull(list, "List resource should exist");
+
+        when(searchResult.getResources()).thenReturn(Collections.singletonList(list).iterator());
+
+        List<UpdateResult> results = updateService.processUpdate(request);
+
+        assertEquals(1, results.size());
+        UpdateResult result = results.get(0);
+        assertEquals("Replace cq:styleIds: [1508797744638, 1508800123708] → [style-97744638, 1508800123708]", result.action);
+        assertEquals("Done", result.status);
+
+        ValueMap props = context.resourceResolver().getResource(BASE_PATH + "/jcr:content/root/responsivegrid/list").getValueMap();
+        assertArrayEquals(new String[]{"style-97744638", "1508800123708"}, props.get("cq:styleIds", String[].class));
+    }
+
+    @Test
+    void testReplaceRejectsInvalidRegex() {
+        Map<String, String> params = new HashMap<>();
+        params.put("path", BASE_PATH);
+        params.put("operation", "replace");
+        params.put("propName", "jcr:title");
+        params.put("find", "Ski(");
+        params.put("replace", "Snow");
+        params.put("regex", "true");
+
+        List<UpdateResult> results = updateService.processUpdate(new UpdateRequest(params, context.resourceResolver()));
+
+        assertEquals(1, results.size());
+        assertEquals("Error: Invalid input", results.get(0).action);
+        assertEquals("Failed", results.get(0).status);
+        verify(queryBuilder, never()).createQuery(any(PredicateGroup.class), any());
+    }
+
     @Test
     void testSimpleNodeCopy() {
         Map<String, String> params = new HashMap<>();
@@ -389,6 +456,100 @@ class UpdateServiceImplTest {
         assertNotNull(copiedNode, "Copied node should exist");
     }
 
+    @Test
+    void testDeepNodeCopy() {
+        Map<String, String> params = new HashMap<>();
+        params.put("path", BASE_PATH);
+        params.put("operation", "copy");
+        params.put("copyType", "node");
+        params.put("source", "skitouring/jcr:content");
+        params.put("target", "skitouring/jcr:content_copy");
+        params.put("deepCopy", "true");
+        params.put("dryRun", "false");
+
+        List<UpdateResult> results = updateService.processUpdate(new UpdateRequest(params, context.resourceResolver()));
+
+        assertEquals(1, results.size());
+        assertEquals("Copy node tree skitouring/jcr:content to skitouring/jcr:content_copy", results.get(0).action);
+        assertEquals("Done", results.get(0).status);
+        assertNotNull(context.resourceResolver().getResource(BASE_PATH + "/skitouring/jcr:content_copy/root/hero_image"),
+                "Descendants should be copied too");
+        assertEquals(context.resourceResolver().getResource(BASE_PATH + "/skitouring/jcr:content/root/hero_image").getValueMap().get("fileReference"),
+                context.resourceResolver().getResource(BASE_PATH + "/skitouring/jcr:content_copy/root/hero_image").getValueMap().get("fileReference"));
+    }
+
+    @Test
+    void testDeepNodeCopyUsesWorkspaceCopy() throws Exception {
+        Workspace workspace = mock(Workspace.class);
+        Session session = mock(Session.class);
+        when(session.getWorkspace()).thenReturn(workspace);
+        Resource source = mock(Resource.class);
+        when(source.getPath()).thenReturn(BASE_PATH + "/skitouring/jcr:content");
+        Resource targetParent = mock(Resource.class);
+        when(targetParent.getPath()).thenReturn(BASE_PATH + "/skitouring");
+        ResourceResolver resolver = mock(ResourceResolver.class);
+        when(resolver.adaptTo(Session.class)).thenReturn(session);
+        when(resolver.getResource(BASE_PATH + "/skitouring/jcr:content")).thenReturn(source);
+        when(resolver.getResource(BASE_PATH + "/skitouring")).thenReturn(targetParent);
+        doThrow(new javax.jcr.ItemExistsException("exists")).doNothing().when(workspace).copy(anyString(), anyString());
+
+        Map<String, String> params = new HashMap<>();
+        params.put("path", BASE_PATH);
+        params.put("operation", "copy");
+        params.put("copyType", "node");
+        params.put("source", "skitouring/jcr:content");
+        params.put("target", "skitouring/jcr:content_copy");
+        params.put("deepCopy", "true");
+        params.put("dryRun", "false");
+
+        List<UpdateResult> failed = updateService.processUpdate(new UpdateRequest(params, resolver));
+        assertEquals("Failed", failed.get(0).status);
+        assertEquals("exists", failed.get(0).message);
+
+        List<UpdateResult> results = updateService.processUpdate(new UpdateRequest(params, resolver));
+        assertEquals("Done", results.get(0).status);
+
+        verify(workspace, times(2)).copy(BASE_PATH + "/skitouring/jcr:content", BASE_PATH + "/skitouring/jcr:content_copy");
+        verify(resolver, never()).create(any(), anyString(), any());
+        verify(resolver, never()).commit();
+    }
+
+    @Test
+    void testJournaledWorkspaceCopyCommitsItsRecordFirst() throws Exception {
+        UpdateServiceImpl journaledService = context.registerInjectActivateService(new UpdateServiceImpl(),
+                "journalPath", "/var/nodemorph/journal");
+        Workspace workspace = mock(Workspace.class);
+        Session session = mock(Session.class);
+        when(session.getWorkspace()).thenReturn(workspace);
+        ResourceResolver resolver = spy(context.resourceResolver());
+        doReturn(session).when(resolver).adaptTo(Session.class);
+        List<String> journals = new ArrayList<>();
+        doAnswer(invocation -> {
+            // The copy is persisted at once, so its record has to be persisted already
+            assertFalse(resolver.hasChanges(), "The journal record should be committed before the copy");
+            resolver.getResource("/var/nodemorph/journal").getChildren().forEach(journal -> journals.add(journal.getName()));
+            return null;
+        }).when(workspace).copy(anyString(), anyString());
+
+        Map<String, String> params = new HashMap<>();
+        params.put("path", BASE_PATH);
+        params.put("operation", "copy");
+        params.put("copyType", "node");
+        params.put("source", "skitouring/jcr:content");
+        params.put("target", "skitouring/jcr:content_copy");
+        params.put("deepCopy", "true");
+        params.put("dryRun", "false");
+
+        List<UpdateResult> results = journaledService.processUpdate(new UpdateRequest(params, resolver));
+
+        assertEquals("Done", results.get(0).status);
+        assertEquals(1, journals.size());
+        List<UpdateJournal.Entry> entries = UpdateJournal.read(
+                resolver.getResource("/var/nodemorph/journal/" + journals.get(0) + "/chunk-00001"));
+        assertEquals(BASE_PATH + "/skitouring/jcr:content_copy", entries.get(0).path);
+        assertTrue(entries.get(0).created);
+    }
+
     @Test
     void testNodeCopyDryRun() {
         Map<String, String> params = new HashMap<>();
@@ -553,4 +714,668 @@ class UpdateServiceImplTest {
         assertEquals("Exploring the wilds of Western Australia", props.get("teaserText", String.class));
     }
 
+    @Test
+    void testCreatedNodesAreNotMatchedAgain() {
+        Map<String, String> params = new HashMap<>();
+        params.put("path", BASE_PATH);
+        params.put("operation", "create");
+        params.put("newNodeName", "teaser");
+        params.put("newNodeType", "nt:unstructured");
+        params.put("dryRun", "false");
+        params.put("batchSize", "1");
+
+        // Hits are resolved lazily, so a node created for an earlier hit comes up as a later one
+        ResourceResolver resolver = context.resourceResolver();
+        Iterator<String> hits = Arrays.asList(BASE_PATH + "/skitouring/jcr:content", BASE_PATH + "/skitouring/jcr:content/teaser",
+                BASE_PATH + "/wester-australia-by-camper-van/jcr:content").iterator();
+        when(searchResult.getResources()).thenReturn(new Iterator<Resource>() {
+            private Resource next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && hits.hasNext()) {
+                    next = resolver.getResource(hits.next());
+                }
+                return next != null;
+            }
+
+            @Override
+            public Resource next() {
+                hasNext();
+                Resource result = next;
+                next = null;
+                return result;
+            }
+        });
+
+        List<UpdateResult> results = updateService.processUpdate(new UpdateRequest(params, resolver));
+
+        assertEquals(Arrays.asList(BASE_PATH + "/skitouring/jcr:content/teaser", BASE_PATH + "/wester-australia-by-camper-van/jcr:content/teaser"),
+                results.stream().map(result -> result.path).collect(Collectors.toList()),
+                "Nodes created by the run should not get a node of their own");
+    }
+
+    @Test
+    void testBatchedCommitsReportEachBatch() {
+        Map<String, String> params = new HashMap<>();
+        params.put("path", BASE_PATH);
+        params.put("operation", "delete");
+        params.put("propNames", "test");
+        params.put("pageOnly", "true");
+        params.put("dryRun", "false");
+        params.put("batchSize", "2");
+
+        UpdateRequest request = new UpdateRequest(params, context.resourceResolver());
+        List<Resource> nodes = Arrays.asList(
+                context.resourceResolver().getResource(BASE_PATH + "/skitouring"),
+                context.resourceResolver().getResource(BASE_PATH + "/arctic-surfing-in-lofoten"),
+                context.resourceResolver().getResource(BASE_PATH + "/hours-of-wilderness")
+        );
+        when(searchResult.getResources()).thenReturn(nodes.iterator());
+
+        List<UpdateResult> results = new ArrayList<>();
+        List<CommitBatch> batches = new ArrayList<>();
+        updateService.processUpdate(request, new UpdateListener() {
+            @Override
+            public void onResult(UpdateResult result) {
+                results.add(result);
+            }
+
+            @Override
+            public void onBatch(CommitBatch batch) {
+                batches.add(batch);
+            }
+        });
+
+        assertEquals(3, results.size());
+        assertEquals(2, batches.size(), "Three modified nodes with a batch size of 2 should commit twice");
+
+        assertEquals(1, batches.get(0).number);
+        assertEquals(2, batches.get(0).nodes);
+        assertEquals(BASE_PATH + "/arctic-surfing-in-lofoten/jcr:content", batches.get(0).lastPath);
+        assertEquals("Committed", batches.get(0).status);
+
+        assertEquals(2, batches.get(1).number);
+        assertEquals(1, batches.get(1).nodes);
+        assertEquals(BASE_PATH + "/hours-of-wilderness/jcr:content", batches.get(1).lastPath);
+        assertEquals("Committed", batches.get(1).status);
+    }
+
+    @Test
+    void testPipelineAppliesAllStagesInOneVisit() {
+        Map<String, String> params = new HashMap<>();
+        params.put("path", BASE_PATH);
+        params.put("operation", "pipeline");
+        params.put("pageOnly", "true");
+        params.put("dryRun", "false");
+        params.put("pipeline", "[{\"operation\":\"replace\",\"propName\":\"test\",\"find\":\"added\",\"replace\":\"replaced\"},"
+                + "{\"operation\":\"copy\",\"copyType\":\"property\",\"source\":\"test\",\"target\":\"testCopy\"},"
+                + "{\"operation\":\"delete\",\"propNames\":\"jcr:description\"},"
+                + "{\"operation\":\"create\",\"newNodeName\":\"pipeline\"}]");
+
+        UpdateRequest request = new UpdateRequest(params, context.resourceResolver());
+        List<Resource> nodes = Arrays.asList(
+                context.resourceResolver().getResource(BASE_PATH + "/skitouring"),
+                context.resourceResolver().getResource(BASE_PATH + "/arctic-surfing-in-lofoten"));
+        when(searchResult.getResources()).thenReturn(nodes.iterator());
+
+        List<UpdateResult> results = new ArrayList<>();
+        List<String> modified = new ArrayList<>();
+        List<CommitBatch> batches = new ArrayList<>();
+        updateService.processUpdate(request, new UpdateListener() {
+            @Override
+            public void onResult(UpdateResult result) {
+                results.add(result);
+            }
+
+            @Override
+            public void onNodeModified(String path) {
+                modified.add(path);
+            }
+
+            @Override
+            public void onBatch(CommitBatch batch) {
+                batches.add(batch);
+            }
+        });
+
+        assertEquals(6, results.size(), "Each page should report a replace, a copy and a created node");
+        assertTrue(results.stream().allMatch(result -> "Done".equals(result.status)));
+        assertEquals(Arrays.asList(BASE_PATH + "/skitouring/jcr:content", BASE_PATH + "/skitouring/pipeline",
+                BASE_PATH + "/arctic-surfing-in-lofoten/jcr:content", BASE_PATH + "/arctic-surfing-in-lofoten/pipeline"), modified,
+                "Nodes changed by several stages should count once");
+        assertEquals(1, batches.size());
+
+        ValueMap props = context.resourceResolver().getResource(BASE_PATH + "/skitouring/jcr:content").getValueMap();
+        assertEquals("replaced", props.get("test", String.class));
+        assertEquals("replaced", props.get("testCopy", String.class), "Later stages should see earlier changes");
+        assertNotNull(context.resourceResolver().getResource(BASE_PATH + "/skitouring/pipeline"));
+        verify(queryBuilder, times(1)).createQuery(any(PredicateGroup.class), any());
+    }
+
+    @Test
+    void testPipelineChecksStagesBeforeProcessing() {
+        Map<String, String> params = new HashMap<>();
+        params.put("path", BASE_PATH);
+        params.put("operation", "pipeline");
+        params.put("dryRun", "false");
+        params.put("pipeline", "[{\"operation\":\"add\",\"properties\":\"a=b\"},{\"operation\":\"replace\",\"propName\":\"test\"}]");
+
+        List<UpdateResult> results = updateService.processUpdate(new UpdateRequest(params, context.resourceResolver()));
+
+        assertEquals(1, results.size());
+        assertEquals("Error: Missing replace parameters", results.get(0).action);
+        assertNull(context.resourceResolver().getResource(BASE_PATH + "/skitouring/jcr:content").getValueMap().get("a"));
+    }
+
+    @Test
+    void testManifestUpdatesListedPaths() {
+        Map<String, String> params = new HashMap<>();
+        params.put("path", BASE_PATH);
+        params.put("dryRun", "false");
+        params.put("batchSize", "1");
+        UpdateRequest request = new UpdateRequest(params, context.resourceResolver());
+
+        Map<String, Object> skitouring = new LinkedHashMap<>();
+        skitouring.put("category", "Adventure");
+        skitouring.put("test", null);
+        Map<String, Object> heroImage = new LinkedHashMap<>();
+        heroImage.put("tags", new String[]{"one", "two"});
+        List<ManifestRow> rows = Arrays.asList(
+                new ManifestRow(2, BASE_PATH + "/skitouring", skitouring),
+                new ManifestRow(3, BASE_PATH + "/skitouring/jcr:content/root/hero_image", heroImage),
+                new ManifestRow(4, BASE_PATH + "/missing", Collections.singletonMap("a", "b")),
+                new ManifestRow(5, "/content/elsewhere", Collections.singletonMap("a", "b")),
+                ManifestRow.invalid(6, null, "Missing path"));
+
+        List<UpdateResult> results = new ArrayList<>();
+        List<CommitBatch> batches = new ArrayList<>();
+        updateService.processManifest(request, rows.iterator(), new UpdateListener() {
+            @Override
+            public void onResult(UpdateResult result) {
+                results.add(result);
+            }
+
+            @Override
+            public void onBatch(CommitBatch batch) {
+                batches.add(batch);
+            }
+        });
+
+        assertEquals(5, results.size(), "Every row should get a result");
+        assertEquals(BASE_PATH + "/skitouring/jcr:content", results.get(0).path, "Pages should be updated on their jcr:content");
+        assertEquals("Set category=Adventure, Remove test", results.get(0).action);
+        assertEquals("Done", results.get(0).status);
+        assertEquals("Set tags=[one, two]", results.get(1).action);
+        assertEquals("Error: Node not found", results.get(2).action);
+        assertEquals("Failed", results.get(3).status);
+        assertEquals("Line 6: Missing path", results.get(4).message);
+        assertEquals(2, batches.size());
+
+        ValueMap props = context.resourceResolver().getResource(BASE_PATH + "/skitouring/jcr:content").getValueMap();
+        assertEquals("Adventure", props.get("category", String.class));
+        assertFalse(props.containsKey("test"));
+        assertArrayEquals(new String[]{"one", "two"}, context.resourceResolver()
+                .getResource(BASE_PATH + "/skitouring/jcr:content/root/hero_image").getValueMap().get("tags", String[].class));
+        verify(queryBuilder, never()).createQuery(any(PredicateGroup.class), any());
+    }
+
+    @Test
+    void testUndoRestoresJournaledChanges() {
+        UpdateServiceImpl journaledService = context.registerInjectActivateService(new UpdateServiceImpl(),
+                "journalPath", "/var/nodemorph/journal");
+        ValueMap before = context.resourceResolver().getResource(BASE_PATH + "/skitouring/jcr:content").getValueMap();
+        long lastModified = before.get("cq:lastModified", Calendar.class).getTimeInMillis();
+
+        Map<String, String> params = new HashMap<>();
+        params.put("path", BASE_PATH);
+        params.put("operation", "add");
+        params.put("properties", "test=modified\ncategory=Adventure");
+        params.put("dryRun", "false");
+        when(searchResult.getResources()).thenReturn(Arrays.asList(
+                context.resourceResolver().getResource(BASE_PATH + "/skitouring"),
+                context.resourceResolver().getResource(BASE_PATH + "/arctic-surfing-in-lofoten")).iterator());
+
+        List<String> journals = new ArrayList<>();
+        journaledService.processUpdate(new UpdateRequest(params, context.resourceResolver()), new UpdateListener() {
+            @Override
+            public void onResult(UpdateResult result) {
+                assertEquals("Done", result.status);
+            }
+
+            @Override
+            public void onJournal(String journalId) {
+                journals.add(journalId);
+            }
+        });
+
+        assertEquals(1, journals.size(), "The run should report its journal");
+        assertNotNull(context.resourceResolver().getResource("/var/nodemorph/journal/" + journals.get(0) + "/chunk-00001"));
+        assertEquals("modified", context.resourceResolver().getResource(BASE_PATH + "/skitouring/jcr:content").getValueMap().get("test"));
+
+        Map<String, String> undoParams = new HashMap<>();
+        undoParams.put("operation", "undo");
+        undoParams.put("journalId", journals.get(0));
+        List<UpdateResult> results = journaledService.processUpdate(new UpdateRequest(undoParams, context.resourceResolver()));
+
+        assertEquals(2, results.size());
+        assertTrue(results.stream().allMatch(result -> "Done".equals(result.status)));
+        for (String page : Arrays.asList("skitouring", "arctic-surfing-in-lofoten")) {
+            ValueMap props = context.resourceResolver().getResource(BASE_PATH + "/" + page + "/jcr:content").getValueMap();
+            assertEquals("added", props.get("test"), "Overwritten values should be restored on " + page);
+            assertFalse(props.containsKey("category"), "Added properties should be removed from " + page);
+        }
+        ValueMap after = context.resourceResolver().getResource(BASE_PATH + "/skitouring/jcr:content").getValueMap();
+        assertEquals(lastModified, after.get("cq:lastModified", Calendar.class).getTimeInMillis());
+
+        List<UpdateResult> again = journaledService.processUpdate(new UpdateRequest(undoParams, context.resourceResolver()));
+        assertEquals("Error: Journal already undone", again.get(0).action);
+    }
+
+    @Test
+    void testJournaledRunRefusesChangesItCannotUndo() {
+        UpdateServiceImpl journaledService = context.registerInjectActivateService(new UpdateServiceImpl(),
+                "journalPath", "/var/nodemorph/journal");
+        context.resourceResolver().getResource(BASE_PATH + "/skitouring/jcr:content").adaptTo(ModifiableValueMap.class)
+                .put("test", new ByteArrayInputStream(new byte[]{1}));
+
+        Map<String, String> params = new HashMap<>();
+        params.put("path", BASE_PATH);
+        params.put("operation", "add");
+        params.put("properties", "test=modified");
+        params.put("dryRun", "false");
+        when(searchResult.getResources()).thenReturn(Arrays.asList(
+                context.resourceResolver().getResource(BASE_PATH + "/skitouring"),
+                context.resourceResolver().getResource(BASE_PATH + "/arctic-surfing-in-lofoten")).iterator());
+
+        List<UpdateResult> results = journaledService.processUpdate(new UpdateRequest(params, context.resourceResolver()));
+
+        assertEquals(2, results.size());
+        assertEquals("Error: Cannot journal test", results.get(0).action);
+        assertEquals("Failed", results.get(0).status);
+        assertEquals("Done", results.get(1).status);
+        assertNotNull(context.resourceResolver().getResource(BASE_PATH + "/skitouring/jcr:content")
+                .getValueMap().get("test", InputStream.class), "The binary should be left alone");
+        assertEquals("modified", context.resourceResolver().getResource(BASE_PATH + "/arctic-surfing-in-lofoten/jcr:content")
+                .getValueMap().get("test"));
+    }
+
+    @Test
+    void testUndoRemovesCreatedNodes() {
+        UpdateServiceImpl journaledService = context.registerInjectActivateService(new UpdateServiceImpl(),
+                "journalPath", "/var/nodemorph/journal");
+
+        Map<String, String> params = new HashMap<>();
+        params.put("path", BASE_PATH);
+        params.put("operation", "create");
+        params.put("newNodeName", "teaser");
+        params.put("parentMatchCondition", "jcr:content");
+        params.put("dryRun", "false");
+        when(searchResult.getResources()).thenReturn(Collections.singletonList(
+                context.resourceResolver().getResource(BASE_PATH + "/hours-of-wilderness/jcr:content")).iterator());
+
+        List<String> journals = new ArrayList<>();
+        journaledService.processUpdate(new UpdateRequest(params, context.resourceResolver()), new UpdateListener() {
+            @Override
+            public void onResult(UpdateResult result) {
+            }
+
+            @Override
+            public void onJournal(String journalId) {
+                journals.add(journalId);
+            }
+        });
+        assertNotNull(context.resourceResolver().getResource(BASE_PATH + "/hours-of-wilderness/jcr:content/teaser"));
+
+        Map<String, String> undoParams = new HashMap<>();
+        undoParams.put("operation", "undo");
+        undoParams.put("journalId", journals.get(0));
+        List<UpdateResult> results = journaledService.processUpdate(new UpdateRequest(undoParams, context.resourceResolver()));
+
+        assertEquals(1, results.size());
+        assertEquals("Remove created node", results.get(0).action);
+        assertNull(context.resourceResolver().getResource(BASE_PATH + "/hours-of-wilderness/jcr:content/teaser"));
+    }
+
+    @Test
+    void testCheckpointIsSavedWithEveryBatch() {
+        List<String> runIds = new ArrayList<>();
+        List<CommitBatch> batches = new ArrayList<>();
+        mockPagesInPathOrder();
+
+        updateService.processUpdate(new UpdateRequest(checkpointedAddParams(), context.resourceResolver()), new UpdateListener() {
+            @Override
+            public void onResult(UpdateResult result) {
+                assertEquals("Done", result.status);
+            }
+
+            @Override
+            public void onBatch(CommitBatch batch) {
+                batches.add(batch);
+            }
+
+            @Override
+            public void onCheckpoint(String runId) {
+                runIds.add(runId);
+            }
+        });
+
+        assertEquals(1, runIds.size(), "The run should report its checkpoint");
+        assertEquals(3, batches.size());
+        ValueMap checkpoint = context.resourceResolver().getResource("/var/nodemorph/checkpoints/" + runIds.get(0)).getValueMap();
+        assertEquals("Done", checkpoint.get("state", String.class));
+        assertEquals(BASE_PATH + "/wester-australia-by-camper-van", checkpoint.get("lastPath", String.class));
+        assertEquals(6L, checkpoint.get("processed", 0L));
+        assertEquals(6L, checkpoint.get("modified", 0L));
+        assertEquals(3, checkpoint.get("batches", 0));
+        assertEquals("querybuilder", checkpoint.get("queryEngine", String.class));
+
+        Map<String, String> resumeParams = new HashMap<>();
+        resumeParams.put("operation", "resume");
+        resumeParams.put("runId", runIds.get(0));
+        List<UpdateResult> results = updateService.processUpdate(new UpdateRequest(resumeParams, context.resourceResolver()));
+        assertEquals("Error: Run already finished", results.get(0).action);
+    }
+
+    @Test
+    void testResumeSkipsNodesBeforeCheckpoint() throws Exception {
+        List<String> runIds = new ArrayList<>();
+        mockPagesInPathOrder();
+        updateService.processUpdate(new UpdateRequest(checkpointedAddParams(), context.resourceResolver()), new UpdateListener() {
+            @Override
+            public void onResult(UpdateResult result) {
+            }
+
+            @Override
+            public void onCheckpoint(String runId) {
+                runIds.add(runId);
+            }
+        });
+
+        // Roll the content and checkpoint back to how they'd look after a failure in the second batch
+        ResourceResolver resolver = context.resourceResolver();
+        resolver.getResource(BASE_PATH).getChildren().forEach(page ->
+                page.getChild("jcr:content").adaptTo(ModifiableValueMap.class).put("test", "added"));
+        ModifiableValueMap checkpoint = resolver.getResource("/var/nodemorph/checkpoints/" + runIds.get(0)).adaptTo(ModifiableValueMap.class);
+        checkpoint.put("state", "Running");
+        checkpoint.put("lastPath", BASE_PATH + "/fly-fishing-the-amazon");
+        checkpoint.put("processed", 2L);
+        checkpoint.put("modified", 2L);
+        checkpoint.put("batches", 1);
+        resolver.commit();
+
+        Map<String, String> resumeParams = new HashMap<>();
+        resumeParams.put("operation", "resume");
+        resumeParams.put("runId", runIds.get(0));
+        List<UpdateResult> results = updateService.processUpdate(new UpdateRequest(resumeParams, resolver));
+
+        assertEquals(Arrays.asList(BASE_PATH + "/hours-of-wilderness/jcr:content", BASE_PATH + "/skitouring/jcr:content",
+                        BASE_PATH + "/steelhead-and-spines-in-alaska/jcr:content", BASE_PATH + "/wester-australia-by-camper-van/jcr:content"),
+                results.stream().map(result -> result.path).collect(Collectors.toList()));
+        assertEquals("added", resolver.getResource(BASE_PATH + "/arctic-surfing-in-lofoten/jcr:content").getValueMap().get("test"));
+        assertEquals("added", resolver.getResource(BASE_PATH + "/fly-fishing-the-amazon/jcr:content").getValueMap().get("test"));
+        assertEquals("modified", resolver.getResource(BASE_PATH + "/skitouring/jcr:content").getValueMap().get("test"));
+
+        ValueMap after = resolver.getResource("/var/nodemorph/checkpoints/" + runIds.get(0)).getValueMap();
+        assertEquals("Done", after.get("state", String.class));
+        assertEquals(6L, after.get("processed", 0L));
+        assertEquals(3, after.get("batches", 0));
+    }
+
+    @Test
+    void testResumeRequiresCheckpoint() {
+        Map<String, String> params = new HashMap<>();
+        params.put("operation", "resume");
+        params.put("runId", "missing");
+
+        List<UpdateResult> results = updateService.processUpdate(new UpdateRequest(params, context.resourceResolver()));
+
+        assertEquals(1, results.size());
+        assertEquals("Error: Checkpoint not found", results.get(0).action);
+        assertThrows(IllegalArgumentException.class, () -> new UpdateRequest(Collections.singletonMap("operation", "resume"),
+                context.resourceResolver()));
+    }
+
+    private Map<String, String> checkpointedAddParams() {
+        Map<String, String> params = new HashMap<>();
+        params.put("path", BASE_PATH);
+        params.put("operation", "add");
+        params.put("properties", "test=modified");
+        params.put("pageOnly", "true");
+        params.put("dryRun", "false");
+        params.put("batchSize", "2");
+        params.put("checkpoint", "true");
+        return params;
+    }
+
+    /** Answers every query with the pages below the base path, ordered by path as a checkpointed query asks for. */
+    private void mockPagesInPathOrder() {
+        when(searchResult.getResources()).thenAnswer(invocation -> {
+            List<Resource> pages = new ArrayList<>();
+            context.resourceResolver().getResource(BASE_PATH).getChildren().forEach(pages::add);
+            pages.sort(Comparator.comparing(Resource::getPath));
+            return pages.iterator();
+        });
+    }
+
+    @Test
+    void testDryRunDoesNotCommit() {
+        Map<String, String> params = new HashMap<>();
+        params.put("path", BASE_PATH + "/skitouring");
+        params.put("operation", "delete");
+        params.put("propNames", "test");
+        params.put("pageOnly", "true");
+        params.put("dryRun", "true");
+        params.put("batchSize", "1");
+
+        UpdateRequest request = new UpdateRequest(params, context.resourceResolver());
+        Resource skitouring = context.resourceResolver().getResource(BASE_PATH + "/skitouring");
+        when(searchResult.getResources()).thenReturn(Collections.singletonList(skitouring).iterator());
+
+        List<CommitBatch> batches = new ArrayList<>();
+        updateService.processUpdate(request, new UpdateListener() {
+            @Override
+            public void onResult(UpdateResult result) {
+                assertEquals("Pending", result.status);
+            }
+
+            @Override
+            public void onBatch(CommitBatch batch) {
+                batches.add(batch);
+            }
+        });
+
+        assertTrue(batches.isEmpty(), "Dry runs should never commit");
+        ValueMap props = skitouring.getChild("jcr:content").getValueMap();
+        assertTrue(props.containsKey("test"), "Property should survive a dry run");
+    }
+
+    @Test
+    void testParallelModeMergesPartitions() throws Exception {
+        ResourceResolver resolver = mock(ResourceResolver.class);
+        Resource root = mock(Resource.class);
+        List<Resource> subtrees = new ArrayList<>();
+        Queue<SearchResult> pages = new ConcurrentLinkedQueue<>();
+        for (int i = 1; i <= 3; i++) {
+            Resource subtree = mock(Resource.class);
+            when(subtree.getPath()).thenReturn(BASE_PATH + "/site" + i);
+            subtrees.add(subtree);
+
+            Resource node = mock(Resource.class);
+            when(node.getPath()).thenReturn(BASE_PATH + "/site" + i + "/node");
+            when(node.getResourceType()).thenReturn("nt:unstructured");
+            when(node.adaptTo(ModifiableValueMap.class))
+                    .thenReturn(new ModifiableValueMapDecorator(new HashMap<>(Collections.singletonMap("test", "added"))));
+            SearchResult page = mock(SearchResult.class);
+            when(page.getResources()).thenReturn(Collections.singletonList(node).iterator());
+            pages.add(page);
+        }
+        when(resolver.getResource(BASE_PATH)).thenReturn(root);
+        when(root.getChildren()).thenReturn(subtrees);
+        when(resolver.clone(null)).thenAnswer(invocation -> mock(ResourceResolver.class));
+        when(query.getResult()).thenAnswer(invocation -> pages.poll());
+
+        Map<String, String> params = new HashMap<>();
+        params.put("path", BASE_PATH);
+        params.put("operation", "delete");
+        params.put("propNames", "test");
+        params.put("dryRun", "false");
+        params.put("parallel", "true");
+        UpdateRequest request = new UpdateRequest(params, resolver);
+
+        List<UpdateResult> results = new ArrayList<>();
+        List<CommitBatch> batches = new ArrayList<>();
+        updateService.processUpdate(request, new UpdateListener() {
+            @Override
+            public void onResult(UpdateResult result) {
+                results.add(result);
+            }
+
+            @Override
+            public void onBatch(CommitBatch batch) {
+                batches.add(batch);
+            }
+        });
+
+        assertEquals(3, results.size(), "Each subtree should report its node");
+        assertTrue(results.stream().allMatch(r -> "Done".equals(r.status)));
+        assertEquals(Arrays.asList(1, 2, 3), batches.stream().map(b -> b.number).sorted().collect(Collectors.toList()),
+                "Batches should be numbered across partitions");
+        verify(resolver, times(3)).clone(null);
+        verify(resolver, never()).commit();
+    }
+
+    @Test
+    void testTraversalGuardRefusesUpdate() {
+        QueryPlan plan = new QueryPlan("/jcr:root/content//element(*, nt:base)");
+        plan.traversal = true;
+        plan.allowed = false;
+        plan.message = "Too many nodes";
+        QueryPlanService planService = mock(QueryPlanService.class);
+        when(planService.explain(any(), any())).thenReturn(plan);
+        context.registerService(QueryPlanService.class, planService, "service.ranking", 100);
+        UpdateServiceImpl guardedService = context.registerInjectActivateService(new UpdateServiceImpl());
+
+        Map<String, String> params = new HashMap<>();
+        params.put("path", BASE_PATH);
+        params.put("operation", "delete");
+        params.put("propNames", "test");
+        params.put("dryRun", "false");
+
+        List<UpdateResult> results = guardedService.processUpdate(new UpdateRequest(params, context.resourceResolver()));
+
+        assertEquals(1, results.size());
+        assertEquals("Failed", results.get(0).status);
+        assertEquals("Too many nodes", results.get(0).message);
+        verify(queryBuilder, never()).createQuery(any(PredicateGroup.class), any());
+    }
+
+    @Test
+    void testTraversalGuardRefusesLargeTreeWalk() {
+        QueryPlanServiceImpl planService = new QueryPlanServiceImpl();
+        context.registerInjectActivateService(planService, "traversalLimit", 5L, "service.ranking", 100);
+        UpdateServiceImpl guardedService = context.registerInjectActivateService(new UpdateServiceImpl(), "journalPath", "");
+
+        Map<String, String> params = new HashMap<>();
+        params.put("path", BASE_PATH);
+        params.put("operation", "delete");
+        params.put("propNames", "test");
+        params.put("dryRun", "false");
+        params.put("queryEngine", "traversal");
+
+        List<UpdateResult> results = guardedService.processUpdate(new UpdateRequest(params, context.resourceResolver()));
+
+        assertEquals(1, results.size());
+        assertEquals("Failed", results.get(0).status);
+        assertTrue(results.get(0).message.contains("more than 5 nodes"));
+    }
+
+    @Test
+    void testSql2EngineRunsThroughQueryManager() throws Exception {
+        Resource node = mock(Resource.class);
+        when(node.getPath()).thenReturn(BASE_PATH + "/node");
+        when(node.getResourceType()).thenReturn("nt:unstructured");
+        when(node.adaptTo(ModifiableValueMap.class))
+                .thenReturn(new ModifiableValueMapDecorator(new HashMap<>(Collections.singletonMap("test", "added"))));
+        Node jcrNode = mock(Node.class);
+        when(jcrNode.getPath()).thenReturn(BASE_PATH + "/node");
+        NodeIterator jcrNodes = mock(NodeIterator.class);
+        when(jcrNodes.hasNext()).thenReturn(true, false);
+        when(jcrNodes.nextNode()).thenReturn(jcrNode);
+
+        javax.jcr.query.QueryResult sql2Result = mock(javax.jcr.query.QueryResult.class);
+        when(sql2Result.getNodes()).thenReturn(jcrNodes);
+        javax.jcr.query.Query sql2Query = mock(javax.jcr.query.Query.class);
+        when(sql2Query.execute()).thenReturn(sql2Result);
+        QueryManager queryManager = mock(QueryManager.class);
+        when(queryManager.createQuery(anyString(), eq(javax.jcr.query.Query.JCR_SQL2))).thenReturn(sql2Query);
+        javax.jcr.query.Query explainQuery = mock(javax.jcr.query.Query.class);
+        javax.jcr.query.QueryResult explainResult = mock(javax.jcr.query.QueryResult.class);
+        when(explainResult.getRows()).thenReturn(mock(RowIterator.class));
+        when(explainQuery.execute()).thenReturn(explainResult);
+        when(queryManager.createQuery(startsWith("explain "), anyString())).thenReturn(explainQuery);
+        Workspace workspace = mock(Workspace.class);
+        when(workspace.getQueryManager()).thenReturn(queryManager);
+        Session session = mock(Session.class);
+        when(session.getWorkspace()).thenReturn(workspace);
+        ResourceResolver resolver = mock(ResourceResolver.class);
+        when(resolver.adaptTo(Session.class)).thenReturn(session);
+        when(resolver.getResource(BASE_PATH + "/node")).thenReturn(node);
+
+        Map<String, String> params = new HashMap<>();
+        params.put("path", BASE_PATH);
+        params.put("operation", "delete");
+        params.put("propNames", "test");
+        params.put("dryRun", "false");
+        params.put("queryEngine", "sql2");
+
+        List<UpdateResult> results = updateService.processUpdate(new UpdateRequest(params, resolver));
+
+        assertEquals(1, results.size());
+        assertEquals("Done", results.get(0).status);
+        verify(queryManager).createQuery("SELECT * FROM [nt:base] AS n WHERE ISDESCENDANTNODE(n, [" + BASE_PATH + "])",
+                javax.jcr.query.Query.JCR_SQL2);
+        verify(queryBuilder, never()).createQuery(any(PredicateGroup.class), any());
+        verify(resolver).commit();
+    }
+
+    @Test
+    void testAutoEngineWalksSmallSubtrees() {
+        UpdateServiceImpl autoService = context.registerInjectActivateService(new UpdateServiceImpl(), "treeWalkThreshold", 100);
+
+        Map<String, String> params = new HashMap<>();
+        params.put("path", BASE_PATH);
+        params.put("operation", "add");
+        params.put("properties", "category=Adventure");
+        params.put("pageOnly", "true");
+        params.put("dryRun", "true");
+        params.put("queryEngine", "auto");
+
+        UpdateRequest request = new UpdateRequest(params, context.resourceResolver());
+        List<UpdateResult> results = autoService.processUpdate(request);
+
+        assertEquals("traversal", request.queryEngine);
+        assertEquals(6, results.size(), "Every page below the path should be found without a query");
+        assertTrue(results.stream().allMatch(result -> result.path.endsWith("/jcr:content")));
+        verify(queryBuilder, never()).createQuery(any(PredicateGroup.class), any());
+    }
+
+    @Test
+    void testAutoEngineQueriesLargeSubtrees() {
+        UpdateServiceImpl autoService = context.registerInjectActivateService(new UpdateServiceImpl(), "treeWalkThreshold", 5);
+
+        Map<String, String> params = new HashMap<>();
+        params.put("path", BASE_PATH);
+        params.put("operation", "add");
+        params.put("properties", "category=Adventure");
+        params.put("dryRun", "true");
+        params.put("queryEngine", "auto");
+
+        UpdateRequest request = new UpdateRequest(params, context.resourceResolver());
+        autoService.processUpdate(request);
+
+        assertEquals("querybuilder", request.queryEngine);
+        verify(queryBuilder).createQuery(any(PredicateGroup.class), any());
+    }
+
 }
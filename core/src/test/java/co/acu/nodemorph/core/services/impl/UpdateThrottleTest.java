@@ -0,0 +1,110 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.services.impl;
+
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UpdateThrottleTest {
+
+    @Test
+    void testSlowCommitsShrinkBatchesAndPause() {
+        UpdateThrottle throttle = new UpdateThrottle(1000, 1000, 0, 400, () -> -1);
+
+        assertEquals(0, throttle.afterCommit(100));
+        assertEquals(1000, throttle.getBatchSize(), "The batch size should never exceed the configured size");
+
+        assertEquals(UpdateThrottle.MIN_PAUSE_MILLIS, throttle.afterCommit(3000));
+        assertEquals(500, throttle.getBatchSize());
+        assertEquals(200, throttle.afterCommit(3000));
+        assertEquals(400, throttle.afterCommit(3000));
+        assertEquals(400, throttle.afterCommit(3000), "The pause should be capped");
+        assertEquals(62, throttle.getBatchSize());
+
+        assertEquals(200, throttle.afterCommit(10));
+        assertEquals(162, throttle.getBatchSize());
+        assertEquals(100, throttle.afterCommit(10));
+        assertEquals(0, throttle.afterCommit(10));
+    }
+
+    @Test
+    void testObservationQueueCountsAsPressure() {
+        AtomicInteger depth = new AtomicInteger(20000);
+        UpdateThrottle throttle = new UpdateThrottle(100, 0, 5000, 1000, depth::get);
+
+        assertEquals(UpdateThrottle.MIN_PAUSE_MILLIS, throttle.afterCommit(60000), "Only the queue should count");
+        assertEquals(50, throttle.getBatchSize());
+        assertEquals(20000, throttle.getLastQueueDepth());
+        for (int i = 0; i < 10; i++) {
+            throttle.afterCommit(0);
+        }
+        assertEquals(UpdateThrottle.MIN_BATCH_SIZE, throttle.getBatchSize());
+
+        // Between half the target and the target, the run holds steady
+        depth.set(4000);
+        long pause = throttle.afterCommit(0);
+        assertEquals(UpdateThrottle.MIN_BATCH_SIZE, throttle.getBatchSize());
+        assertEquals(pause, throttle.afterCommit(0));
+
+        depth.set(0);
+        throttle.afterCommit(0);
+        assertEquals(20, throttle.getBatchSize());
+    }
+
+    @Test
+    void testObservationQueueMonitorReadsDeepestQueue() throws Exception {
+        MBeanServer server = MBeanServerFactory.newMBeanServer();
+        ObservationQueueMonitor monitor = new ObservationQueueMonitor(server, 0);
+        assertEquals(-1, monitor.getQueueDepth(), "Without Oak's statistics the depth is unknown");
+
+        server.registerMBean(new StandardMBean(new ObserverStats(7), ObserverStatsMBean.class),
+                new ObjectName("org.apache.jackrabbit.oak:type=BackgroundObserverStats,name=first"));
+        server.registerMBean(new StandardMBean(new ObserverStats(42), ObserverStatsMBean.class),
+                new ObjectName("org.apache.jackrabbit.oak:type=BackgroundObserverStats,name=second"));
+        assertEquals(42, monitor.getQueueDepth());
+
+        ObservationQueueMonitor cached = new ObservationQueueMonitor(server, 60000);
+        assertEquals(42, cached.getQueueDepth());
+        server.unregisterMBean(new ObjectName("org.apache.jackrabbit.oak:type=BackgroundObserverStats,name=second"));
+        assertEquals(42, cached.getQueueDepth(), "Readings should be reused within the sample interval");
+        assertEquals(7, monitor.getQueueDepth());
+    }
+
+    public interface ObserverStatsMBean {
+        int getQueueSize();
+    }
+
+    static class ObserverStats implements ObserverStatsMBean {
+        private final int queueSize;
+
+        ObserverStats(int queueSize) {
+            this.queueSize = queueSize;
+        }
+
+        @Override
+        public int getQueueSize() {
+            return queueSize;
+        }
+    }
+
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.servlets;
+
+import co.acu.nodemorph.core.dto.ManifestRow;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ManifestReaderTest {
+
+    @Test
+    void testCsv() throws IOException {
+        String csv = "path,jcr:title,tags,description\r\n"
+                + "/content/a,\"Say \"\"hi\"\", world\",\"[one, two]\",\n"
+                + "\n"
+                + "/content/b,,,\"Line one\nline two\"\n"
+                + ",orphan\n"
+                + "/content/c,a,b,c,d";
+
+        List<ManifestRow> rows = readAll(csv, "csv");
+
+        assertEquals(4, rows.size());
+        ManifestRow a = rows.get(0);
+        assertEquals("/content/a", a.path);
+        assertEquals(2, a.line);
+        assertEquals("Say \"hi\", world", a.properties.get("jcr:title"));
+        assertArrayEquals(new String[]{"one", "two"}, (String[]) a.properties.get("tags"));
+        assertFalse(a.properties.containsKey("description"), "Empty cells should leave properties unchanged");
+
+        ManifestRow b = rows.get(1);
+        assertEquals(4, b.line);
+        assertEquals(1, b.properties.size());
+        assertEquals("Line one\nline two", b.properties.get("description"));
+
+        assertEquals("Missing path", rows.get(2).error);
+        assertEquals(6, rows.get(2).line);
+        assertEquals("/content/c", rows.get(3).path);
+        assertNotNull(rows.get(3).error, "Rows wider than the header should be rejected");
+    }
+
+    @Test
+    void testCsvUnterminatedQuoteFailsOnlyItsRow() throws IOException {
+        String csv = "path,jcr:title\n"
+                + "/content/a,\"Open\n"
+                + "/content/b,Next\n"
+                + "/content/c,\"\"\n";
+
+        List<ManifestRow> rows = readAll(csv, "csv");
+
+        assertEquals(3, rows.size());
+        assertEquals("Unterminated quoted cell", rows.get(0).error);
+        assertEquals("/content/a", rows.get(0).path);
+        assertEquals(2, rows.get(0).line);
+        assertEquals("Next", rows.get(1).properties.get("jcr:title"));
+        assertEquals(3, rows.get(1).line);
+        assertEquals("/content/c", rows.get(2).path);
+        assertNull(rows.get(2).error);
+        assertTrue(rows.get(2).properties.isEmpty());
+        assertEquals(4, rows.get(2).line);
+        assertThrows(IllegalArgumentException.class, () -> ManifestReader.open(new StringReader("path,\"title\n/content/a,b\n"), "csv"));
+    }
+
+    @Test
+    void testCsvUnterminatedQuoteIsOnlyBufferedUpToALimit() throws IOException {
+        StringBuilder csv = new StringBuilder("path,jcr:title\n/content/a,\"Open\n");
+        for (int i = 0; i < 20000; i++) {
+            csv.append("/content/p").append(i).append(",Title ").append(i).append('\n');
+        }
+        csv.append("/content/z,\"Line one\nline two\"\n");
+
+        List<ManifestRow> rows = readAll(csv.toString(), "csv");
+
+        assertEquals(20002, rows.size());
+        assertEquals("Unterminated quoted cell", rows.get(0).error);
+        assertEquals(1, rows.stream().filter(row -> row.error != null).count());
+        assertEquals("Title 19999", rows.get(20000).properties.get("jcr:title"));
+        assertEquals(20002, rows.get(20000).line);
+        assertEquals("Line one\nline two", rows.get(20001).properties.get("jcr:title"));
+    }
+
+    @Test
+    void testCsvHeaderMustStartWithPath() {
+        assertThrows(IllegalArgumentException.class, () -> ManifestReader.open(new StringReader("title,path\n"), "csv"));
+        assertThrows(IllegalArgumentException.class, () -> ManifestReader.open(new StringReader(""), "csv"));
+        assertThrows(IllegalArgumentException.class, () -> ManifestReader.open(new StringReader("path\n"), "xml"));
+    }
+
+    @Test
+    void testNdjson() throws IOException {
+        String ndjson = "{\"path\":\"/content/a\",\"properties\":{\"title\":\"Home\",\"count\":3,\"ratio\":0.5,"
+                + "\"hidden\":true,\"tags\":[\"one\",\"two\"],\"legacy\":null}}\n"
+                + "\n"
+                + "not json\n"
+                + "{\"properties\":{}}\n";
+
+        List<ManifestRow> rows = readAll(ndjson, "ndjson");
+
+        assertEquals(3, rows.size());
+        ManifestRow a = rows.get(0);
+        assertEquals("/content/a", a.path);
+        assertEquals("Home", a.properties.get("title"));
+        assertEquals(3L, a.properties.get("count"));
+        assertEquals(0.5, a.properties.get("ratio"));
+        assertEquals(true, a.properties.get("hidden"));
+        assertArrayEquals(new String[]{"one", "two"}, (String[]) a.properties.get("tags"));
+        assertTrue(a.properties.containsKey("legacy"));
+        assertNull(a.properties.get("legacy"), "Null values should remove the property");
+
+        assertEquals(3, rows.get(1).line);
+        assertNotNull(rows.get(1).error);
+        assertEquals("Missing path", rows.get(2).error);
+    }
+
+    @Test
+    void testNdjsonUnsupportedValuesFailOnlyTheirRow() throws IOException {
+        String ndjson = "{\"path\":\"/content/a\",\"properties\":{\"tags\":[\"one\",null]}}\n"
+                + "{\"path\":\"/content/b\",\"properties\":{\"tags\":[{\"nested\":true}]}}\n"
+                + "{\"path\":\"/content/c\",\"properties\":{\"count\":123456789012345678901234567890}}\n"
+                + "{\"path\":\"/content/d\",\"properties\":{\"count\":-9223372036854775808}}\n";
+
+        List<ManifestRow> rows = readAll(ndjson, "ndjson");
+
+        assertEquals(4, rows.size());
+        assertEquals("Unsupported value in tags", rows.get(0).error);
+        assertEquals("Unsupported value in tags", rows.get(1).error);
+        assertEquals("/content/c", rows.get(2).path);
+        assertEquals("Number out of range for count", rows.get(2).error);
+        assertEquals(Long.MIN_VALUE, rows.get(3).properties.get("count"));
+    }
+
+    @Test
+    void testDetectFormat() {
+        assertEquals("ndjson", ManifestReader.detectFormat(null, "changes.ndjson"));
+        assertEquals("ndjson", ManifestReader.detectFormat("", "changes.JSONL"));
+        assertEquals("csv", ManifestReader.detectFormat(null, "changes.csv"));
+        assertEquals("csv", ManifestReader.detectFormat(null, null));
+        assertEquals("ndjson", ManifestReader.detectFormat("NDJSON", "changes.csv"), "An explicit format should win");
+    }
+
+    private static List<ManifestRow> readAll(String content, String format) throws IOException {
+        List<ManifestRow> rows = new ArrayList<>();
+        try (ManifestReader reader = ManifestReader.open(new StringReader(content), format)) {
+            reader.forEachRemaining(rows::add);
+        }
+        return rows;
+    }
+
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.servlets;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchCsvWriterTest {
+
+    @Test
+    void testWritesHeaderAndQuotedRows() {
+        StringWriter out = new StringWriter();
+        SearchCsvWriter csv = new SearchCsvWriter(new PrintWriter(out), Arrays.asList("jcr:title", "tags"));
+
+        Map<String, Object> hit = new LinkedHashMap<>();
+        hit.put("jcr:path", "/content/a");
+        hit.put("jcr:title", "Say \"hi\"");
+        hit.put("tags", Arrays.asList("one", "two"));
+        csv.accept(hit);
+
+        Map<String, Object> sparse = new LinkedHashMap<>();
+        sparse.put("jcr:path", "/content/b");
+        csv.accept(sparse);
+
+        assertEquals("\"Path\",\"jcr:title\",\"tags\"\n"
+                + "\"/content/a\",\"Say \"\"hi\"\"\",\"one,two\"\n"
+                + "\"/content/b\",\"-\",\"-\"\n", out.toString());
+        assertEquals(2, csv.getRows());
+    }
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.servlets;
+
+import co.acu.nodemorph.core.dto.CommitBatch;
+import co.acu.nodemorph.core.dto.UpdateResult;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UpdateResponseWriterTest {
+
+    @Test
+    void testWritesActionsBatchesAndTotal() throws Exception {
+        StringWriter out = new StringWriter();
+        try (UpdateResponseWriter writer = new UpdateResponseWriter(out)) {
+            writer.onResult(new UpdateResult("/content/a", "Added foo", "Done"));
+            writer.onBatch(new CommitBatch(1, 1, "/content/a", "Committed"));
+            writer.onResult(new UpdateResult("/content/b", "Error: Save failed", "Failed", "Access denied"));
+        }
+
+        JsonObject json = JsonParser.parseString(out.toString()).getAsJsonObject();
+        JsonArray actions = json.getAsJsonArray("actions");
+        assertEquals(2, actions.size());
+        assertEquals("/content/a", actions.get(0).getAsJsonObject().get("path").getAsString());
+        assertEquals("Access denied", actions.get(1).getAsJsonObject().get("message").getAsString());
+        assertEquals(1, json.getAsJsonArray("batches").size());
+        assertEquals(1, json.get("total").getAsInt(), "Failed actions should not count towards the total");
+    }
+
+    @Test
+    void testActionsAreWrittenBeforeClose() throws Exception {
+        StringWriter out = new StringWriter();
+        UpdateResponseWriter writer = new UpdateResponseWriter(out);
+        writer.onResult(new UpdateResult("/content/a", "Added foo", "Done"));
+
+        assertTrue(out.toString().contains("/content/a"));
+        assertFalse(out.toString().contains("total"));
+    }
+
+    @Test
+    void testSummaryModeWritesSampleAndCounts() throws Exception {
+        StringWriter out = new StringWriter();
+        try (UpdateResponseWriter writer = new UpdateResponseWriter(out, new UpdateSummaryCollector("/content", 1))) {
+            writer.onNodeProcessed("/content/a");
+            writer.onResult(new UpdateResult("/content/a", "Set foo=bar", "Pending"));
+            writer.onNodeModified("/content/a");
+            writer.onNodeProcessed("/content/b");
+            writer.onResult(new UpdateResult("/content/b", "Set foo=bar", "Pending"));
+            writer.onNodeModified("/content/b");
+            assertFalse(out.toString().contains("/content/a"), "Actions should not be streamed in summary mode");
+        }
+
+        JsonObject json = JsonParser.parseString(out.toString()).getAsJsonObject();
+        assertEquals(1, json.getAsJsonArray("actions").size());
+        JsonObject summary = json.getAsJsonObject("summary");
+        assertEquals(2, summary.get("nodesModified").getAsLong());
+        assertEquals(2, summary.getAsJsonObject("actions").get("Set foo").getAsLong());
+        assertEquals(1, summary.getAsJsonObject("subtrees").get("/content/a").getAsLong());
+        assertEquals(2, json.get("total").getAsInt());
+    }
+
+    @Test
+    void testEmptyRun() throws Exception {
+        StringWriter out = new StringWriter();
+        new UpdateResponseWriter(out).close();
+
+        assertEquals("{\"actions\":[],\"batches\":[],\"total\":0}", out.toString());
+    }
+
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright © 2025 Gregory Kaczmarczyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.acu.nodemorph.core.servlets;
+
+import co.acu.nodemorph.core.dto.UpdateResult;
+import co.acu.nodemorph.core.dto.UpdateSummary;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UpdateSummaryCollectorTest {
+
+    private static final String BASE_PATH = "/content/site";
+
+    @Test
+    void testCountsPerActionTypeAndSubtree() {
+        UpdateSummaryCollector collector = new UpdateSummaryCollector(BASE_PATH, 5);
+        for (int i = 0; i < 3; i++) {
+            String path = BASE_PATH + "/en/page" + i + "/jcr:content";
+            collector.onNodeProcessed(path);
+            collector.onResult(new UpdateResult(path, "Replace jcr:title: Old " + i + " → New " + i, "Pending"));
+            collector.onNodeModified(path);
+        }
+        collector.onNodeProcessed(BASE_PATH + "/fr/jcr:content");
+        collector.onResult(new UpdateResult(BASE_PATH + "/fr/jcr:content", "Set category=Adventure", "Pending"));
+        collector.onNodeModified(BASE_PATH + "/fr/jcr:content");
+        collector.onResult(new UpdateResult(BASE_PATH + "/de", "Error: Source node not found: /content/other", "Failed"));
+
+        UpdateSummary summary = collector.getSummary();
+        assertEquals(4, summary.nodesProcessed);
+        assertEquals(4, summary.nodesModified);
+        assertEquals(5, summary.results);
+        assertEquals(4L, summary.statuses.get("Pending"));
+        assertEquals(1L, summary.statuses.get("Failed"));
+        assertEquals(3L, summary.actions.get("Replace jcr:title"));
+        assertEquals(1L, summary.actions.get("Set category"));
+        assertEquals(1L, summary.actions.get("Error: Source node not found"));
+        assertEquals(3L, summary.subtrees.get(BASE_PATH + "/en"));
+        assertEquals(1L, summary.subtrees.get(BASE_PATH + "/fr"));
+        assertEquals(5, collector.getSample().size(), "All results should be sampled while the sample isn't full");
+    }
+
+    @Test
+    void testSampleIsBoundedAndTakenFromAllResults() {
+        UpdateSummaryCollector collector = new UpdateSummaryCollector(BASE_PATH, 10, new Random(42));
+        for (int i = 0; i < 10_000; i++) {
+            collector.onResult(new UpdateResult(BASE_PATH + "/page" + i, "Remove legacy", "Pending"));
+        }
+
+        List<UpdateResult> sample = collector.getSample();
+        assertEquals(10, sample.size());
+        Set<String> paths = new HashSet<>();
+        sample.forEach(result -> paths.add(result.path));
+        assertEquals(10, paths.size(), "Sampled results should be distinct");
+        assertTrue(sample.stream().anyMatch(result -> Integer.parseInt(result.path.substring((BASE_PATH + "/page").length())) >= 10),
+                "Results after the first few should be able to replace earlier ones");
+        assertEquals(10_000L, collector.getSummary().actions.get("Remove legacy"));
+    }
+
+    @Test
+    void testKeysAreCapped() {
+        UpdateSummaryCollector collector = new UpdateSummaryCollector(BASE_PATH, 0);
+        for (int i = 0; i < UpdateSummaryCollector.MAX_KEYS + 10; i++) {
+            collector.onNodeModified(BASE_PATH + "/child" + i);
+        }
+        collector.onNodeModified("/content/elsewhere");
+
+        UpdateSummary summary = collector.getSummary();
+        assertEquals(UpdateSummaryCollector.MAX_KEYS + 1, summary.subtrees.size());
+        assertEquals(11L, summary.subtrees.get(UpdateSummaryCollector.OTHER));
+        assertTrue(collector.getSample().isEmpty());
+    }
+
+}
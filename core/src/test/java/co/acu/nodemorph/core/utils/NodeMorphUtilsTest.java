@@ -1,11 +1,13 @@
 package co.acu.nodemorph.core.utils;
 
 import co.acu.nodemorph.core.dto.NodeProperty;
+import co.acu.nodemorph.core.dto.SearchRequest;
 import co.acu.nodemorph.core.dto.UpdateRequest;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -49,6 +51,24 @@ public class NodeMorphUtilsTest {
         assertEquals("nt:base", result.get("type"));
     }
 
+    @Test
+    void testGetQueryParamMap_RegexReplaceMatchesOnExistence() {
+        Map<String, String> params = Map.of(
+                "path", "/content",
+                "operation", "replace",
+                "propName", "jcr:title",
+                "find", "^Ski(.*)",
+                "replace", "Snow$1",
+                "regex", "true"
+        );
+        UpdateRequest request = buildRequest(params);
+
+        Map<String, String> result = NodeMorphUtils.getQueryParamMap(request);
+        assertEquals("jcr:title", result.get("property"));
+        assertEquals("exists", result.get("property.operation"));
+        assertNull(result.get("property.value"));
+    }
+
     @Test
     void testGetQueryParamMap_ReplaceThrowsForInvalidPropName() {
         Map<String, String> params = Map.of(
@@ -63,6 +83,108 @@ public class NodeMorphUtilsTest {
         assertTrue(exception.getMessage().contains("Invalid property name"));
     }
 
+    @Test
+    void testGetSql2Statement_PropertyMatch() {
+        Map<String, String> params = Map.of(
+                "path", "/content/site",
+                "matchType", "property",
+                "ifProp", "sling:resourceType",
+                "ifValue", "it's/type",
+                "queryEngine", "sql2",
+                "indexTag", "nodemorph"
+        );
+
+        assertEquals("SELECT * FROM [nt:base] AS n WHERE ISDESCENDANTNODE(n, [/content/site])"
+                        + " AND n.[sling:resourceType] = 'it''s/type' OPTION(INDEX TAG [nodemorph])",
+                NodeMorphUtils.getSql2Statement(buildRequest(params)));
+    }
+
+    @Test
+    void testGetSql2Statement_CheckpointedRunIsOrderedByPath() {
+        Map<String, String> params = Map.of(
+                "path", "/content/site",
+                "pageOnly", "true",
+                "checkpoint", "true",
+                "indexTag", "nodemorph"
+        );
+        UpdateRequest request = buildRequest(params);
+
+        assertEquals("path", NodeMorphUtils.getQueryParamMap(request).get("orderby"));
+        assertEquals("SELECT * FROM [cq:Page] AS n WHERE ISDESCENDANTNODE(n, [/content/site])"
+                        + " ORDER BY [jcr:path] OPTION(INDEX TAG [nodemorph])",
+                NodeMorphUtils.getSql2Statement(request));
+    }
+
+    @Test
+    void testGetSql2Statement_ResumedRunContinuesAfterLastPath() {
+        Map<String, String> params = Map.of(
+                "path", "/content/site",
+                "pageOnly", "true",
+                "checkpoint", "true"
+        );
+        UpdateRequest request = buildRequest(params);
+        request.resumeAfter = "/content/site/it's";
+
+        assertEquals("SELECT * FROM [cq:Page] AS n WHERE ISDESCENDANTNODE(n, [/content/site])"
+                        + " AND n.[jcr:path] > '/content/site/it''s' ORDER BY [jcr:path]",
+                NodeMorphUtils.getSql2Statement(request));
+    }
+
+    @Test
+    void testGetSql2Statement_SubtreeWithNodeNameWildcard() {
+        Map<String, String> params = Map.of(
+                "path", "/content/site",
+                "matchType", "node",
+                "jcrNodeName", "hero_*"
+        );
+        UpdateRequest request = buildRequest(params).forSubtree("/content/site/en", mock(ResourceResolver.class));
+
+        assertEquals("SELECT * FROM [nt:base] AS n WHERE (ISSAMENODE(n, [/content/site/en]) OR ISDESCENDANTNODE(n, [/content/site/en]))"
+                        + " AND NAME(n) LIKE 'hero\\_%'",
+                NodeMorphUtils.getSql2Statement(request));
+    }
+
+    @Test
+    void testGetSearchQueryParamMap_NodeName() {
+        Map<String, String> params = Map.of(
+                "path", "/content/site",
+                "query", "hero_*",
+                "pageOnly", "true"
+        );
+        SearchRequest request = new SearchRequest(params, mock(ResourceResolver.class));
+
+        Map<String, String> result = NodeMorphUtils.getQueryParamMap(request);
+        assertEquals("/content/site", result.get("path"));
+        assertEquals("hero_*", result.get("nodename"));
+        assertEquals("cq:Page", result.get("type"));
+        assertEquals("path", result.get("orderby"));
+        assertFalse(result.containsKey("property"));
+    }
+
+    @Test
+    void testGetSearchQueryParamMap_SubstringPropertyMatch() {
+        Map<String, String> params = Map.of(
+                "path", "/content",
+                "query", "teaser",
+                "propName", "sling:resourceType",
+                "substringMatch", "true"
+        );
+        SearchRequest request = new SearchRequest(params, mock(ResourceResolver.class));
+
+        Map<String, String> result = NodeMorphUtils.getQueryParamMap(request);
+        assertEquals("sling:resourceType", result.get("property"));
+        assertEquals("%teaser%", result.get("property.value"));
+        assertEquals("like", result.get("property.operation"));
+        assertFalse(result.containsKey("nodename"));
+    }
+
+    @Test
+    void testGetSearchQueryParamMap_RequiresQuery() {
+        SearchRequest request = new SearchRequest(Map.of("path", "/content"), mock(ResourceResolver.class));
+
+        assertThrows(IllegalArgumentException.class, () -> NodeMorphUtils.getQueryParamMap(request));
+    }
+
     @Test
     void testResolvePath_WithParentTraversal() {
         ResourceResolver resolver = mock(ResourceResolver.class);
@@ -85,6 +207,16 @@ public class NodeMorphUtilsTest {
         assertEquals("/base/path/assets", NodeMorphUtils.resolvePath("/base/path", "assets", resolver));
     }
 
+    @Test
+    void testComparePaths_MatchesOakPathOrder() {
+        // Oak sorts ORDER BY [jcr:path] as plain strings, so a sibling with a lower character comes before a child
+        List<String> paths = new ArrayList<>(List.of("/a0", "/a/b", "/a", "/a-b", "/a/b/c", "/B"));
+        paths.sort(NodeMorphUtils::comparePaths);
+
+        assertEquals(List.of("/B", "/a", "/a-b", "/a/b", "/a/b/c", "/a0"), paths);
+        assertEquals(0, NodeMorphUtils.comparePaths("/a/b", "/a/b"));
+    }
+
     @Test
     void testParseProperties_SingleAndMultiValue() {
         String input = "title=Home\ncolors=[red, green, blue]\n";
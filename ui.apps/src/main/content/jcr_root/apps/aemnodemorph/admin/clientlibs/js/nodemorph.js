@@ -34,7 +34,7 @@
     })
 
     function init() {
-        let lastSearchResults = []
+        let searchResultCount = 0
         const $matchPropCheckbox = $('#matchProperty');
         const $substringMatchWrapper = $('#substring-match-wrapper')
         const $propNameWrapper = $('#property-name-wrapper');
@@ -51,90 +51,97 @@
         })
 
         // Search Form Submission
+        let searchParams = null
+        let searchCursor = null
+
         $('#nodemorph-search-form').on('submit', function(e) {
             e.preventDefault();
-            $('#result-text').text('Searching...')
-            $('#export-csv-btn').hide()
-            $('#nodemorph-search-results').hide()
-            $('#nodemorph-search-results .coral-Table-body').empty()
-            $('#nodemorph-search-form button[type="submit"]').prop('disabled', true)
             const path = $('#nodepath').val()
             const query = $queryField.val().trim();
             if (!path || !query) {
                 Coral.commons.toast('Please enter a valid path and query', {variant: 'error'})
                 return
             }
+            $('#result-text').text('Searching...')
+            $('#export-csv-btn').hide()
+            $('#count-values-btn').hide()
+            $('#nodemorph-search-facets').hide().empty()
+            $('#search-load-more-btn').hide()
+            $('#nodemorph-search-results').hide()
+            $('#nodemorph-search-results .coral-Table-body').empty()
+            $('#search-results-header').empty()
+            $('#nodemorph-search-form button[type="submit"]').prop('disabled', true)
+            searchResultCount = 0
+
             const matchProp = $matchPropCheckbox.prop('checked');
-            const propName = $('#property-name-field').val();
-            const substringMatch = $("coral-checkbox[name='substringMatch']").prop('checked')
-            const pageOnly = $("coral-checkbox[name='pageOnly']").prop('checked');
-            const verbose = $("coral-checkbox[name='verbose']").prop('checked');
             const propertiesInput = $('#properties-field').val()
             const properties = propertiesInput ? propertiesInput.split(',').map(p => p.trim()).filter(p => p) : [PN_JCR_TITLE, PN_JCR_PRIMARY_TYPE]
-            let url = '/bin/querybuilder.json?path=' + encodeURIComponent(path) + '&p.limit=1000&p.hits=full&p.nodedepth=0'
-
-            if (pageOnly) {
-                url += '&type=cq:Page'
+            searchParams = {
+                path: path,
+                query: query,
+                propName: matchProp ? $('#property-name-field').val() : '',
+                substringMatch: $("coral-checkbox[name='substringMatch']").prop('checked'),
+                pageOnly: $("coral-checkbox[name='pageOnly']").prop('checked'),
+                verbose: $("coral-checkbox[name='verbose']").prop('checked'),
+                columns: properties.join(','),
             }
-            if (query) {
-                if (matchProp && propName) {
-                    let queryValue = substringMatch ? encodeURIComponent('%' + query + '%') : encodeURIComponent(query)
-                    url += '&property=' + encodeURIComponent(propName) + '&property.value=' + queryValue
-                    if (substringMatch) {
-                        url += '&property.operation=like'
-                    }
-                } else {
-                    url += '&nodename=' + encodeURIComponent(query)
-                }
-            }
-            properties.forEach((prop, index) => {
-                url += `&${index + 1}_property=${encodeURIComponent(prop)}`
-            })
 
-            $.getJSON(url, function(data) {
+            const headers = ['Path'].concat(properties)
+            const headerRow = document.createElement('tr')
+            headerRow.className = 'coral-Table-row'
+            headerRow.innerHTML = headers.map(h => `<th class="coral-Table-headerCell">${h}</th>`).join('')
+            $('#search-results-header').append(headerRow)
+
+            loadSearchPage(properties, null)
+        });
+
+        $('#search-load-more-btn').on('click', function() {
+            const propertiesInput = $('#properties-field').val()
+            const properties = propertiesInput ? propertiesInput.split(',').map(p => p.trim()).filter(p => p) : [PN_JCR_TITLE, PN_JCR_PRIMARY_TYPE]
+            $(this).prop('disabled', true)
+            loadSearchPage(properties, searchCursor)
+        })
+
+        function loadSearchPage(properties, cursor) {
+            const params = Object.assign({}, searchParams, cursor ? { cursor: cursor } : {})
+            $.getJSON('/bin/nodemorph/search', params, function(data) {
                 $('#nodemorph-search-form button[type="submit"]').prop('disabled', false)
-                const tbody = $('#nodemorph-search-results .coral-Table-body').empty();
-                const thead = $('#search-results-header').empty()
-                const resultCount = data.results;
-                $('#result-text').text(`Found ${resultCount} result${resultCount === 1 ? '' : 's'}`)
-                lastSearchResults = data.hits
+                $('#search-load-more-btn').prop('disabled', false)
+                const tbody = $('#nodemorph-search-results .coral-Table-body')
+                searchResultCount += data.hits.length
+                searchCursor = data.cursor
+
+                const resultCount = searchResultCount
+                $('#result-text').text(data.more
+                    ? `Showing ${resultCount} of ${data.total}+ results`
+                    : `Found ${resultCount} result${resultCount === 1 ? '' : 's'}`)
                 $('#export-csv-btn').css('display', resultCount > 0 ? 'inline-block' : 'none')
+                $('#count-values-btn').css('display', resultCount > 0 ? 'inline-block' : 'none')
+                $('#search-load-more-btn').css('display', data.more ? 'inline-block' : 'none')
                 $('#nodemorph-search-results').css('display', resultCount > 0 ? 'table' : 'none')
 
-                if (data.hits && data.hits.length > 0) {
-                    const displayHeaders = propertiesInput ? properties : ['Title', 'Type']
-                    const headers = ['Path'].concat(properties.length > 0 ? properties : [PN_JCR_TITLE, PN_JCR_PRIMARY_TYPE])
-                    const headerRow = document.createElement('tr')
-                    headerRow.className = 'coral-Table-row'
-                    headerRow.innerHTML = headers.map(h => `<th class="coral-Table-headerCell">${h}</th>`).join('')
-                    thead.append(headerRow)
-
-                    data.hits.forEach(function(hit) {
-                        const row = document.createElement('tr');
-                        row.className = 'coral-Table-row';
-                        const cells = [hit[PN_JCR_PATH]]
-                        if (propertiesInput) {
-                            properties.forEach(prop => cells.push(hit[prop] || '-'))
-                        } else {
-                            cells.push(hit[PN_JCR_TITLE] || '-', hit[PN_JCR_PRIMARY_TYPE])
-                        }
-                        row.innerHTML = cells.map(cell => `<td class="coral-Table-cell">${cell}</td>`).join('')
-                        if (verbose) {
-                            const props = Object.entries(hit)
-                                .filter(([key]) => ![PN_JCR_PATH, 'name', PN_JCR_PRIMARY_TYPE].includes(key))
-                                .map(([key, val]) => `${key}: ${val}`)
-                                .join('\n');
-                            row.setAttribute('title', props);
-                        }
-                        tbody.append(row);
-                    });
-                } else {
-                    tbody.innerHTML = '<tr class="coral-Table-row"><td class="coral-Table-cell" colspan="' + (properties.length + 1 || 3) + '">No results found</td></tr>'
-                }
+                data.hits.forEach(function(hit) {
+                    const row = document.createElement('tr');
+                    row.className = 'coral-Table-row';
+                    const cells = [hit[PN_JCR_PATH]]
+                    properties.forEach(prop => cells.push(hit[prop] !== undefined ? hit[prop] : '-'))
+                    row.innerHTML = cells.map(cell => `<td class="coral-Table-cell">${cell}</td>`).join('')
+                    if (searchParams.verbose) {
+                        const props = Object.entries(hit)
+                            .filter(([key]) => ![PN_JCR_PATH, PN_JCR_PRIMARY_TYPE].includes(key))
+                            .map(([key, val]) => `${key}: ${val}`)
+                            .join('\n');
+                        row.setAttribute('title', props);
+                    }
+                    tbody.append(row);
+                });
             }).fail(function(xhr) {
                 $('#nodemorph-search-form button[type="submit"]').prop('disabled', false)
+                $('#search-load-more-btn').prop('disabled', false)
                 $('#result-text').text('Search failed')
                 $('#export-csv-btn').css('display', 'none')
+                $('#count-values-btn').css('display', 'none')
+                $('#search-load-more-btn').css('display', 'none')
                 $('#nodemorph-search-results').css('display', 'none')
                 new Coral.Alert().set({
                     variant: 'error',
@@ -142,38 +149,58 @@
                     content: { innerHTML: 'Check path or server logs: ' + xhr.statusText }
                 }).display();
             });
-        });
+        }
 
-        // Download Search results CSV
+        // Download Search results CSV, streamed by the server so the export is not limited to the loaded pages
         $('#export-csv-btn').on('click', function() {
-            if (lastSearchResults.length === 0) return
+            if (!searchParams) return
 
-            const propertiesInput = $('#properties-field').val()
-            const properties = propertiesInput ? propertiesInput.split(',').map(p => p.trim()).filter(p => p) : [PN_JCR_TITLE, PN_JCR_PRIMARY_TYPE]
-            const displayHeaders = propertiesInput ? properties : ['Title', 'Type']
-            const headers = ['Path'].concat(displayHeaders)
-            const csvRows = [headers.map(h => `"${h}"`).join(',')]
-
-            lastSearchResults.forEach(hit => {
-                const row = [hit[PN_JCR_PATH]]
-                if (properties.length > 0) {
-                    properties.forEach(prop => row.push(hit[prop] || '-'))
-                } else {
-                    row.push(hit[PN_JCR_TITLE] || '-', hit[PN_JCR_PRIMARY_TYPE])
-                }
-                csvRows.push(row.map(val => `"${String(val).replace(/"/g, '""')}"`).join(','))
-            });
-
-            const csvContent = csvRows.join('\n')
-            const blob = new Blob([csvContent], { type: 'text/csv;charset=utf-8;' })
+            const params = Object.assign({}, searchParams)
+            delete params.verbose
             const link = document.createElement('a')
-            const url = URL.createObjectURL(blob)
-            link.setAttribute('href', url)
+            link.setAttribute('href', '/bin/nodemorph/export?' + $.param(params))
             link.setAttribute('download', 'nodemorph-search-results.csv')
             document.body.appendChild(link)
             link.click()
             document.body.removeChild(link)
-            URL.revokeObjectURL(url)
+        });
+
+        // Count the values of the result properties over all hits, computed by the server in one pass
+        $('#count-values-btn').on('click', function() {
+            if (!searchParams) return
+
+            const params = Object.assign({}, searchParams, { facets: searchParams.columns })
+            delete params.verbose
+            const $button = $(this).prop('disabled', true)
+            $.getJSON('/bin/nodemorph/search', params, function(data) {
+                $button.prop('disabled', false)
+                const $facets = $('#nodemorph-search-facets').empty()
+                data.facets.forEach(function(facet) {
+                    const table = $('<table class="coral-Table nodemorph-results-table"></table>')
+                    const caption = `${facet.property}: ${facet.distinct}${facet.complete ? '' : '+'} distinct value${facet.distinct === 1 ? '' : 's'}`
+                        + ` in ${data.total} result${data.total === 1 ? '' : 's'}`
+                    table.append($('<caption></caption>').text(caption))
+                    const rows = Object.entries(facet.values)
+                    if (facet.other > 0) rows.push(['(other values)', facet.other])
+                    if (facet.missing > 0) rows.push(['(missing)', facet.missing])
+                    const tbody = $('<tbody class="coral-Table-body"></tbody>')
+                    rows.forEach(function([value, count]) {
+                        const row = $('<tr class="coral-Table-row"></tr>')
+                        row.append($('<td class="coral-Table-cell"></td>').text(value))
+                        row.append($('<td class="coral-Table-cell"></td>').text(count))
+                        tbody.append(row)
+                    })
+                    $facets.append(table.append(tbody))
+                })
+                $facets.show()
+            }).fail(function(xhr) {
+                $button.prop('disabled', false)
+                new Coral.Alert().set({
+                    variant: 'error',
+                    header: 'Counting Values Failed',
+                    content: { innerHTML: 'Check path or server logs: ' + xhr.statusText }
+                }).display();
+            });
         });
 
         const $operationSelect = $('#update-operation')
@@ -234,13 +261,17 @@
         })
 
         // Update Form Submission
-        $('#nodemorph-update-form').on('submit', function(e) {
-            e.preventDefault();
+        function collectUpdateFormData() {
             const formData = {
                 path: $('#update-path').val(),
                 operation: $('#update-operation').val(),
                 pageOnly: $('coral-checkbox[name="pageOnly"]').prop('checked'),
                 dryRun: $('coral-checkbox[name="dryRun"]').prop('checked'),
+                summary: $('coral-checkbox[name="summary"]').prop('checked'),
+                async: $('coral-checkbox[name="async"]').prop('checked'),
+                parallel: $('coral-checkbox[name="parallel"]').prop('checked'),
+                checkpoint: $('coral-checkbox[name="checkpoint"]').prop('checked'),
+                queryEngine: $('#update-query-engine').val(),
             }
 
             switch (formData.operation) {
@@ -261,12 +292,14 @@
                     formData.propName = $('input[name="propName"]').val();
                     formData.find = $('input[name="find"]').val();
                     formData.partialMatch = $('coral-checkbox[name="partialMatch"]').prop('checked')
+                    formData.regex = $('coral-checkbox[name="regex"]').prop('checked')
                     formData.replace = $('input[name="replace"]').val();
                     break;
                 case 'copy':
                     formData.copyType = $('#copy-type').val();
                     formData.source = $('input[name="source"]').val();
                     formData.target = $('input[name="target"]').val();
+                    formData.deepCopy = $('coral-checkbox[name="deepCopy"]').prop('checked')
                     break;
                 case 'create':
                     formData.newNodeName = $('input[name="newNodeName"]').val()
@@ -275,17 +308,75 @@
                     formData.newNodeProperties = $('input[name="newNodeProperties[]"]').map(function() {return $(this).val()}).get().join('\n')
                     break
             }
+            return formData
+        }
+
+        $('#update-explain-btn').on('click', function() {
+            const formData = Object.assign(collectUpdateFormData(), { explain: true })
+            $.post('/bin/nodemorph/update', formData)
+                .done(function(plan) {
+                    const lines = [
+                        `<b>Query:</b> ${plan.statement}`,
+                        `<b>Plan:</b> ${plan.plan || 'unavailable'}`,
+                        `<b>Index:</b> ${plan.index || (plan.traversal ? 'none (traversal)' : 'unknown')}`,
+                    ]
+                    if (plan.estimatedNodes >= 0) {
+                        lines.push(`<b>Nodes to traverse:</b> ${plan.estimatedNodes > plan.traversalLimit ? 'more than ' + plan.traversalLimit : plan.estimatedNodes}`)
+                    }
+                    if (plan.message) {
+                        lines.push(plan.message)
+                    }
+                    const dialog = new Coral.Dialog().set({
+                        id: 'update-explain-dialog',
+                        variant: plan.allowed ? (plan.traversal ? 'warning' : 'info') : 'error',
+                        header: { innerHTML: 'Query Plan' },
+                        content: { innerHTML: lines.join('<br/>') },
+                        footer: {
+                            innerHTML: '<button is="coral-button" variant="primary" coral-close>OK</button>'
+                        }
+                    })
+                    document.body.appendChild(dialog)
+                    dialog.show()
+                })
+                .fail(function(xhr) {
+                    Coral.commons.toast(xhr.responseText || 'Could not explain query', {variant: 'error'})
+                })
+        })
+
+        $('#nodemorph-update-form').on('submit', function(e) {
+            e.preventDefault();
+            const formData = collectUpdateFormData()
 
             $.post('/bin/nodemorph/update', formData)
                 .done(function(data) {
+                    if (formData.async) {
+                        $('#nodemorph-update-results').css('display', 'none')
+                        showUndo(null)
+                        showResume(null)
+                        pollUpdateJob(data.id)
+                        return
+                    }
+                    $('#update-summary').empty().css('display', 'none')
+                    showUndo(data.journal)
+                    showResume(null)
+                    if (data.summary) {
+                        renderUpdateSummary(data)
+                        return
+                    }
                     if (data.actions && data.actions.length > 0 && data.actions.some(action => action.status === "Failed")) {
                         $('#update-result-text').text('Update failed')
                         $('#nodemorph-update-results').css('display', 'none')
                         let errorMessage = 'An unexpected error occurred.'
+                        showResume(data.checkpoint)
                         const failedAction = data.actions.find(action => action.status === "Failed")
                         if (failedAction && failedAction.message) {
                             errorMessage = failedAction.message
                         }
+                        const committed = (data.batches || []).filter(batch => batch.status === 'Committed')
+                        if (committed.length > 0) {
+                            const committedNodes = committed.reduce((sum, batch) => sum + batch.nodes, 0)
+                            errorMessage += `<br/>${committed.length} batch${committed.length === 1 ? '' : 'es'} (${committedNodes} node${committedNodes === 1 ? '' : 's'}) were committed before the failure.`
+                        }
                         const dialog = new Coral.Dialog().set({
                             id: 'update-error-dialog',
                             variant: 'error',
@@ -328,6 +419,91 @@
                 })
         })
 
+        // Summary-only runs: counts per action type and subtree, and a sample of the actions
+        function renderUpdateSummary(data) {
+            const summary = data.summary
+            $('#update-result-text').text(`${summary.statuses.Pending ? 'Would modify' : 'Modified'} ${summary.nodesModified} of ${summary.nodesProcessed} matched node${summary.nodesProcessed === 1 ? '' : 's'}, showing ${data.actions.length} sampled action${data.actions.length === 1 ? '' : 's'}`)
+            const list = $('#update-summary').empty()
+            Object.entries(summary.actions).forEach(([action, count]) => list.append($('<li>').text(`${action}: ${count}`)))
+            Object.entries(summary.subtrees).forEach(([subtree, count]) => list.append($('<li>').text(`${subtree}: ${count} node${count === 1 ? '' : 's'}`)))
+            list.css('display', 'block')
+
+            const tbody = $('#nodemorph-update-results .coral-Table-body').empty()
+            $('#nodemorph-update-results').css('display', data.actions.length > 0 ? 'table' : 'none')
+            data.actions.forEach(action => {
+                const row = $('<tr class="coral-Table-row">')
+                    .append($('<td class="coral-Table-cell">').text(action.path))
+                    .append($('<td class="coral-Table-cell">').text(action.action))
+                    .append($('<td class="coral-Table-cell">').text(action.status))
+                tbody.append(row)
+            })
+        }
+
+        // Undo of the last run, replaying its journal
+        function showUndo(journalId) {
+            $('#update-undo-btn').data('journal', journalId || null).css('display', journalId ? '' : 'none')
+        }
+
+        $('#update-undo-btn').on('click', function() {
+            const journalId = $(this).data('journal')
+            $.post('/bin/nodemorph/update', { operation: 'undo', journalId: journalId })
+                .done(function(data) {
+                    const failed = (data.actions || []).find(action => action.status === 'Failed')
+                    if (failed) {
+                        Coral.commons.toast(failed.message || failed.action, {variant: 'error'})
+                        return
+                    }
+                    showUndo(null)
+                    $('#nodemorph-update-results').css('display', 'none')
+                    $('#update-result-text').text(`Undid ${data.total} change${data.total === 1 ? '' : 's'}`)
+                })
+                .fail(function(xhr) {
+                    Coral.commons.toast(xhr.responseText || 'Could not undo the update', {variant: 'error'})
+                })
+        })
+
+        // Resuming a failed resumable run from its checkpoint, in the background
+        function showResume(runId) {
+            $('#update-resume-btn').data('run', runId || null).css('display', runId ? '' : 'none')
+        }
+
+        $('#update-resume-btn').on('click', function() {
+            const runId = $(this).data('run')
+            $.post('/bin/nodemorph/update', { operation: 'resume', runId: runId, async: true })
+                .done(function(data) {
+                    showResume(null)
+                    showUndo(null)
+                    $('#nodemorph-update-results').css('display', 'none')
+                    pollUpdateJob(data.id)
+                })
+                .fail(function(xhr) {
+                    Coral.commons.toast(xhr.responseText || 'Could not resume the update', {variant: 'error'})
+                })
+        })
+
+        // Background update job polling
+        function pollUpdateJob(jobId) {
+            $.get('/bin/nodemorph/job', { id: jobId })
+                .done(function(job) {
+                    const rate = job.nodesPerSecond ? `, ${Math.round(job.nodesPerSecond)} nodes/s` : ''
+                    if (job.state === 'Queued' || job.state === 'Running') {
+                        const current = job.currentPath ? ` (at ${job.currentPath})` : ''
+                        $('#update-result-text').text(`${job.state}: processed ${job.processed}, modified ${job.modified}${rate}${current}`)
+                        setTimeout(function() { pollUpdateJob(jobId) }, 2000)
+                    } else if (job.state === 'Failed') {
+                        $('#update-result-text').text(`Update failed after processing ${job.processed} node${job.processed === 1 ? '' : 's'}: ${job.message || 'Check logs.'}`)
+                        showUndo(job.journal)
+                        showResume(job.checkpoint)
+                    } else {
+                        $('#update-result-text').text(`Affected ${job.modified} node${job.modified === 1 ? '' : 's'} in ${job.batches} batch${job.batches === 1 ? '' : 'es'}${rate}`)
+                        showUndo(job.journal)
+                    }
+                })
+                .fail(function() {
+                    $('#update-result-text').text('Lost track of the background update. Check logs.')
+                })
+        }
+
         // Update Tab Functionality
         $('#nodemorph-preview-btn').on('click', function() {
             const path = $("#nodemorph-update-form [name='path']").val();